@@ -14,6 +14,7 @@ import static org.openmrs.module.fhir2.FhirConstants.FHIR2_MODULE_ID;
 import javax.annotation.Nonnull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,13 +28,24 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Allergy;
+import org.openmrs.Condition;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.GlobalPropertyListener;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleException;
 import org.openmrs.module.ModuleFactory;
 import org.openmrs.module.fhir2.api.FhirService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirPersonNameTokenDao;
+import org.openmrs.module.fhir2.api.dao.FhirResourceTextIndexDao;
+import org.openmrs.module.fhir2.api.dao.impl.PersonNameTokenInterceptor;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
 import org.openmrs.module.fhir2.api.spi.ServiceClassLoader;
 import org.openmrs.module.fhir2.api.translators.FhirTranslator;
@@ -50,19 +62,45 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware {
+public class FhirActivator extends BaseModuleActivator implements ApplicationContextAware, DaemonTokenAware {
 	
 	@Getter
 	private static ConfigurableApplicationContext applicationContext;
 	
 	private static FhirGlobalPropertyHolder globalPropertyHolder = null;
 	
+	private static final int NAME_TOKEN_INDEX_BATCH_SIZE = 500;
+	
+	private static final int TEXT_INDEX_BATCH_SIZE = 500;
+	
+	private DaemonToken daemonToken;
+	
 	private final Map<String, Set<Class<?>>> services = new HashMap<>();
 	
 	private final List<ModuleLifecycleListener> lifecycleListeners = new ArrayList<>();
 	
 	private boolean started = false;
 	
+	private final GlobalPropertyListener nameTokenIndexListener = new GlobalPropertyListener() {
+		
+		@Override
+		public boolean supportsPropertyName(String propertyName) {
+			return FhirConstants.NAME_TOKEN_INDEX_ENABLED_PROPERTY.equals(propertyName);
+		}
+		
+		@Override
+		public void globalPropertyChanged(GlobalProperty newValue) {
+			setNameTokenIndexEnabled(Boolean.parseBoolean(newValue.getPropertyValue()));
+		}
+		
+		@Override
+		public void globalPropertyDeleted(String propertyName) {
+			setNameTokenIndexEnabled(false);
+		}
+	};
+	
+	private boolean nameTokenIndexEnabled = false;
+	
 	@Override
 	public void started() {
 		if (applicationContext == null) {
@@ -74,6 +112,10 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		log.info("Started FHIR");
 		
 		lifecycleListeners.forEach(ModuleLifecycleListener::started);
+		
+		Context.getAdministrationService().addGlobalPropertyListener(nameTokenIndexListener);
+		populateNameTokenIndex();
+		populateTextIndex();
 	}
 	
 	@Override
@@ -105,6 +147,10 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 	public void willStop() {
 		lifecycleListeners.forEach(ModuleLifecycleListener::willStop);
 		
+		Context.getAdministrationService().removeGlobalPropertyListener(nameTokenIndexListener);
+		PersonNameTokenInterceptor.setIndexEnabled(false);
+		nameTokenIndexEnabled = false;
+		
 		if (globalPropertyHolder != null) {
 			Context.getAdministrationService().removeGlobalPropertyListener(globalPropertyHolder);
 		}
@@ -130,6 +176,11 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		lifecycleListeners.remove(lifecycleListener);
 	}
 	
+	@Override
+	public void setDaemonToken(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+	}
+	
 	@Override
 	public void setApplicationContext(@Nonnull ApplicationContext applicationContext) throws BeansException {
 		if (applicationContext instanceof ConfigurableApplicationContext) {
@@ -137,6 +188,118 @@ public class FhirActivator extends BaseModuleActivator implements ApplicationCon
 		}
 	}
 	
+	/**
+	 * Indexes any persons missing from the name token index in a background thread. Until this completes, name searches
+	 * continue to use the person_name table directly. If the index has been disabled since it was last populated, it is
+	 * rebuilt from scratch instead, as changes to names made while it was disabled were not indexed.
+	 */
+	protected synchronized void populateNameTokenIndex() {
+		nameTokenIndexEnabled = Boolean.parseBoolean(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.NAME_TOKEN_INDEX_ENABLED_PROPERTY, "false"));
+		PersonNameTokenInterceptor.setIndexEnabled(nameTokenIndexEnabled);
+		if (nameTokenIndexEnabled) {
+			populateNameTokenIndex(!isNameTokenIndexCurrent());
+		} else {
+			// the global property may have been changed while the module was not running
+			setNameTokenIndexCurrent(false);
+		}
+	}
+	
+	/**
+	 * Starts or stops maintaining the name token index when the global property enabling it changes. Since changes to
+	 * names are not indexed while the index is disabled, enabling it rebuilds it from scratch.
+	 */
+	protected synchronized void setNameTokenIndexEnabled(boolean enabled) {
+		boolean wasEnabled = nameTokenIndexEnabled;
+		nameTokenIndexEnabled = enabled;
+		// changes are tracked from now on, so none are missed while the index is rebuilt
+		PersonNameTokenInterceptor.setIndexEnabled(enabled);
+		if (enabled && !wasEnabled) {
+			populateNameTokenIndex(true);
+		} else if (!enabled && wasEnabled) {
+			setNameTokenIndexCurrent(false);
+		}
+	}
+	
+	private synchronized void markNameTokenIndexCurrent() {
+		// the index may have been disabled while it was being populated
+		if (nameTokenIndexEnabled) {
+			setNameTokenIndexCurrent(true);
+		}
+	}
+	
+	private boolean isNameTokenIndexCurrent() {
+		return Boolean.parseBoolean(Context.getAdministrationService()
+		        .getGlobalProperty(FhirConstants.NAME_TOKEN_INDEX_CURRENT_PROPERTY, "false"));
+	}
+	
+	private void setNameTokenIndexCurrent(boolean current) {
+		try {
+			Context.getAdministrationService().setGlobalProperty(FhirConstants.NAME_TOKEN_INDEX_CURRENT_PROPERTY,
+			    String.valueOf(current));
+		}
+		catch (Exception e) {
+			log.error("Error recording whether the person name token index is current", e);
+		}
+	}
+	
+	private void populateNameTokenIndex(boolean rebuild) {
+		if (daemonToken == null) {
+			return;
+		}
+		
+		FhirPersonNameTokenDao personNameTokenDao = applicationContext.getBean(FhirPersonNameTokenDao.class);
+		Daemon.runInDaemonThread(() -> {
+			try {
+				if (rebuild) {
+					personNameTokenDao.clearIndex();
+				}
+				
+				Integer lastPersonId = null;
+				do {
+					lastPersonId = personNameTokenDao.indexMissingPersons(lastPersonId, NAME_TOKEN_INDEX_BATCH_SIZE);
+				} while (lastPersonId != null);
+				
+				personNameTokenDao.markPopulated();
+				markNameTokenIndexCurrent();
+				log.info("Person name token index populated");
+			}
+			catch (Exception e) {
+				log.error("Error populating the person name token index", e);
+			}
+		}, daemonToken);
+	}
+	
+	/**
+	 * Re-indexes all observations, conditions and allergies in the full-text index in a background thread, which picks
+	 * up any changes made while the index was disabled. Until this completes, the _content and _text search parameters
+	 * are rejected.
+	 */
+	protected void populateTextIndex() {
+		if (daemonToken == null || !Boolean.parseBoolean(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.FULL_TEXT_INDEX_ENABLED_PROPERTY, "false"))) {
+			return;
+		}
+		
+		FhirResourceTextIndexDao resourceTextIndexDao = applicationContext.getBean(FhirResourceTextIndexDao.class);
+		Daemon.runInDaemonThread(() -> {
+			try {
+				for (Class<?> entityType : Arrays.asList(Obs.class, Condition.class, Allergy.class)) {
+					Integer lastId = null;
+					do {
+						lastId = resourceTextIndexDao.indexBatch(entityType, lastId, TEXT_INDEX_BATCH_SIZE);
+					} while (lastId != null);
+				}
+				
+				resourceTextIndexDao.markPopulated();
+				log.info("Full-text index populated");
+			}
+			catch (Exception e) {
+				log.error("Error populating the full-text index", e);
+			}
+		}, daemonToken);
+	}
+	
 	protected void loadModules() {
 		ModuleFactory.getLoadedModules().stream()
 		        // only try to load services from modules that have the FHIR2 module available on their ModuleClasspath
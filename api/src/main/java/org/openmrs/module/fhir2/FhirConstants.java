@@ -121,6 +121,66 @@ public final class FhirConstants {
 	
 	public static final String OPENMRS_FHIR_MAXIMUM_PAGE_SIZE = "fhir2.paging.maximum";
 	
+	public static final String NAME_TOKEN_INDEX_ENABLED_PROPERTY = "fhir2.search.nameTokenIndexEnabled";
+	
+	public static final String NAME_TOKEN_INDEX_CURRENT_PROPERTY = "fhir2.search.nameTokenIndexCurrent";
+	
+	public static final String PHONETIC_RANKING_LIMIT_PROPERTY = "fhir2.search.phoneticRankingLimit";
+	
+	public static final String FULL_TEXT_INDEX_ENABLED_PROPERTY = "fhir2.search.fullTextIndexEnabled";
+	
+	public static final String IDENTIFIER_CACHE_SIZE_PROPERTY = "fhir2.search.identifierCacheSize";
+	
+	public static final String READ_REPLICA_STICKY_WINDOW_PROPERTY = "fhir2.readReplica.stickyWindowSeconds";
+	
+	public static final String SEARCH_QUERY_TIMEOUT_PROPERTY = "fhir2.search.queryTimeoutSeconds";
+	
+	public static final String SEARCH_COST_GUARD_PROPERTY = "fhir2.search.costGuard";
+	
+	public static final String SEARCH_COST_GUARD_TIMEOUT_PROPERTY = "fhir2.search.costGuardTimeoutSeconds";
+	
+	public static final String PAGING_STORE_PROPERTY = "fhir2.paging.store";
+	
+	public static final String PAGING_MAXIMUM_SEARCHES_PROPERTY = "fhir2.paging.maximumSearches";
+	
+	public static final String PAGING_TTL_PROPERTY = "fhir2.paging.ttlMinutes";
+	
+	public static final String PAGING_MEMORY_BUDGET_PROPERTY = "fhir2.paging.memoryBudgetMb";
+	
+	public static final String CACHE_CONTROL_PROPERTY = "fhir2.cacheControl";
+	
+	public static final String RESOURCE_CACHE_SIZE_PROPERTY = "fhir2.resourceCache.maximumSize";
+	
+	public static final String RESOURCE_CACHE_TTL_PROPERTY = "fhir2.resourceCache.ttlSeconds";
+	
+	public static final String RESPONSE_CACHE_SIZE_PROPERTY = "fhir2.responseCache.maximumSize";
+	
+	public static final String BUNDLE_STREAMING_THRESHOLD_PROPERTY = "fhir2.bundleStreamingThreshold";
+	
+	public static final String COMPRESSION_MINIMUM_SIZE_PROPERTY = "fhir2.compression.minimumSize";
+	
+	public static final String ASYNC_OPERATIONS_PROPERTY = "fhir2.async.operations";
+	
+	public static final String ASYNC_THREADS_PROPERTY = "fhir2.async.threads";
+	
+	public static final String ASYNC_QUEUE_SIZE_PROPERTY = "fhir2.async.queueSize";
+	
+	public static final String ASYNC_TIMEOUT_PROPERTY = "fhir2.async.timeoutSeconds";
+	
+	public static final String ASYNC_RESULT_RETENTION_PROPERTY = "fhir2.async.resultRetentionSeconds";
+	
+	public static final String ASYNC_RESULT_MAXIMUM_BYTES_PROPERTY = "fhir2.async.resultMaximumBytes";
+	
+	public static final String ASYNC_STATUS_OPERATION = "$async-status";
+	
+	public static final String VIRTUAL_THREADS_ENABLED_PROPERTY = "fhir2.virtualThreads.enabled";
+	
+	public static final String VIRTUAL_THREADS_DATABASE_CONCURRENCY_PROPERTY = "fhir2.virtualThreads.maxDatabaseConcurrency";
+	
+	public static final String TRANSLATION_PARALLEL_THRESHOLD_PROPERTY = "fhir2.translation.parallelThreshold";
+	
+	public static final String AUTHENTICATION_CACHE_TTL_PROPERTY = "fhir2.authenticationCache.ttlSeconds";
+	
 	public static final String ALLERGY_INTOLERANCE = "AllergyIntolerance";
 	
 	public static final String CONDITION = "Condition";
@@ -221,6 +281,14 @@ public final class FhirConstants {
 	
 	public static final String NAME_SEARCH_HANDLER = "name.search.handler";
 	
+	public static final String PHONETIC_SEARCH_HANDLER = "phonetic.search.handler";
+	
+	public static final String FULL_TEXT_SEARCH_HANDLER = "fulltext.search.handler";
+	
+	public static final String CONTENT_PROPERTY = "content";
+	
+	public static final String TEXT_PROPERTY = "text";
+	
 	public static final String QUERY_SEARCH_HANDLER = "query.search.handler";
 	
 	public static final String NAME_PROPERTY = "name.property";
@@ -271,6 +339,12 @@ public final class FhirConstants {
 	
 	public static final String NARRATIVES_OVERRIDE_PROPERTY_FILE = "fhir2.narrativesOverridePropertyFile";
 	
+	public static final String NARRATIVES_FOR_READS_ONLY_PROPERTY = "fhir2.narrativesForReadsOnly";
+	
+	public static final String NARRATIVE_SEARCH_PARAMETER = "_narrative";
+	
+	public static final String NARRATIVE_HEADER = "X-FHIR-Narrative";
+	
 	public static final String ALLERGEN_SEARCH_HANDLER = "allergen.search.handler";
 	
 	public static final String SEVERITY_SEARCH_HANDLER = "severity.search.handler";
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 import org.openmrs.ConceptSource;
@@ -27,6 +28,8 @@ public interface FhirConceptSourceService {
 	
 	String getUrlForConceptSource(@Nonnull ConceptSource conceptSource);
 	
+	Map<ConceptSource, String> getUrlsForConceptSources(@Nonnull Collection<ConceptSource> conceptSources);
+	
 	Optional<ConceptSource> getConceptSourceByUrl(@Nonnull String url);
 	
 	Optional<ConceptSource> getConceptSourceByHl7Code(@Nonnull String hl7Code);
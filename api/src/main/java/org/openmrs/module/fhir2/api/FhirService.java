@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import ca.uhn.fhir.rest.api.PatchTypeEnum;
@@ -22,6 +23,17 @@ public interface FhirService<T extends IAnyResource> {
 	
 	T get(@Nonnull String uuid);
 	
+	/**
+	 * Gets when the resource with the given uuid was last updated without translating it. The version of the resource
+	 * is the time in milliseconds of this date.
+	 *
+	 * @param uuid the uuid of the resource
+	 * @return the date the resource was last updated or null if this is not known
+	 */
+	default Date getLastUpdated(@Nonnull String uuid) {
+		return null;
+	}
+	
 	List<T> get(@Nonnull Collection<String> uuids);
 	
 	T create(@Nonnull T newResource);
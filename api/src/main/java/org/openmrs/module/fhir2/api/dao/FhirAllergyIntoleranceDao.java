@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Allergy;
@@ -24,6 +25,10 @@ public interface FhirAllergyIntoleranceDao extends FhirDao<Allergy> {
 	@Authorized(PrivilegeConstants.GET_ALLERGIES)
 	Allergy get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ALLERGIES)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_ALLERGIES, PrivilegeConstants.EDIT_ALLERGIES })
 	Allergy createOrUpdate(@Nonnull Allergy newEntry);
@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+
+import org.openmrs.annotation.Authorized;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.openmrs.util.PrivilegeConstants;
+
+/**
+ * Provides access to an in-memory index of the patients that belong to each cohort. The index is built lazily the first
+ * time a cohort is requested and is invalidated whenever the cohort or any of its memberships are saved. The bitmaps
+ * returned belong to the caller, so modifying them does not affect the index.
+ */
+public interface FhirCohortMembershipDao {
+	
+	/**
+	 * @param cohortUuid the uuid of the cohort
+	 * @return the ids of the patients who are non-voided members of the cohort
+	 */
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	IdBitmap getMemberIds(@Nonnull String cohortUuid);
+	
+	/**
+	 * @param cohortUuids the uuids of the cohorts
+	 * @return the ids of the patients who are members of every one of the cohorts
+	 */
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	IdBitmap getMemberIdsOfAll(@Nonnull Collection<String> cohortUuids);
+	
+	/**
+	 * @param cohortUuids the uuids of the cohorts
+	 * @return the ids of the patients who are members of at least one of the cohorts
+	 */
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	IdBitmap getMemberIdsOfAny(@Nonnull Collection<String> cohortUuids);
+	
+	/**
+	 * Discards the indexed members of the cohort with the given id so that they are re-read on next access
+	 *
+	 * @param cohortId the id of the cohort that was modified
+	 */
+	void invalidate(@Nonnull Integer cohortId);
+}
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,10 @@ public interface FhirConceptDao extends FhirDao<Concept> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	Concept get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	Optional<Concept> getConceptWithSameAsMappingInSource(ConceptSource conceptSource, String mappingCode);
 	
@@ -33,6 +33,9 @@ public interface FhirConceptSourceDao {
 	@Authorized(PrivilegeConstants.GET_CONCEPT_SOURCES)
 	Optional<FhirConceptSource> getFhirConceptSourceByConceptSource(@Nonnull ConceptSource conceptSource);
 	
+	@Authorized(PrivilegeConstants.GET_CONCEPT_SOURCES)
+	Collection<FhirConceptSource> getFhirConceptSourcesByConceptSources(@Nonnull Collection<ConceptSource> conceptSources);
+	
 	@Authorized(PrivilegeConstants.GET_CONCEPT_SOURCES)
 	Optional<ConceptSource> getConceptSourceByHl7Code(@Nonnull String hl7Code);
 	
@@ -13,7 +13,9 @@ import javax.annotation.Nonnull;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
@@ -26,6 +28,23 @@ public interface FhirDao<T extends OpenmrsObject & Auditable> extends Serializab
 	
 	T get(@Nonnull String uuid);
 	
+	/**
+	 * Gets when the object with the given uuid was last changed, which is what the version of the translated resource is
+	 * based on. Implementations should avoid loading the object itself, so this can be used to check whether a copy of
+	 * the resource a client holds is still current.
+	 *
+	 * @param uuid the uuid of the object
+	 * @return the date the object was last changed or created or null if there is no such object
+	 */
+	default Date getLastUpdated(@Nonnull String uuid) {
+		T object = get(uuid);
+		if (object == null) {
+			return null;
+		}
+		
+		return object.getDateChanged() != null ? object.getDateChanged() : object.getDateCreated();
+	}
+	
 	List<T> get(@Nonnull Collection<String> uuids);
 	
 	T createOrUpdate(@Nonnull T newEntry);
@@ -35,4 +54,15 @@ public interface FhirDao<T extends OpenmrsObject & Auditable> extends Serializab
 	int getSearchResultsCount(@Nonnull SearchParameterMap theParams);
 	
 	List<T> getSearchResults(@Nonnull SearchParameterMap theParams);
+	
+	/**
+	 * Passes each result of a search to the consumer in the same order as {@link #getSearchResults(SearchParameterMap)}.
+	 * Implementations should avoid holding every result in memory at once, so this is suitable for very large searches.
+	 *
+	 * @param theParams the parameters for this search
+	 * @param consumer called with each result
+	 */
+	default void scrollSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull Consumer<T> consumer) {
+		getSearchResults(theParams).forEach(consumer);
+	}
 }
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.annotation.Authorized;
@@ -24,6 +25,10 @@ public interface FhirDiagnosticReportDao extends FhirDao<FhirDiagnosticReport> {
 	@Authorized(PrivilegeConstants.GET_OBS)
 	FhirDiagnosticReport get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_OBS, PrivilegeConstants.EDIT_OBS })
 	FhirDiagnosticReport createOrUpdate(@Nonnull FhirDiagnosticReport newEntry);
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Encounter;
@@ -24,6 +25,10 @@ public interface FhirEncounterDao extends FhirDao<Encounter> {
 	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
 	Encounter get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ENCOUNTERS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_ENCOUNTERS, PrivilegeConstants.EDIT_ENCOUNTERS })
 	Encounter createOrUpdate(@Nonnull Encounter newEntry);
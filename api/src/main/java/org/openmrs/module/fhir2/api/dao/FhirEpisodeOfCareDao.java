@@ -11,6 +11,8 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
+
 import org.openmrs.PatientProgram;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.util.PrivilegeConstants;
@@ -20,4 +22,8 @@ public interface FhirEpisodeOfCareDao extends FhirDao<PatientProgram> {
 	@Override
 	@Authorized(PrivilegeConstants.GET_PATIENT_PROGRAMS)
 	PatientProgram get(@Nonnull String uuid);
+	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_PROGRAMS)
+	Date getLastUpdated(@Nonnull String uuid);
 }
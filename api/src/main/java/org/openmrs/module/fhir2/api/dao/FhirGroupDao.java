@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Cohort;
@@ -24,6 +25,10 @@ public interface FhirGroupDao extends FhirDao<Cohort> {
 	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
 	Cohort get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_PATIENT_COHORTS)
 	List<Cohort> get(@Nonnull Collection<String> uuids);
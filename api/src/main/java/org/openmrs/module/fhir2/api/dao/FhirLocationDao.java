@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Location;
@@ -27,6 +28,10 @@ public interface FhirLocationDao extends FhirDao<Location> {
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	Location get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_LOCATIONS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_LOCATIONS)
 	List<LocationAttribute> getActiveAttributesByLocationAndAttributeTypeUuid(@Nonnull Location location,
 	        @Nonnull String locationAttributeTypeUuid);
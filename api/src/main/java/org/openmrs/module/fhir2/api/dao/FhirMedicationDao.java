@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Drug;
@@ -24,6 +25,10 @@ public interface FhirMedicationDao extends FhirDao<Drug> {
 	@Authorized(PrivilegeConstants.GET_CONCEPTS)
 	Drug get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_CONCEPTS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized(PrivilegeConstants.MANAGE_CONCEPTS)
 	Drug createOrUpdate(@Nonnull Drug newEntry);
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.DrugOrder;
@@ -24,6 +25,10 @@ public interface FhirMedicationRequestDao extends FhirDao<DrugOrder> {
 	@Authorized(PrivilegeConstants.GET_ORDERS)
 	DrugOrder get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_ORDERS, PrivilegeConstants.EDIT_ORDERS })
 	DrugOrder createOrUpdate(@Nonnull DrugOrder newEntry);
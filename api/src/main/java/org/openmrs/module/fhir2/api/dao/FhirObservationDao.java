@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Obs;
@@ -24,6 +25,10 @@ public interface FhirObservationDao extends FhirDao<Obs> {
 	@Authorized(PrivilegeConstants.GET_OBS)
 	Obs get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_OBS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_OBS, PrivilegeConstants.EDIT_OBS })
 	Obs createOrUpdate(@Nonnull Obs newEntry);
@@ -0,0 +1,34 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import org.openmrs.module.fhir2.model.FhirPagedSearch;
+
+/**
+ * Stores the definitions of searches being paged through (see {@link FhirPagedSearch})
+ */
+public interface FhirPagedSearchDao {
+	
+	FhirPagedSearch get(@Nonnull String searchId);
+	
+	FhirPagedSearch save(@Nonnull FhirPagedSearch pagedSearch);
+	
+	/**
+	 * Removes every search that expired before the given date
+	 *
+	 * @param date the date to compare the expiry date of each search with
+	 * @return the number of searches removed
+	 */
+	int deleteExpired(@Nonnull Date date);
+}
@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.dao;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Patient;
@@ -32,6 +33,10 @@ public interface FhirPatientDao extends FhirDao<Patient> {
 	@Authorized(PrivilegeConstants.GET_PATIENTS)
 	Patient get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PATIENTS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_PATIENT_IDENTIFIERS)
 	PatientIdentifierType getPatientIdentifierTypeByNameOrUuid(String name, String uuid);
 	
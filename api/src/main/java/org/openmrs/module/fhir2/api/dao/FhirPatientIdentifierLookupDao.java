@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves patient identifiers to the patients they identify with a single query against patient_identifier, optionally
+ * caching the results in memory (see {@link org.openmrs.module.fhir2.FhirConstants#IDENTIFIER_CACHE_SIZE_PROPERTY}).
+ */
+public interface FhirPatientIdentifierLookupDao {
+	
+	/**
+	 * Finds the non-voided patients with a non-voided identifier exactly matching the supplied value
+	 *
+	 * @param identifierTypeName the name of the identifier type or null to match identifiers of any type
+	 * @param identifier the identifier to search for
+	 * @return the ids of the matching patients in ascending order
+	 */
+	List<Integer> getPatientIds(String identifierTypeName, String identifier);
+	
+	/**
+	 * Removes any cached results for the given identifier values, whatever their type
+	 *
+	 * @param identifiers the identifier values that have changed
+	 */
+	void evictIdentifiers(Collection<String> identifiers);
+	
+	/**
+	 * Removes any cached results that include the given patients
+	 *
+	 * @param patientIds the ids of the patients that have changed
+	 */
+	void evictPatients(Collection<Integer> patientIds);
+	
+	/**
+	 * Removes all cached results
+	 */
+	void evictAll();
+}
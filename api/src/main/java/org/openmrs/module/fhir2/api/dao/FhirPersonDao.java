@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Person;
@@ -25,6 +26,10 @@ public interface FhirPersonDao extends FhirDao<Person> {
 	@Authorized(PrivilegeConstants.GET_PERSONS)
 	Person get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_PERSONS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_PERSONS)
 	List<PersonAttribute> getActiveAttributesByPersonAndAttributeTypeUuid(@Nonnull Person person,
 	        @Nonnull String personAttributeTypeUuid);
@@ -0,0 +1,67 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Maintains the normalized name token index (see {@link org.openmrs.module.fhir2.model.FhirPersonNameToken}) used to
+ * resolve name searches. The index is derived entirely from the person_name table, so any person can be re-indexed at
+ * any time.
+ */
+public interface FhirPersonNameTokenDao {
+	
+	/**
+	 * Replaces the indexed tokens for the given persons with tokens computed from their current, non-voided names
+	 *
+	 * @param personIds the ids of the persons to re-index
+	 */
+	void reindexPersons(Collection<Integer> personIds);
+	
+	/**
+	 * Indexes the next batch of persons, ordered by person id, that have non-voided names but no entries in the index.
+	 * This is intended to be called repeatedly to populate the index for data that existed before the index did.
+	 *
+	 * @param afterPersonId the last person id returned by the previous batch or null to start with the first person
+	 * @param batchSize the maximum number of persons to index
+	 * @return the last person id indexed or null if there are no more persons to index
+	 */
+	Integer indexMissingPersons(Integer afterPersonId, int batchSize);
+	
+	/**
+	 * Removes every entry from the index and records that it is no longer fully populated, e.g., before rebuilding an
+	 * index that was not kept up-to-date while it was disabled
+	 */
+	void clearIndex();
+	
+	/**
+	 * Records that every existing person has been indexed, i.e., that {@link #indexMissingPersons(Integer, int)} has been
+	 * run to completion
+	 */
+	void markPopulated();
+	
+	/**
+	 * @return true if name searches should be resolved using the index, i.e., the index is enabled by the
+	 *         {@link org.openmrs.module.fhir2.FhirConstants#NAME_TOKEN_INDEX_ENABLED_PROPERTY} global property and has
+	 *         been fully populated
+	 */
+	boolean isSearchable();
+	
+	/**
+	 * Scores how closely the indexed names of each person match the supplied tokens, both literally and phonetically.
+	 * Higher scores are better matches.
+	 *
+	 * @param personIds the ids of the persons to score
+	 * @param tokens the normalized tokens searched for
+	 * @return the score for each person with indexed names
+	 */
+	Map<Integer, Integer> getPhoneticMatchScores(Collection<Integer> personIds, Collection<String> tokens);
+}
@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Relationship;
@@ -24,6 +25,10 @@ public interface FhirRelatedPersonDao extends FhirDao<Relationship> {
 	@Authorized({ PrivilegeConstants.GET_PERSONS, PrivilegeConstants.GET_RELATIONSHIPS })
 	Relationship get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized({ PrivilegeConstants.GET_PERSONS, PrivilegeConstants.GET_RELATIONSHIPS })
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_PERSONS, PrivilegeConstants.EDIT_PERSONS, PrivilegeConstants.ADD_RELATIONSHIPS,
 	        PrivilegeConstants.EDIT_RELATIONSHIPS })
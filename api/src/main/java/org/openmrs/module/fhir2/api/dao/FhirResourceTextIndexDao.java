@@ -0,0 +1,73 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import java.util.Collection;
+
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.openmrs.module.fhir2.api.util.ResourceText;
+
+/**
+ * Maintains the full-text index used to resolve the {@code _content} and {@code _text} search parameters for
+ * observations, conditions and allergies. The index is derived entirely from the database, so any record can be
+ * re-indexed at any time.
+ */
+public interface FhirResourceTextIndexDao {
+	
+	/**
+	 * Replaces the index entries for the given records. Records with empty text are removed from the index. The index
+	 * is written in the background, so this returns before the changes are searchable.
+	 *
+	 * @param resourceTexts the current text of the records to re-index
+	 */
+	void update(Collection<ResourceText> resourceTexts);
+	
+	/**
+	 * Re-indexes the next batch of records of the given type, ordered by id. This is intended to be called repeatedly
+	 * to bring the index up-to-date with changes made while it was not being maintained.
+	 *
+	 * @param entityType the type of record to index, i.e., Obs, Condition or Allergy
+	 * @param afterId the last id returned by the previous batch or null to start with the first record
+	 * @param batchSize the maximum number of records to index
+	 * @return the last id indexed or null if there are no more records to index
+	 */
+	Integer indexBatch(Class<?> entityType, Integer afterId, int batchSize);
+	
+	/**
+	 * Records that every existing record has been indexed, i.e., that {@link #indexBatch(Class, Integer, int)} has been
+	 * run to completion for each type
+	 */
+	void markPopulated();
+	
+	/**
+	 * @return true if the index is enabled by the
+	 *         {@link org.openmrs.module.fhir2.FhirConstants#FULL_TEXT_INDEX_ENABLED_PROPERTY} global property, in
+	 *         which case it should be kept up-to-date as records change
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * @return true if full-text searches can be resolved, i.e., the index is enabled and has been fully populated
+	 */
+	boolean isSearchable();
+	
+	/**
+	 * Finds the ids of the records of the given type whose text matches the search. Each search term must match a
+	 * word in the record, ignoring case.
+	 *
+	 * @param entityType the type of record to search
+	 * @param field either {@link org.openmrs.module.fhir2.FhirConstants#CONTENT_PROPERTY} or
+	 *            {@link org.openmrs.module.fhir2.FhirConstants#TEXT_PROPERTY}
+	 * @param query the search terms
+	 * @return the ids of the matching records
+	 */
+	IdBitmap search(Class<?> entityType, String field, StringAndListParam query);
+}
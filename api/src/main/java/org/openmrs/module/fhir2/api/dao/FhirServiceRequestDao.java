@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.Auditable;
@@ -25,6 +26,10 @@ public interface FhirServiceRequestDao<T extends OpenmrsObject & Auditable> exte
 	@Authorized(PrivilegeConstants.GET_ORDERS)
 	T get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_ORDERS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Override
 	@Authorized({ PrivilegeConstants.ADD_ORDERS, PrivilegeConstants.EDIT_ORDERS })
 	T createOrUpdate(@Nonnull T newEntry);
@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao;
+
+import java.util.Collection;
+
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+
+/**
+ * Resolves codes from a FHIR code system to the concepts mapped to them, so that token searches with a system can be
+ * expressed as a restriction on concept ids rather than as joins through the concept mappings. Resolved codes are
+ * cached in memory.
+ */
+public interface FhirTerminologyIndexDao {
+	
+	/**
+	 * Finds the concepts with a mapping to any of the given codes in the concept source registered for a system
+	 *
+	 * @param system the url of the code system, as registered as a {@link org.openmrs.module.fhir2.model.FhirConceptSource}
+	 * @param codes the codes to search for
+	 * @return the ids of the matching concepts
+	 */
+	IdBitmap getConceptIds(String system, Collection<String> codes);
+	
+	/**
+	 * Removes all cached codes
+	 */
+	void evictAll();
+}
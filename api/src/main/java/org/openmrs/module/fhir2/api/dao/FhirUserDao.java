@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.api.dao;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
 import java.util.List;
 
 import org.openmrs.User;
@@ -24,6 +25,10 @@ public interface FhirUserDao extends FhirDao<User> {
 	@Override
 	User get(@Nonnull String uuid);
 	
+	@Override
+	@Authorized(PrivilegeConstants.GET_USERS)
+	Date getLastUpdated(@Nonnull String uuid);
+	
 	@Authorized(PrivilegeConstants.GET_USERS)
 	User getUserByUserName(String clientName);
 	
@@ -0,0 +1,84 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.User;
+import org.openmrs.api.db.LoginCredential;
+import org.openmrs.module.fhir2.api.util.AuthenticatedUserCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that evicts a user from the {@link AuthenticatedUserCache} when their password, username or
+ * retired state changes or when they are deleted. The eviction is repeated once the transaction completes, so that a
+ * request authenticated against the old password while the transaction was still open is not cached either.
+ */
+@Component
+public class AuthenticatedUserCacheInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Set<Integer>> changedUsers = ThreadLocal.withInitial(HashSet::new);
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		if (entity instanceof LoginCredential) {
+			evict(((LoginCredential) entity).getUserId());
+		} else if (entity instanceof User) {
+			for (int i = 0; i < propertyNames.length; i++) {
+				switch (propertyNames[i]) {
+					case "username":
+					case "systemId":
+					case "retired":
+						if (previousState == null || !Objects.equals(previousState[i], currentState[i])) {
+							evict(((User) entity).getUserId());
+							return false;
+						}
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof User) {
+			evict(((User) entity).getUserId());
+		}
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			for (Integer userId : changedUsers.get()) {
+				AuthenticatedUserCache.evictUser(userId);
+			}
+		}
+		finally {
+			changedUsers.remove();
+		}
+	}
+	
+	private void evict(Integer userId) {
+		if (userId != null) {
+			AuthenticatedUserCache.evictUser(userId);
+			changedUsers.get().add(userId);
+		}
+	}
+}
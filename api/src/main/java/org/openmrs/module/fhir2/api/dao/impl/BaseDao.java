@@ -19,11 +19,13 @@ import static org.hibernate.criterion.Restrictions.ilike;
 import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.isNull;
 import static org.hibernate.criterion.Restrictions.le;
+import static org.hibernate.criterion.Restrictions.like;
 import static org.hibernate.criterion.Restrictions.lt;
 import static org.hibernate.criterion.Restrictions.ne;
 import static org.hibernate.criterion.Restrictions.not;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.hibernate.criterion.Subqueries.propertyEq;
+import static org.hibernate.criterion.Subqueries.propertyIn;
 
 import javax.annotation.Nonnull;
 
@@ -43,6 +45,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.Spliterators;
@@ -68,9 +71,12 @@ import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -89,9 +95,13 @@ import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Practitioner;
 import org.hl7.fhir.r4.model.codesystems.AdministrativeGender;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirPersonNameTokenDao;
+import org.openmrs.module.fhir2.api.dao.FhirTerminologyIndexDao;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.util.LocalDateTimeFactory;
+import org.openmrs.module.fhir2.api.util.NameTokenUtils;
 import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.openmrs.module.fhir2.model.FhirPersonNameToken;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -171,9 +181,21 @@ public abstract class BaseDao {
 	
 	private static final BigDecimal APPROX_RANGE = new BigDecimal("0.1");
 	
+	protected static final int MAX_PADDED_IN_LIST_SIZE = 1024;
+	
 	@Autowired
 	private LocalDateTimeFactory localDateTimeFactory;
 	
+	@Autowired(required = false)
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(AccessLevel.PACKAGE)
+	private FhirPersonNameTokenDao personNameTokenDao;
+	
+	@Autowired(required = false)
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(AccessLevel.PACKAGE)
+	private FhirTerminologyIndexDao terminologyIndexDao;
+	
 	/**
 	 * Converts an {@link Iterable} to a {@link Stream}
 	 *
@@ -220,6 +242,47 @@ public abstract class BaseDao {
 		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), true);
 	}
 	
+	/**
+	 * Creates an "in" restriction whose number of bind parameters depends only on how many values there
+	 * are, rounded up to the next power of two, by repeating the last value. Searches that differ only in
+	 * the values searched for then generate the same SQL, so the prepared statement and the database's
+	 * execution plan can be reused rather than one being built for every distinct number of values.
+	 *
+	 * @param propertyName the property to restrict
+	 * @param values the values the property may have
+	 * @return the restriction
+	 */
+	protected static Criterion paddedIn(String propertyName, Collection<?> values) {
+		int paddedSize = getPaddedInListSize(values.size());
+		if (paddedSize == values.size()) {
+			return in(propertyName, values);
+		}
+		
+		List<Object> paddedValues = new ArrayList<>(paddedSize);
+		paddedValues.addAll(values);
+		Object last = paddedValues.get(paddedValues.size() - 1);
+		while (paddedValues.size() < paddedSize) {
+			paddedValues.add(last);
+		}
+		
+		return in(propertyName, paddedValues);
+	}
+	
+	/**
+	 * Determines how many bind parameters to use for an "in" list of the given size. Lists larger than
+	 * {@link #MAX_PADDED_IN_LIST_SIZE} are not padded.
+	 *
+	 * @param size the number of values in the list
+	 * @return the number of bind parameters to use
+	 */
+	protected static int getPaddedInListSize(int size) {
+		if (size <= 1 || size > MAX_PADDED_IN_LIST_SIZE) {
+			return size;
+		}
+		
+		return Integer.highestOneBit(size - 1) << 1;
+	}
+	
 	/**
 	 * Determines whether or not the given criteria object already has a given alias. This is useful to
 	 * determine whether a mapping has already been made or whether a given alias is already in use.
@@ -234,6 +297,20 @@ public abstract class BaseDao {
 		return subcriteria.filter(subcriteriaIterator -> containsAlias(subcriteriaIterator, alias)).isPresent();
 	}
 	
+	/**
+	 * Finds the association path that a given alias was created for, e.g., {@code "concept"} for an alias created with
+	 * {@code criteria.createAlias("concept", "c")}
+	 *
+	 * @param criteria the {@link Criteria} object to examine
+	 * @param alias the alias to look for
+	 * @return the path the alias was created for, if the alias exists in this criteria object
+	 */
+	protected Optional<String> getAliasPath(@Nonnull Criteria criteria, @Nonnull String alias) {
+		return asImpl(criteria).map(CriteriaImpl::iterateSubcriteria).flatMap(
+		    subcriteriaIterator -> stream(subcriteriaIterator).filter(sc -> sc.getAlias().equals(alias)).findFirst())
+		        .map(CriteriaImpl.Subcriteria::getPath);
+	}
+	
 	/**
 	 * Determines whether any of the {@link CriteriaImpl.Subcriteria} objects returned by a given
 	 * iterator are mapped to the specified alias.
@@ -697,9 +774,16 @@ public abstract class BaseDao {
 		return handleAndListParamBySystem(concepts, (system, tokens) -> {
 			if (system.isEmpty()) {
 				return Optional.of(or(
-				    in(String.format("%s.conceptId", conceptAlias),
+				    paddedIn(String.format("%s.conceptId", conceptAlias),
 				        tokensToParams(tokens).map(NumberUtils::toInt).collect(Collectors.toList())),
-				    in(String.format("%s.uuid", conceptAlias), tokensToList(tokens))));
+				    paddedIn(String.format("%s.uuid", conceptAlias), tokensToList(tokens))));
+			} else if (terminologyIndexDao != null) {
+				// resolving the codes up front avoids joining the concept mappings and reference terms; where the
+				// concept is referenced directly by the searched table, the restriction is applied to its foreign key
+				String conceptIdProperty = getAliasPath(criteria, conceptAlias).filter(path -> !path.contains("."))
+				        .map(path -> path + ".conceptId").orElse(String.format("%s.conceptId", conceptAlias));
+				return Optional.of(IdBitmapCriterion.in(conceptIdProperty,
+				    terminologyIndexDao.getConceptIds(system, tokensToList(tokens))));
 			} else {
 				if (lacksAlias(criteria, conceptMapAlias)) {
 					criteria.createAlias(String.format("%s.conceptMappings", conceptAlias), conceptMapAlias).createAlias(
@@ -722,6 +806,26 @@ public abstract class BaseDao {
 			return;
 		}
 		
+		if (canUseNameTokenIndex(name, given, family)) {
+			String personIdProperty = StringUtils.isNotBlank(personAlias) ? personAlias + ".personId" : "personId";
+			
+			// as with the person_name search below, any word in a name parameter may match any part of the name
+			handleAndListParam(name, nameParam -> nameTokenCriterion(personIdProperty, null,
+			    NameTokenUtils.tokenize(nameParam.getValue()))).ifPresent(criteria::add);
+			
+			handleAndListParam(given, givenName -> Optional.of(and(toCriteriaArray(
+			    NameTokenUtils.tokenize(givenName.getValue()).stream().map(token -> nameTokenCriterion(personIdProperty,
+			        FhirPersonNameToken.GIVEN, Collections.singletonList(token)))))))
+			            .ifPresent(criteria::add);
+			
+			handleAndListParam(family, familyName -> Optional.of(and(toCriteriaArray(
+			    NameTokenUtils.tokenize(familyName.getValue()).stream().map(token -> nameTokenCriterion(personIdProperty,
+			        FhirPersonNameToken.FAMILY, Collections.singletonList(token)))))))
+			            .ifPresent(criteria::add);
+			
+			return;
+		}
+		
 		if (lacksAlias(criteria, "pn")) {
 			if (StringUtils.isNotBlank(personAlias)) {
 				criteria.createAlias(String.format("%s.names", personAlias), "pn", JoinType.INNER_JOIN,
@@ -750,6 +854,88 @@ public abstract class BaseDao {
 		}
 	}
 	
+	/**
+	 * Determines whether a name search can be resolved using the person name token index. Since the index only supports
+	 * prefix matches, this is only true if the index is available and none of the supplied parameters are exact or
+	 * contains searches.
+	 *
+	 * @param nameParams the name parameters being searched for
+	 * @return true if the search can be handled by {@link #nameTokenCriterion(String, String, Collection)}
+	 */
+	protected boolean canUseNameTokenIndex(StringAndListParam... nameParams) {
+		if (personNameTokenDao == null || !personNameTokenDao.isSearchable()) {
+			return false;
+		}
+		
+		return Arrays.stream(nameParams).filter(Objects::nonNull)
+		        .flatMap(nameParam -> handleAndListParam(nameParam).flatMap(this::handleOrListParam))
+		        .allMatch(nameParam -> !nameParam.isExact() && !nameParam.isContains()
+		                && !NameTokenUtils.tokenize(nameParam.getValue()).isEmpty());
+	}
+	
+	/**
+	 * Generates a criterion restricting the person id to persons with a name containing a word starting with any of the
+	 * supplied tokens
+	 *
+	 * @param personIdProperty the property holding the person id in the criteria being restricted
+	 * @param namePart the part of the name to match, one of the {@link FhirPersonNameToken} constants, or null to match
+	 *            any part of the name
+	 * @param tokens the normalized tokens to search for
+	 * @return the criterion
+	 */
+	protected Optional<Criterion> nameTokenCriterion(@Nonnull String personIdProperty, String namePart,
+	        @Nonnull Collection<String> tokens) {
+		if (tokens.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		DetachedCriteria personIds = DetachedCriteria.forClass(FhirPersonNameToken.class, "fpnt")
+		        .add(or(tokens.stream().map(token -> like("fpnt.token", token, MatchMode.START)).toArray(Criterion[]::new)))
+		        .setProjection(property("fpnt.personId"));
+		
+		if (namePart != null) {
+			personIds.add(eq("fpnt.namePart", namePart));
+		}
+		
+		return Optional.of(propertyIn(personIdProperty, personIds));
+	}
+	
+	/**
+	 * Generates a criterion restricting the person id to persons with a name containing, for each of the supplied tokens,
+	 * a word that is the same as the token or sounds like it according to either Double Metaphone or Soundex
+	 *
+	 * @param personIdProperty the property holding the person id in the criteria being restricted
+	 * @param tokens the normalized tokens to search for
+	 * @return the criterion
+	 */
+	protected Optional<Criterion> phoneticNameCriterion(@Nonnull String personIdProperty,
+	        @Nonnull Collection<String> tokens) {
+		if (tokens.isEmpty()) {
+			return Optional.empty();
+		}
+		
+		return Optional.of(and(tokens.stream().map(token -> {
+			List<Criterion> matches = new ArrayList<>();
+			matches.add(eq("fpnt.token", token));
+			
+			List<String> metaphones = Stream
+			        .of(NameTokenUtils.doubleMetaphone(token), NameTokenUtils.doubleMetaphoneAlternate(token))
+			        .filter(Objects::nonNull).distinct().collect(Collectors.toList());
+			if (!metaphones.isEmpty()) {
+				matches.add(in("fpnt.metaphone", metaphones));
+				matches.add(in("fpnt.metaphoneAlternate", metaphones));
+			}
+			
+			String soundex = NameTokenUtils.soundex(token);
+			if (soundex != null) {
+				matches.add(eq("fpnt.soundex", soundex));
+			}
+			
+			return propertyIn(personIdProperty, DetachedCriteria.forClass(FhirPersonNameToken.class, "fpnt")
+			        .add(or(matches.toArray(new Criterion[0]))).setProjection(property("fpnt.personId")));
+		}).toArray(Criterion[]::new)));
+	}
+	
 	protected void handlePatientReference(Criteria criteria, ReferenceAndListParam patientReference) {
 		handlePatientReference(criteria, patientReference, "patient");
 	}
@@ -917,7 +1103,7 @@ public abstract class BaseDao {
 		
 		if (codes.size() > 1) {
 			return and(propertyEq(String.format("%s.conceptSource", conceptReferenceTermAlias), conceptSourceCriteria),
-			    in(String.format("%s.code", conceptReferenceTermAlias), codes));
+			    paddedIn(String.format("%s.code", conceptReferenceTermAlias), codes));
 		} else {
 			return and(propertyEq(String.format("%s.conceptSource", conceptReferenceTermAlias), conceptSourceCriteria),
 			    eq(String.format("%s.code", conceptReferenceTermAlias), codes.get(0)));
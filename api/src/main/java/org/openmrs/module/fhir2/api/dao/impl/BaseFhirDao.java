@@ -11,24 +11,39 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.eq;
-import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.isNull;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.openmrs.module.fhir2.FhirConstants.COUNT_QUERY_CACHE;
 import static org.openmrs.module.fhir2.FhirConstants.EXACT_TOTAL_SEARCH_PARAMETER;
+import static org.openmrs.module.fhir2.FhirConstants.INCLUDE_SEARCH_HANDLER;
+import static org.openmrs.module.fhir2.FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER;
+import static org.openmrs.module.fhir2.FhirConstants.SEARCH_COST_GUARD_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.SEARCH_COST_GUARD_TIMEOUT_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.SEARCH_QUERY_TIMEOUT_PROPERTY;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import com.google.common.reflect.TypeToken;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -36,10 +51,14 @@ import lombok.Setter;
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.proxy.HibernateProxy;
 import org.hl7.fhir.r4.model.DomainResource;
 import org.openmrs.Auditable;
@@ -53,11 +72,14 @@ import org.openmrs.api.handler.RetireHandler;
 import org.openmrs.api.handler.VoidHandler;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirResourceTextIndexDao;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * This is a base class for FHIR2 Dao objects providing default implementations for the
@@ -70,6 +92,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends BaseDao implements FhirDao<T> {
 	
+	private static final int SCROLL_BATCH_SIZE = 500;
+	
 	@SuppressWarnings("UnstableApiUsage")
 	protected final TypeToken<T> typeToken;
 	
@@ -85,6 +109,11 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	@Qualifier("sessionFactory")
 	private SessionFactory sessionFactory;
 	
+	@Autowired(required = false)
+	@Getter(AccessLevel.PROTECTED)
+	@Setter(AccessLevel.PACKAGE)
+	private FhirResourceTextIndexDao resourceTextIndexDao;
+	
 	@SuppressWarnings("UnstableApiUsage")
 	protected BaseFhirDao() {
 		// @formatter:off
@@ -116,7 +145,7 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 	@SuppressWarnings("unchecked")
 	public List<T> get(@Nonnull Collection<String> uuids) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
-		criteria.add(in("uuid", uuids));
+		criteria.add(paddedIn("uuid", uuids));
 		
 		if (isVoidable) {
 			handleVoidable(criteria);
@@ -126,9 +155,62 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		
 		List<T> results = criteria.list();
 		
+		applyFetchProfile(results);
 		return results.stream().filter(Objects::nonNull).map(this::deproxyResult).collect(Collectors.toList());
 	}
 	
+	/**
+	 * Reads only the dateChanged and dateCreated columns of the matching object. Voided and retired objects are treated
+	 * as missing, so that reading them still reports them as gone.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Date getLastUpdated(@Nonnull String uuid) {
+		Criteria criteria = getLastUpdatedCriteria(uuid);
+		
+		ClassMetadata classMetadata = sessionFactory.getClassMetadata(typeToken.getRawType());
+		boolean hasDateChanged = classMetadata != null
+		        && Arrays.asList(classMetadata.getPropertyNames()).contains("dateChanged");
+		
+		ProjectionList projectionList = Projections.projectionList().add(Projections.property("dateCreated"));
+		if (hasDateChanged) {
+			projectionList.add(Projections.property("dateChanged"));
+		}
+		criteria.setProjection(projectionList);
+		
+		Object result = criteria.uniqueResult();
+		if (result == null) {
+			return null;
+		}
+		
+		if (!hasDateChanged) {
+			return (Date) result;
+		}
+		
+		Object[] dates = (Object[]) result;
+		return dates[1] != null ? (Date) dates[1] : (Date) dates[0];
+	}
+	
+	/**
+	 * Creates the criteria used by {@link #getLastUpdated(String)}. Override to exclude objects that {@link #get(String)}
+	 * would not return.
+	 *
+	 * @param uuid the uuid of the object
+	 * @return criteria matching the object with the given uuid
+	 */
+	protected Criteria getLastUpdatedCriteria(@Nonnull String uuid) {
+		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
+		        .add(eq("uuid", uuid));
+		
+		if (isVoidable) {
+			handleVoidable(criteria);
+		} else if (isRetireable) {
+			handleRetireable(criteria);
+		}
+		
+		return criteria;
+	}
+	
 	@Override
 	public T createOrUpdate(@Nonnull T newEntry) {
 		sessionFactory.getCurrentSession().saveOrUpdate(newEntry);
@@ -155,9 +237,11 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return existing;
 	}
 	
-	private Criteria getSearchResultCriteria(SearchParameterMap theParams) {
+	protected Criteria getSearchResultCriteria(SearchParameterMap theParams) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType());
 		
+		applyQueryTimeout(criteria, theParams);
+		
 		if (isVoidable) {
 			handleVoidable(criteria);
 		} else if (isRetireable) {
@@ -165,10 +249,125 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		}
 		
 		setupSearchParams(criteria, theParams);
+		handleFullText(criteria, theParams);
 		
 		return criteria;
 	}
 	
+	/**
+	 * Limits how long the queries for this search may run. Searches that {@link #isUnselective(SearchParameterMap)
+	 * cannot use an index} are run normally, rejected or given the shorter timeout set by
+	 * {@link FhirConstants#SEARCH_COST_GUARD_TIMEOUT_PROPERTY}, depending on {@link FhirConstants#SEARCH_COST_GUARD_PROPERTY},
+	 * which is "off" unless an administrator opts in.
+	 *
+	 * @param criteria the criteria object representing this search
+	 * @param theParams the parameters for this search
+	 */
+	protected void applyQueryTimeout(Criteria criteria, SearchParameterMap theParams) {
+		int timeout = getQueryTimeout();
+		
+		if (isUnselective(theParams)) {
+			String costGuard = FhirGlobalPropertyHolder.getGlobalProperty(SEARCH_COST_GUARD_PROPERTY, "off");
+			if ("reject".equalsIgnoreCase(costGuard)) {
+				throw new InvalidRequestException("This search only has parameters using the :contains modifier, which "
+				        + "requires reading every record. Add a patient, subject, code or date parameter, or search by "
+				        + "prefix without the :contains modifier.");
+			} else if ("downgrade".equalsIgnoreCase(costGuard)) {
+				int costGuardTimeout = FhirGlobalPropertyHolder
+				        .getGlobalPropertyAsInteger(SEARCH_COST_GUARD_TIMEOUT_PROPERTY, 5);
+				if (costGuardTimeout > 0 && (timeout <= 0 || costGuardTimeout < timeout)) {
+					timeout = costGuardTimeout;
+				}
+			}
+		}
+		
+		if (timeout > 0) {
+			criteria.setTimeout(timeout);
+		}
+	}
+	
+	/**
+	 * Gets the number of seconds queries searching this type may run for. This is set by the
+	 * {@link FhirConstants#SEARCH_QUERY_TIMEOUT_PROPERTY} global property, suffixed with "." and the name of the
+	 * OpenMRS class searched, e.g., "fhir2.search.queryTimeoutSeconds.Obs", falling back to the global property
+	 * without a suffix.
+	 *
+	 * @return the timeout in seconds or 0 if there is no timeout
+	 */
+	protected int getQueryTimeout() {
+		return FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(
+		    SEARCH_QUERY_TIMEOUT_PROPERTY + "." + typeToken.getRawType().getSimpleName(),
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(SEARCH_QUERY_TIMEOUT_PROPERTY, 0));
+	}
+	
+	/**
+	 * Determines whether a search can only be answered by reading every record, which is the case when every search
+	 * parameter is a string parameter using the {@code :contains} modifier. Override if other parameters cannot use an
+	 * index.
+	 *
+	 * @param theParams the parameters for this search
+	 * @return true if the search cannot use an index to restrict the records read
+	 */
+	protected boolean isUnselective(SearchParameterMap theParams) {
+		boolean hasContains = false;
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			String key = entry.getKey();
+			if (EXACT_TOTAL_SEARCH_PARAMETER.equals(key) || INCLUDE_SEARCH_HANDLER.equals(key)
+			        || REVERSE_INCLUDE_SEARCH_HANDLER.equals(key)) {
+				continue;
+			}
+			
+			for (PropParam<?> propParam : entry.getValue()) {
+				if (!isContainsOnly(propParam.getParam())) {
+					return false;
+				}
+				
+				hasContains = true;
+			}
+		}
+		
+		return hasContains;
+	}
+	
+	private static boolean isContainsOnly(Object param) {
+		List<StringParam> stringParams;
+		if (param instanceof StringAndListParam) {
+			stringParams = ((StringAndListParam) param).getValuesAsQueryTokens().stream()
+			        .flatMap(orParam -> orParam.getValuesAsQueryTokens().stream()).collect(Collectors.toList());
+		} else if (param instanceof StringOrListParam) {
+			stringParams = ((StringOrListParam) param).getValuesAsQueryTokens();
+		} else if (param instanceof StringParam) {
+			stringParams = Collections.singletonList((StringParam) param);
+		} else {
+			return false;
+		}
+		
+		return !stringParams.isEmpty() && stringParams.stream().allMatch(StringParam::isContains);
+	}
+	
+	/**
+	 * Restricts the search to the records matching any {@code _content} or {@code _text} parameters using the
+	 * full-text index
+	 *
+	 * @param criteria the criteria object representing this search
+	 * @param theParams the parameters for this search
+	 */
+	protected void handleFullText(Criteria criteria, SearchParameterMap theParams) {
+		List<PropParam<?>> fullTextParams = theParams.getParameters(FhirConstants.FULL_TEXT_SEARCH_HANDLER);
+		if (fullTextParams.isEmpty()) {
+			return;
+		}
+		
+		if (resourceTextIndexDao == null || !resourceTextIndexDao.isSearchable()) {
+			throw new InvalidRequestException("The _content and _text search parameters are not currently available");
+		}
+		
+		for (PropParam<?> fullTextParam : fullTextParams) {
+			criteria.add(IdBitmapCriterion.in("id", resourceTextIndexDao.search(typeToken.getRawType(),
+			    fullTextParam.getPropertyName(), (StringAndListParam) fullTextParam.getParam())));
+		}
+	}
+	
 	/**
 	 * Override to return false if the getSearchResults may return duplicate items that need to be
 	 * removed from the results. Note that it has performance implications as it requires "select
@@ -242,16 +441,108 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 			
 			// Use distinct ids from the original query to return entire objects
 			Criteria idsCriteria = sessionFactory.getCurrentSession().createCriteria(typeToken.getRawType())
-			        .add(in("id", ids));
+			        .add(paddedIn("id", ids));
+			int timeout = getQueryTimeout();
+			if (timeout > 0) {
+				idsCriteria.setTimeout(timeout);
+			}
 			// Need to reapply ordering
 			handleSort(idsCriteria, theParams.getSortSpec());
 			idsCriteria.addOrder(org.hibernate.criterion.Order.asc("id"));
 			
 			results = idsCriteria.list();
 		}
+		
+		applyFetchProfile(results, theParams.getElements());
 		return results.stream().map(this::deproxyResult).collect(Collectors.toList());
 	}
 	
+	/**
+	 * Scrolls through the ids matching the search with a forward-only, read-only cursor and loads the matching objects
+	 * in batches. Once a batch has been passed to the consumer, it is removed from the session: if the session held
+	 * nothing else when scrolling started, the session is cleared, which also removes anything loaded while consuming
+	 * the batch; otherwise only the objects in the batch are evicted.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public void scrollSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull Consumer<T> consumer) {
+		Criteria criteria = getSearchResultCriteria(theParams);
+		
+		handleSort(criteria, theParams.getSortSpec());
+		criteria.addOrder(org.hibernate.criterion.Order.asc("id"));
+		
+		criteria.setFirstResult(theParams.getFromIndex());
+		if (theParams.getToIndex() != Integer.MAX_VALUE) {
+			criteria.setMaxResults(theParams.getToIndex() - theParams.getFromIndex());
+		}
+		
+		ProjectionList projectionList = Projections.projectionList();
+		if (hasDistinctResults()) {
+			projectionList.add(Projections.property("id"));
+		} else {
+			projectionList.add(Projections.distinct(Projections.projectionList().add(Projections.property("id"))));
+			// Sort parameters must be included in projections
+			handleSort(criteria, theParams.getSortSpec(), this::paramToProps).ifPresent(
+			    orders -> orders.forEach(order -> projectionList.add(Projections.property(order.getPropertyName()))));
+		}
+		
+		criteria.setProjection(projectionList);
+		criteria.setReadOnly(true);
+		criteria.setCacheMode(CacheMode.IGNORE);
+		criteria.setFetchSize(SCROLL_BATCH_SIZE);
+		
+		Session session = sessionFactory.getCurrentSession();
+		boolean clearSession = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+		        && session.getStatistics().getEntityCount() == 0;
+		
+		ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			List<Integer> ids = new ArrayList<>(SCROLL_BATCH_SIZE);
+			while (results.next()) {
+				ids.add((Integer) results.get(0));
+				
+				if (ids.size() == SCROLL_BATCH_SIZE) {
+					consumeBatch(session, ids, consumer, clearSession);
+					ids.clear();
+				}
+			}
+			
+			if (!ids.isEmpty()) {
+				consumeBatch(session, ids, consumer, clearSession);
+			}
+		}
+		finally {
+			results.close();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void consumeBatch(Session session, List<Integer> ids, Consumer<T> consumer, boolean clearSession) {
+		List<T> batch = session.createCriteria(typeToken.getRawType()).add(paddedIn("id", ids)).setReadOnly(true)
+		        .setCacheMode(CacheMode.IGNORE).list();
+		
+		applyFetchProfile(batch);
+		
+		Map<Integer, T> batchById = new HashMap<>(batch.size() * 2);
+		for (T result : batch) {
+			batchById.put(result.getId(), result);
+		}
+		
+		// the batch is loaded in no particular order, so it is passed on in the order the ids were scrolled
+		for (Integer id : ids) {
+			T result = batchById.get(id);
+			if (result != null) {
+				consumer.accept(deproxyResult(result));
+			}
+		}
+		
+		if (clearSession) {
+			session.clear();
+		} else {
+			batch.forEach(session::evict);
+		}
+	}
+	
 	@Override
 	protected Optional<Criterion> handleLastUpdated(DateRangeParam param) {
 		if (isImmutable) {
@@ -375,6 +666,59 @@ public abstract class BaseFhirDao<T extends OpenmrsObject & Auditable> extends B
 		return deproxyObject(result);
 	}
 	
+	/**
+	 * Override to list the associations read when results are translated to FHIR, as dotted paths such as
+	 * "concept.names". Once a page of results is loaded, everything along these paths is loaded with a few queries for
+	 * the whole page, instead of the translator loading each association for each result as it reaches it.
+	 *
+	 * @return the paths of the associations to load along with the results
+	 */
+	protected List<String> getFetchProfile() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Override to name the top-level FHIR element that paths of {@link #getFetchProfile()} are loaded for, e.g.
+	 * "addresses" for "address". When a search only asks for some elements through _elements or _summary, the paths
+	 * for the other elements are not loaded. Paths that are not named here are always loaded.
+	 *
+	 * @return the FHIR element for each path of the fetch profile that only that element needs
+	 */
+	protected Map<String, String> getFetchProfileElements() {
+		return Collections.emptyMap();
+	}
+	
+	/**
+	 * Loads the associations listed by {@link #getFetchProfile()} for a page of results
+	 *
+	 * @param results the page of results
+	 */
+	protected void applyFetchProfile(Collection<? extends T> results) {
+		applyFetchProfile(results, null);
+	}
+	
+	/**
+	 * Loads the associations listed by {@link #getFetchProfile()} that are needed to translate the requested elements
+	 * for a page of results
+	 *
+	 * @param results the page of results
+	 * @param elements the requested top-level elements or null if the whole resources are wanted
+	 */
+	protected void applyFetchProfile(Collection<? extends T> results, @Nullable Set<String> elements) {
+		List<String> fetchProfile = getFetchProfile();
+		if (elements != null && !fetchProfile.isEmpty()) {
+			Map<String, String> fetchProfileElements = getFetchProfileElements();
+			fetchProfile = fetchProfile.stream().filter(path -> {
+				String element = fetchProfileElements.get(path);
+				return element == null || elements.contains(element);
+			}).collect(Collectors.toList());
+		}
+		
+		if (!fetchProfile.isEmpty() && !results.isEmpty()) {
+			new BatchFetcher(sessionFactory).fetch(results, fetchProfile);
+		}
+	}
+	
 	protected Criteria createAlias(Criteria criteria, String referencedEntity, String alias) {
 		return criteria.createAlias(referencedEntity, alias);
 	}
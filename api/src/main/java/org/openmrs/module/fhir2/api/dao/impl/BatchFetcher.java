@@ -0,0 +1,158 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.FetchMode;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+/**
+ * Loads the lazy associations along a set of paths, such as "concept.names", for a group of objects at once. For each
+ * step along a path, every uninitialized object of the same type is loaded by a single query, as is every
+ * uninitialized collection with the same role, so the number of queries depends on the paths rather than on the
+ * number of objects.
+ */
+@Slf4j
+class BatchFetcher {
+	
+	private final SessionFactory sessionFactory;
+	
+	BatchFetcher(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+	
+	/**
+	 * @param roots the objects to load associations for
+	 * @param paths the dotted paths of the associations to load
+	 */
+	void fetch(Collection<?> roots, Collection<String> paths) {
+		// objects reached by each path prefix, so prefixes shared by several paths are only loaded once
+		Map<String, Collection<Object>> reached = new HashMap<>();
+		reached.put("", unproxy(roots));
+		
+		for (String path : paths) {
+			String prefix = "";
+			for (String property : path.split("\\.")) {
+				String next = prefix.isEmpty() ? property : prefix + "." + property;
+				if (!reached.containsKey(next)) {
+					reached.put(next, fetch(reached.get(prefix), property));
+				}
+				prefix = next;
+			}
+		}
+	}
+	
+	private Collection<Object> fetch(Collection<Object> owners, String property) {
+		Map<String, Set<Serializable>> uninitializedEntities = new HashMap<>();
+		Map<String, Set<Serializable>> uninitializedCollections = new HashMap<>();
+		List<Object> values = new ArrayList<>();
+		
+		for (Object owner : owners) {
+			ClassMetadata classMetadata = sessionFactory.getClassMetadata(Hibernate.getClass(owner));
+			// paths may name a property of a subclass, such as the identifiers of a person who is a patient
+			if (classMetadata == null || !Arrays.asList(classMetadata.getPropertyNames()).contains(property)) {
+				continue;
+			}
+			
+			Object value;
+			try {
+				value = classMetadata.getPropertyValue(owner, property);
+			}
+			catch (HibernateException e) {
+				log.warn("Cannot fetch property {} of {}", property, classMetadata.getEntityName(), e);
+				return Collections.emptyList();
+			}
+			
+			if (value instanceof HibernateProxy) {
+				LazyInitializer lazyInitializer = ((HibernateProxy) value).getHibernateLazyInitializer();
+				if (lazyInitializer.isUninitialized()) {
+					uninitializedEntities.computeIfAbsent(lazyInitializer.getEntityName(), k -> new LinkedHashSet<>())
+					        .add(lazyInitializer.getIdentifier());
+				}
+			} else if (value instanceof PersistentCollection) {
+				PersistentCollection collection = (PersistentCollection) value;
+				if (!collection.wasInitialized() && collection.getKey() != null) {
+					uninitializedCollections.computeIfAbsent(collection.getRole(), k -> new LinkedHashSet<>())
+					        .add(collection.getKey());
+				}
+			}
+			
+			if (value != null) {
+				values.add(value);
+			}
+		}
+		
+		Session session = sessionFactory.getCurrentSession();
+		
+		// loading the objects into the session means the proxies find them there rather than querying for each
+		uninitializedEntities.forEach((entityName, ids) -> {
+			for (List<Serializable> batch : Lists.partition(new ArrayList<>(ids), BaseDao.MAX_PADDED_IN_LIST_SIZE)) {
+				session.createCriteria(entityName).add(BaseDao.paddedIn("id", batch)).list();
+			}
+		});
+		
+		// fetching the collections along with their owners initializes the collections already in the session
+		uninitializedCollections.forEach((role, keys) -> {
+			int separator = role.lastIndexOf('.');
+			String ownerEntityName = role.substring(0, separator);
+			String collectionProperty = role.substring(separator + 1);
+			for (List<Serializable> batch : Lists.partition(new ArrayList<>(keys), BaseDao.MAX_PADDED_IN_LIST_SIZE)) {
+				session.createCriteria(ownerEntityName).add(BaseDao.paddedIn("id", batch))
+				        .setFetchMode(collectionProperty, FetchMode.JOIN).list();
+			}
+		});
+		
+		List<Object> next = new ArrayList<>();
+		for (Object value : values) {
+			if (value instanceof Map) {
+				next.addAll(((Map<?, ?>) value).values());
+			} else if (value instanceof Collection) {
+				next.addAll((Collection<?>) value);
+			} else {
+				next.add(value);
+			}
+		}
+		
+		return unproxy(next);
+	}
+	
+	private static Collection<Object> unproxy(Collection<?> objects) {
+		Set<Object> unproxied = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Object object : objects) {
+			if (object instanceof HibernateProxy) {
+				unproxied.add(((HibernateProxy) object).getHibernateLazyInitializer().getImplementation());
+			} else if (object != null) {
+				unproxied.add(object);
+			}
+		}
+		
+		return unproxied;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Cohort;
+import org.openmrs.CohortMembership;
+import org.openmrs.module.fhir2.api.dao.FhirCohortMembershipDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that keeps the {@link FhirCohortMembershipDao} index in step with changes to cohorts. The ids of
+ * any cohorts touched during a transaction are collected as entities are flushed and the corresponding index entries are
+ * discarded once the transaction completes, regardless of whether the change was made through the FHIR API or the core
+ * cohort service.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class CohortMembershipIndexInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Set<Integer>> modifiedCohorts = ThreadLocal.withInitial(HashSet::new);
+	
+	// lazy to avoid a circular dependency between the session factory and its interceptors
+	@Lazy
+	@Autowired
+	private FhirCohortMembershipDao cohortMembershipDao;
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		Set<Integer> cohortIds = modifiedCohorts.get();
+		if (cohortIds.isEmpty()) {
+			return;
+		}
+		
+		try {
+			cohortIds.forEach(cohortMembershipDao::invalidate);
+		}
+		finally {
+			modifiedCohorts.remove();
+		}
+	}
+	
+	private void recordModification(Object entity) {
+		Cohort cohort = null;
+		if (entity instanceof Cohort) {
+			cohort = (Cohort) entity;
+		} else if (entity instanceof CohortMembership) {
+			cohort = ((CohortMembership) entity).getCohort();
+		}
+		
+		// getCohortId() does not initialize a lazy proxy
+		if (cohort != null && cohort.getCohortId() != null) {
+			modifiedCohorts.get().add(cohort.getCohortId());
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.api.dao.FhirCohortMembershipDao;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirCohortMembershipDaoImpl implements FhirCohortMembershipDao {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private final Map<String, IdBitmap> membersByCohortUuid = new ConcurrentHashMap<>();
+	
+	private final Map<Integer, String> cohortUuidsById = new ConcurrentHashMap<>();
+	
+	// incremented on every invalidation so that an index built concurrently with a change is not retained
+	private final AtomicLong invalidations = new AtomicLong();
+	
+	// cached bitmaps are shared, so callers only ever receive copies of them or new bitmaps computed from them
+	@Override
+	public IdBitmap getMemberIds(@Nonnull String cohortUuid) {
+		return getCachedMemberIds(cohortUuid).copy();
+	}
+	
+	@Override
+	public IdBitmap getMemberIdsOfAll(@Nonnull Collection<String> cohortUuids) {
+		IdBitmap result = null;
+		boolean cached = false;
+		for (String cohortUuid : cohortUuids) {
+			IdBitmap members = getCachedMemberIds(cohortUuid);
+			cached = result == null;
+			result = cached ? members : IdBitmap.and(result, members);
+			
+			if (result.isEmpty()) {
+				break;
+			}
+		}
+		
+		return result == null ? new IdBitmap() : cached ? result.copy() : result;
+	}
+	
+	@Override
+	public IdBitmap getMemberIdsOfAny(@Nonnull Collection<String> cohortUuids) {
+		IdBitmap result = null;
+		boolean cached = false;
+		for (String cohortUuid : cohortUuids) {
+			IdBitmap members = getCachedMemberIds(cohortUuid);
+			cached = result == null;
+			result = cached ? members : IdBitmap.or(result, members);
+		}
+		
+		return result == null ? new IdBitmap() : cached ? result.copy() : result;
+	}
+	
+	@Override
+	public void invalidate(@Nonnull Integer cohortId) {
+		invalidations.incrementAndGet();
+		
+		String cohortUuid = cohortUuidsById.remove(cohortId);
+		if (cohortUuid != null) {
+			membersByCohortUuid.remove(cohortUuid);
+		}
+	}
+	
+	private IdBitmap getCachedMemberIds(String cohortUuid) {
+		IdBitmap members = membersByCohortUuid.get(cohortUuid);
+		if (members != null) {
+			return members;
+		}
+		
+		long generation = invalidations.get();
+		
+		Integer cohortId = (Integer) sessionFactory.getCurrentSession()
+		        .createQuery("select c.cohortId from Cohort c where c.uuid = :uuid").setParameter("uuid", cohortUuid)
+		        .uniqueResult();
+		
+		if (cohortId == null) {
+			return new IdBitmap();
+		}
+		
+		@SuppressWarnings("unchecked")
+		List<Integer> patientIds = sessionFactory.getCurrentSession()
+		        .createQuery(
+		            "select cm.patientId from CohortMembership cm where cm.cohort.cohortId = :cohortId and cm.voided = false")
+		        .setParameter("cohortId", cohortId).list();
+		
+		members = IdBitmap.of(patientIds);
+		
+		cohortUuidsById.put(cohortId, cohortUuid);
+		membersByCohortUuid.put(cohortUuid, members);
+		if (invalidations.get() != generation) {
+			membersByCohortUuid.remove(cohortUuid, members);
+		}
+		
+		return members;
+	}
+}
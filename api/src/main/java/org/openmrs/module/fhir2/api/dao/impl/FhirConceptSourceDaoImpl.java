@@ -10,10 +10,12 @@
 package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.in;
 
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -68,6 +70,18 @@ public class FhirConceptSourceDaoImpl implements FhirConceptSourceDao {
 		return Optional.ofNullable((FhirConceptSource) criteria.uniqueResult());
 	}
 	
+	@Override
+	@SuppressWarnings("unchecked")
+	public Collection<FhirConceptSource> getFhirConceptSourcesByConceptSources(
+	        @Nonnull Collection<ConceptSource> conceptSources) {
+		if (conceptSources.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		return sessionFactory.getCurrentSession().createCriteria(FhirConceptSource.class)
+		        .add(in("conceptSource", conceptSources)).list();
+	}
+	
 	@Override
 	public Optional<ConceptSource> getConceptSourceByHl7Code(@Nonnull String hl7Code) {
 		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ConceptSource.class);
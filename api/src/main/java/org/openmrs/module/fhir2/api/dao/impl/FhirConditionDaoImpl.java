@@ -13,6 +13,8 @@ import static org.hibernate.criterion.Restrictions.eq;
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +39,9 @@ import org.springframework.stereotype.Component;
 @Setter(AccessLevel.PROTECTED)
 public class FhirConditionDaoImpl extends BaseFhirDao<Condition> implements FhirConditionDao<Condition> {
 	
+	private static final List<String> FETCH_PROFILE = Collections.unmodifiableList(Arrays.asList("patient.names",
+	        "patient.identifiers.identifierType", "creator"));
+	
 	@Override
 	@Authorized(PrivilegeConstants.GET_CONDITIONS)
 	public Condition get(@Nonnull String uuid) {
@@ -135,4 +140,9 @@ public class FhirConditionDaoImpl extends BaseFhirDao<Condition> implements Fhir
 		
 		return super.paramToProp(param);
 	}
+	
+	@Override
+	protected List<String> getFetchProfile() {
+		return FETCH_PROFILE;
+	}
 }
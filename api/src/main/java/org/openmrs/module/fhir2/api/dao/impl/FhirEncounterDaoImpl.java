@@ -16,6 +16,8 @@ import static org.openmrs.module.fhir2.api.util.LastnOperationUtils.getTopNRanke
 
 import javax.annotation.Nonnull;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -43,6 +45,9 @@ import org.springframework.stereotype.Component;
 @Setter(AccessLevel.PACKAGE)
 public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements FhirEncounterDao {
 	
+	private static final List<String> FETCH_PROFILE = Collections.unmodifiableList(Arrays.asList("encounterType",
+	        "patient.names", "patient.identifiers.identifierType", "encounterProviders.provider", "visit", "location"));
+	
 	@Override
 	public boolean hasDistinctResults() {
 		return false;
@@ -142,4 +147,9 @@ public class FhirEncounterDaoImpl extends BaseEncounterDao<Encounter> implements
 		return Restrictions.or(Restrictions.isNull(path + "fulfillerStatus"),
 		    Restrictions.ne(path + "fulfillerStatus", Order.FulfillerStatus.valueOf(fulfillerStatus.toUpperCase())));
 	}
+	
+	@Override
+	protected List<String> getFetchProfile() {
+		return FETCH_PROFILE;
+	}
 }
@@ -47,6 +47,12 @@ public class FhirMedicationRequestDaoImpl extends BaseFhirDao<DrugOrder> impleme
 		        : null;
 	}
 	
+	@Override
+	protected Criteria getLastUpdatedCriteria(@Nonnull String uuid) {
+		return super.getLastUpdatedCriteria(uuid).add(Restrictions.isNotNull("action"))
+		        .add(ne("action", Order.Action.DISCONTINUE));
+	}
+	
 	@Override
 	@Transactional(readOnly = true)
 	@SuppressWarnings("unchecked")
@@ -14,9 +14,14 @@ import static org.hibernate.criterion.Restrictions.eq;
 import javax.annotation.Nonnull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
@@ -48,12 +53,47 @@ import org.springframework.stereotype.Component;
 @Component
 public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObservationDao {
 	
+	private static final List<String> FETCH_PROFILE = Collections.unmodifiableList(Arrays.asList("concept",
+	        "concept.names", "concept.conceptClass", "concept.datatype", "concept.conceptMappings.conceptMapType",
+	        "concept.conceptMappings.conceptReferenceTerm.conceptSource", "person", "person.names",
+	        "person.identifiers.identifierType", "encounter", "order", "groupMembers", "valueCoded", "valueCoded.names",
+	        "valueCoded.conceptMappings.conceptMapType", "valueCoded.conceptMappings.conceptReferenceTerm.conceptSource"));
+	
+	private static final Map<String, String> FETCH_PROFILE_ELEMENTS;
+	
+	static {
+		Map<String, String> fetchProfileElements = new HashMap<>();
+		for (String path : FETCH_PROFILE) {
+			if (path.startsWith("person")) {
+				fetchProfileElements.put(path, "subject");
+			} else if (path.startsWith("valueCoded")) {
+				fetchProfileElements.put(path, "value");
+			}
+		}
+		
+		fetchProfileElements.put("encounter", "encounter");
+		fetchProfileElements.put("order", "basedOn");
+		fetchProfileElements.put("groupMembers", "hasMember");
+		FETCH_PROFILE_ELEMENTS = Collections.unmodifiableMap(fetchProfileElements);
+	}
+	
 	@Autowired
 	private ObservationCategoryMap categoryMap;
 	
 	@Autowired
 	private FhirEncounterDao encounterDao;
 	
+	@Override
+	public void scrollSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull Consumer<Obs> consumer) {
+		if (!theParams.getParameters(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER).isEmpty()) {
+			// $lastn results are selected in memory, so they cannot be scrolled
+			getSearchResults(theParams).forEach(consumer);
+			return;
+		}
+		
+		super.scrollSearchResults(theParams, consumer);
+	}
+	
 	@Override
 	public List<Obs> getSearchResults(@Nonnull SearchParameterMap theParams) {
 		if (!theParams.getParameters(FhirConstants.LASTN_OBSERVATION_SEARCH_HANDLER).isEmpty()) {
@@ -106,8 +146,9 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 			}
 			
 			int toIndex = results.size() > theParams.getToIndex() ? theParams.getToIndex() : results.size();
-			return results.subList(theParams.getFromIndex(), toIndex).stream().map(this::deproxyResult)
-			        .collect(Collectors.toList());
+			List<Obs> page = results.subList(theParams.getFromIndex(), toIndex);
+			applyFetchProfile(page, theParams.getElements());
+			return page.stream().map(this::deproxyResult).collect(Collectors.toList());
 		}
 		
 		return super.getSearchResults(theParams);
@@ -297,4 +338,14 @@ public class FhirObservationDaoImpl extends BaseFhirDao<Obs> implements FhirObse
 		return ((NumberParam) theParams.getParameters(FhirConstants.MAX_SEARCH_HANDLER).get(0).getParam()).getValue()
 		        .intValue();
 	}
+	
+	@Override
+	protected List<String> getFetchProfile() {
+		return FETCH_PROFILE;
+	}
+	
+	@Override
+	protected Map<String, String> getFetchProfileElements() {
+		return FETCH_PROFILE_ELEMENTS;
+	}
 }
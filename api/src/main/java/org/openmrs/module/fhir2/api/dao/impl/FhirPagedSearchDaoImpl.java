@@ -0,0 +1,55 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.annotation.Nonnull;
+
+import java.util.Date;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.api.dao.FhirPagedSearchDao;
+import org.openmrs.module.fhir2.model.FhirPagedSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirPagedSearchDaoImpl implements FhirPagedSearchDao {
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	@Override
+	@Transactional(readOnly = true)
+	public FhirPagedSearch get(@Nonnull String searchId) {
+		// the search may have been stored by the previous request, which a read replica may not have caught up with yet
+		return ReadReplicaRouting
+		        .onPrimary(() -> sessionFactory.getCurrentSession().get(FhirPagedSearch.class, searchId));
+	}
+	
+	@Override
+	@Transactional
+	public FhirPagedSearch save(@Nonnull FhirPagedSearch pagedSearch) {
+		sessionFactory.getCurrentSession().saveOrUpdate(pagedSearch);
+		return pagedSearch;
+	}
+	
+	@Override
+	@Transactional
+	public int deleteExpired(@Nonnull Date date) {
+		return sessionFactory.getCurrentSession().createQuery("delete from FhirPagedSearch where expires < :date")
+		        .setParameter("date", date).executeUpdate();
+	}
+}
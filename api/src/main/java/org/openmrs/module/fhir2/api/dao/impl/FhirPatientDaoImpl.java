@@ -9,42 +9,59 @@
  */
 package org.openmrs.module.fhir2.api.dao.impl;
 
+import static org.hibernate.criterion.Order.asc;
+import static org.hibernate.criterion.Projections.distinct;
+import static org.hibernate.criterion.Projections.property;
 import static org.hibernate.criterion.Restrictions.and;
 import static org.hibernate.criterion.Restrictions.eq;
-import static org.hibernate.criterion.Restrictions.in;
 import static org.hibernate.criterion.Restrictions.or;
 import static org.hl7.fhir.r4.model.Patient.SP_DEATH_DATE;
 
 import javax.annotation.Nonnull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.HasAndListParam;
+import ca.uhn.fhir.rest.param.HasOrListParam;
 import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import lombok.AccessLevel;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.Projections;
 import org.hibernate.sql.JoinType;
-import org.openmrs.CohortMembership;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifierType;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirCohortMembershipDao;
 import org.openmrs.module.fhir2.api.dao.FhirGroupDao;
 import org.openmrs.module.fhir2.api.dao.FhirPatientDao;
+import org.openmrs.module.fhir2.api.dao.FhirPatientIdentifierLookupDao;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.openmrs.module.fhir2.api.util.NameTokenUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -52,9 +69,29 @@ import org.springframework.stereotype.Component;
 @Setter(AccessLevel.PACKAGE)
 public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPatientDao {
 	
+	private static final List<String> FETCH_PROFILE = Collections.unmodifiableList(Arrays.asList("names",
+	        "identifiers.identifierType", "addresses", "attributes"));
+	
+	private static final Map<String, String> FETCH_PROFILE_ELEMENTS;
+	
+	static {
+		Map<String, String> fetchProfileElements = new HashMap<>();
+		fetchProfileElements.put("names", "name");
+		fetchProfileElements.put("identifiers.identifierType", "identifier");
+		fetchProfileElements.put("addresses", "address");
+		fetchProfileElements.put("attributes", "telecom");
+		FETCH_PROFILE_ELEMENTS = Collections.unmodifiableMap(fetchProfileElements);
+	}
+	
 	@Autowired
 	private FhirGroupDao groupDao;
 	
+	@Autowired
+	private FhirCohortMembershipDao cohortMembershipDao;
+	
+	@Autowired
+	private FhirPatientIdentifierLookupDao patientIdentifierLookupDao;
+	
 	@Override
 	public Patient getPatientById(@Nonnull Integer id) {
 		return (Patient) getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(eq("patientId", id))
@@ -64,7 +101,7 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 	@Override
 	@SuppressWarnings("unchecked")
 	public List<Patient> getPatientsByIds(@Nonnull Collection<Integer> ids) {
-		return getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(in("id", ids)).list();
+		return getSessionFactory().getCurrentSession().createCriteria(Patient.class).add(paddedIn("id", ids)).list();
 	}
 	
 	@Override
@@ -90,6 +127,62 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 		}
 	}
 	
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<Patient> getSearchResults(@Nonnull SearchParameterMap theParams) {
+		List<Integer> identifierMatches = getIdentifierOnlyMatches(theParams);
+		if (identifierMatches != null) {
+			return getPatientsPage(identifierMatches, theParams);
+		}
+		
+		List<String> phoneticTokens = getPhoneticTokens(theParams);
+		
+		// results of a phonetic search are ranked by how closely they match unless some other order was requested
+		if (phoneticTokens.isEmpty() || theParams.getSortSpec() != null || !canUseNameTokenIndex()) {
+			return super.getSearchResults(theParams);
+		}
+		
+		// the matches are ranked in memory, so only searches with a bounded number of matches are ranked
+		int rankingLimit = FhirGlobalPropertyHolder
+		        .getGlobalPropertyAsInteger(FhirConstants.PHONETIC_RANKING_LIMIT_PROPERTY, 1000);
+		if (rankingLimit <= 0) {
+			return super.getSearchResults(theParams);
+		}
+		
+		List<Integer> ids = getSearchResultCriteria(theParams).setProjection(distinct(property("id"))).addOrder(asc("id"))
+		        .setMaxResults(rankingLimit + 1).list();
+		if (ids.size() > rankingLimit) {
+			return super.getSearchResults(theParams);
+		}
+		
+		Map<Integer, Integer> scores = getPersonNameTokenDao().getPhoneticMatchScores(ids, phoneticTokens);
+		ids.sort(Comparator.<Integer> comparingInt(id -> scores.getOrDefault(id, 0)).reversed()
+		        .thenComparing(Comparator.naturalOrder()));
+		
+		return getPatientsPage(ids, theParams);
+	}
+	
+	@Override
+	public void scrollSearchResults(@Nonnull SearchParameterMap theParams, @Nonnull Consumer<Patient> consumer) {
+		if (getIdentifierOnlyMatches(theParams) != null || !getPhoneticTokens(theParams).isEmpty()) {
+			// these results are looked up or ranked separately, so they cannot be scrolled
+			getSearchResults(theParams).forEach(consumer);
+			return;
+		}
+		
+		super.scrollSearchResults(theParams, consumer);
+	}
+	
+	@Override
+	public int getSearchResultsCount(@Nonnull SearchParameterMap theParams) {
+		List<Integer> identifierMatches = getIdentifierOnlyMatches(theParams);
+		if (identifierMatches != null) {
+			return identifierMatches.size();
+		}
+		
+		return super.getSearchResultsCount(theParams);
+	}
+	
 	@Override
 	protected void setupSearchParams(Criteria criteria, SearchParameterMap theParams) {
 		theParams.getParameters().forEach(entry -> {
@@ -100,6 +193,9 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 				case FhirConstants.NAME_SEARCH_HANDLER:
 					handleNames(criteria, entry.getValue());
 					break;
+				case FhirConstants.PHONETIC_SEARCH_HANDLER:
+					entry.getValue().forEach(phonetic -> handlePhonetic(criteria, (StringAndListParam) phonetic.getParam()));
+					break;
 				case FhirConstants.GENDER_SEARCH_HANDLER:
 					entry.getValue()
 					        .forEach(p -> handleGender(FhirConstants.GENDER_PROPERTY, (TokenAndListParam) p.getParam())
@@ -132,8 +228,9 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 	
 	protected void handleHasAndListParam(Criteria criteria, HasAndListParam hasAndListParam) {
 		if (hasAndListParam != null) {
-			List<String> groupIds = new ArrayList<>();
-			hasAndListParam.getValuesAsQueryTokens().forEach(hasOrListParam -> {
+			IdBitmap memberIds = null;
+			for (HasOrListParam hasOrListParam : hasAndListParam.getValuesAsQueryTokens()) {
+				List<String> groupIds = new ArrayList<>();
 				hasOrListParam.getValuesAsQueryTokens().forEach(hasParam -> {
 					if (hasParam != null) {
 						String paramValue = hasParam.getParameterValue();
@@ -151,27 +248,116 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 						}
 					}
 				});
-			});
+				
+				if (!groupIds.isEmpty()) {
+					// groups within an or-list are unioned, the results of each and-list are then intersected
+					IdBitmap anyGroupMemberIds = cohortMembershipDao.getMemberIdsOfAny(groupIds);
+					memberIds = memberIds == null ? anyGroupMemberIds : IdBitmap.and(memberIds, anyGroupMemberIds);
+				}
+			}
 			
-			if (!groupIds.isEmpty()) {
-				verifyPatientInGroups(criteria, groupIds);
+			if (memberIds != null) {
+				criteria.add(IdBitmapCriterion.in("patientId", memberIds));
 			}
 		}
 	}
 	
-	private void verifyPatientInGroups(Criteria criteria, List<String> groupIds) {
-		Set<Integer> patientIds = new HashSet<>();
-		groupIds.forEach(groupId -> patientIds.addAll(getGroupMemberIds(groupId)));
+	private void handlePhonetic(Criteria criteria, StringAndListParam phonetic) {
+		if (phonetic == null) {
+			return;
+		}
+		
+		// phonetic keys are only available from the name token index, so without it this is a plain name search
+		if (!canUseNameTokenIndex()) {
+			handleNames(criteria, phonetic, null, null);
+			return;
+		}
+		
+		handleAndListParam(phonetic,
+		    nameParam -> phoneticNameCriterion("personId", NameTokenUtils.tokenize(nameParam.getValue())))
+		            .ifPresent(criteria::add);
+	}
+	
+	/**
+	 * Searches by identifier alone, which is most of the traffic from integrations, are resolved directly against
+	 * patient_identifier rather than through the search criteria
+	 *
+	 * @param theParams the parameters for this search
+	 * @return the ids of the matching patients in ascending order or null if this is not a search by identifier alone
+	 */
+	private List<Integer> getIdentifierOnlyMatches(SearchParameterMap theParams) {
+		if (theParams.getSortSpec() != null) {
+			return null;
+		}
+		
+		TokenAndListParam identifier = null;
+		for (Map.Entry<String, List<PropParam<?>>> entry : theParams.getParameters()) {
+			switch (entry.getKey()) {
+				case FhirConstants.IDENTIFIER_SEARCH_HANDLER:
+					if (identifier != null || entry.getValue().size() != 1) {
+						return null;
+					}
+					identifier = (TokenAndListParam) entry.getValue().get(0).getParam();
+					break;
+				// these do not restrict which patients match
+				case FhirConstants.EXACT_TOTAL_SEARCH_PARAMETER:
+				case FhirConstants.INCLUDE_SEARCH_HANDLER:
+				case FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER:
+					break;
+				default:
+					return null;
+			}
+		}
+		
+		if (identifier == null) {
+			return null;
+		}
+		
+		Set<Integer> matches = null;
+		for (TokenOrListParam identifiers : identifier.getValuesAsQueryTokens()) {
+			Set<Integer> anyMatches = new TreeSet<>();
+			for (TokenParam token : identifiers.getValuesAsQueryTokens()) {
+				if (token.getModifier() != null || StringUtils.isBlank(token.getValue())) {
+					return null;
+				}
+				
+				anyMatches.addAll(
+				    patientIdentifierLookupDao.getPatientIds(StringUtils.trimToNull(token.getSystem()), token.getValue()));
+			}
+			
+			if (matches == null) {
+				matches = anyMatches;
+			} else {
+				matches.retainAll(anyMatches);
+			}
+		}
 		
-		criteria.add(in("patientId", patientIds.isEmpty() ? Collections.emptyList() : patientIds));
+		return matches == null ? null : new ArrayList<>(matches);
 	}
 	
-	private List<Integer> getGroupMemberIds(String groupId) {
-		Criteria subquery = getSessionFactory().getCurrentSession().createCriteria(CohortMembership.class, "cm")
-		        .createAlias("cm.cohort", "co").add(eq("co.uuid", groupId))
-		        .setProjection(Projections.property("cm.patientId"));
+	private List<Patient> getPatientsPage(List<Integer> ids, SearchParameterMap theParams) {
+		int fromIndex = Math.min(theParams.getFromIndex(), ids.size());
+		int toIndex = Math.min(theParams.getToIndex(), ids.size());
+		if (fromIndex >= toIndex) {
+			return new ArrayList<>();
+		}
 		
-		return subquery.list();
+		List<Integer> pageIds = ids.subList(fromIndex, toIndex);
+		List<Patient> page = getPatientsByIds(pageIds);
+		applyFetchProfile(page, theParams.getElements());
+		Map<Integer, Patient> patients = page.stream()
+		        .collect(Collectors.toMap(Patient::getPatientId, Function.identity()));
+		
+		return pageIds.stream().map(patients::get).filter(Objects::nonNull).map(this::deproxyResult)
+		        .collect(Collectors.toList());
+	}
+	
+	private List<String> getPhoneticTokens(SearchParameterMap theParams) {
+		return theParams.getParameters(FhirConstants.PHONETIC_SEARCH_HANDLER).stream()
+		        .map(phonetic -> (StringAndListParam) phonetic.getParam()).filter(Objects::nonNull)
+		        .flatMap(phonetic -> handleAndListParam(phonetic).flatMap(this::handleOrListParam))
+		        .flatMap(nameParam -> NameTokenUtils.tokenize(nameParam.getValue()).stream()).distinct()
+		        .collect(Collectors.toList());
 	}
 	
 	private void handlePatientQuery(Criteria criteria, @Nonnull StringAndListParam query) {
@@ -179,7 +365,9 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 			return;
 		}
 		
-		if (lacksAlias(criteria, "pn")) {
+		boolean useNameTokenIndex = canUseNameTokenIndex(query);
+		
+		if (!useNameTokenIndex && lacksAlias(criteria, "pn")) {
 			criteria.createAlias("names", "pn");
 		}
 		
@@ -190,11 +378,15 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 		handleAndListParam(query, q -> {
 			List<Optional<? extends Criterion>> criterionList = new ArrayList<>();
 			
-			for (String token : StringUtils.split(q.getValueNotNull(), " \t,")) {
-				StringParam param = new StringParam(token).setContains(q.isContains()).setExact(q.isExact());
-				criterionList.add(propertyLike("pn.givenName", param).map(c -> and(c, eq("pn.voided", false))));
-				criterionList.add(propertyLike("pn.middleName", param).map(c -> and(c, eq("pn.voided", false))));
-				criterionList.add(propertyLike("pn.familyName", param).map(c -> and(c, eq("pn.voided", false))));
+			if (useNameTokenIndex) {
+				criterionList.add(nameTokenCriterion("personId", null, NameTokenUtils.tokenize(q.getValueNotNull())));
+			} else {
+				for (String token : StringUtils.split(q.getValueNotNull(), " \t,")) {
+					StringParam param = new StringParam(token).setContains(q.isContains()).setExact(q.isExact());
+					criterionList.add(propertyLike("pn.givenName", param).map(c -> and(c, eq("pn.voided", false))));
+					criterionList.add(propertyLike("pn.middleName", param).map(c -> and(c, eq("pn.voided", false))));
+					criterionList.add(propertyLike("pn.familyName", param).map(c -> and(c, eq("pn.voided", false))));
+				}
 			}
 			
 			criterionList.add(propertyLike("pi.identifier",
@@ -214,13 +406,13 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 		
 		handleAndListParamBySystem(identifier, (system, tokens) -> {
 			if (system.isEmpty()) {
-				return Optional.of(in("pi.identifier", tokensToList(tokens)));
+				return Optional.of(paddedIn("pi.identifier", tokensToList(tokens)));
 			} else {
 				if (lacksAlias(criteria, "pit")) {
 					criteria.createAlias("pi.identifierType", "pit", JoinType.INNER_JOIN, eq("pit.retired", false));
 				}
 				
-				return Optional.of(and(eq("pit.name", system), in("pi.identifier", tokensToList(tokens))));
+				return Optional.of(and(eq("pit.name", system), paddedIn("pi.identifier", tokensToList(tokens))));
 			}
 		}).ifPresent(criteria::add);
 	}
@@ -243,4 +435,14 @@ public class FhirPatientDaoImpl extends BasePersonDao<Patient> implements FhirPa
 	public boolean hasDistinctResults() {
 		return false;
 	}
+	
+	@Override
+	protected List<String> getFetchProfile() {
+		return FETCH_PROFILE;
+	}
+	
+	@Override
+	protected Map<String, String> getFetchProfileElements() {
+		return FETCH_PROFILE_ELEMENTS;
+	}
 }
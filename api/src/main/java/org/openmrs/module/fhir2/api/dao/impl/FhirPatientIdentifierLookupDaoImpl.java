@@ -0,0 +1,136 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirPatientIdentifierLookupDao;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Cached results are keyed by the identifier value and then by the identifier type name (the empty string for any
+ * type), so all of the results for an identifier can be removed at once when it changes.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirPatientIdentifierLookupDaoImpl implements FhirPatientIdentifierLookupDao {
+	
+	private static final String ANY_TYPE = "";
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private volatile Cache<String, Map<String, List<Integer>>> cache;
+	
+	private volatile int cacheSize = 0;
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	@Override
+	@Transactional(readOnly = true)
+	public List<Integer> getPatientIds(String identifierTypeName, String identifier) {
+		Cache<String, Map<String, List<Integer>>> cache = getCache();
+		String typeKey = identifierTypeName == null ? ANY_TYPE : identifierTypeName;
+		if (cache != null) {
+			Map<String, List<Integer>> cached = cache.getIfPresent(identifier);
+			if (cached != null && cached.containsKey(typeKey)) {
+				return cached.get(typeKey);
+			}
+		}
+		
+		// results read while an eviction was happening may already be out-of-date, so they are not cached
+		long generation = evictions.get();
+		List<Integer> patientIds = Collections.unmodifiableList(query(identifierTypeName, identifier));
+		if (cache != null && evictions.get() == generation) {
+			cache.asMap().computeIfAbsent(identifier, k -> new ConcurrentHashMap<>()).put(typeKey, patientIds);
+		}
+		
+		return patientIds;
+	}
+	
+	@Override
+	public void evictIdentifiers(Collection<String> identifiers) {
+		evictions.incrementAndGet();
+		Cache<String, Map<String, List<Integer>>> cache = this.cache;
+		if (cache != null && identifiers != null) {
+			cache.invalidateAll(identifiers);
+		}
+	}
+	
+	@Override
+	public void evictPatients(Collection<Integer> patientIds) {
+		evictions.incrementAndGet();
+		Cache<String, Map<String, List<Integer>>> cache = this.cache;
+		if (cache != null && patientIds != null && !patientIds.isEmpty()) {
+			cache.asMap().values().removeIf(
+			    byType -> byType.values().stream().anyMatch(ids -> ids.stream().anyMatch(patientIds::contains)));
+		}
+	}
+	
+	@Override
+	public void evictAll() {
+		evictions.incrementAndGet();
+		Cache<String, Map<String, List<Integer>>> cache = this.cache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Integer> query(String identifierTypeName, String identifier) {
+		if (identifierTypeName == null) {
+			return sessionFactory.getCurrentSession()
+			        .createQuery("select distinct pi.patient.patientId from PatientIdentifier pi "
+			                + "where pi.identifier = :identifier and pi.voided = false and pi.patient.voided = false "
+			                + "order by pi.patient.patientId")
+			        .setParameter("identifier", identifier).list();
+		}
+		
+		return sessionFactory.getCurrentSession()
+		        .createQuery("select distinct pi.patient.patientId from PatientIdentifier pi "
+		                + "where pi.identifier = :identifier and pi.voided = false and pi.patient.voided = false "
+		                + "and pi.identifierType.name = :identifierTypeName and pi.identifierType.retired = false "
+		                + "order by pi.patient.patientId")
+		        .setParameter("identifier", identifier).setParameter("identifierTypeName", identifierTypeName).list();
+	}
+	
+	// the cache is rebuilt, and so emptied, whenever its configured size changes
+	private Cache<String, Map<String, List<Integer>>> getCache() {
+		int size = NumberUtils
+		        .toInt(FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.IDENTIFIER_CACHE_SIZE_PROPERTY, "0"), 0);
+		if (size != cacheSize) {
+			synchronized (this) {
+				if (size != cacheSize) {
+					cache = size > 0 ? CacheBuilder.newBuilder().maximumSize(size).build() : null;
+					cacheSize = size;
+				}
+			}
+		}
+		
+		return cache;
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirPersonNameTokenDao;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.NameTokenUtils;
+import org.openmrs.module.fhir2.model.FhirPersonNameToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The index is maintained with plain JDBC statements rather than through the Hibernate session. This keeps the tokens out
+ * of the session cache and allows re-indexing to run while Hibernate is completing a transaction.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirPersonNameTokenDaoImpl implements FhirPersonNameTokenDao {
+	
+	// keeps the number of parameters in each "in" clause well below database limits
+	private static final int MAX_IDS_PER_STATEMENT = 500;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	// only in memory, so the index is checked for missing persons each time the module starts
+	private volatile boolean populated = false;
+	
+	@Override
+	@Transactional
+	public void reindexPersons(Collection<Integer> personIds) {
+		if (personIds == null || personIds.isEmpty()) {
+			return;
+		}
+		
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(personIds));
+		for (int i = 0; i < ids.size(); i += MAX_IDS_PER_STATEMENT) {
+			reindexChunk(ids.subList(i, Math.min(i + MAX_IDS_PER_STATEMENT, ids.size())));
+		}
+	}
+	
+	@Override
+	@Transactional
+	public Integer indexMissingPersons(Integer afterPersonId, int batchSize) {
+		List<Integer> personIds = new ArrayList<>(batchSize);
+		sessionFactory.getCurrentSession().doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement("select p.person_id from person p "
+			        + "where p.person_id > ? "
+			        + "and exists (select 1 from person_name pn where pn.person_id = p.person_id and pn.voided = ?) "
+			        + "and not exists (select 1 from fhir_person_name_token t where t.person_id = p.person_id) "
+			        + "order by p.person_id")) {
+				statement.setMaxRows(batchSize);
+				statement.setInt(1, afterPersonId == null ? Integer.MIN_VALUE : afterPersonId);
+				statement.setBoolean(2, false);
+				
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						personIds.add(resultSet.getInt(1));
+					}
+				}
+			}
+		});
+		
+		if (personIds.isEmpty()) {
+			return null;
+		}
+		
+		reindexPersons(personIds);
+		return personIds.get(personIds.size() - 1);
+	}
+	
+	@Override
+	@Transactional
+	public void clearIndex() {
+		populated = false;
+		sessionFactory.getCurrentSession().doWork(connection -> {
+			try (PreparedStatement delete = connection.prepareStatement("delete from fhir_person_name_token")) {
+				delete.executeUpdate();
+			}
+		});
+	}
+	
+	@Override
+	public void markPopulated() {
+		populated = true;
+	}
+	
+	@Override
+	public boolean isSearchable() {
+		return populated && Boolean.parseBoolean(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.NAME_TOKEN_INDEX_ENABLED_PROPERTY, "false"));
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public Map<Integer, Integer> getPhoneticMatchScores(Collection<Integer> personIds, Collection<String> tokens) {
+		Map<Integer, Integer> scores = new HashMap<>();
+		if (personIds == null || personIds.isEmpty() || tokens == null || tokens.isEmpty()) {
+			return scores;
+		}
+		
+		List<PhoneticQuery> queries = tokens.stream().distinct().map(PhoneticQuery::new).collect(Collectors.toList());
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(personIds));
+		for (int i = 0; i < ids.size(); i += MAX_IDS_PER_STATEMENT) {
+			List<Integer> chunk = ids.subList(i, Math.min(i + MAX_IDS_PER_STATEMENT, ids.size()));
+			// best score for each person for each of the searched for tokens
+			Map<Integer, int[]> bestScores = new HashMap<>();
+			
+			sessionFactory.getCurrentSession().doWork(connection -> {
+				try (PreparedStatement select = connection.prepareStatement(
+				    "select person_id, token, metaphone, metaphone_alt, soundex from fhir_person_name_token "
+				            + "where person_id in (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")")) {
+					setIds(select, chunk, 1);
+					
+					try (ResultSet resultSet = select.executeQuery()) {
+						while (resultSet.next()) {
+							int[] best = bestScores.computeIfAbsent(resultSet.getInt(1), k -> new int[queries.size()]);
+							for (int q = 0; q < queries.size(); q++) {
+								best[q] = Math.max(best[q], queries.get(q).score(resultSet.getString(2),
+								    resultSet.getString(3), resultSet.getString(4), resultSet.getString(5)));
+							}
+						}
+					}
+				}
+			});
+			
+			bestScores.forEach((personId, best) -> scores.put(personId, Arrays.stream(best).sum()));
+		}
+		
+		return scores;
+	}
+	
+	private void reindexChunk(List<Integer> personIds) {
+		String placeholders = String.join(",", Collections.nCopies(personIds.size(), "?"));
+		
+		sessionFactory.getCurrentSession().doWork(connection -> {
+			try (PreparedStatement delete = connection
+			        .prepareStatement("delete from fhir_person_name_token where person_id in (" + placeholders + ")")) {
+				setIds(delete, personIds, 1);
+				delete.executeUpdate();
+			}
+			
+			try (PreparedStatement select = connection.prepareStatement(
+			    "select person_name_id, person_id, given_name, middle_name, family_name, family_name2 from person_name "
+			            + "where voided = ? and person_id in (" + placeholders + ")");
+			        PreparedStatement insert = connection.prepareStatement("insert into fhir_person_name_token "
+			                + "(person_id, person_name_id, name_part, token, metaphone, metaphone_alt, soundex) "
+			                + "values (?, ?, ?, ?, ?, ?, ?)")) {
+				select.setBoolean(1, false);
+				setIds(select, personIds, 2);
+				
+				boolean hasBatch = false;
+				try (ResultSet resultSet = select.executeQuery()) {
+					while (resultSet.next()) {
+						int personNameId = resultSet.getInt(1);
+						int personId = resultSet.getInt(2);
+						
+						hasBatch |= addTokens(insert, personId, personNameId, FhirPersonNameToken.GIVEN,
+						    resultSet.getString(3));
+						hasBatch |= addTokens(insert, personId, personNameId, FhirPersonNameToken.MIDDLE,
+						    resultSet.getString(4));
+						hasBatch |= addTokens(insert, personId, personNameId, FhirPersonNameToken.FAMILY,
+						    resultSet.getString(5), resultSet.getString(6));
+					}
+				}
+				
+				if (hasBatch) {
+					insert.executeBatch();
+				}
+			}
+		});
+	}
+	
+	private static boolean addTokens(PreparedStatement insert, int personId, int personNameId, String namePart,
+	        String... values) throws SQLException {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String value : values) {
+			tokens.addAll(NameTokenUtils.tokenize(value));
+		}
+		
+		for (String token : tokens) {
+			insert.setInt(1, personId);
+			insert.setInt(2, personNameId);
+			insert.setString(3, namePart);
+			insert.setString(4, token);
+			insert.setString(5, NameTokenUtils.doubleMetaphone(token));
+			insert.setString(6, NameTokenUtils.doubleMetaphoneAlternate(token));
+			insert.setString(7, NameTokenUtils.soundex(token));
+			insert.addBatch();
+		}
+		
+		return !tokens.isEmpty();
+	}
+	
+	private static void setIds(PreparedStatement statement, List<Integer> ids, int firstIndex) throws SQLException {
+		for (int i = 0; i < ids.size(); i++) {
+			statement.setInt(firstIndex + i, ids.get(i));
+		}
+	}
+	
+	/**
+	 * A token being searched for along with its phonetic keys
+	 */
+	private static class PhoneticQuery {
+		
+		private final String token;
+		
+		private final String metaphone;
+		
+		private final String metaphoneAlternate;
+		
+		private final String soundex;
+		
+		PhoneticQuery(String token) {
+			this.token = token;
+			this.metaphone = NameTokenUtils.doubleMetaphone(token);
+			this.metaphoneAlternate = NameTokenUtils.doubleMetaphoneAlternate(token);
+			this.soundex = NameTokenUtils.soundex(token);
+		}
+		
+		/**
+		 * Scores how closely an indexed token matches this query. An identical token scores highest, followed by a match on
+		 * the primary Double Metaphone key, a match on any Double Metaphone key and, lastly, a Soundex match.
+		 */
+		int score(String otherToken, String otherMetaphone, String otherMetaphoneAlternate, String otherSoundex) {
+			if (token.equals(otherToken)) {
+				return 4;
+			}
+			
+			if (metaphone != null && metaphone.equals(otherMetaphone)) {
+				return 3;
+			}
+			
+			if (matchesAny(otherMetaphone, metaphone, metaphoneAlternate)
+			        || matchesAny(otherMetaphoneAlternate, metaphone, metaphoneAlternate)) {
+				return 2;
+			}
+			
+			if (soundex != null && soundex.equals(otherSoundex)) {
+				return 1;
+			}
+			
+			return 0;
+		}
+		
+		private static boolean matchesAny(String value, String... candidates) {
+			return value != null && Arrays.asList(candidates).contains(value);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import javax.sql.DataSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.ServiceRegistryAwareService;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.hibernate.service.spi.Stoppable;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * A Hibernate {@link ConnectionProvider} that sends read-only transactions to a read replica. It is enabled by adding
+ * the following to the OpenMRS runtime properties:
+ *
+ * <pre>
+ * hibernate.connection.provider_class=org.openmrs.module.fhir2.api.dao.impl.FhirReadReplicaConnectionProvider
+ * hibernate.fhir2.readReplica.url=jdbc:mysql://replica:3306/openmrs
+ * hibernate.fhir2.readReplica.username=openmrs
+ * hibernate.fhir2.readReplica.password=...
+ * </pre>
+ *
+ * Connections to both databases are obtained from an instance of the connection provider named by
+ * {@code hibernate.fhir2.readReplica.delegate_provider_class}, which defaults to the C3P0 connection provider used by
+ * OpenMRS. The replica instance is configured with the same settings as the primary, other than the connection url,
+ * username and password. Which database a connection uses is decided when the connection is first used, by which time
+ * the transaction is known to be read-only or not; see {@link ReadReplicaRouting} for the rules. Without a replica url,
+ * all connections come from the primary database.
+ */
+@Slf4j
+public class FhirReadReplicaConnectionProvider implements ConnectionProvider, Configurable, ServiceRegistryAwareService, Stoppable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String REPLICA_URL = "hibernate.fhir2.readReplica.url";
+	
+	public static final String REPLICA_USERNAME = "hibernate.fhir2.readReplica.username";
+	
+	public static final String REPLICA_PASSWORD = "hibernate.fhir2.readReplica.password";
+	
+	public static final String DELEGATE_PROVIDER_CLASS = "hibernate.fhir2.readReplica.delegate_provider_class";
+	
+	private static final String DEFAULT_DELEGATE_PROVIDER_CLASS = "org.hibernate.c3p0.internal.C3P0ConnectionProvider";
+	
+	private static final String PRIMARY = "primary";
+	
+	private static final String REPLICA = "replica";
+	
+	private ServiceRegistryImplementor serviceRegistry;
+	
+	private ConnectionProvider primary;
+	
+	private ConnectionProvider replica;
+	
+	private DataSource dataSource;
+	
+	@Override
+	public void injectServices(ServiceRegistryImplementor serviceRegistry) {
+		this.serviceRegistry = serviceRegistry;
+	}
+	
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void configure(Map configurationValues) {
+		String delegateClass = StringUtils.defaultIfBlank((String) configurationValues.get(DELEGATE_PROVIDER_CLASS),
+		    DEFAULT_DELEGATE_PROVIDER_CLASS);
+		primary = createDelegate(delegateClass, configurationValues);
+		
+		String replicaUrl = (String) configurationValues.get(REPLICA_URL);
+		if (StringUtils.isBlank(replicaUrl)) {
+			log.warn("{} is not set, so all connections will use the primary database", REPLICA_URL);
+			return;
+		}
+		
+		Map replicaConfigurationValues = new HashMap(configurationValues);
+		replicaConfigurationValues.put(AvailableSettings.URL, replicaUrl);
+		if (configurationValues.containsKey(REPLICA_USERNAME)) {
+			replicaConfigurationValues.put(AvailableSettings.USER, configurationValues.get(REPLICA_USERNAME));
+		}
+		if (configurationValues.containsKey(REPLICA_PASSWORD)) {
+			replicaConfigurationValues.put(AvailableSettings.PASS, configurationValues.get(REPLICA_PASSWORD));
+		}
+		replica = createDelegate(delegateClass, replicaConfigurationValues);
+		
+		Map<Object, Object> targetDataSources = new HashMap<>();
+		targetDataSources.put(PRIMARY, new ConnectionProviderDataSource(primary));
+		targetDataSources.put(REPLICA, new ConnectionProviderDataSource(replica));
+		
+		RoutingDataSource routingDataSource = new RoutingDataSource();
+		routingDataSource.setTargetDataSources(targetDataSources);
+		routingDataSource.setDefaultTargetDataSource(targetDataSources.get(PRIMARY));
+		routingDataSource.afterPropertiesSet();
+		
+		// the lazy proxy defers choosing a database until after the transaction has been marked read-only
+		dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+		
+		log.info("Read-only transactions will use the read replica at {}", replicaUrl);
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (dataSource == null) {
+			return primary.getConnection();
+		}
+		
+		return dataSource.getConnection();
+	}
+	
+	@Override
+	public void closeConnection(Connection conn) throws SQLException {
+		if (dataSource == null) {
+			primary.closeConnection(conn);
+		} else {
+			conn.close();
+		}
+	}
+	
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+	
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return unwrapType.isInstance(this) || primary.isUnwrappableAs(unwrapType);
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (unwrapType.isInstance(this)) {
+			return (T) this;
+		}
+		
+		return primary.unwrap(unwrapType);
+	}
+	
+	@Override
+	public void stop() {
+		stop(replica);
+		stop(primary);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	private ConnectionProvider createDelegate(String className, Map configurationValues) {
+		ConnectionProvider delegate;
+		try {
+			Class<?> delegateClass;
+			if (serviceRegistry != null) {
+				delegateClass = serviceRegistry.getService(ClassLoaderService.class).classForName(className);
+			} else {
+				delegateClass = Class.forName(className);
+			}
+			
+			delegate = (ConnectionProvider) delegateClass.newInstance();
+		}
+		catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+			throw new HibernateException("Could not create connection provider " + className, e);
+		}
+		
+		if (delegate instanceof ServiceRegistryAwareService && serviceRegistry != null) {
+			((ServiceRegistryAwareService) delegate).injectServices(serviceRegistry);
+		}
+		
+		if (delegate instanceof Configurable) {
+			((Configurable) delegate).configure(configurationValues);
+		}
+		
+		return delegate;
+	}
+	
+	private static void stop(ConnectionProvider connectionProvider) {
+		if (connectionProvider instanceof Stoppable) {
+			((Stoppable) connectionProvider).stop();
+		}
+	}
+	
+	private static class RoutingDataSource extends AbstractRoutingDataSource {
+		
+		@Override
+		protected Object determineCurrentLookupKey() {
+			return ReadReplicaRouting.isReplicaAllowed() ? REPLICA : PRIMARY;
+		}
+	}
+	
+	/**
+	 * Exposes a {@link ConnectionProvider} as a {@link DataSource}, returning connections to the provider when they
+	 * are closed
+	 */
+	private static class ConnectionProviderDataSource extends AbstractDataSource {
+		
+		private final ConnectionProvider connectionProvider;
+		
+		ConnectionProviderDataSource(ConnectionProvider connectionProvider) {
+			this.connectionProvider = connectionProvider;
+		}
+		
+		@Override
+		public Connection getConnection() throws SQLException {
+			Connection connection = connectionProvider.getConnection();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+			    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+					    connectionProvider.closeConnection(connection);
+					    return null;
+				    }
+				    
+				    try {
+					    return method.invoke(connection, args);
+				    }
+				    catch (InvocationTargetException e) {
+					    throw e.getTargetException();
+				    }
+			    });
+		}
+		
+		@Override
+		public Connection getConnection(String username, String password) {
+			throw new UnsupportedOperationException("Connections are only available with the configured credentials");
+		}
+	}
+}
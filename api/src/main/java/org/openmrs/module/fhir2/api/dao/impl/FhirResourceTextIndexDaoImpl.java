@@ -0,0 +1,345 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hibernate.criterion.Restrictions.gt;
+import static org.hibernate.criterion.Restrictions.isNotNull;
+import static org.hibernate.criterion.Restrictions.or;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.FhirResourceTextIndexDao;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.openmrs.module.fhir2.api.util.ResourceText;
+import org.openmrs.util.OpenmrsUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The index is a Lucene index kept in the application data directory, with one document per record holding the
+ * record's type, id, text and content. Changes are written by a single background thread so that saving a record never
+ * waits on the index.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirResourceTextIndexDaoImpl implements FhirResourceTextIndexDao {
+	
+	private static final String KEY_FIELD = "key";
+	
+	private static final String TYPE_FIELD = "type";
+	
+	private static final String ID_FIELD = "id";
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private Directory directory;
+	
+	private Executor executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "fhir2-text-index");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final Analyzer analyzer = new StandardAnalyzer();
+	
+	private IndexWriter indexWriter;
+	
+	private SearcherManager searcherManager;
+	
+	// only in memory, so the index is brought up-to-date each time the module starts
+	private volatile boolean populated = false;
+	
+	@Override
+	public void update(Collection<ResourceText> resourceTexts) {
+		if (resourceTexts == null || resourceTexts.isEmpty()) {
+			return;
+		}
+		
+		List<ResourceText> toWrite = new ArrayList<>(resourceTexts);
+		executor.execute(() -> {
+			try {
+				write(toWrite);
+			}
+			catch (IOException | RuntimeException e) {
+				log.error("Failed to update the full-text index for {} records", toWrite.size(), e);
+			}
+		});
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public Integer indexBatch(Class<?> entityType, Integer afterId, int batchSize) {
+		Session session = sessionFactory.getCurrentSession();
+		Criteria criteria = session.createCriteria(entityType).addOrder(Order.asc("id")).setMaxResults(batchSize);
+		if (afterId != null) {
+			criteria.add(gt("id", afterId));
+		}
+		
+		if (Obs.class.equals(entityType)) {
+			criteria.add(or(isNotNull("valueText"), isNotNull("comment")));
+		}
+		
+		List<Object> entities = criteria.list();
+		if (entities.isEmpty()) {
+			return null;
+		}
+		
+		List<ResourceText> resourceTexts = new ArrayList<>(entities.size());
+		for (Object entity : entities) {
+			resourceTexts.add(ResourceText.of(entity));
+			session.evict(entity);
+		}
+		
+		try {
+			write(resourceTexts);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to update the full-text index", e);
+		}
+		
+		return resourceTexts.get(resourceTexts.size() - 1).getId();
+	}
+	
+	@Override
+	public void markPopulated() {
+		populated = true;
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return Boolean.parseBoolean(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.FULL_TEXT_INDEX_ENABLED_PROPERTY, "false"));
+	}
+	
+	@Override
+	public boolean isSearchable() {
+		return populated && isEnabled();
+	}
+	
+	@Override
+	public IdBitmap search(Class<?> entityType, String field, StringAndListParam query) {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder()
+		        .add(new TermQuery(new Term(TYPE_FIELD, entityType.getSimpleName())), BooleanClause.Occur.FILTER);
+		
+		if (query != null) {
+			// values in an or-list are alternatives and each and-list must match
+			for (StringOrListParam orList : query.getValuesAsQueryTokens()) {
+				BooleanQuery.Builder anyOf = new BooleanQuery.Builder();
+				boolean hasAlternatives = false;
+				for (StringParam param : orList.getValuesAsQueryTokens()) {
+					List<String> terms = analyze(field, param.getValue());
+					if (terms.isEmpty()) {
+						continue;
+					}
+					
+					BooleanQuery.Builder allOf = new BooleanQuery.Builder();
+					terms.forEach(term -> allOf.add(new TermQuery(new Term(field, term)), BooleanClause.Occur.MUST));
+					anyOf.add(allOf.build(), BooleanClause.Occur.SHOULD);
+					hasAlternatives = true;
+				}
+				
+				if (hasAlternatives) {
+					builder.add(anyOf.build(), BooleanClause.Occur.MUST);
+				}
+			}
+		}
+		
+		IdBitmap ids = new IdBitmap();
+		try {
+			SearcherManager manager = getSearcherManager();
+			manager.maybeRefresh();
+			IndexSearcher searcher = manager.acquire();
+			try {
+				searcher.search(builder.build(), new IdCollector(ids));
+			}
+			finally {
+				manager.release(searcher);
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to search the full-text index", e);
+		}
+		
+		return ids;
+	}
+	
+	@PreDestroy
+	public synchronized void close() {
+		if (executor instanceof ExecutorService) {
+			ExecutorService executorService = (ExecutorService) executor;
+			executorService.shutdown();
+			try {
+				executorService.awaitTermination(30, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		try {
+			if (searcherManager != null) {
+				searcherManager.close();
+			}
+			
+			if (indexWriter != null) {
+				indexWriter.close();
+			}
+		}
+		catch (IOException e) {
+			log.warn("Failed to close the full-text index", e);
+		}
+		finally {
+			searcherManager = null;
+			indexWriter = null;
+		}
+	}
+	
+	private void write(Collection<ResourceText> resourceTexts) throws IOException {
+		SearcherManager manager = getSearcherManager();
+		for (ResourceText resourceText : resourceTexts) {
+			Term key = new Term(KEY_FIELD, resourceText.getType() + "/" + resourceText.getId());
+			if (resourceText.isEmpty()) {
+				indexWriter.deleteDocuments(key);
+				continue;
+			}
+			
+			Document document = new Document();
+			document.add(new StringField(KEY_FIELD, key.text(), Field.Store.NO));
+			document.add(new StringField(TYPE_FIELD, resourceText.getType(), Field.Store.NO));
+			document.add(new NumericDocValuesField(ID_FIELD, resourceText.getId()));
+			if (resourceText.getText() != null) {
+				document.add(new TextField(FhirConstants.TEXT_PROPERTY, resourceText.getText(), Field.Store.NO));
+			}
+			document.add(new TextField(FhirConstants.CONTENT_PROPERTY, resourceText.getContent(), Field.Store.NO));
+			indexWriter.updateDocument(key, document);
+		}
+		
+		indexWriter.commit();
+		manager.maybeRefresh();
+	}
+	
+	private List<String> analyze(String field, String value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		
+		List<String> terms = new ArrayList<>();
+		try (TokenStream tokenStream = analyzer.tokenStream(field, value)) {
+			CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+			tokenStream.reset();
+			while (tokenStream.incrementToken()) {
+				terms.add(term.toString());
+			}
+			tokenStream.end();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Failed to analyze search term " + value, e);
+		}
+		
+		return terms;
+	}
+	
+	private synchronized SearcherManager getSearcherManager() throws IOException {
+		if (searcherManager == null) {
+			if (directory == null) {
+				directory = FSDirectory
+				        .open(Paths.get(OpenmrsUtil.getApplicationDataDirectory(), "fhir2", "text-index"));
+			}
+			
+			indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+			searcherManager = new SearcherManager(indexWriter, true, null);
+		}
+		
+		return searcherManager;
+	}
+	
+	/**
+	 * Collects the ids of all matching documents from their doc values, which avoids both scoring and loading the
+	 * stored documents
+	 */
+	private static class IdCollector extends SimpleCollector {
+		
+		private final IdBitmap ids;
+		
+		private NumericDocValues idValues;
+		
+		private IdCollector(IdBitmap ids) {
+			this.ids = ids;
+		}
+		
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) throws IOException {
+			idValues = DocValues.getNumeric(context.reader(), ID_FIELD);
+		}
+		
+		@Override
+		public void collect(int doc) {
+			ids.add((int) idValues.get(doc));
+		}
+		
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+	}
+}
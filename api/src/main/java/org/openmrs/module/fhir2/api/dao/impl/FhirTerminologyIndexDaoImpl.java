@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.openmrs.module.fhir2.api.dao.FhirTerminologyIndexDao;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Each code is cached separately, keyed by system and code, so searches for different combinations of the same codes
+ * share their cached entries. Entries expire after an hour so that changes to the concept dictionary made outside of
+ * this server are eventually picked up.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirTerminologyIndexDaoImpl implements FhirTerminologyIndexDao {
+	
+	private static final int MAX_CACHED_CODES = 10000;
+	
+	// keeps the number of parameters in each "in" clause well below database limits
+	private static final int MAX_CODES_PER_QUERY = 500;
+	
+	@Autowired
+	@Qualifier("sessionFactory")
+	private SessionFactory sessionFactory;
+	
+	private final Cache<String, int[]> conceptIdsByCode = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_CODES)
+	        .expireAfterWrite(1, TimeUnit.HOURS).build();
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	@Override
+	@Transactional(readOnly = true)
+	public IdBitmap getConceptIds(String system, Collection<String> codes) {
+		IdBitmap conceptIds = new IdBitmap();
+		List<String> uncachedCodes = new ArrayList<>();
+		for (String code : new LinkedHashSet<>(codes)) {
+			int[] cached = conceptIdsByCode.getIfPresent(cacheKey(system, code));
+			if (cached == null) {
+				uncachedCodes.add(code);
+			} else {
+				for (int conceptId : cached) {
+					conceptIds.add(conceptId);
+				}
+			}
+		}
+		
+		// results read while an eviction was happening may already be out-of-date, so they are not cached
+		long generation = evictions.get();
+		for (int i = 0; i < uncachedCodes.size(); i += MAX_CODES_PER_QUERY) {
+			List<String> chunk = uncachedCodes.subList(i, Math.min(i + MAX_CODES_PER_QUERY, uncachedCodes.size()));
+			Map<String, List<Integer>> resolved = query(system, chunk);
+			for (String code : chunk) {
+				int[] ids = resolved.getOrDefault(code, new ArrayList<>()).stream().mapToInt(Integer::intValue).toArray();
+				for (int conceptId : ids) {
+					conceptIds.add(conceptId);
+				}
+				
+				if (evictions.get() == generation) {
+					conceptIdsByCode.put(cacheKey(system, code), ids);
+				}
+			}
+		}
+		
+		return conceptIds;
+	}
+	
+	@Override
+	public void evictAll() {
+		evictions.incrementAndGet();
+		conceptIdsByCode.invalidateAll();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<String, List<Integer>> query(String system, List<String> codes) {
+		List<Object[]> rows = sessionFactory.getCurrentSession()
+		        .createQuery("select crt.code, cm.concept.conceptId from ConceptMap cm join cm.conceptReferenceTerm crt, "
+		                + "FhirConceptSource fcs where fcs.conceptSource = crt.conceptSource and fcs.url = :system "
+		                + "and crt.code in (:codes)")
+		        .setParameter("system", system).setParameterList("codes", codes).list();
+		
+		// codes are matched using the database's collation, which may not be case-sensitive
+		Map<String, List<Integer>> resolved = new HashMap<>();
+		for (Object[] row : rows) {
+			String matchedCode = (String) row[0];
+			if (codes.contains(matchedCode)) {
+				resolved.computeIfAbsent(matchedCode, k -> new ArrayList<>()).add((Integer) row[1]);
+				continue;
+			}
+			
+			for (String code : codes) {
+				if (code.equalsIgnoreCase(matchedCode)) {
+					resolved.computeIfAbsent(code, k -> new ArrayList<>()).add((Integer) row[1]);
+				}
+			}
+		}
+		
+		return resolved;
+	}
+	
+	private static String cacheKey(String system, String code) {
+		return system + "|" + code;
+	}
+}
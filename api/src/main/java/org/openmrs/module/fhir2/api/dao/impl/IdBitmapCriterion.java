@@ -0,0 +1,102 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.spi.TypedValue;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+
+/**
+ * Provides a Hibernate Criteria API restriction that an integer id property is one of the ids in an {@link IdBitmap}.
+ * Up to {@link BaseDao#MAX_PADDED_IN_LIST_SIZE} ids are bound as parameters, padded in the same way as
+ * {@link BaseDao#paddedIn(String, java.util.Collection)} so that the generated SQL depends only on roughly how many
+ * ids there are. Larger sets of ids are written into the SQL as literals rather than bound as parameters, so they do
+ * not run into the database's limit on the number of parameters. Unlike
+ * {@link org.hibernate.criterion.Restrictions#in(String, java.util.Collection)}, an empty set of ids matches nothing
+ * rather than producing invalid SQL.
+ */
+public class IdBitmapCriterion implements Criterion {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String propertyName;
+	
+	private final IdBitmap ids;
+	
+	protected IdBitmapCriterion(String propertyName, IdBitmap ids) {
+		this.propertyName = propertyName;
+		this.ids = ids;
+	}
+	
+	public static Criterion in(String propertyName, IdBitmap ids) {
+		return new IdBitmapCriterion(propertyName, ids);
+	}
+	
+	@Override
+	public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) {
+		if (ids.isEmpty()) {
+			return "1=0";
+		}
+		
+		String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+		if (columns.length != 1) {
+			throw new IllegalStateException("Property " + propertyName + " must map to a single column");
+		}
+		
+		int size = ids.cardinality();
+		StringBuilder sql = new StringBuilder(columns[0].length() + size * 8).append(columns[0]).append(" in (");
+		if (isBound(size)) {
+			int paddedSize = BaseDao.getPaddedInListSize(size);
+			for (int i = 0; i < paddedSize; i++) {
+				sql.append(i > 0 ? ",?" : "?");
+			}
+		} else {
+			List<Integer> values = ids.toList();
+			for (int i = 0; i < values.size(); i++) {
+				if (i > 0) {
+					sql.append(',');
+				}
+				sql.append(values.get(i).intValue());
+			}
+		}
+		
+		return sql.append(')').toString();
+	}
+	
+	@Override
+	public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) {
+		int size = ids.cardinality();
+		if (size == 0 || !isBound(size)) {
+			return new TypedValue[0];
+		}
+		
+		List<Integer> values = ids.toList();
+		TypedValue[] typedValues = new TypedValue[BaseDao.getPaddedInListSize(size)];
+		for (int i = 0; i < typedValues.length; i++) {
+			typedValues[i] = criteriaQuery.getTypedValue(criteria, propertyName,
+			    values.get(Math.min(i, values.size() - 1)));
+		}
+		
+		return typedValues;
+	}
+	
+	private static boolean isBound(int size) {
+		return size <= BaseDao.MAX_PADDED_IN_LIST_SIZE;
+	}
+	
+	@Override
+	public String toString() {
+		return propertyName + " in " + ids.cardinality() + " ids";
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.module.fhir2.api.dao.FhirPatientIdentifierLookupDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that removes out-of-date results from the identifier lookup cache. Results are removed as soon
+ * as a change is flushed, so the transaction making the change never sees the old results, and again once the
+ * transaction completes, in case another transaction cached the old results in the meantime.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class PatientIdentifierLookupInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Set<String>> modifiedIdentifiers = ThreadLocal.withInitial(HashSet::new);
+	
+	private static final ThreadLocal<Set<Integer>> modifiedPatients = ThreadLocal.withInitial(HashSet::new);
+	
+	// lazy to avoid a circular dependency between the session factory and its interceptors
+	@Lazy
+	@Autowired
+	private FhirPatientIdentifierLookupDao patientIdentifierLookupDao;
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof PatientIdentifier) {
+			recordIdentifier(((PatientIdentifier) entity).getIdentifier());
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		if (entity instanceof PatientIdentifier) {
+			// the previous value no longer matches and the current value now does
+			recordIdentifier(((PatientIdentifier) entity).getIdentifier());
+			if (previousState != null) {
+				for (int i = 0; i < propertyNames.length; i++) {
+					if ("identifier".equals(propertyNames[i]) && previousState[i] instanceof String) {
+						recordIdentifier((String) previousState[i]);
+					}
+				}
+			}
+		} else if (entity instanceof Patient && id instanceof Integer && previousState != null) {
+			// both the patient and the underlying person can be voided
+			for (int i = 0; i < propertyNames.length; i++) {
+				if (("voided".equals(propertyNames[i]) || "personVoided".equals(propertyNames[i]))
+				        && !Objects.equals(previousState[i], currentState[i])) {
+					recordPatient((Integer) id);
+				}
+			}
+		} else if (entity instanceof PatientIdentifierType) {
+			patientIdentifierLookupDao.evictAll();
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (entity instanceof PatientIdentifier) {
+			recordIdentifier(((PatientIdentifier) entity).getIdentifier());
+		} else if (entity instanceof Patient && id instanceof Integer) {
+			recordPatient((Integer) id);
+		}
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			if (!modifiedIdentifiers.get().isEmpty()) {
+				patientIdentifierLookupDao.evictIdentifiers(modifiedIdentifiers.get());
+			}
+			
+			if (!modifiedPatients.get().isEmpty()) {
+				patientIdentifierLookupDao.evictPatients(modifiedPatients.get());
+			}
+		}
+		finally {
+			modifiedIdentifiers.remove();
+			modifiedPatients.remove();
+		}
+	}
+	
+	private void recordIdentifier(String identifier) {
+		if (identifier != null) {
+			modifiedIdentifiers.get().add(identifier);
+			patientIdentifierLookupDao.evictIdentifiers(Collections.singleton(identifier));
+		}
+	}
+	
+	private void recordPatient(Integer patientId) {
+		modifiedPatients.get().add(patientId);
+		patientIdentifierLookupDao.evictPatients(Collections.singleton(patientId));
+	}
+}
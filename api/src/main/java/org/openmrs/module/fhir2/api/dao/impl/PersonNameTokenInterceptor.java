@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.module.fhir2.api.dao.FhirPersonNameTokenDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that keeps the person name token index up-to-date. The ids of any persons whose names are
+ * created, changed or deleted are collected as entities are flushed and those persons are re-indexed just before the
+ * transaction commits, so the index changes are committed or rolled back together with the names themselves. Nothing is
+ * done unless the index is enabled by {@link org.openmrs.module.fhir2.FhirConstants#NAME_TOKEN_INDEX_ENABLED_PROPERTY};
+ * the index is rebuilt when it is enabled, so it does not miss the changes made in the meantime.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class PersonNameTokenInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Set<Integer>> modifiedPersons = ThreadLocal.withInitial(HashSet::new);
+	
+	// set from the global property by FhirActivator, so that flushing never needs to look the global property up
+	private static volatile boolean indexEnabled = false;
+	
+	// lazy to avoid a circular dependency between the session factory and its interceptors
+	@Lazy
+	@Autowired
+	private FhirPersonNameTokenDao personNameTokenDao;
+	
+	public static void setIndexEnabled(boolean indexEnabled) {
+		PersonNameTokenInterceptor.indexEnabled = indexEnabled;
+	}
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+	}
+	
+	@Override
+	public void beforeTransactionCompletion(Transaction tx) {
+		Set<Integer> personIds = modifiedPersons.get();
+		if (personIds.isEmpty() || !indexEnabled) {
+			personIds.clear();
+			return;
+		}
+		
+		// copied and cleared first as re-indexing may itself cause a flush
+		Set<Integer> toReindex = new HashSet<>(personIds);
+		personIds.clear();
+		personNameTokenDao.reindexPersons(toReindex);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		modifiedPersons.remove();
+	}
+	
+	private void recordModification(Object entity) {
+		if (!indexEnabled) {
+			return;
+		}
+		
+		Person person = null;
+		if (entity instanceof PersonName) {
+			person = ((PersonName) entity).getPerson();
+		} else if (entity instanceof Person) {
+			person = (Person) entity;
+		}
+		
+		// getPersonId() does not initialize a lazy proxy
+		if (person != null && person.getPersonId() != null) {
+			modifiedPersons.get().add(person.getPersonId());
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Decides whether the current transaction may read from the read replica configured through
+ * {@link FhirReadReplicaConnectionProvider}. Only read-only transactions are routed to the replica, and then only
+ * when the client making the request has not written anything within the window set by the
+ * {@link org.openmrs.module.fhir2.FhirConstants#READ_REPLICA_STICKY_WINDOW_PROPERTY} global property, so that clients
+ * always see their own writes despite replication lag.
+ */
+public class ReadReplicaRouting {
+	
+	private ReadReplicaRouting() {
+	}
+	
+	// kept here because the routing decision must not itself need a database connection
+	private static volatile long stickyWindowMillis = TimeUnit.SECONDS.toMillis(5);
+	
+	private static final ThreadLocal<String> currentClient = new ThreadLocal<>();
+	
+	private static final ThreadLocal<Boolean> currentRequestWrote = new ThreadLocal<>();
+	
+	private static final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+	
+	// the time of the last write made by each client
+	private static final Cache<String, Long> lastWrites = CacheBuilder.newBuilder().maximumSize(10000)
+	        .expireAfterWrite(1, TimeUnit.HOURS).build();
+	
+	/**
+	 * Associates the current thread with a client, such as an HTTP session, until {@link #endRequest()} is called
+	 *
+	 * @param client a key identifying the client or null if the client cannot be identified
+	 * @param stickyWindowSeconds the number of seconds after a write during which the client uses the primary database
+	 */
+	public static void startRequest(String client, int stickyWindowSeconds) {
+		stickyWindowMillis = TimeUnit.SECONDS.toMillis(stickyWindowSeconds);
+		currentClient.set(client);
+		currentRequestWrote.remove();
+	}
+	
+	/**
+	 * Removes the association made by {@link #startRequest(String, int)}
+	 */
+	public static void endRequest() {
+		currentClient.remove();
+		currentRequestWrote.remove();
+	}
+	
+	/**
+	 * @return the client the current thread is associated with, e.g., to pass on to another thread processing the same
+	 *         request, or null if there is none
+	 */
+	public static String getCurrentClient() {
+		return currentClient.get();
+	}
+	
+	/**
+	 * Records that the current thread has committed a write, so the remainder of the current request and, for the
+	 * length of the sticky window, later requests from the same client use the primary database
+	 */
+	public static void recordWrite() {
+		String client = currentClient.get();
+		if (client != null) {
+			currentRequestWrote.set(Boolean.TRUE);
+			lastWrites.put(client, System.currentTimeMillis());
+		}
+	}
+	
+	/**
+	 * Runs a read that must see writes that may not have reached the replica yet, e.g., of data written by another
+	 * request, on the primary database. The read must be the first use of the database by its transaction.
+	 *
+	 * @param read the read to run
+	 * @return the result of the read
+	 */
+	public static <T> T onPrimary(Supplier<T> read) {
+		Boolean previous = primaryRequired.get();
+		primaryRequired.set(Boolean.TRUE);
+		try {
+			return read.get();
+		}
+		finally {
+			if (previous == null) {
+				primaryRequired.remove();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the current transaction is read-only and the current client has not written anything recently
+	 */
+	public static boolean isReplicaAllowed() {
+		if (primaryRequired.get() != null) {
+			return false;
+		}
+		
+		if (!TransactionSynchronizationManager.isActualTransactionActive()
+		        || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return false;
+		}
+		
+		if (currentRequestWrote.get() != null) {
+			return false;
+		}
+		
+		String client = currentClient.get();
+		if (client == null) {
+			return true;
+		}
+		
+		Long lastWrite = lastWrites.getIfPresent(client);
+		return lastWrite == null || System.currentTimeMillis() - lastWrite >= stickyWindowMillis;
+	}
+	
+	static void reset() {
+		endRequest();
+		lastWrites.invalidateAll();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.hibernate.type.Type;
+import org.openmrs.module.fhir2.model.FhirPagedSearch;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that tells {@link ReadReplicaRouting} when a transaction that wrote something commits, so that
+ * the client that made the write keeps reading from the primary database until the replica has caught up. Stored
+ * searches are not counted as writes, since storing one is part of every paged search; they are read back from the
+ * primary database instead.
+ */
+@Component
+public class ReadReplicaWriteInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Boolean> wrote = new ThreadLocal<>();
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordWrite(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordWrite(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordWrite(entity);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			if (wrote.get() != null && tx.getStatus() == TransactionStatus.COMMITTED) {
+				ReadReplicaRouting.recordWrite();
+			}
+		}
+		finally {
+			wrote.remove();
+		}
+	}
+	
+	private static void recordWrite(Object entity) {
+		if (!(entity instanceof FhirPagedSearch)) {
+			wrote.set(Boolean.TRUE);
+		}
+	}
+}
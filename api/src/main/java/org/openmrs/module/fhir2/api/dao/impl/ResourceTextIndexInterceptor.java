@@ -0,0 +1,121 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.hibernate.type.Type;
+import org.openmrs.AllergyReaction;
+import org.openmrs.module.fhir2.api.dao.FhirResourceTextIndexDao;
+import org.openmrs.module.fhir2.api.util.ResourceText;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that keeps the full-text index up-to-date. Observations, conditions and allergies that are
+ * created, changed or deleted are collected as entities are flushed and their text is extracted just before the
+ * transaction commits. The index is only updated once the transaction has committed, so rolled back changes never
+ * reach the index.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class ResourceTextIndexInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// entities are tracked by identity as new entities do not have an id until they are inserted
+	private static final ThreadLocal<Set<Object>> modifiedEntities = ThreadLocal
+	        .withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+	
+	private static final ThreadLocal<List<ResourceText>> pendingUpdates = ThreadLocal.withInitial(ArrayList::new);
+	
+	// lazy to avoid a circular dependency between the session factory and its interceptors
+	@Lazy
+	@Autowired
+	private FhirResourceTextIndexDao resourceTextIndexDao;
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (ResourceText.isIndexed(entity)) {
+			modifiedEntities.get().remove(entity);
+			if (id instanceof Integer && resourceTextIndexDao.isEnabled()) {
+				pendingUpdates.get().add(new ResourceText(ResourceText.typeOf(entity), (Integer) id, null, null));
+			}
+		} else {
+			recordModification(entity);
+		}
+	}
+	
+	@Override
+	public void beforeTransactionCompletion(Transaction tx) {
+		Set<Object> entities = modifiedEntities.get();
+		if (entities.isEmpty() || !resourceTextIndexDao.isEnabled()) {
+			return;
+		}
+		
+		// copied and cleared first as reading the text may initialize lazy associations
+		List<Object> toIndex = new ArrayList<>(entities);
+		entities.clear();
+		for (Object entity : toIndex) {
+			ResourceText resourceText = ResourceText.of(entity);
+			if (resourceText.getId() != null) {
+				pendingUpdates.get().add(resourceText);
+			}
+		}
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			if (tx != null && tx.getStatus() == TransactionStatus.COMMITTED && !pendingUpdates.get().isEmpty()) {
+				resourceTextIndexDao.update(pendingUpdates.get());
+			}
+		}
+		finally {
+			modifiedEntities.remove();
+			pendingUpdates.remove();
+		}
+	}
+	
+	private void recordModification(Object entity) {
+		// reactions are part of the allergy's text
+		if (entity instanceof AllergyReaction) {
+			entity = ((AllergyReaction) entity).getAllergy();
+		}
+		
+		if (entity != null && ResourceText.isIndexed(entity)) {
+			modifiedEntities.get().add(entity);
+		}
+	}
+}
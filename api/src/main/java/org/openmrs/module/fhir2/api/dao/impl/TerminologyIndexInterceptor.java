@@ -0,0 +1,84 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import java.io.Serializable;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.openmrs.ConceptMap;
+import org.openmrs.ConceptReferenceTerm;
+import org.openmrs.ConceptSource;
+import org.openmrs.module.fhir2.api.dao.FhirTerminologyIndexDao;
+import org.openmrs.module.fhir2.model.FhirConceptSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hibernate interceptor that empties the terminology index cache whenever a concept mapping, reference term or concept
+ * source changes. Changes to these are rare enough that working out which cached codes they affect is not worthwhile.
+ * The cache is emptied as soon as a change is flushed and again once the transaction completes, in case another
+ * transaction cached the old mappings in the meantime.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class TerminologyIndexInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final ThreadLocal<Boolean> modified = ThreadLocal.withInitial(() -> Boolean.FALSE);
+	
+	// lazy to avoid a circular dependency between the session factory and its interceptors
+	@Lazy
+	@Autowired
+	private FhirTerminologyIndexDao terminologyIndexDao;
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+	        String[] propertyNames, Type[] types) {
+		recordModification(entity);
+		return false;
+	}
+	
+	@Override
+	public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		recordModification(entity);
+	}
+	
+	@Override
+	public void afterTransactionCompletion(Transaction tx) {
+		try {
+			if (modified.get()) {
+				terminologyIndexDao.evictAll();
+			}
+		}
+		finally {
+			modified.remove();
+		}
+	}
+	
+	private void recordModification(Object entity) {
+		if (entity instanceof ConceptMap || entity instanceof ConceptReferenceTerm || entity instanceof ConceptSource
+		        || entity instanceof FhirConceptSource) {
+			modified.set(Boolean.TRUE);
+			terminologyIndexDao.evictAll();
+		}
+	}
+}
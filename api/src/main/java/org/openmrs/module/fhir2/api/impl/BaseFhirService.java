@@ -12,8 +12,8 @@ package org.openmrs.module.fhir2.api.impl;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.Constants;
@@ -26,6 +26,7 @@ import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import com.google.common.reflect.TypeToken;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.openmrs.Auditable;
 import org.openmrs.OpenmrsObject;
@@ -34,8 +35,10 @@ import org.openmrs.Voidable;
 import org.openmrs.api.ValidationException;
 import org.openmrs.module.fhir2.api.FhirService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.OpenmrsFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.UpdatableOpenmrsTranslator;
+import org.openmrs.module.fhir2.api.util.FhirResourceCache;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
 import org.openmrs.module.fhir2.api.util.JsonPatchUtils;
 import org.openmrs.module.fhir2.api.util.XmlPatchUtils;
@@ -53,6 +56,10 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 	@Getter(AccessLevel.PROTECTED)
 	private FhirContext fhirContext;
 	
+	@Autowired(required = false)
+	@Setter(AccessLevel.PACKAGE)
+	private FhirResourceCache resourceCache;
+	
 	protected BaseFhirService() {
 		// @formatter:off
 		TypeToken<T> resourceTypeToken = new TypeToken<T>(getClass()) {};
@@ -67,6 +74,19 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 			throw new InvalidRequestException("Uuid cannot be null.");
 		}
 		
+		// the version is looked up first so that a cached copy of an older version is never returned
+		String resourceType = resourceClass.getSimpleName();
+		boolean cacheable = resourceCache != null && resourceCache.isEnabled(resourceType);
+		if (cacheable) {
+			Date lastUpdated = getDao().getLastUpdated(uuid);
+			if (lastUpdated != null) {
+				T cached = resourceCache.get(resourceType, uuid, String.valueOf(lastUpdated.getTime()));
+				if (cached != null) {
+					return cached;
+				}
+			}
+		}
+		
 		U openmrsObj = getDao().get(uuid);
 		
 		if (openmrsObj == null) {
@@ -76,13 +96,27 @@ public abstract class BaseFhirService<T extends IAnyResource, U extends OpenmrsO
 			        "Resource of type " + resourceClass.getSimpleName() + " with ID " + uuid + " is gone/deleted");
 		}
 		
-		return getTranslator().toFhirResource(openmrsObj);
+		T result = getTranslator().toFhirResource(openmrsObj);
+		if (cacheable) {
+			resourceCache.put(resourceType, result);
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public Date getLastUpdated(@Nonnull String uuid) {
+		if (uuid == null) {
+			return null;
+		}
+		
+		return getDao().getLastUpdated(uuid);
 	}
 	
 	@Override
 	public List<T> get(@Nonnull Collection<String> uuids) {
 		OpenmrsFhirTranslator<U, T> translator = getTranslator();
-		return getDao().get(uuids).stream().map(translator::toFhirResource).collect(Collectors.toList());
+		return BulkToFhirTranslator.translateAll(translator, getDao().get(uuids));
 	}
 	
 	@Override
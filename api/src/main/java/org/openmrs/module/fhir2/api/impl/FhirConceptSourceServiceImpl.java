@@ -12,6 +12,8 @@ package org.openmrs.module.fhir2.api.impl;
 import javax.annotation.Nonnull;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import lombok.Setter;
@@ -55,9 +57,29 @@ public class FhirConceptSourceServiceImpl implements FhirConceptSourceService {
 	@Transactional(readOnly = true)
 	public String getUrlForConceptSource(@Nonnull ConceptSource conceptSource) {
 		return getFhirConceptSource(conceptSource).map(FhirConceptSource::getUrl)
-		        .orElseGet(() -> Duration.SNOMED_CT_CONCEPT_SOURCE_HL7_CODE.equals(conceptSource.getHl7Code())
-		                ? FhirConstants.SNOMED_SYSTEM_URI
-		                : null);
+		        .orElseGet(() -> getDefaultUrl(conceptSource));
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public Map<ConceptSource, String> getUrlsForConceptSources(@Nonnull Collection<ConceptSource> conceptSources) {
+		Map<ConceptSource, String> urls = new HashMap<>();
+		for (FhirConceptSource fhirConceptSource : dao.getFhirConceptSourcesByConceptSources(conceptSources)) {
+			urls.put(fhirConceptSource.getConceptSource(), fhirConceptSource.getUrl());
+		}
+		
+		for (ConceptSource conceptSource : conceptSources) {
+			if (!urls.containsKey(conceptSource)) {
+				urls.put(conceptSource, getDefaultUrl(conceptSource));
+			}
+		}
+		
+		return urls;
+	}
+	
+	private String getDefaultUrl(ConceptSource conceptSource) {
+		return Duration.SNOMED_CT_CONCEPT_SOURCE_HL7_CODE.equals(conceptSource.getHl7Code()) ? FhirConstants.SNOMED_SYSTEM_URI
+		        : null;
 	}
 	
 	@Override
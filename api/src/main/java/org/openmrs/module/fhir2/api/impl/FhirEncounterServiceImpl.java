@@ -12,6 +12,7 @@ package org.openmrs.module.fhir2.api.impl;
 import javax.annotation.Nonnull;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 
 import ca.uhn.fhir.model.api.Include;
@@ -80,6 +81,16 @@ public class FhirEncounterServiceImpl extends BaseFhirService<Encounter, org.ope
 		return result;
 	}
 	
+	@Override
+	public Date getLastUpdated(@Nonnull String uuid) {
+		Date result = super.getLastUpdated(uuid);
+		if (result == null) {
+			result = visitService.getLastUpdated(uuid);
+		}
+		
+		return result;
+	}
+	
 	@Override
 	public Encounter create(@Nonnull Encounter encounter) {
 		
@@ -12,16 +12,35 @@ package org.openmrs.module.fhir2.api.impl;
 import javax.annotation.Nonnull;
 
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.FhirGroupMemberService;
+import org.openmrs.module.fhir2.api.dao.FhirCohortMembershipDao;
+import org.openmrs.module.fhir2.api.search.GroupMemberBundleProvider;
+import org.openmrs.module.fhir2.api.translators.GroupMemberTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 @Component
 @Transactional
+@Setter(AccessLevel.PACKAGE)
 public class FhirGroupMemberServiceImpl implements FhirGroupMemberService {
 	
+	@Autowired
+	private FhirCohortMembershipDao cohortMembershipDao;
+	
+	@Autowired
+	private GroupMemberTranslator groupMemberTranslator;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
 	@Override
+	@Transactional(readOnly = true)
 	public IBundleProvider getGroupMembers(@Nonnull String groupUuid) {
-		throw new UnsupportedOperationException("Not supported in this openmrs platform version");
+		return new GroupMemberBundleProvider(cohortMembershipDao.getMemberIds(groupUuid), groupMemberTranslator,
+		        globalPropertyService);
 	}
 }
@@ -11,6 +11,8 @@ package org.openmrs.module.fhir2.api.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.Date;
+
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
@@ -80,6 +82,16 @@ public class FhirPractitionerServiceImpl extends BaseFhirService<Practitioner, P
 		return result;
 	}
 	
+	@Override
+	public Date getLastUpdated(@Nonnull String uuid) {
+		Date result = super.getLastUpdated(uuid);
+		if (result == null) {
+			result = userService.getLastUpdated(uuid);
+		}
+		
+		return result;
+	}
+	
 	@Override
 	public Practitioner create(@Nonnull Practitioner newResource) {
 		if (!newResource.hasIdentifier()) {
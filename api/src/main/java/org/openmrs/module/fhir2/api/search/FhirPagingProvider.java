@@ -0,0 +1,331 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.BasePagingProvider;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.dao.FhirPagedSearchDao;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.openmrs.module.fhir2.api.util.ParallelTranslation;
+import org.openmrs.module.fhir2.model.FhirPagedSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the searches being paged through so that their "next" and "previous" links can be followed. Recently used
+ * searches are kept in memory, bounded by both a number of searches and an approximate memory budget, and expire after
+ * a configurable time. Unless {@link FhirConstants#PAGING_STORE_PROPERTY} is set to "memory", the definition of each
+ * {@link SearchQueryBundleProvider} is also stored in the database, so its links keep working after it has been
+ * dropped from memory or the server has been restarted. Other kinds of results, such as those of $everything, are only
+ * kept in memory.
+ */
+@Slf4j
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class FhirPagingProvider extends BasePagingProvider {
+	
+	private static final int DEFAULT_MAXIMUM_SEARCHES = 1000;
+	
+	private static final int DEFAULT_TTL_MINUTES = 60;
+	
+	private static final int DEFAULT_MEMORY_BUDGET_MB = 64;
+	
+	// a rough guess at the memory used by each resource held by a provider that has already loaded its results
+	private static final int ESTIMATED_RESOURCE_SIZE = 4096;
+	
+	private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+	
+	// stored search definitions are JSON documents
+	private static final ObjectMapper DEFINITION_MAPPER = new ObjectMapper()
+	        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	
+	@Autowired
+	private ApplicationContext applicationContext;
+	
+	@Autowired
+	private FhirPagedSearchDao pagedSearchDao;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Autowired
+	private ParallelTranslation parallelTranslation;
+	
+	private volatile Cache<String, StoredSearch> searches;
+	
+	private final AtomicLong nextPurge = new AtomicLong();
+	
+	@Override
+	public String storeResultList(@Nullable RequestDetails theRequestDetails, IBundleProvider theList) {
+		String searchId = StringUtils.isNotBlank(theList.getUuid()) ? theList.getUuid() : FhirUtils.newUuid();
+		
+		byte[] definition = isDatabaseStore() ? writeDefinition(theList) : null;
+		if (definition != null) {
+			Date now = new Date();
+			FhirPagedSearch pagedSearch = new FhirPagedSearch();
+			pagedSearch.setSearchId(searchId);
+			pagedSearch.setDefinition(definition);
+			pagedSearch.setDateCreated(now);
+			pagedSearch.setExpires(new Date(now.getTime() + TimeUnit.MINUTES.toMillis(getTtlMinutes())));
+			
+			try {
+				pagedSearchDao.save(pagedSearch);
+				purgeExpiredSearches(now);
+			}
+			catch (RuntimeException e) {
+				log.warn("Could not store search {}, so it can only be paged while it is kept in memory", searchId, e);
+			}
+		}
+		
+		getSearches().put(searchId,
+		    new StoredSearch(theList, getFhirVersion(theRequestDetails), estimateSize(theList, definition)));
+		return searchId;
+	}
+	
+	@Override
+	public IBundleProvider retrieveResultList(@Nullable RequestDetails theRequestDetails, @Nonnull String theSearchId) {
+		FhirVersionEnum fhirVersion = getFhirVersion(theRequestDetails);
+		
+		StoredSearch storedSearch = getSearches().getIfPresent(theSearchId);
+		if (storedSearch == null && isDatabaseStore()) {
+			storedSearch = restore(theSearchId);
+			if (storedSearch != null) {
+				getSearches().put(theSearchId, storedSearch);
+			}
+		}
+		
+		// searches can only be paged through using the FHIR version they were made with
+		if (storedSearch == null || (fhirVersion != null && storedSearch.getFhirVersion() != null
+		        && fhirVersion != storedSearch.getFhirVersion())) {
+			return null;
+		}
+		
+		return storedSearch.getBundleProvider();
+	}
+	
+	private StoredSearch restore(String searchId) {
+		FhirPagedSearch pagedSearch;
+		try {
+			pagedSearch = pagedSearchDao.get(searchId);
+		}
+		catch (RuntimeException e) {
+			log.warn("Could not load search {}", searchId, e);
+			return null;
+		}
+		
+		if (pagedSearch == null || pagedSearch.getExpires().before(new Date())) {
+			return null;
+		}
+		
+		SearchQueryDefinition definition;
+		try {
+			definition = DEFINITION_MAPPER.readValue(pagedSearch.getDefinition(), SearchQueryDefinition.class);
+		}
+		catch (IOException e) {
+			log.warn("Could not read the definition of search {}", searchId, e);
+			return null;
+		}
+		
+		IBundleProvider bundleProvider;
+		try {
+			bundleProvider = createBundleProvider(definition);
+		}
+		catch (RuntimeException e) {
+			log.warn("Could not recreate search {}", searchId, e);
+			return null;
+		}
+		
+		return new StoredSearch(bundleProvider, definition.getFhirVersion(), pagedSearch.getDefinition().length);
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private IBundleProvider createBundleProvider(SearchQueryDefinition definition) {
+		IBundleProvider bundleProvider = new SearchQueryBundleProvider(definition.restoreSearchParameterMap(fhirContext),
+		        applicationContext.getBean(definition.getDaoBeanName(), FhirDao.class),
+		        applicationContext.getBean(definition.getTranslatorBeanName(), ToFhirTranslator.class),
+		        globalPropertyService,
+		        applicationContext.getBean(definition.getSearchQueryIncludeBeanName(), SearchQueryInclude.class),
+		        parallelTranslation, new InstantDt(definition.getPublished()), definition.getUuid());
+		
+		if (definition.getFhirVersion() == FhirVersionEnum.DSTU3) {
+			return new SearchQueryBundleProviderR3Wrapper(bundleProvider);
+		}
+		
+		return bundleProvider;
+	}
+	
+	private byte[] writeDefinition(IBundleProvider bundleProvider) {
+		boolean r3 = false;
+		if (bundleProvider instanceof SearchQueryBundleProviderR3Wrapper) {
+			bundleProvider = ((SearchQueryBundleProviderR3Wrapper) bundleProvider).getBundleProvider();
+			r3 = true;
+		}
+		
+		if (!(bundleProvider instanceof SearchQueryBundleProvider)) {
+			return null;
+		}
+		
+		SearchQueryBundleProvider<?, ?> searchQueryBundleProvider = (SearchQueryBundleProvider<?, ?>) bundleProvider;
+		String daoBeanName = getBeanName(FhirDao.class, searchQueryBundleProvider.getDao());
+		String translatorBeanName = getBeanName(ToFhirTranslator.class, searchQueryBundleProvider.getTranslator());
+		String searchQueryIncludeBeanName = getBeanName(SearchQueryInclude.class,
+		    searchQueryBundleProvider.getSearchQueryInclude());
+		if (daoBeanName == null || translatorBeanName == null || searchQueryIncludeBeanName == null) {
+			return null;
+		}
+		
+		SearchQueryDefinition definition = new SearchQueryDefinition();
+		definition.setDaoBeanName(daoBeanName);
+		definition.setTranslatorBeanName(translatorBeanName);
+		definition.setSearchQueryIncludeBeanName(searchQueryIncludeBeanName);
+		definition.setFhirVersion(r3 ? FhirVersionEnum.DSTU3 : FhirVersionEnum.R4);
+		definition.setPublished(searchQueryBundleProvider.getPublished().getValue());
+		definition.setUuid(searchQueryBundleProvider.getUuid());
+		
+		// the search is still kept in memory if it cannot be stored
+		if (!definition.storeSearchParameterMap(fhirContext, searchQueryBundleProvider.getSearchParameterMap())) {
+			log.debug("Search {} uses a parameter that cannot be stored", searchQueryBundleProvider.getUuid());
+			return null;
+		}
+		
+		try {
+			return DEFINITION_MAPPER.writeValueAsBytes(definition);
+		}
+		catch (IOException e) {
+			log.debug("Could not write the definition of search {}", searchQueryBundleProvider.getUuid(), e);
+			return null;
+		}
+	}
+	
+	private String getBeanName(Class<?> type, Object bean) {
+		if (bean == null) {
+			return null;
+		}
+		
+		for (Map.Entry<String, ?> entry : applicationContext.getBeansOfType(type).entrySet()) {
+			if (entry.getValue() == bean) {
+				return entry.getKey();
+			}
+		}
+		
+		return null;
+	}
+	
+	private void purgeExpiredSearches(Date now) {
+		long next = nextPurge.get();
+		if (now.getTime() >= next && nextPurge.compareAndSet(next, now.getTime() + PURGE_INTERVAL)) {
+			int purged = pagedSearchDao.deleteExpired(now);
+			log.debug("Removed {} expired searches", purged);
+		}
+	}
+	
+	private int estimateSize(IBundleProvider bundleProvider, byte[] definition) {
+		if (definition != null) {
+			return definition.length;
+		}
+		
+		// simple providers hold all of their resources in memory
+		if (bundleProvider instanceof SimpleBundleProvider) {
+			Integer size = bundleProvider.size();
+			return size == null ? 0 : (int) Math.min((long) size * ESTIMATED_RESOURCE_SIZE, Integer.MAX_VALUE);
+		}
+		
+		return 0;
+	}
+	
+	private Cache<String, StoredSearch> getSearches() {
+		Cache<String, StoredSearch> result = searches;
+		if (result == null) {
+			synchronized (this) {
+				result = searches;
+				if (result == null) {
+					int maximumSearches = Math.max(1, FhirGlobalPropertyHolder
+					        .getGlobalPropertyAsInteger(FhirConstants.PAGING_MAXIMUM_SEARCHES_PROPERTY, DEFAULT_MAXIMUM_SEARCHES));
+					long memoryBudget = Math.max(1, FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(
+					    FhirConstants.PAGING_MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET_MB)) * 1024L * 1024L;
+					
+					// giving each search at least an equal share of the budget also limits the number of searches kept
+					int minimumWeight = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / maximumSearches));
+					
+					searches = result = CacheBuilder.newBuilder().maximumWeight(memoryBudget)
+					        .<String, StoredSearch> weigher(
+					            (searchId, storedSearch) -> Math.max(storedSearch.getEstimatedSize(), minimumWeight))
+					        .expireAfterWrite(getTtlMinutes(), TimeUnit.MINUTES).build();
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private int getTtlMinutes() {
+		return Math.max(1,
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(FhirConstants.PAGING_TTL_PROPERTY, DEFAULT_TTL_MINUTES));
+	}
+	
+	private boolean isDatabaseStore() {
+		return !"memory".equalsIgnoreCase(
+		    FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.PAGING_STORE_PROPERTY, "database"));
+	}
+	
+	private static FhirVersionEnum getFhirVersion(RequestDetails requestDetails) {
+		if (requestDetails == null || requestDetails.getFhirContext() == null) {
+			return null;
+		}
+		
+		return requestDetails.getFhirContext().getVersion().getVersion();
+	}
+	
+	@Getter
+	@AllArgsConstructor
+	private static class StoredSearch {
+		
+		private final IBundleProvider bundleProvider;
+		
+		private final FhirVersionEnum fhirVersion;
+		
+		private final int estimatedSize;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.model.primitive.InstantDt;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.Getter;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
+import org.openmrs.module.fhir2.api.translators.GroupMemberTranslator;
+import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Bundle provider for the Group $members operation. Pages are read directly from a snapshot of the cohort's member ids,
+ * so fetching a page only requires loading and translating the patients on that page. Unlike
+ * {@link SearchQueryBundleProvider}, it holds the services it uses, so it is only ever kept in memory.
+ */
+public class GroupMemberBundleProvider implements IBundleProvider {
+	
+	private final IdBitmap memberIds;
+	
+	private final GroupMemberTranslator translator;
+	
+	private final FhirGlobalPropertyService globalPropertyService;
+	
+	@Getter
+	private final IPrimitiveType<Date> published;
+	
+	@Getter
+	private final String uuid;
+	
+	private Integer pageSize;
+	
+	public GroupMemberBundleProvider(IdBitmap memberIds, GroupMemberTranslator translator,
+	    FhirGlobalPropertyService globalPropertyService) {
+		this.memberIds = memberIds;
+		this.translator = translator;
+		this.globalPropertyService = globalPropertyService;
+		this.published = InstantDt.withCurrentTime();
+		this.uuid = FhirUtils.newUuid();
+	}
+	
+	@Transactional(readOnly = true)
+	@Override
+	@Nonnull
+	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
+		return BulkToFhirTranslator
+		        .translateAll(translator, memberIds.toList(Math.max(fromIndex, 0), toIndex - Math.max(fromIndex, 0)))
+		        .stream().filter(Objects::nonNull).collect(Collectors.toList());
+	}
+	
+	@Override
+	public Integer preferredPageSize() {
+		if (pageSize == null) {
+			pageSize = globalPropertyService.getGlobalPropertyAsInteger(FhirConstants.OPENMRS_FHIR_DEFAULT_PAGE_SIZE, 10);
+		}
+		
+		return pageSize;
+	}
+	
+	@Override
+	@Nullable
+	public Integer size() {
+		return memberIds.cardinality();
+	}
+}
@@ -19,6 +19,7 @@ import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.openmrs.module.fhir2.api.util.ParallelTranslation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -34,6 +35,9 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 	@Autowired
 	private FhirGlobalPropertyService globalPropertyService;
 	
+	@Autowired
+	private ParallelTranslation parallelTranslation;
+	
 	/**
 	 * Gets query results
 	 *
@@ -53,6 +57,7 @@ public class SearchQuery<T extends OpenmrsObject & Auditable, U extends IBaseRes
 			result.setPreferredPageSize(result.size());
 			return result;
 		}
-		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude);
+		return new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude,
+		        parallelTranslation);
 	}
 }
@@ -22,6 +22,7 @@ import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
@@ -31,21 +32,26 @@ import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.dao.FhirDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
 import org.openmrs.module.fhir2.api.util.FhirUtils;
+import org.openmrs.module.fhir2.api.util.ParallelTranslation;
 import org.springframework.transaction.annotation.Transactional;
 
 public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U extends IBaseResource> implements IBundleProvider, Serializable {
 	
 	private static final long serialVersionUID = 4L;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final FhirDao<T> dao;
 	
 	@Getter
 	private final IPrimitiveType<Date> published;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final SearchParameterMap searchParameterMap;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final ToFhirTranslator<T, U> translator;
 	
 	@Getter
@@ -57,32 +63,87 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	
 	private transient Integer size;
 	
+	@Getter(AccessLevel.PACKAGE)
 	private final SearchQueryInclude<U> searchQueryInclude;
 	
+	// not kept when the provider is serialized, in which case pages are translated on the calling thread
+	private final transient ParallelTranslation parallelTranslation;
+	
 	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
 	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
 	    SearchQueryInclude<U> searchQueryInclude) {
+		this(searchParameterMap, dao, translator, globalPropertyService, searchQueryInclude, null);
+	}
+	
+	public SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao,
+	    ToFhirTranslator<T, U> translator, FhirGlobalPropertyService globalPropertyService,
+	    SearchQueryInclude<U> searchQueryInclude, ParallelTranslation parallelTranslation) {
+		this(searchParameterMap, dao, translator, globalPropertyService, searchQueryInclude, parallelTranslation,
+		        InstantDt.withCurrentTime(), FhirUtils.newUuid());
+	}
+	
+	/**
+	 * Recreates a provider for a search that was started earlier, e.g., one restored by {@link FhirPagingProvider}
+	 */
+	SearchQueryBundleProvider(SearchParameterMap searchParameterMap, FhirDao<T> dao, ToFhirTranslator<T, U> translator,
+	    FhirGlobalPropertyService globalPropertyService, SearchQueryInclude<U> searchQueryInclude,
+	    ParallelTranslation parallelTranslation, IPrimitiveType<Date> published, String uuid) {
 		this.dao = dao;
-		this.published = InstantDt.withCurrentTime();
+		this.published = published;
 		this.searchParameterMap = searchParameterMap;
 		this.translator = translator;
-		this.uuid = FhirUtils.newUuid();
+		this.uuid = uuid;
 		this.globalPropertyService = globalPropertyService;
 		this.searchQueryInclude = searchQueryInclude;
+		this.parallelTranslation = parallelTranslation;
 	}
 	
 	@Transactional(readOnly = true)
 	@Override
 	@Nonnull
 	public List<IBaseResource> getResources(int fromIndex, int toIndex) {
-		searchParameterMap.setFromIndex(fromIndex);
-		searchParameterMap.setToIndex(toIndex);
+		// providers are kept by the paging provider and may be paged through by several requests at once, so each page
+		// is fetched with its own copy of the search parameters rather than by changing the shared ones
+		SearchParameterMap pageParameterMap = searchParameterMap.forPage(fromIndex, toIndex);
+		
+		List<T> searchResults = dao.getSearchResults(pageParameterMap);
+		// only the elements the client asked for with _elements or _summary need to be translated
+		Set<String> elements = pageParameterMap.getElements();
+		List<U> returnedResourceList = (parallelTranslation == null
+		        ? BulkToFhirTranslator.translateAll(translator, searchResults, elements)
+		        : parallelTranslation.translateAll(dao, translator, searchResults, elements)).stream()
+		                .filter(Objects::nonNull).collect(Collectors.toList());
+		
+		Set<IBaseResource> includedResources = searchQueryInclude.getIncludedResources(returnedResourceList,
+		    pageParameterMap);
+		
+		List<IBaseResource> resultList = new ArrayList<>(returnedResourceList);
+		resultList.addAll(includedResources);
+		
+		return resultList;
+	}
+	
+	/**
+	 * Scrolls through every result rather than loading them all at once, so that the OpenMRS objects are not all held in
+	 * memory while a very large search, such as $everything, is translated
+	 */
+	@Transactional(readOnly = true)
+	@Override
+	@Nonnull
+	public List<IBaseResource> getAllResources() {
+		SearchParameterMap allParameterMap = searchParameterMap.copy();
+		Set<String> elements = allParameterMap.getElements();
 		
-		List<U> returnedResourceList = dao.getSearchResults(searchParameterMap).stream().map(translator::toFhirResource)
-		        .filter(Objects::nonNull).collect(Collectors.toList());
+		List<U> returnedResourceList = new ArrayList<>();
+		dao.scrollSearchResults(allParameterMap, result -> {
+			U resource = elements == null ? translator.toFhirResource(result) : translator.toFhirResource(result, elements);
+			if (resource != null) {
+				returnedResourceList.add(resource);
+			}
+		});
 		
 		Set<IBaseResource> includedResources = searchQueryInclude.getIncludedResources(returnedResourceList,
-		    this.searchParameterMap);
+		    allParameterMap);
 		
 		List<IBaseResource> resultList = new ArrayList<>(returnedResourceList);
 		resultList.addAll(includedResources);
@@ -103,7 +164,7 @@ public class SearchQueryBundleProvider<T extends OpenmrsObject & Auditable, U ex
 	@Nullable
 	public Integer size() {
 		if (size == null) {
-			size = dao.getSearchResultsCount(searchParameterMap);
+			size = dao.getSearchResultsCount(searchParameterMap.copy());
 		}
 		return size;
 	}
@@ -0,0 +1,322 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
+import ca.uhn.fhir.model.api.IQueryParameterAnd;
+import ca.uhn.fhir.model.api.IQueryParameterOr;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.param.DateAndListParam;
+import ca.uhn.fhir.rest.param.DateOrListParam;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.HasAndListParam;
+import ca.uhn.fhir.rest.param.HasOrListParam;
+import ca.uhn.fhir.rest.param.HasParam;
+import ca.uhn.fhir.rest.param.NumberAndListParam;
+import ca.uhn.fhir.rest.param.NumberOrListParam;
+import ca.uhn.fhir.rest.param.NumberParam;
+import ca.uhn.fhir.rest.param.QuantityAndListParam;
+import ca.uhn.fhir.rest.param.QuantityOrListParam;
+import ca.uhn.fhir.rest.param.QuantityParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.UriAndListParam;
+import ca.uhn.fhir.rest.param.UriOrListParam;
+import ca.uhn.fhir.rest.param.UriParam;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openmrs.module.fhir2.api.search.param.PropParam;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+
+/**
+ * What {@link FhirPagingProvider} stores to recreate a {@link SearchQueryBundleProvider}: the names of the beans the
+ * search uses and its search parameters. Rather than storing the parameter objects themselves, each parameter is
+ * stored the way it would be written in a FHIR query string, i.e., as its modifier and values, so a stored search only
+ * depends on the query syntax and not on the classes used to search.
+ */
+@Data
+@NoArgsConstructor
+class SearchQueryDefinition {
+	
+	private static final String STRING_TYPE = "String";
+	
+	private static final String INCLUDE_TYPE = "Include";
+	
+	private static final String ITERATE_QUALIFIER = ":iterate";
+	
+	// the search parameter types that can be stored, by the names they are stored under
+	private static final Map<String, Class<? extends Serializable>> PARAMETER_TYPES = Stream
+	        .of(DateAndListParam.class, DateOrListParam.class, DateParam.class, DateRangeParam.class, HasAndListParam.class,
+	            HasOrListParam.class, HasParam.class, NumberAndListParam.class, NumberOrListParam.class, NumberParam.class,
+	            QuantityAndListParam.class, QuantityOrListParam.class, QuantityParam.class, ReferenceAndListParam.class,
+	            ReferenceOrListParam.class, ReferenceParam.class, StringAndListParam.class, StringOrListParam.class,
+	            StringParam.class, TokenAndListParam.class, TokenOrListParam.class, TokenParam.class, UriAndListParam.class,
+	            UriOrListParam.class, UriParam.class)
+	        .collect(Collectors.toMap(Class::getSimpleName, Function.identity()));
+	
+	private String daoBeanName;
+	
+	private String translatorBeanName;
+	
+	private String searchQueryIncludeBeanName;
+	
+	private FhirVersionEnum fhirVersion;
+	
+	private Date published;
+	
+	private String uuid;
+	
+	private int fromIndex;
+	
+	private int toIndex;
+	
+	private List<Sort> sort;
+	
+	private Set<String> elements;
+	
+	private List<Parameter> parameters;
+	
+	/**
+	 * Stores the parameters of a search in this definition
+	 *
+	 * @param fhirContext the context used to write the parameter values
+	 * @param searchParameterMap the parameters of the search
+	 * @return false if the search uses a parameter that cannot be stored, in which case it can only be kept in memory
+	 */
+	boolean storeSearchParameterMap(FhirContext fhirContext, SearchParameterMap searchParameterMap) {
+		fromIndex = searchParameterMap.getFromIndex();
+		toIndex = searchParameterMap.getToIndex();
+		elements = searchParameterMap.getElements();
+		
+		sort = new ArrayList<>();
+		for (SortSpec sortSpec = searchParameterMap.getSortSpec(); sortSpec != null; sortSpec = sortSpec.getChain()) {
+			sort.add(new Sort(sortSpec.getParamName(), sortSpec.getOrder()));
+		}
+		
+		parameters = new ArrayList<>();
+		for (Map.Entry<String, List<PropParam<?>>> entry : searchParameterMap.getParameters()) {
+			for (PropParam<?> propParam : entry.getValue()) {
+				Parameter parameter = toParameter(fhirContext, entry.getKey(), propParam);
+				if (parameter == null) {
+					return false;
+				}
+				
+				parameters.add(parameter);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Recreates the parameters of the stored search
+	 *
+	 * @param fhirContext the context used to read the parameter values
+	 * @return {@link org.openmrs.module.fhir2.api.search.param.SearchParameterMap}
+	 * @throws IllegalArgumentException if a parameter cannot be read
+	 */
+	SearchParameterMap restoreSearchParameterMap(FhirContext fhirContext) {
+		SearchParameterMap searchParameterMap = new SearchParameterMap();
+		searchParameterMap.setFromIndex(fromIndex);
+		searchParameterMap.setToIndex(toIndex);
+		searchParameterMap.setElements(elements);
+		
+		if (sort != null) {
+			for (int i = sort.size() - 1; i >= 0; i--) {
+				searchParameterMap.setSortSpec(
+				    new SortSpec(sort.get(i).getParam(), sort.get(i).getOrder(), searchParameterMap.getSortSpec()));
+			}
+		}
+		
+		if (parameters != null) {
+			for (Parameter parameter : parameters) {
+				searchParameterMap.addParameter(parameter.getHandler(), parameter.getPropertyName(),
+				    toParam(fhirContext, parameter));
+			}
+		}
+		
+		return searchParameterMap;
+	}
+	
+	private static Parameter toParameter(FhirContext fhirContext, String handler, PropParam<?> propParam) {
+		Object param = propParam.getParam();
+		List<Clause> clauses = new ArrayList<>();
+		
+		String type;
+		if (param instanceof String) {
+			type = STRING_TYPE;
+			clauses.add(new Clause(null, Collections.singletonList((String) param)));
+		} else if (param instanceof Set) {
+			type = INCLUDE_TYPE;
+			for (Object include : (Set<?>) param) {
+				if (!(include instanceof Include)) {
+					return null;
+				}
+				
+				clauses.add(new Clause(((Include) include).isRecurse() ? ITERATE_QUALIFIER : null,
+				        Collections.singletonList(((Include) include).getValue())));
+			}
+		} else if (param != null && PARAMETER_TYPES.get(param.getClass().getSimpleName()) == param.getClass()) {
+			type = param.getClass().getSimpleName();
+			if (param instanceof IQueryParameterAnd) {
+				for (IQueryParameterOr<?> or : ((IQueryParameterAnd<?>) param).getValuesAsQueryTokens()) {
+					clauses.add(toClause(fhirContext, or.getValuesAsQueryTokens()));
+				}
+			} else if (param instanceof IQueryParameterOr) {
+				clauses.add(toClause(fhirContext, ((IQueryParameterOr<?>) param).getValuesAsQueryTokens()));
+			} else {
+				clauses.add(toClause(fhirContext, Collections.singletonList((IQueryParameterType) param)));
+			}
+		} else {
+			return null;
+		}
+		
+		return new Parameter(handler, propParam.getPropertyName(), type, clauses);
+	}
+	
+	private static Clause toClause(FhirContext fhirContext, List<? extends IQueryParameterType> params) {
+		String qualifier = null;
+		List<String> values = new ArrayList<>();
+		for (IQueryParameterType param : params) {
+			if (param != null) {
+				// a query string only has one modifier for all of the values of a parameter
+				if (qualifier == null) {
+					qualifier = param.getQueryParameterQualifier();
+				}
+				
+				values.add(param.getValueAsQueryToken(fhirContext));
+			}
+		}
+		
+		return new Clause(qualifier, values);
+	}
+	
+	private static Serializable toParam(FhirContext fhirContext, Parameter parameter) {
+		List<Clause> clauses = parameter.getClauses() == null ? Collections.emptyList() : parameter.getClauses();
+		
+		if (STRING_TYPE.equals(parameter.getType())) {
+			return clauses.isEmpty() || clauses.get(0).getValues().isEmpty() ? "" : clauses.get(0).getValues().get(0);
+		}
+		
+		if (INCLUDE_TYPE.equals(parameter.getType())) {
+			HashSet<Include> includes = new HashSet<>();
+			for (Clause clause : clauses) {
+				for (String value : clause.getValues()) {
+					includes.add(new Include(value, ITERATE_QUALIFIER.equals(clause.getQualifier())));
+				}
+			}
+			
+			return includes;
+		}
+		
+		Class<? extends Serializable> type = PARAMETER_TYPES.get(parameter.getType());
+		if (type == null) {
+			throw new IllegalArgumentException("Unknown search parameter type " + parameter.getType());
+		}
+		
+		Serializable param;
+		try {
+			param = type.getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Could not create search parameter type " + parameter.getType(), e);
+		}
+		
+		if (param instanceof IQueryParameterAnd) {
+			((IQueryParameterAnd<?>) param).setValuesAsQueryTokens(fhirContext, parameter.getHandler(),
+			    clauses.stream().map(SearchQueryDefinition::toQualifiedParamList).collect(Collectors.toList()));
+		} else if (!clauses.isEmpty()) {
+			if (param instanceof IQueryParameterOr) {
+				((IQueryParameterOr<?>) param).setValuesAsQueryTokens(fhirContext, parameter.getHandler(),
+				    toQualifiedParamList(clauses.get(0)));
+			} else {
+				Clause clause = clauses.get(0);
+				((IQueryParameterType) param).setValueAsQueryToken(fhirContext, parameter.getHandler(),
+				    clause.getQualifier(), clause.getValues().isEmpty() ? null : clause.getValues().get(0));
+			}
+		}
+		
+		return param;
+	}
+	
+	private static QualifiedParamList toQualifiedParamList(Clause clause) {
+		QualifiedParamList qualifiedParamList = new QualifiedParamList();
+		qualifiedParamList.setQualifier(clause.getQualifier());
+		qualifiedParamList.addAll(clause.getValues());
+		return qualifiedParamList;
+	}
+	
+	/**
+	 * A search parameter, i.e., one entry of a {@link SearchParameterMap}
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Parameter {
+		
+		private String handler;
+		
+		private String propertyName;
+		
+		private String type;
+		
+		// the parameter in its query string form; each clause is one occurrence of the parameter in the query string
+		private List<Clause> clauses;
+	}
+	
+	/**
+	 * The modifier and comma-separated values of one occurrence of a parameter in a query string
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Clause {
+		
+		private String qualifier;
+		
+		private List<String> values;
+	}
+	
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	static class Sort {
+		
+		private String param;
+		
+		private SortOrderEnum order;
+	}
+}
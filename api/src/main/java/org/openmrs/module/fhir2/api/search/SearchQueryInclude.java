@@ -10,10 +10,12 @@
 package org.openmrs.module.fhir2.api.search;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.model.api.Include;
@@ -58,6 +60,7 @@ import org.openmrs.module.fhir2.api.search.param.MedicationRequestSearchParams;
 import org.openmrs.module.fhir2.api.search.param.ObservationSearchParams;
 import org.openmrs.module.fhir2.api.search.param.PropParam;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.VirtualThreads;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -98,6 +101,9 @@ public class SearchQueryInclude<U extends IBaseResource> {
 	@Autowired
 	private FhirMedicationDispenseService medicationDispenseService;
 	
+	@Autowired
+	private VirtualThreads virtualThreads;
+	
 	@SuppressWarnings("unchecked")
 	public Set<IBaseResource> getIncludedResources(List<U> resourceList, SearchParameterMap theParams) {
 		
@@ -115,74 +121,81 @@ public class SearchQueryInclude<U extends IBaseResource> {
 			revIncludeSet = (HashSet<Include>) revIncludeParamList.get(0).getParam();
 		}
 		
-		Set<IBaseResource> _includeResources = handleInclude(resourceList, includeSet);
-		Set<IBaseResource> _revIncludeResources = handleRevInclude(resourceList, includeSet, revIncludeSet);
+		// each _include and _revinclude is looked up separately, concurrently if virtual threads are enabled
+		List<Callable<Set<IBaseResource>>> tasks = new ArrayList<>();
+		if (CollectionUtils.isNotEmpty(includeSet)) {
+			for (Include includeParam : includeSet) {
+				tasks.add(() -> handleInclude(resourceList, includeParam));
+			}
+		}
+		
+		if (CollectionUtils.isNotEmpty(revIncludeSet)) {
+			List<String> ids = resourceList.stream().map(resource -> resource.getIdElement().getIdPart())
+			        .collect(Collectors.toList());
+			HashSet<Include> recursiveIncludes = getRecursiveIncludes(includeSet);
+			HashSet<Include> recursiveRevIncludes = getRecursiveIncludes(revIncludeSet);
+			for (Include revIncludeParam : revIncludeSet) {
+				// the search parameters are built per task, as the tasks may run concurrently
+				tasks.add(() -> handleRevInclude(toReferenceParams(ids), revIncludeParam, new HashSet<>(recursiveIncludes),
+				    new HashSet<>(recursiveRevIncludes)));
+			}
+		}
 		
 		Set<IBaseResource> resourcesToBeReturned = new HashSet<>();
-		resourcesToBeReturned.addAll(_includeResources);
-		resourcesToBeReturned.addAll(_revIncludeResources);
+		virtualThreads.invokeAll(tasks).forEach(resourcesToBeReturned::addAll);
 		
 		return resourcesToBeReturned;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private Set<IBaseResource> handleRevInclude(List<U> resourceList, HashSet<Include> includeSet,
-	        HashSet<Include> revIncludeSet) {
-		Set<IBaseResource> revIncludedResourcesSet = new HashSet<>();
-		
-		if (CollectionUtils.isEmpty(revIncludeSet)) {
-			return revIncludedResourcesSet;
+	private static ReferenceAndListParam toReferenceParams(List<String> ids) {
+		ReferenceOrListParam params = new ReferenceOrListParam();
+		ids.forEach(id -> params.addOr(new ReferenceParam(id)));
+		return new ReferenceAndListParam().addAnd(params);
+	}
+	
+	private Set<IBaseResource> handleRevInclude(ReferenceAndListParam referenceParams, Include revIncludeParam,
+	        HashSet<Include> recursiveIncludes, HashSet<Include> recursiveRevIncludes) {
+		IBundleProvider bundleProvider = null;
+		switch (revIncludeParam.getParamName()) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				bundleProvider = handleLocationReverseInclude(referenceParams, revIncludeParam.getParamType());
+				break;
+			case FhirConstants.INCLUDE_CONTEXT_PARAM:
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				bundleProvider = handleEncounterReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    recursiveIncludes, recursiveRevIncludes);
+				break;
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				bundleProvider = handleMedicationReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    recursiveIncludes, recursiveRevIncludes);
+				break;
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				bundleProvider = handlePatientReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    recursiveIncludes, recursiveRevIncludes);
+				break;
+			case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
+			case FhirConstants.INCLUDE_RESULT_PARAM:
+			case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
+				bundleProvider = handleObservationReverseInclude(referenceParams, revIncludeParam.getParamType());
+				break;
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+			case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
+				bundleProvider = handlePractitionerReverseInclude(referenceParams, revIncludeParam.getParamType(),
+				    recursiveIncludes, recursiveRevIncludes);
+				break;
+			case FhirConstants.INCLUDE_PRESCRIPTION_PARAMETER:
+				bundleProvider = handlePrescriptionReverseInclude(referenceParams, revIncludeParam.getParamType());
+				break;
 		}
 		
-		ReferenceAndListParam referenceParams = new ReferenceAndListParam();
-		ReferenceOrListParam params = new ReferenceOrListParam();
-		resourceList.forEach(resource -> params.addOr(new ReferenceParam(resource.getIdElement().getIdPart())));
-		referenceParams.addAnd(params);
-		
-		revIncludeSet.forEach(revIncludeParam -> {
-			IBundleProvider bundleProvider = null;
-			switch (revIncludeParam.getParamName()) {
-				case FhirConstants.INCLUDE_PART_OF_PARAM:
-				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					bundleProvider = handleLocationReverseInclude(referenceParams, revIncludeParam.getParamType());
-					break;
-				case FhirConstants.INCLUDE_CONTEXT_PARAM:
-				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					bundleProvider = handleEncounterReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					bundleProvider = handleMedicationReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					bundleProvider = handlePatientReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
-				case FhirConstants.INCLUDE_RESULT_PARAM:
-				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					bundleProvider = handleObservationReverseInclude(referenceParams, revIncludeParam.getParamType());
-					break;
-				case FhirConstants.INCLUDE_REQUESTER_PARAM:
-				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					bundleProvider = handlePractitionerReverseInclude(referenceParams, revIncludeParam.getParamType(),
-					    getRecursiveIncludes(includeSet), getRecursiveIncludes(revIncludeSet));
-					break;
-				case FhirConstants.INCLUDE_PRESCRIPTION_PARAMETER:
-					bundleProvider = handlePrescriptionReverseInclude(referenceParams, revIncludeParam.getParamType());
-					break;
-			}
-			
-			if (bundleProvider != null && !bundleProvider.isEmpty()) {
-				revIncludedResourcesSet.addAll(bundleProvider.getResources(0, -1));
-			}
-		});
+		if (bundleProvider == null || bundleProvider.isEmpty()) {
+			return Collections.emptySet();
+		}
 		
-		return revIncludedResourcesSet;
+		return new HashSet<>(bundleProvider.getAllResources());
 	}
 	
-	@SuppressWarnings("unchecked")
 	public Set<IBaseResource> handleInclude(List<U> resourceList, HashSet<Include> includeSet) {
 		Set<IBaseResource> includedResourcesSet = new HashSet<>();
 		
@@ -190,48 +203,54 @@ public class SearchQueryInclude<U extends IBaseResource> {
 			return includedResourcesSet;
 		}
 		
-		includeSet.forEach(includeParam -> {
-			switch (includeParam.getParamName()) {
-				case FhirConstants.INCLUDE_PART_OF_PARAM:
-					includedResourcesSet.addAll(handleParentLocationInclude((List<Location>) resourceList));
-					break;
-				case FhirConstants.INCLUDE_CONTEXT_PARAM:
-				case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
-					includedResourcesSet.addAll(handleEncounterInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_PATIENT_PARAM:
-					includedResourcesSet.addAll(handlePatientInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
-				case FhirConstants.INCLUDE_RESULT_PARAM:
-				case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
-					includedResourcesSet.addAll(handleObsGroupInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_REQUESTER_PARAM:
-				case FhirConstants.INCLUDE_PERFORMER_PARAM:
-				case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
-					includedResourcesSet.addAll(handleParticipantInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_LOCATION_PARAM:
-					includedResourcesSet.addAll(handleLocationInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_MEDICATION_PARAM:
-					includedResourcesSet.addAll(handleMedicationInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_LINK_PARAM:
-					includedResourcesSet.addAll(handlePersonLinkInclude(resourceList, includeParam.getParamTargetType()));
-					break;
-				case FhirConstants.INCLUDE_BASED_0N_PARAM:
-					includedResourcesSet.addAll(handleServiceRequestInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_OWNER_PARAM:
-					includedResourcesSet.addAll(handlePractitionerInclude(resourceList, includeParam.getParamType()));
-					break;
-				case FhirConstants.INCLUDE_PRESCRIPTION_PARAM:
-					includedResourcesSet.addAll(handleMedicationRequestInclude(resourceList, includeParam.getParamType()));
-					break;
-			}
-		});
+		includeSet.forEach(includeParam -> includedResourcesSet.addAll(handleInclude(resourceList, includeParam)));
+		
+		return includedResourcesSet;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Set<IBaseResource> handleInclude(List<U> resourceList, Include includeParam) {
+		Set<IBaseResource> includedResourcesSet = new HashSet<>();
+		switch (includeParam.getParamName()) {
+			case FhirConstants.INCLUDE_PART_OF_PARAM:
+				includedResourcesSet.addAll(handleParentLocationInclude((List<Location>) resourceList));
+				break;
+			case FhirConstants.INCLUDE_CONTEXT_PARAM:
+			case FhirConstants.INCLUDE_ENCOUNTER_PARAM:
+				includedResourcesSet.addAll(handleEncounterInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_PATIENT_PARAM:
+				includedResourcesSet.addAll(handlePatientInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_HAS_MEMBER_PARAM:
+			case FhirConstants.INCLUDE_RESULT_PARAM:
+			case FhirConstants.INCLUDE_RELATED_TYPE_PARAM:
+				includedResourcesSet.addAll(handleObsGroupInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_REQUESTER_PARAM:
+			case FhirConstants.INCLUDE_PERFORMER_PARAM:
+			case FhirConstants.INCLUDE_PARTICIPANT_PARAM:
+				includedResourcesSet.addAll(handleParticipantInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_LOCATION_PARAM:
+				includedResourcesSet.addAll(handleLocationInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_MEDICATION_PARAM:
+				includedResourcesSet.addAll(handleMedicationInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_LINK_PARAM:
+				includedResourcesSet.addAll(handlePersonLinkInclude(resourceList, includeParam.getParamTargetType()));
+				break;
+			case FhirConstants.INCLUDE_BASED_0N_PARAM:
+				includedResourcesSet.addAll(handleServiceRequestInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_OWNER_PARAM:
+				includedResourcesSet.addAll(handlePractitionerInclude(resourceList, includeParam.getParamType()));
+				break;
+			case FhirConstants.INCLUDE_PRESCRIPTION_PARAM:
+				includedResourcesSet.addAll(handleMedicationRequestInclude(resourceList, includeParam.getParamType()));
+				break;
+		}
 		
 		return includedResourcesSet;
 	}
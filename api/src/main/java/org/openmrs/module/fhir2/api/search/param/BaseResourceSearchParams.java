@@ -15,11 +15,12 @@ import java.util.HashSet;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.RequestedElements;
 
 /**
  * Class containing shared search (and search result) parameters that apply to all resources See
@@ -28,7 +29,6 @@ import org.openmrs.module.fhir2.FhirConstants;
  */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public abstract class BaseResourceSearchParams implements Serializable {
 	
 	protected TokenAndListParam id;
@@ -41,11 +41,42 @@ public abstract class BaseResourceSearchParams implements Serializable {
 	
 	protected HashSet<Include> revIncludes;
 	
+	/**
+	 * The <a href="https://www.hl7.org/fhir/search.html#content">_content</a> parameter, only set by resources
+	 * that support full-text search
+	 */
+	protected StringAndListParam content;
+	
+	/**
+	 * The <a href="https://www.hl7.org/fhir/search.html#text">_text</a> parameter, only set by resources that
+	 * support full-text search
+	 */
+	protected StringAndListParam text;
+	
+	public BaseResourceSearchParams(TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
+	    HashSet<Include> includes, HashSet<Include> revIncludes) {
+		this(id, lastUpdated, sort, includes, revIncludes, null, null);
+	}
+	
+	public BaseResourceSearchParams(TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
+	    HashSet<Include> includes, HashSet<Include> revIncludes, StringAndListParam content, StringAndListParam text) {
+		this.id = id;
+		this.lastUpdated = lastUpdated;
+		this.sort = sort;
+		this.includes = includes;
+		this.revIncludes = revIncludes;
+		this.content = content;
+		this.text = text;
+	}
+	
 	protected final SearchParameterMap baseSearchParameterMap() {
 		return new SearchParameterMap().addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.ID_PROPERTY, getId())
 		        .addParameter(FhirConstants.COMMON_SEARCH_HANDLER, FhirConstants.LAST_UPDATED_PROPERTY, getLastUpdated())
 		        .addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, getIncludes())
-		        .addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, getRevIncludes()).setSortSpec(getSort())
+		        .addParameter(FhirConstants.REVERSE_INCLUDE_SEARCH_HANDLER, getRevIncludes())
+		        .addParameter(FhirConstants.FULL_TEXT_SEARCH_HANDLER, FhirConstants.CONTENT_PROPERTY, getContent())
+		        .addParameter(FhirConstants.FULL_TEXT_SEARCH_HANDLER, FhirConstants.TEXT_PROPERTY, getText())
+		        .setSortSpec(getSort()).setElements(RequestedElements.get())
 		        .addParameter(FhirConstants.EXACT_TOTAL_SEARCH_PARAMETER, Boolean.FALSE);
 	}
 	
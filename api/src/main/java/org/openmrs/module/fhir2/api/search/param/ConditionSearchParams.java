@@ -16,6 +16,7 @@ import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import lombok.Builder;
 import lombok.Data;
@@ -44,9 +45,9 @@ public class ConditionSearchParams extends BaseResourceSearchParams {
 	public ConditionSearchParams(ReferenceAndListParam patientParam, TokenAndListParam code,
 	    TokenAndListParam clinicalStatus, DateRangeParam onsetDate, QuantityAndListParam onsetAge,
 	    DateRangeParam recordedDate, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
-	    HashSet<Include> includes) {
+	    HashSet<Include> includes, StringAndListParam content, StringAndListParam text) {
 		
-		super(id, lastUpdated, sort, includes, null);
+		super(id, lastUpdated, sort, includes, null, content, text);
 		
 		this.patientParam = patientParam;
 		this.code = code;
@@ -56,6 +57,14 @@ public class ConditionSearchParams extends BaseResourceSearchParams {
 		this.recordedDate = recordedDate;
 	}
 	
+	public ConditionSearchParams(ReferenceAndListParam patientParam, TokenAndListParam code,
+	    TokenAndListParam clinicalStatus, DateRangeParam onsetDate, QuantityAndListParam onsetAge,
+	    DateRangeParam recordedDate, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
+	    HashSet<Include> includes) {
+		this(patientParam, code, clinicalStatus, onsetDate, onsetAge, recordedDate, id, lastUpdated, sort, includes, null,
+		        null);
+	}
+	
 	@Override
 	public SearchParameterMap toSearchParameterMap() {
 		return baseSearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, getPatientParam())
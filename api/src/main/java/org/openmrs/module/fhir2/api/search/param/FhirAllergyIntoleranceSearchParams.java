@@ -15,6 +15,7 @@ import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import lombok.Builder;
 import lombok.Data;
@@ -43,9 +44,9 @@ public class FhirAllergyIntoleranceSearchParams extends BaseResourceSearchParams
 	public FhirAllergyIntoleranceSearchParams(ReferenceAndListParam patientReference, TokenAndListParam category,
 	    TokenAndListParam allergen, TokenAndListParam severity, TokenAndListParam manifestationCode,
 	    TokenAndListParam clinicalStatus, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
-	    HashSet<Include> includes) {
+	    HashSet<Include> includes, StringAndListParam content, StringAndListParam text) {
 		
-		super(id, lastUpdated, sort, includes, null);
+		super(id, lastUpdated, sort, includes, null, content, text);
 		
 		this.patientReference = patientReference;
 		this.category = category;
@@ -55,6 +56,14 @@ public class FhirAllergyIntoleranceSearchParams extends BaseResourceSearchParams
 		this.clinicalStatus = clinicalStatus;
 	}
 	
+	public FhirAllergyIntoleranceSearchParams(ReferenceAndListParam patientReference, TokenAndListParam category,
+	    TokenAndListParam allergen, TokenAndListParam severity, TokenAndListParam manifestationCode,
+	    TokenAndListParam clinicalStatus, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
+	    HashSet<Include> includes) {
+		this(patientReference, category, allergen, severity, manifestationCode, clinicalStatus, id, lastUpdated, sort,
+		        includes, null, null);
+	}
+	
 	@Override
 	public SearchParameterMap toSearchParameterMap() {
 		return baseSearchParameterMap().addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, getPatientReference())
@@ -54,9 +54,9 @@ public class ObservationSearchParams extends BaseResourceSearchParams {
 	    ReferenceAndListParam hasMemberReference, TokenAndListParam valueConcept, DateRangeParam valueDateParam,
 	    QuantityAndListParam valueQuantityParam, StringAndListParam valueStringParam, DateRangeParam date,
 	    TokenAndListParam code, TokenAndListParam category, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
-	    HashSet<Include> includes, HashSet<Include> revIncludes) {
+	    HashSet<Include> includes, HashSet<Include> revIncludes, StringAndListParam content, StringAndListParam text) {
 		
-		super(id, lastUpdated, sort, includes, revIncludes);
+		super(id, lastUpdated, sort, includes, revIncludes, content, text);
 		
 		this.encounter = encounterReference;
 		this.patient = patientReference;
@@ -70,6 +70,15 @@ public class ObservationSearchParams extends BaseResourceSearchParams {
 		this.category = category;
 	}
 	
+	public ObservationSearchParams(ReferenceAndListParam encounterReference, ReferenceAndListParam patientReference,
+	    ReferenceAndListParam hasMemberReference, TokenAndListParam valueConcept, DateRangeParam valueDateParam,
+	    QuantityAndListParam valueQuantityParam, StringAndListParam valueStringParam, DateRangeParam date,
+	    TokenAndListParam code, TokenAndListParam category, TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort,
+	    HashSet<Include> includes, HashSet<Include> revIncludes) {
+		this(encounterReference, patientReference, hasMemberReference, valueConcept, valueDateParam, valueQuantityParam,
+		        valueStringParam, date, code, category, id, lastUpdated, sort, includes, revIncludes, null, null);
+	}
+	
 	@Override
 	public SearchParameterMap toSearchParameterMap() {
 		return baseSearchParameterMap().addParameter(FhirConstants.ENCOUNTER_REFERENCE_SEARCH_HANDLER, getEncounter())
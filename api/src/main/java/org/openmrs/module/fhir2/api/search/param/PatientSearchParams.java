@@ -34,6 +34,8 @@ public class PatientSearchParams extends BaseResourceSearchParams {
 	
 	private StringAndListParam family;
 	
+	private StringAndListParam phonetic;
+	
 	private TokenAndListParam identifier;
 	
 	private TokenAndListParam gender;
@@ -54,18 +56,28 @@ public class PatientSearchParams extends BaseResourceSearchParams {
 	
 	private HasAndListParam hasAndListParam;
 	
-	@Builder
 	public PatientSearchParams(StringAndListParam name, StringAndListParam given, StringAndListParam family,
 	    TokenAndListParam identifier, TokenAndListParam gender, DateRangeParam birthDate, DateRangeParam deathDate,
 	    TokenAndListParam deceased, StringAndListParam city, StringAndListParam state, StringAndListParam postalCode,
 	    StringAndListParam country, TokenAndListParam id, HasAndListParam hasAndListParam, DateRangeParam lastUpdated,
 	    SortSpec sort, HashSet<Include> revIncludes) {
+		this(name, given, family, identifier, gender, birthDate, deathDate, deceased, city, state, postalCode, country, id,
+		    hasAndListParam, lastUpdated, sort, revIncludes, null);
+	}
+	
+	@Builder
+	public PatientSearchParams(StringAndListParam name, StringAndListParam given, StringAndListParam family,
+	    TokenAndListParam identifier, TokenAndListParam gender, DateRangeParam birthDate, DateRangeParam deathDate,
+	    TokenAndListParam deceased, StringAndListParam city, StringAndListParam state, StringAndListParam postalCode,
+	    StringAndListParam country, TokenAndListParam id, HasAndListParam hasAndListParam, DateRangeParam lastUpdated,
+	    SortSpec sort, HashSet<Include> revIncludes, StringAndListParam phonetic) {
 		
 		super(id, lastUpdated, sort, null, revIncludes);
 		
 		this.name = name;
 		this.given = given;
 		this.family = family;
+		this.phonetic = phonetic;
 		this.identifier = identifier;
 		this.gender = gender;
 		this.birthDate = birthDate;
@@ -84,6 +96,7 @@ public class PatientSearchParams extends BaseResourceSearchParams {
 		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY, getName())
 		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY, getGiven())
 		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.FAMILY_PROPERTY, getFamily())
+		        .addParameter(FhirConstants.PHONETIC_SEARCH_HANDLER, getPhonetic())
 		        .addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER, getIdentifier())
 		        .addParameter(FhirConstants.GENDER_SEARCH_HANDLER, FhirConstants.GENDER_PROPERTY, getGender())
 		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, FhirConstants.BIRTHDATE_PROPERTY, getBirthDate())
@@ -13,6 +13,7 @@ import javax.annotation.Nonnull;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +44,14 @@ public class SearchParameterMap implements Serializable {
 	@Setter
 	private int toIndex = Integer.MAX_VALUE;
 	
+	/**
+	 * The top-level elements of the resources requested by the client or null if the whole resources are wanted
+	 *
+	 * @see org.openmrs.module.fhir2.api.util.RequestedElements
+	 */
+	@Getter
+	private HashSet<String> elements;
+	
 	private final Map<String, List<PropParam<?>>> params = new LinkedCaseInsensitiveMap<>();
 	
 	/**
@@ -105,4 +114,44 @@ public class SearchParameterMap implements Serializable {
 		this.sortSpec = sortSpec;
 		return this;
 	}
+	
+	/**
+	 * Sets the top-level elements of the resources requested by the client, so that the elements left out of the
+	 * response need not be loaded or translated
+	 *
+	 * @param elements the names of the requested elements or null if the whole resources are wanted
+	 * @return {@link org.openmrs.module.fhir2.api.search.param.SearchParameterMap}
+	 */
+	public SearchParameterMap setElements(Set<String> elements) {
+		this.elements = elements == null ? null : new HashSet<>(elements);
+		return this;
+	}
+	
+	/**
+	 * Creates a copy of this map with its own parameter lists, so parameters added to the copy while searching are not
+	 * added to this map
+	 *
+	 * @return {@link org.openmrs.module.fhir2.api.search.param.SearchParameterMap}
+	 */
+	public SearchParameterMap copy() {
+		return forPage(fromIndex, toIndex);
+	}
+	
+	/**
+	 * Creates a copy of this map for fetching a single page of results. As the page bounds belong to the copy, several
+	 * pages of the same search can be fetched at the same time.
+	 *
+	 * @param fromIndex the index of the first result in the page
+	 * @param toIndex the index after the last result in the page
+	 * @return {@link org.openmrs.module.fhir2.api.search.param.SearchParameterMap}
+	 */
+	public SearchParameterMap forPage(int fromIndex, int toIndex) {
+		SearchParameterMap page = new SearchParameterMap();
+		page.sortSpec = sortSpec;
+		page.fromIndex = fromIndex;
+		page.toIndex = toIndex;
+		page.elements = elements;
+		params.forEach((key, value) -> page.params.put(key, new ArrayList<>(value)));
+		return page;
+	}
 }
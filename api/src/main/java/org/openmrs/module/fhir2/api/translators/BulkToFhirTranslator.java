@@ -0,0 +1,84 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.translators;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link ToFhirTranslator} that can translate a page of OpenMRS data at once, looking up whatever the translation
+ * needs for the whole page together rather than once per element
+ *
+ * @param <T> OpenMRS data type
+ * @param <U> FHIR resource type
+ */
+public interface BulkToFhirTranslator<T, U> extends ToFhirTranslator<T, U> {
+	
+	/**
+	 * Maps a page of OpenMRS data elements to FHIR resources
+	 *
+	 * @param data the OpenMRS data elements to translate
+	 * @return the corresponding FHIR resources, in the same order as the data elements
+	 */
+	List<U> toFhirResources(@Nonnull List<? extends T> data);
+	
+	/**
+	 * Maps a page of OpenMRS data elements to FHIR resources of which only some top-level elements will be used
+	 *
+	 * @param data the OpenMRS data elements to translate
+	 * @param elements the names of the requested top-level elements or null if the whole resources are wanted
+	 * @return the corresponding FHIR resources, in the same order as the data elements
+	 * @see ToFhirTranslator#toFhirResource(Object, Set)
+	 */
+	default List<U> toFhirResources(@Nonnull List<? extends T> data, @Nullable Set<String> elements) {
+		return toFhirResources(data);
+	}
+	
+	/**
+	 * Maps a page of OpenMRS data elements to FHIR resources, using {@link #toFhirResources(List)} if the translator
+	 * supports it and translating each element in turn otherwise
+	 *
+	 * @param translator the translator to use
+	 * @param data the OpenMRS data elements to translate
+	 * @return the corresponding FHIR resources, in the same order as the data elements
+	 */
+	static <T, U> List<U> translateAll(@Nonnull ToFhirTranslator<T, U> translator, @Nonnull List<? extends T> data) {
+		return translateAll(translator, data, null);
+	}
+	
+	/**
+	 * Maps a page of OpenMRS data elements to FHIR resources of which only some top-level elements will be used, using
+	 * {@link #toFhirResources(List, Set)} if the translator supports it and translating each element in turn otherwise
+	 *
+	 * @param translator the translator to use
+	 * @param data the OpenMRS data elements to translate
+	 * @param elements the names of the requested top-level elements or null if the whole resources are wanted
+	 * @return the corresponding FHIR resources, in the same order as the data elements
+	 */
+	@SuppressWarnings("unchecked")
+	static <T, U> List<U> translateAll(@Nonnull ToFhirTranslator<T, U> translator, @Nonnull List<? extends T> data,
+	        @Nullable Set<String> elements) {
+		if (translator instanceof BulkToFhirTranslator) {
+			BulkToFhirTranslator<T, U> bulkTranslator = (BulkToFhirTranslator<T, U>) translator;
+			return elements == null ? bulkTranslator.toFhirResources(data) : bulkTranslator.toFhirResources(data, elements);
+		}
+		
+		List<U> resources = new ArrayList<>(data.size());
+		for (T element : data) {
+			resources.add(elements == null ? translator.toFhirResource(element) : translator.toFhirResource(element, elements));
+		}
+		
+		return resources;
+	}
+}
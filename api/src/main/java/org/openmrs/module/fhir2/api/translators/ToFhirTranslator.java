@@ -10,6 +10,9 @@
 package org.openmrs.module.fhir2.api.translators;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.Set;
 
 /**
  * Generic interface for a translator between OpenMRS data and FHIR resources
@@ -26,4 +29,18 @@ public interface ToFhirTranslator<T, U> extends FhirTranslator {
 	 * @return the corresponding FHIR resource
 	 */
 	U toFhirResource(@Nonnull T data);
+	
+	/**
+	 * Maps an OpenMRS data element to a FHIR resource of which only some top-level elements will be used. Translators
+	 * may leave out the elements that are not requested when they are costly to translate; by default the whole
+	 * resource is translated.
+	 *
+	 * @param data the OpenMRS data element to translate
+	 * @param elements the names of the requested top-level elements or null if the whole resource is wanted
+	 * @return the corresponding FHIR resource
+	 * @see org.openmrs.module.fhir2.api.util.RequestedElements
+	 */
+	default U toFhirResource(@Nonnull T data, @Nullable Set<String> elements) {
+		return toFhirResource(data);
+	}
 }
@@ -11,10 +11,14 @@ package org.openmrs.module.fhir2.api.translators.impl;
 
 import javax.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import lombok.AccessLevel;
 import lombok.Setter;
@@ -28,6 +32,7 @@ import org.openmrs.ConceptReferenceTerm;
 import org.openmrs.ConceptSource;
 import org.openmrs.module.fhir2.api.FhirConceptService;
 import org.openmrs.module.fhir2.api.FhirConceptSourceService;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -35,7 +40,7 @@ import org.springframework.stereotype.Component;
 @Slf4j
 @Component
 @Setter(AccessLevel.PACKAGE)
-public class ConceptTranslatorImpl implements ConceptTranslator {
+public class ConceptTranslatorImpl implements ConceptTranslator, BulkToFhirTranslator<Concept, CodeableConcept> {
 	
 	@Autowired
 	private FhirConceptService conceptService;
@@ -45,6 +50,39 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 	
 	@Override
 	public CodeableConcept toFhirResource(@Nonnull Concept concept) {
+		return toFhirResource(concept, conceptSourceService::getUrlForConceptSource);
+	}
+	
+	@Override
+	public List<CodeableConcept> toFhirResources(@Nonnull List<? extends Concept> concepts) {
+		// the urls for every concept source used by the page are looked up together
+		Set<ConceptSource> conceptSources = new HashSet<>();
+		for (Concept concept : concepts) {
+			if (concept != null) {
+				for (ConceptMap mapping : concept.getConceptMappings()) {
+					if (mapping.getConceptMapType() != null && mapping.getConceptReferenceTerm() != null
+					        && mapping.getConceptReferenceTerm().getConceptSource() != null) {
+						conceptSources.add(mapping.getConceptReferenceTerm().getConceptSource());
+					}
+				}
+			}
+		}
+		
+		Map<ConceptSource, String> urls = conceptSources.isEmpty() ? new HashMap<>()
+		        : conceptSourceService.getUrlsForConceptSources(conceptSources);
+		Function<ConceptSource, String> urlLookup = conceptSource -> urls.containsKey(conceptSource)
+		        ? urls.get(conceptSource)
+		        : conceptSourceService.getUrlForConceptSource(conceptSource);
+		
+		List<CodeableConcept> codeableConcepts = new ArrayList<>(concepts.size());
+		for (Concept concept : concepts) {
+			codeableConcepts.add(toFhirResource(concept, urlLookup));
+		}
+		
+		return codeableConcepts;
+	}
+	
+	private CodeableConcept toFhirResource(Concept concept, Function<ConceptSource, String> urlLookup) {
 		if (concept == null) {
 			return null;
 		}
@@ -60,7 +98,7 @@ public class ConceptTranslatorImpl implements ConceptTranslator {
 				boolean sameAs = mapType.getUuid() != null && mapType.getUuid().equals(ConceptMapType.SAME_AS_MAP_TYPE_UUID);
 				sameAs = sameAs || (mapType.getName() != null && mapType.getName().equalsIgnoreCase("SAME-AS"));
 				ConceptReferenceTerm crt = mapping.getConceptReferenceTerm();
-				String sourceUrl = conceptSourceService.getUrlForConceptSource(crt.getConceptSource());
+				String sourceUrl = urlLookup.apply(crt.getConceptSource());
 				if (sourceUrl != null) {
 					if (sameAs) {
 						addSystemToCodeMap(systemUrlToCodeMap, sourceUrl, "SAME-AS", crt.getCode());
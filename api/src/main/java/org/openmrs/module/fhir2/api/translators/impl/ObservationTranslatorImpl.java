@@ -13,15 +13,24 @@ import static org.apache.commons.lang3.Validate.notNull;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getLastUpdated;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getVersionId;
 import static org.openmrs.module.fhir2.api.translators.impl.ReferenceHandlingTranslator.createLocationReferenceByUuid;
+import static org.openmrs.module.fhir2.api.util.RequestedElements.isRequested;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import lombok.AccessLevel;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.proxy.HibernateProxy;
+import org.hl7.fhir.r4.model.CodeableConcept;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Reference;
 import org.openmrs.Concept;
@@ -32,6 +41,8 @@ import org.openmrs.Patient;
 import org.openmrs.Person;
 import org.openmrs.api.db.hibernate.HibernateUtil;
 import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.annotations.ThreadSafeTranslator;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
 import org.openmrs.module.fhir2.api.translators.ConceptTranslator;
 import org.openmrs.module.fhir2.api.translators.EncounterReferenceTranslator;
 import org.openmrs.module.fhir2.api.translators.ObservationBasedOnReferenceTranslator;
@@ -48,8 +59,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
+@ThreadSafeTranslator
 @Setter(AccessLevel.PACKAGE)
-public class ObservationTranslatorImpl implements ObservationTranslator {
+public class ObservationTranslatorImpl implements ObservationTranslator, BulkToFhirTranslator<Obs, Observation> {
 	
 	@Autowired
 	private ObservationStatusTranslator observationStatusTranslator;
@@ -86,16 +98,65 @@ public class ObservationTranslatorImpl implements ObservationTranslator {
 	
 	@Override
 	public Observation toFhirResource(@Nonnull Obs observation) {
+		return toFhirResource(observation, null);
+	}
+	
+	@Override
+	public Observation toFhirResource(@Nonnull Obs observation, @Nullable Set<String> elements) {
+		return toFhirResource(observation, conceptTranslator::toFhirResource, elements);
+	}
+	
+	@Override
+	public List<Observation> toFhirResources(@Nonnull List<? extends Obs> observations) {
+		return toFhirResources(observations, null);
+	}
+	
+	@Override
+	public List<Observation> toFhirResources(@Nonnull List<? extends Obs> observations, @Nullable Set<String> elements) {
+		// obs on the same page commonly share concepts, so each distinct concept is only translated once
+		Map<Concept, Integer> conceptIndexes = new IdentityHashMap<>();
+		List<Concept> concepts = new ArrayList<>();
+		for (Obs observation : observations) {
+			if (observation != null && observation.getConcept() != null
+			        && !conceptIndexes.containsKey(observation.getConcept())) {
+				conceptIndexes.put(observation.getConcept(), concepts.size());
+				concepts.add(observation.getConcept());
+			}
+		}
+		
+		List<CodeableConcept> codes = BulkToFhirTranslator.translateAll(conceptTranslator, concepts);
+		Function<Concept, CodeableConcept> codeLookup = concept -> {
+			Integer index = conceptIndexes.get(concept);
+			if (index == null || codes.get(index) == null) {
+				return conceptTranslator.toFhirResource(concept);
+			}
+			
+			// each resource gets its own copy, as resources may be modified after translation
+			return codes.get(index).copy();
+		};
+		
+		List<Observation> resources = new ArrayList<>(observations.size());
+		for (Obs observation : observations) {
+			resources.add(toFhirResource(observation, codeLookup, elements));
+		}
+		
+		return resources;
+	}
+	
+	private Observation toFhirResource(Obs observation, Function<Concept, CodeableConcept> codeLookup,
+	        Set<String> elements) {
 		notNull(observation, "The Obs object should not be null");
 		
 		Observation obs = new Observation();
 		obs.setId(observation.getUuid());
 		obs.setStatus(observationStatusTranslator.toFhirResource(observation));
 		
-		obs.setEncounter(encounterReferenceTranslator.toFhirResource(observation.getEncounter()));
+		if (isRequested(elements, "encounter")) {
+			obs.setEncounter(encounterReferenceTranslator.toFhirResource(observation.getEncounter()));
+		}
 		
 		Person obsPerson = observation.getPerson();
-		if (obsPerson != null) {
+		if (isRequested(elements, "subject") && obsPerson != null) {
 			if (obsPerson instanceof HibernateProxy) {
 				obsPerson = HibernateUtil.getRealObjectFromProxy(obsPerson);
 			}
@@ -105,10 +166,12 @@ public class ObservationTranslatorImpl implements ObservationTranslator {
 			}
 		}
 		
-		obs.setCode(conceptTranslator.toFhirResource(observation.getConcept()));
-		obs.addCategory(categoryTranslator.toFhirResource(observation.getConcept()));
+		obs.setCode(codeLookup.apply(observation.getConcept()));
+		if (isRequested(elements, "category")) {
+			obs.addCategory(categoryTranslator.toFhirResource(observation.getConcept()));
+		}
 		
-		if (observation.isObsGrouping()) {
+		if (isRequested(elements, "hasMember") && observation.isObsGrouping()) {
 			for (Obs groupObs : observation.getGroupMembers()) {
 				if (!groupObs.getVoided()) {
 					obs.addHasMember(observationReferenceTranslator.toFhirResource(groupObs));
@@ -116,11 +179,15 @@ public class ObservationTranslatorImpl implements ObservationTranslator {
 			}
 		}
 		
-		obs.setValue(observationValueTranslator.toFhirResource(observation));
+		if (isRequested(elements, "value")) {
+			obs.setValue(observationValueTranslator.toFhirResource(observation));
+		}
 		
-		obs.addInterpretation(interpretationTranslator.toFhirResource(observation));
+		if (isRequested(elements, "interpretation")) {
+			obs.addInterpretation(interpretationTranslator.toFhirResource(observation));
+		}
 		
-		if (observation.getValueNumeric() != null) {
+		if (observation.getValueNumeric() != null && isRequested(elements, "referenceRange")) {
 			Concept concept = observation.getConcept();
 			if (concept instanceof ConceptNumeric) {
 				obs.setReferenceRange(referenceRangeTranslator.toFhirResource((ConceptNumeric) concept));
@@ -133,8 +200,14 @@ public class ObservationTranslatorImpl implements ObservationTranslator {
 		}
 		
 		obs.setIssued(observation.getDateCreated());
-		obs.setEffective(datetimeTranslator.toFhirResource(observation));
-		obs.addBasedOn(basedOnReferenceTranslator.toFhirResource(observation.getOrder()));
+		
+		if (isRequested(elements, "effective")) {
+			obs.setEffective(datetimeTranslator.toFhirResource(observation));
+		}
+		
+		if (isRequested(elements, "basedOn")) {
+			obs.addBasedOn(basedOnReferenceTranslator.toFhirResource(observation.getOrder()));
+		}
 		
 		obs.getMeta().setLastUpdated(getLastUpdated(observation));
 		obs.getMeta().setVersionId(getVersionId(observation));
@@ -12,12 +12,15 @@ package org.openmrs.module.fhir2.api.translators.impl;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getLastUpdated;
 import static org.openmrs.module.fhir2.api.translators.impl.FhirTranslatorUtils.getVersionId;
+import static org.openmrs.module.fhir2.api.util.RequestedElements.isRequested;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import lombok.AccessLevel;
@@ -78,25 +81,36 @@ public class PatientTranslatorImpl implements PatientTranslator {
 	
 	@Override
 	public Patient toFhirResource(@Nonnull org.openmrs.Patient openmrsPatient) {
+		return toFhirResource(openmrsPatient, null);
+	}
+	
+	@Override
+	public Patient toFhirResource(@Nonnull org.openmrs.Patient openmrsPatient, @Nullable Set<String> elements) {
 		notNull(openmrsPatient, "The Openmrs Patient object should not be null");
 		
 		Patient patient = new Patient();
 		patient.setId(openmrsPatient.getUuid());
 		patient.setActive(!openmrsPatient.getVoided());
 		
-		for (PatientIdentifier identifier : openmrsPatient.getActiveIdentifiers()) {
-			patient.addIdentifier(identifierTranslator.toFhirResource(identifier));
+		if (isRequested(elements, "identifier")) {
+			for (PatientIdentifier identifier : openmrsPatient.getActiveIdentifiers()) {
+				patient.addIdentifier(identifierTranslator.toFhirResource(identifier));
+			}
 		}
 		
-		for (PersonName name : openmrsPatient.getNames()) {
-			patient.addName(nameTranslator.toFhirResource(name));
+		if (isRequested(elements, "name")) {
+			for (PersonName name : openmrsPatient.getNames()) {
+				patient.addName(nameTranslator.toFhirResource(name));
+			}
 		}
 		
-		if (openmrsPatient.getGender() != null) {
+		if (openmrsPatient.getGender() != null && isRequested(elements, "gender")) {
 			patient.setGender(genderTranslator.toFhirResource(openmrsPatient.getGender()));
 		}
 		
-		patient.setBirthDateElement(birthDateTranslator.toFhirResource(openmrsPatient));
+		if (isRequested(elements, "birthDate")) {
+			patient.setBirthDateElement(birthDateTranslator.toFhirResource(openmrsPatient));
+		}
 		
 		if (openmrsPatient.getDead()) {
 			if (openmrsPatient.getDeathDate() != null) {
@@ -108,11 +122,16 @@ public class PatientTranslatorImpl implements PatientTranslator {
 			patient.setDeceased(new BooleanType(false));
 		}
 		
-		for (PersonAddress address : openmrsPatient.getAddresses()) {
-			patient.addAddress(addressTranslator.toFhirResource(address));
+		if (isRequested(elements, "address")) {
+			for (PersonAddress address : openmrsPatient.getAddresses()) {
+				patient.addAddress(addressTranslator.toFhirResource(address));
+			}
 		}
 		
-		patient.setTelecom(getPatientContactDetails(openmrsPatient));
+		// the telecom needs a query for the patient's contact attributes of its own
+		if (isRequested(elements, "telecom")) {
+			patient.setTelecom(getPatientContactDetails(openmrsPatient));
+		}
 		patient.getMeta().setLastUpdated(getLastUpdated(openmrsPatient));
 		patient.getMeta().setVersionId(getVersionId(openmrsPatient));
 		
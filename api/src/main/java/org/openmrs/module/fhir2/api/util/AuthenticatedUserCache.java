@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Remembers which user a Basic Authorization header was last successfully authenticated as, so that clients sending
+ * their credentials with every request only pay for the password hash verification once per time-to-live set by the
+ * {@link org.openmrs.module.fhir2.FhirConstants#AUTHENTICATION_CACHE_TTL_PROPERTY} global property. Headers are only
+ * stored as a keyed hash whose key never leaves this JVM.
+ * {@link org.openmrs.module.fhir2.api.dao.impl.AuthenticatedUserCacheInterceptor} evicts the entries of a user whose
+ * password, username or retired state changes in this JVM.
+ */
+public class AuthenticatedUserCache {
+	
+	private AuthenticatedUserCache() {
+	}
+	
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+	
+	private static final SecretKeySpec key = newKey();
+	
+	private static final Object lock = new Object();
+	
+	// incremented by every eviction so that an authentication that was in progress when it happened is not cached
+	private static long generation = 0;
+	
+	private static volatile int ttlSeconds = -1;
+	
+	private static volatile Cache<String, Integer> userIds = newCache(0);
+	
+	/**
+	 * @return a value to pass to {@link #put(String, Integer, long, int)} once the header has been authenticated
+	 */
+	public static long getGeneration() {
+		synchronized (lock) {
+			return generation;
+		}
+	}
+	
+	/**
+	 * @param authorization the Authorization header of the request
+	 * @param ttlSeconds the number of seconds entries are kept for, where 0 turns the cache off
+	 * @return the id of the user the header was authenticated as or null if the header has not been authenticated
+	 *         recently
+	 */
+	public static Integer getUserId(String authorization, int ttlSeconds) {
+		if (ttlSeconds <= 0) {
+			return null;
+		}
+		
+		return getCache(ttlSeconds).getIfPresent(digest(authorization));
+	}
+	
+	/**
+	 * Records that the given header authenticated the given user, unless a user was evicted since
+	 * {@link #getGeneration()} returned the given generation
+	 *
+	 * @param ttlSeconds the number of seconds entries are kept for, where 0 turns the cache off
+	 */
+	public static void put(String authorization, Integer userId, long generation, int ttlSeconds) {
+		if (userId == null || ttlSeconds <= 0) {
+			return;
+		}
+		
+		String digest = digest(authorization);
+		Cache<String, Integer> cache = getCache(ttlSeconds);
+		synchronized (lock) {
+			if (generation == AuthenticatedUserCache.generation) {
+				cache.put(digest, userId);
+			}
+		}
+	}
+	
+	/**
+	 * Forgets every header that was authenticated as the given user
+	 */
+	public static void evictUser(Integer userId) {
+		synchronized (lock) {
+			generation++;
+			userIds.asMap().values().removeIf(userId::equals);
+		}
+	}
+	
+	public static void clear() {
+		synchronized (lock) {
+			generation++;
+			userIds.invalidateAll();
+		}
+	}
+	
+	private static Cache<String, Integer> getCache(int ttlSeconds) {
+		if (AuthenticatedUserCache.ttlSeconds != ttlSeconds) {
+			synchronized (lock) {
+				if (AuthenticatedUserCache.ttlSeconds != ttlSeconds) {
+					userIds = newCache(ttlSeconds);
+					AuthenticatedUserCache.ttlSeconds = ttlSeconds;
+				}
+			}
+		}
+		
+		return userIds;
+	}
+	
+	private static Cache<String, Integer> newCache(int ttlSeconds) {
+		return CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+	}
+	
+	private static String digest(String authorization) {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(key);
+			return Base64.encodeBase64String(mac.doFinal(authorization.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Could not hash the Authorization header", e);
+		}
+	}
+	
+	private static SecretKeySpec newKey() {
+		byte[] bytes = new byte[32];
+		new SecureRandom().nextBytes(bytes);
+		return new SecretKeySpec(bytes, HMAC_ALGORITHM);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.openmrs.module.fhir2.FhirConstants.RESOURCE_CACHE_SIZE_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.RESOURCE_CACHE_TTL_PROPERTY;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.AllArgsConstructor;
+import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.r4.model.Resource;
+import org.openmrs.api.context.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps translated resources so that reading a resource that has not changed does not need to load and translate it
+ * again. Resources are cached by their type, id, version and the locale they were translated for, so a resource whose
+ * version has changed is never returned; callers are expected to look up the current version first, e.g., with
+ * {@link org.openmrs.module.fhir2.api.dao.FhirDao#getLastUpdated(String)}. Since changes to the rows a resource is
+ * translated from do not always change its version, resources are also only kept for the number of seconds set by
+ * {@link org.openmrs.module.fhir2.FhirConstants#RESOURCE_CACHE_TTL_PROPERTY}.
+ * <p/>
+ * Each resource type has its own cache whose size is set by
+ * {@link org.openmrs.module.fhir2.FhirConstants#RESOURCE_CACHE_SIZE_PROPERTY} suffixed with "." and the resource type,
+ * e.g., "fhir2.resourceCache.maximumSize.Location", falling back to the global property without a suffix. A size of 0
+ * disables caching for that type. Cached resources are copies, so changes made to a resource once it has been returned
+ * do not affect the cache.
+ */
+@Component
+public class FhirResourceCache {
+	
+	private final Map<String, TypeCache> caches = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param resourceType the name of the resource type, e.g., "Location"
+	 * @return true if resources of this type may be cached
+	 */
+	public boolean isEnabled(String resourceType) {
+		return getCache(resourceType) != null;
+	}
+	
+	/**
+	 * Gets a copy of the cached resource with the given id and version
+	 *
+	 * @param resourceType the name of the resource type, e.g., "Location"
+	 * @param id the id of the resource
+	 * @param versionId the current version of the resource
+	 * @return a copy of the cached resource or null if it is not cached
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends IAnyResource> T get(String resourceType, String id, String versionId) {
+		Cache<String, IAnyResource> cache = getCache(resourceType);
+		if (cache == null || id == null || versionId == null) {
+			return null;
+		}
+		
+		IAnyResource cached = cache.getIfPresent(toKey(id, versionId));
+		return cached == null ? null : (T) copy(cached);
+	}
+	
+	/**
+	 * Caches a copy of a resource under its id and version. Resources without a version are not cached.
+	 *
+	 * @param resourceType the name of the resource type, e.g., "Location"
+	 * @param resource the translated resource
+	 */
+	public void put(String resourceType, IAnyResource resource) {
+		Cache<String, IAnyResource> cache = getCache(resourceType);
+		if (cache == null || resource == null || !(resource instanceof Resource) || !resource.getIdElement().hasIdPart()
+		        || resource.getMeta().getVersionId() == null) {
+			return;
+		}
+		
+		cache.put(toKey(resource.getIdElement().getIdPart(), resource.getMeta().getVersionId()), copy(resource));
+	}
+	
+	/**
+	 * Removes every cached resource
+	 */
+	public void evictAll() {
+		caches.values().forEach(typeCache -> {
+			if (typeCache.cache != null) {
+				typeCache.cache.invalidateAll();
+			}
+		});
+	}
+	
+	/**
+	 * Gets the hit and miss counts for each resource type that has been cached since the size of its cache was last
+	 * changed
+	 *
+	 * @return the statistics for each resource type
+	 */
+	public Map<String, CacheStats> getStatistics() {
+		Map<String, CacheStats> statistics = new HashMap<>();
+		caches.forEach((resourceType, typeCache) -> {
+			if (typeCache.cache != null) {
+				statistics.put(resourceType, typeCache.cache.stats());
+			}
+		});
+		
+		return statistics;
+	}
+	
+	// resources may be translated differently for each locale, e.g., the display names of concepts
+	private static String toKey(String id, String versionId) {
+		return id + '|' + versionId + '|' + Context.getLocale();
+	}
+	
+	private static IAnyResource copy(IAnyResource resource) {
+		return ((Resource) resource).copy();
+	}
+	
+	// the cache for a type is rebuilt, and so emptied, whenever its configured size or time-to-live changes
+	private Cache<String, IAnyResource> getCache(String resourceType) {
+		if (resourceType == null) {
+			return null;
+		}
+		
+		int size = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESOURCE_CACHE_SIZE_PROPERTY + "." + resourceType,
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESOURCE_CACHE_SIZE_PROPERTY, 0));
+		int ttl = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESOURCE_CACHE_TTL_PROPERTY, 300);
+		
+		TypeCache typeCache = caches.get(resourceType);
+		if (typeCache == null || typeCache.size != size || typeCache.ttl != ttl) {
+			typeCache = caches.compute(resourceType, (type, existing) -> {
+				if (existing != null && existing.size == size && existing.ttl == ttl) {
+					return existing;
+				}
+				
+				if (size <= 0 || ttl <= 0) {
+					return new TypeCache(size, ttl, null);
+				}
+				
+				return new TypeCache(size, ttl, CacheBuilder.newBuilder().maximumSize(size)
+				        .expireAfterWrite(ttl, TimeUnit.SECONDS).recordStats().<String, IAnyResource> build());
+			});
+		}
+		
+		return typeCache.cache;
+	}
+	
+	@AllArgsConstructor
+	private static class TypeCache {
+		
+		private final int size;
+		
+		private final int ttl;
+		
+		private final Cache<String, IAnyResource> cache;
+	}
+}
@@ -0,0 +1,555 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nonnull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compressed set of non-negative integer ids organised in the same way as a roaring bitmap. Ids are partitioned into
+ * chunks by their high 16 bits and each chunk is stored either as a sorted array of the low 16 bits (for sparse chunks)
+ * or as a 65536-bit bitmap (for dense chunks). Set operations are performed chunk by chunk, so intersecting two large
+ * cohorts only touches the chunks that they have in common, and a page of ids can be read without visiting the ids
+ * that precede it.
+ */
+public class IdBitmap implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	// the point at which a sorted array of shorts takes more space than a bitmap
+	private static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+	
+	private char[] keys;
+	
+	private Container[] containers;
+	
+	private int chunks;
+	
+	public IdBitmap() {
+		this(4);
+	}
+	
+	private IdBitmap(int initialChunks) {
+		keys = new char[initialChunks];
+		containers = new Container[initialChunks];
+		chunks = 0;
+	}
+	
+	public static IdBitmap of(@Nonnull Collection<Integer> ids) {
+		IdBitmap result = new IdBitmap();
+		for (Integer id : ids) {
+			if (id != null) {
+				result.add(id);
+			}
+		}
+		return result;
+	}
+	
+	public static IdBitmap of(int... ids) {
+		IdBitmap result = new IdBitmap();
+		for (int id : ids) {
+			result.add(id);
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the intersection of two bitmaps. Neither argument is modified.
+	 */
+	public static IdBitmap and(@Nonnull IdBitmap first, @Nonnull IdBitmap second) {
+		IdBitmap result = new IdBitmap(Math.max(1, Math.min(first.chunks, second.chunks)));
+		int i = 0, j = 0;
+		while (i < first.chunks && j < second.chunks) {
+			if (first.keys[i] < second.keys[j]) {
+				i++;
+			} else if (first.keys[i] > second.keys[j]) {
+				j++;
+			} else {
+				Container container = first.containers[i].and(second.containers[j]);
+				if (container.cardinality() > 0) {
+					result.appendChunk(first.keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the union of two bitmaps. Neither argument is modified.
+	 */
+	public static IdBitmap or(@Nonnull IdBitmap first, @Nonnull IdBitmap second) {
+		IdBitmap result = new IdBitmap(Math.max(1, first.chunks + second.chunks));
+		int i = 0, j = 0;
+		while (i < first.chunks || j < second.chunks) {
+			if (j >= second.chunks || (i < first.chunks && first.keys[i] < second.keys[j])) {
+				result.appendChunk(first.keys[i], first.containers[i].copy());
+				i++;
+			} else if (i >= first.chunks || first.keys[i] > second.keys[j]) {
+				result.appendChunk(second.keys[j], second.containers[j].copy());
+				j++;
+			} else {
+				result.appendChunk(first.keys[i], first.containers[i].or(second.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return a copy of this bitmap that can be modified without affecting this one
+	 */
+	public IdBitmap copy() {
+		IdBitmap result = new IdBitmap(Math.max(1, chunks));
+		for (int i = 0; i < chunks; i++) {
+			result.appendChunk(keys[i], containers[i].copy());
+		}
+		return result;
+	}
+	
+	public void add(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Only non-negative ids can be stored in an IdBitmap");
+		}
+		
+		char high = (char) (id >>> 16);
+		int index = findChunk(high);
+		if (index >= 0) {
+			containers[index] = containers[index].add((char) id);
+		} else {
+			insertChunk(-index - 1, high, new ArrayContainer().add((char) id));
+		}
+	}
+	
+	public void remove(int id) {
+		if (id < 0) {
+			return;
+		}
+		
+		int index = findChunk((char) (id >>> 16));
+		if (index >= 0) {
+			Container container = containers[index].remove((char) id);
+			if (container.cardinality() == 0) {
+				removeChunk(index);
+			} else {
+				containers[index] = container;
+			}
+		}
+	}
+	
+	public boolean contains(int id) {
+		if (id < 0) {
+			return false;
+		}
+		
+		int index = findChunk((char) (id >>> 16));
+		return index >= 0 && containers[index].contains((char) id);
+	}
+	
+	public int cardinality() {
+		int result = 0;
+		for (int i = 0; i < chunks; i++) {
+			result += containers[i].cardinality();
+		}
+		return result;
+	}
+	
+	public boolean isEmpty() {
+		return chunks == 0;
+	}
+	
+	/**
+	 * Returns the ids at positions {@code offset} to {@code offset + limit} (exclusive) in ascending order. Whole
+	 * chunks that precede the requested page are skipped using their cardinality, so the cost of this operation is
+	 * proportional to the size of the page rather than the offset.
+	 *
+	 * @param offset the position of the first id to return
+	 * @param limit the maximum number of ids to return
+	 * @return the requested page of ids
+	 */
+	public List<Integer> toList(int offset, int limit) {
+		if (offset < 0 || limit <= 0) {
+			return Collections.emptyList();
+		}
+		
+		List<Integer> result = new ArrayList<>(Math.min(limit, 1024));
+		int remaining = limit;
+		int skip = offset;
+		for (int i = 0; i < chunks && remaining > 0; i++) {
+			int cardinality = containers[i].cardinality();
+			if (skip >= cardinality) {
+				skip -= cardinality;
+				continue;
+			}
+			
+			remaining -= containers[i].appendTo(keys[i] << 16, skip, remaining, result);
+			skip = 0;
+		}
+		
+		return result;
+	}
+	
+	public List<Integer> toList() {
+		return toList(0, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		
+		if (!(o instanceof IdBitmap)) {
+			return false;
+		}
+		
+		return toList().equals(((IdBitmap) o).toList());
+	}
+	
+	@Override
+	public int hashCode() {
+		return toList().hashCode();
+	}
+	
+	private int findChunk(char high) {
+		return Arrays.binarySearch(keys, 0, chunks, high);
+	}
+	
+	private void appendChunk(char high, Container container) {
+		insertChunk(chunks, high, container);
+	}
+	
+	private void insertChunk(int index, char high, Container container) {
+		if (chunks == keys.length) {
+			int newLength = Math.max(4, keys.length * 2);
+			keys = Arrays.copyOf(keys, newLength);
+			containers = Arrays.copyOf(containers, newLength);
+		}
+		
+		System.arraycopy(keys, index, keys, index + 1, chunks - index);
+		System.arraycopy(containers, index, containers, index + 1, chunks - index);
+		keys[index] = high;
+		containers[index] = container;
+		chunks++;
+	}
+	
+	private void removeChunk(int index) {
+		System.arraycopy(keys, index + 1, keys, index, chunks - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, chunks - index - 1);
+		containers[--chunks] = null;
+	}
+	
+	private interface Container extends Serializable {
+		
+		Container add(char value);
+		
+		Container remove(char value);
+		
+		boolean contains(char value);
+		
+		int cardinality();
+		
+		Container and(Container other);
+		
+		Container or(Container other);
+		
+		Container copy();
+		
+		/**
+		 * Appends up to {@code limit} values to {@code result}, skipping the first {@code skip} values in this container
+		 *
+		 * @return the number of values appended
+		 */
+		int appendTo(int base, int skip, int limit, List<Integer> result);
+	}
+	
+	private static final class ArrayContainer implements Container {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private char[] values;
+		
+		private int cardinality;
+		
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+		
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+		
+		@Override
+		public Container add(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if (index >= 0) {
+				return this;
+			}
+			
+			if (cardinality >= MAX_ARRAY_CONTAINER_SIZE) {
+				return toBitmapContainer().add(value);
+			}
+			
+			index = -index - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(MAX_ARRAY_CONTAINER_SIZE, Math.max(4, values.length * 2)));
+			}
+			
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+		
+		@Override
+		public Container remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if (index >= 0) {
+				System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+				cardinality--;
+			}
+			return this;
+		}
+		
+		@Override
+		public boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+		
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+		
+		@Override
+		public Container and(Container other) {
+			char[] result = new char[cardinality];
+			int size = 0;
+			if (other instanceof ArrayContainer) {
+				ArrayContainer that = (ArrayContainer) other;
+				int i = 0, j = 0;
+				while (i < cardinality && j < that.cardinality) {
+					if (values[i] < that.values[j]) {
+						i++;
+					} else if (values[i] > that.values[j]) {
+						j++;
+					} else {
+						result[size++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			} else {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						result[size++] = values[i];
+					}
+				}
+			}
+			
+			return new ArrayContainer(result, size);
+		}
+		
+		@Override
+		public Container or(Container other) {
+			if (!(other instanceof ArrayContainer)) {
+				return other.or(this);
+			}
+			
+			ArrayContainer that = (ArrayContainer) other;
+			if (cardinality + that.cardinality > MAX_ARRAY_CONTAINER_SIZE) {
+				return toBitmapContainer().or(that);
+			}
+			
+			char[] result = new char[cardinality + that.cardinality];
+			int size = 0, i = 0, j = 0;
+			while (i < cardinality || j < that.cardinality) {
+				if (j >= that.cardinality || (i < cardinality && values[i] < that.values[j])) {
+					result[size++] = values[i++];
+				} else if (i >= cardinality || values[i] > that.values[j]) {
+					result[size++] = that.values[j++];
+				} else {
+					result[size++] = values[i];
+					i++;
+					j++;
+				}
+			}
+			
+			return new ArrayContainer(result, size);
+		}
+		
+		@Override
+		public Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+		}
+		
+		@Override
+		public int appendTo(int base, int skip, int limit, List<Integer> result) {
+			int end = (int) Math.min(cardinality, (long) skip + limit);
+			for (int i = skip; i < end; i++) {
+				result.add(base | values[i]);
+			}
+			return Math.max(0, end - skip);
+		}
+		
+		private BitmapContainer toBitmapContainer() {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++) {
+				result.add(values[i]);
+			}
+			return result;
+		}
+	}
+	
+	private static final class BitmapContainer implements Container {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final long[] words;
+		
+		private int cardinality;
+		
+		BitmapContainer() {
+			this(new long[1024], 0);
+		}
+		
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+		
+		@Override
+		public Container add(char value) {
+			long bit = 1L << value;
+			if ((words[value >>> 6] & bit) == 0) {
+				words[value >>> 6] |= bit;
+				cardinality++;
+			}
+			return this;
+		}
+		
+		@Override
+		public Container remove(char value) {
+			long bit = 1L << value;
+			if ((words[value >>> 6] & bit) != 0) {
+				words[value >>> 6] &= ~bit;
+				cardinality--;
+			}
+			
+			return cardinality <= MAX_ARRAY_CONTAINER_SIZE ? toArrayContainer() : this;
+		}
+		
+		@Override
+		public boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+		
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+		
+		@Override
+		public Container and(Container other) {
+			if (!(other instanceof BitmapContainer)) {
+				return other.and(this);
+			}
+			
+			long[] that = ((BitmapContainer) other).words;
+			long[] result = new long[1024];
+			int size = 0;
+			for (int i = 0; i < result.length; i++) {
+				result[i] = words[i] & that[i];
+				size += Long.bitCount(result[i]);
+			}
+			
+			BitmapContainer container = new BitmapContainer(result, size);
+			return size <= MAX_ARRAY_CONTAINER_SIZE ? container.toArrayContainer() : container;
+		}
+		
+		@Override
+		public Container or(Container other) {
+			BitmapContainer result = (BitmapContainer) copy();
+			if (other instanceof BitmapContainer) {
+				long[] that = ((BitmapContainer) other).words;
+				int size = 0;
+				for (int i = 0; i < result.words.length; i++) {
+					result.words[i] |= that[i];
+					size += Long.bitCount(result.words[i]);
+				}
+				result.cardinality = size;
+			} else {
+				ArrayContainer that = (ArrayContainer) other;
+				for (int i = 0; i < that.cardinality; i++) {
+					result.add(that.values[i]);
+				}
+			}
+			return result;
+		}
+		
+		@Override
+		public Container copy() {
+			return new BitmapContainer(Arrays.copyOf(words, words.length), cardinality);
+		}
+		
+		@Override
+		public int appendTo(int base, int skip, int limit, List<Integer> result) {
+			int appended = 0;
+			int toSkip = skip;
+			for (int i = 0; i < words.length && appended < limit; i++) {
+				long word = words[i];
+				if (word == 0) {
+					continue;
+				}
+				
+				int bits = Long.bitCount(word);
+				if (toSkip >= bits) {
+					toSkip -= bits;
+					continue;
+				}
+				
+				while (word != 0 && appended < limit) {
+					int bit = Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					if (toSkip > 0) {
+						toSkip--;
+						continue;
+					}
+					
+					result.add(base | (i << 6) | bit);
+					appended++;
+				}
+			}
+			return appended;
+		}
+		
+		private ArrayContainer toArrayContainer() {
+			char[] values = new char[Math.max(cardinality, 1)];
+			int size = 0;
+			for (int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[size++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, size);
+		}
+	}
+}
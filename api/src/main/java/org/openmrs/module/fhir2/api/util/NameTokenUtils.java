@@ -0,0 +1,117 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.codec.language.Soundex;
+
+/**
+ * Utilities for turning names into the normalized tokens stored in the person name token index. Both the values stored
+ * in the index and the values searched for must be passed through {@link #tokenize(String)} so that they compare
+ * equal.
+ */
+public class NameTokenUtils {
+	
+	private NameTokenUtils() {
+	}
+	
+	public static final int MAX_TOKEN_LENGTH = 100;
+	
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	
+	private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+	
+	private static final DoubleMetaphone DOUBLE_METAPHONE = new DoubleMetaphone();
+	
+	/**
+	 * Lower-cases the value and removes any accents, so that, e.g., "Jos&eacute;" becomes "jose"
+	 *
+	 * @param value the value to normalize
+	 * @return the normalized value or null if value is null
+	 */
+	public static String normalize(String value) {
+		if (value == null) {
+			return null;
+		}
+		
+		return COMBINING_MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+		        .toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Splits a name into normalized tokens. Anything other than a letter or a digit separates tokens, so
+	 * "Mary-Ann O'Neil" produces the tokens "mary", "ann", "o" and "neil".
+	 *
+	 * @param value the name to split
+	 * @return the normalized tokens in the order they appear in the name
+	 */
+	public static List<String> tokenize(String value) {
+		String normalized = normalize(value);
+		if (normalized == null || normalized.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		List<String> result = new ArrayList<>();
+		for (String token : TOKEN_SEPARATORS.split(normalized)) {
+			if (!token.isEmpty()) {
+				result.add(token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Computes the primary Double Metaphone key for a token
+	 *
+	 * @param token a token produced by {@link #tokenize(String)}
+	 * @return the primary key or null if no key could be computed for this token
+	 */
+	public static String doubleMetaphone(String token) {
+		return emptyToNull(DOUBLE_METAPHONE.doubleMetaphone(token, false));
+	}
+	
+	/**
+	 * Computes the alternate Double Metaphone key for a token
+	 *
+	 * @param token a token produced by {@link #tokenize(String)}
+	 * @return the alternate key or null if no key could be computed for this token
+	 */
+	public static String doubleMetaphoneAlternate(String token) {
+		return emptyToNull(DOUBLE_METAPHONE.doubleMetaphone(token, true));
+	}
+	
+	/**
+	 * Computes the Soundex key for a token
+	 *
+	 * @param token a token produced by {@link #tokenize(String)}
+	 * @return the Soundex key or null if no key could be computed for this token
+	 */
+	public static String soundex(String token) {
+		try {
+			return emptyToNull(Soundex.US_ENGLISH.encode(token));
+		}
+		catch (IllegalArgumentException e) {
+			// thrown for letters Soundex has no mapping for, e.g., those from non-Latin scripts
+			return null;
+		}
+	}
+	
+	private static String emptyToNull(String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+}
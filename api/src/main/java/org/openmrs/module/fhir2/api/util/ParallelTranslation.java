@@ -0,0 +1,115 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.openmrs.Auditable;
+import org.openmrs.OpenmrsObject;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.annotations.ThreadSafeTranslator;
+import org.openmrs.module.fhir2.api.dao.FhirDao;
+import org.openmrs.module.fhir2.api.translators.BulkToFhirTranslator;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Translates large pages of search results on several virtual threads at once. This only happens when virtual threads
+ * are enabled, the page reaches the size set by {@link FhirConstants#TRANSLATION_PARALLEL_THRESHOLD_PROPERTY} and the
+ * translator is marked with {@link ThreadSafeTranslator}; otherwise the page is translated on the calling thread.
+ * <p/>
+ * The objects in the page belong to the database session of the request, which must only be used by one thread. So the
+ * page is split into one chunk per processor and each chunk is loaded again, by uuid, by the task translating it, which
+ * runs with its own database session and user context (see {@link VirtualThreads#invokeAll(List)}). The resources are
+ * returned in the same order as the page.
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class ParallelTranslation {
+	
+	@Autowired
+	private VirtualThreads virtualThreads;
+	
+	/**
+	 * Maps a page of search results to FHIR resources, in parallel if the page is large enough and the translator is
+	 * thread-safe
+	 *
+	 * @param dao the DAO the page was loaded from
+	 * @param translator the translator to use
+	 * @param page the OpenMRS objects to translate
+	 * @param elements the names of the requested top-level elements or null if the whole resources are wanted
+	 * @return the corresponding FHIR resources, in the same order as the page
+	 */
+	public <T extends OpenmrsObject & Auditable, U> List<U> translateAll(@Nonnull FhirDao<T> dao,
+	        @Nonnull ToFhirTranslator<T, U> translator, @Nonnull List<T> page, @Nullable Set<String> elements) {
+		int threshold = FhirGlobalPropertyHolder
+		        .getGlobalPropertyAsInteger(FhirConstants.TRANSLATION_PARALLEL_THRESHOLD_PROPERTY, 0);
+		if (threshold <= 0 || page.size() < threshold || !virtualThreads.isEnabled() || !isThreadSafe(translator)) {
+			return BulkToFhirTranslator.translateAll(translator, page, elements);
+		}
+		
+		int chunks = Math.min(Runtime.getRuntime().availableProcessors(), page.size());
+		List<Callable<Map<String, U>>> tasks = new ArrayList<>(chunks);
+		for (List<T> chunk : Lists.partition(page, (page.size() + chunks - 1) / chunks)) {
+			// only the uuids are handed to the task, so it never touches an object of the request's session
+			List<String> uuids = chunk.stream().map(OpenmrsObject::getUuid).collect(Collectors.toList());
+			tasks.add(() -> translateChunk(dao, translator, uuids, elements));
+		}
+		
+		Map<String, U> translated = new HashMap<>();
+		virtualThreads.invokeAll(tasks).forEach(translated::putAll);
+		
+		// objects that are not found by uuid, e.g., voided ones returned by a search, are translated here instead
+		List<T> missing = page.stream().filter(object -> !translated.containsKey(object.getUuid()))
+		        .collect(Collectors.toList());
+		Iterator<U> missingResources = BulkToFhirTranslator.translateAll(translator, missing, elements).iterator();
+		
+		List<U> resources = new ArrayList<>(page.size());
+		for (T object : page) {
+			resources.add(
+			    translated.containsKey(object.getUuid()) ? translated.get(object.getUuid()) : missingResources.next());
+		}
+		
+		return resources;
+	}
+	
+	protected boolean isThreadSafe(ToFhirTranslator<?, ?> translator) {
+		return AnnotationUtils.findAnnotation(AopUtils.getTargetClass(translator), ThreadSafeTranslator.class) != null;
+	}
+	
+	private static <T extends OpenmrsObject & Auditable, U> Map<String, U> translateChunk(FhirDao<T> dao,
+	        ToFhirTranslator<T, U> translator, List<String> uuids, Set<String> elements) {
+		List<T> objects = dao.get(uuids);
+		List<U> resources = BulkToFhirTranslator.translateAll(translator, objects, elements);
+		
+		Map<String, U> translated = new HashMap<>();
+		for (int i = 0; i < objects.size(); i++) {
+			translated.put(objects.get(i).getUuid(), resources.get(i));
+		}
+		
+		return translated;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import javax.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Holds the top-level elements of the resources that the current request asked for through the
+ * <a href="https://www.hl7.org/fhir/search.html#elements">_elements</a> or
+ * <a href="https://www.hl7.org/fhir/search.html#summary">_summary</a> parameters, so that searches can avoid loading
+ * and translating the parts of the resources that will be left out of the response anyway. A null set means the
+ * whole resource is wanted.
+ */
+public class RequestedElements {
+	
+	private RequestedElements() {
+	}
+	
+	private static final ThreadLocal<Set<String>> currentElements = new ThreadLocal<>();
+	
+	/**
+	 * Sets the elements requested by the current request until {@link #clear()} is called
+	 *
+	 * @param elements the names of the requested top-level elements or null if the whole resource is wanted
+	 */
+	public static void set(@Nullable Set<String> elements) {
+		if (elements == null) {
+			currentElements.remove();
+		} else {
+			currentElements.set(Collections.unmodifiableSet(elements));
+		}
+	}
+	
+	/**
+	 * @return the names of the top-level elements requested by the current request or null if the whole resource is
+	 *         wanted
+	 */
+	@Nullable
+	public static Set<String> get() {
+		return currentElements.get();
+	}
+	
+	public static void clear() {
+		currentElements.remove();
+	}
+	
+	/**
+	 * @param elements the requested elements, as returned by {@link #get()}
+	 * @param element the name of a top-level element, e.g. "telecom"
+	 * @return true if the element is part of the response and so needs to be translated
+	 */
+	public static boolean isRequested(@Nullable Set<String> elements, String element) {
+		return elements == null || elements.contains(element);
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import java.util.StringJoiner;
+
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Allergy;
+import org.openmrs.AllergyReaction;
+import org.openmrs.CodedOrFreeText;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.Condition;
+import org.openmrs.Obs;
+
+/**
+ * The searchable text of a single Obs, Condition or Allergy as it is held in the full-text index. The {@code text} is
+ * the free text entered for the record, which is what FHIR's {@code _text} parameter searches, while the
+ * {@code content} adds the names of any concepts the record refers to for the {@code _content} parameter.
+ */
+@Data
+public class ResourceText {
+	
+	private final String type;
+	
+	private final Integer id;
+	
+	private final String text;
+	
+	private final String content;
+	
+	/**
+	 * @return true if there is nothing to index for this record, in which case it is removed from the index
+	 */
+	public boolean isEmpty() {
+		return StringUtils.isBlank(content);
+	}
+	
+	/**
+	 * @param entity the entity to check
+	 * @return true if the entity is one of the types held in the full-text index
+	 */
+	public static boolean isIndexed(Object entity) {
+		return entity instanceof Obs || entity instanceof Condition || entity instanceof Allergy;
+	}
+	
+	/**
+	 * @param entity an Obs, Condition or Allergy, which may be a proxy
+	 * @return the name of the entity type under which the entity is indexed
+	 * @throws IllegalArgumentException if the entity is not one of the indexed types
+	 */
+	public static String typeOf(Object entity) {
+		if (entity instanceof Obs) {
+			return Obs.class.getSimpleName();
+		} else if (entity instanceof Condition) {
+			return Condition.class.getSimpleName();
+		} else if (entity instanceof Allergy) {
+			return Allergy.class.getSimpleName();
+		}
+		
+		throw new IllegalArgumentException("Full-text index does not support " + entity);
+	}
+	
+	/**
+	 * Extracts the searchable text of an entity. Voided entities and observations without any free text have empty
+	 * text.
+	 *
+	 * @param entity an Obs, Condition or Allergy
+	 * @return the searchable text of the entity
+	 * @throws IllegalArgumentException if the entity is not one of the indexed types
+	 */
+	public static ResourceText of(Object entity) {
+		if (entity instanceof Obs) {
+			return of((Obs) entity);
+		} else if (entity instanceof Condition) {
+			return of((Condition) entity);
+		} else if (entity instanceof Allergy) {
+			return of((Allergy) entity);
+		}
+		
+		throw new IllegalArgumentException("Full-text index does not support " + entity);
+	}
+	
+	private static ResourceText of(Obs obs) {
+		StringJoiner text = new StringJoiner(" ");
+		if (!Boolean.TRUE.equals(obs.getVoided())) {
+			addText(text, obs.getValueText());
+			addText(text, obs.getComment());
+		}
+		
+		// observations are only indexed when they have free text; there are far too many coded observations to index
+		if (text.length() == 0) {
+			return new ResourceText(Obs.class.getSimpleName(), obs.getId(), null, null);
+		}
+		
+		StringJoiner content = new StringJoiner(" ").add(text.toString());
+		addNames(content, obs.getConcept());
+		addNames(content, obs.getValueCoded());
+		return new ResourceText(Obs.class.getSimpleName(), obs.getId(), text.toString(), content.toString());
+	}
+	
+	private static ResourceText of(Condition condition) {
+		StringJoiner text = new StringJoiner(" ");
+		StringJoiner content = new StringJoiner(" ");
+		if (!Boolean.TRUE.equals(condition.getVoided())) {
+			CodedOrFreeText codedOrFreeText = condition.getCondition();
+			if (codedOrFreeText != null) {
+				addText(text, codedOrFreeText.getNonCoded());
+				addNames(content, codedOrFreeText.getCoded());
+			}
+			
+			addText(text, condition.getAdditionalDetail());
+		}
+		
+		return new ResourceText(Condition.class.getSimpleName(), condition.getId(), text.toString(),
+		        content.add(text.toString()).toString());
+	}
+	
+	private static ResourceText of(Allergy allergy) {
+		StringJoiner text = new StringJoiner(" ");
+		StringJoiner content = new StringJoiner(" ");
+		if (!Boolean.TRUE.equals(allergy.getVoided())) {
+			addText(text, allergy.getComments());
+			if (allergy.getAllergen() != null) {
+				addText(text, allergy.getAllergen().getNonCodedAllergen());
+				addNames(content, allergy.getAllergen().getCodedAllergen());
+			}
+			
+			if (allergy.getReactions() != null) {
+				for (AllergyReaction reaction : allergy.getReactions()) {
+					addText(text, reaction.getReactionNonCoded());
+					addNames(content, reaction.getReaction());
+				}
+			}
+		}
+		
+		return new ResourceText(Allergy.class.getSimpleName(), allergy.getId(), text.toString(),
+		        content.add(text.toString()).toString());
+	}
+	
+	private static void addText(StringJoiner joiner, String text) {
+		if (StringUtils.isNotBlank(text)) {
+			joiner.add(text.trim());
+		}
+	}
+	
+	private static void addNames(StringJoiner joiner, Concept concept) {
+		if (concept != null) {
+			for (ConceptName name : concept.getNames()) {
+				addText(joiner, name.getName());
+			}
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.openmrs.module.fhir2.FhirConstants.READ_REPLICA_STICKY_WINDOW_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.VIRTUAL_THREADS_DATABASE_CONCURRENCY_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.VIRTUAL_THREADS_ENABLED_PROPERTY;
+
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.User;
+import org.openmrs.api.context.BasicAuthenticated;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Credentials;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.dao.impl.ReadReplicaRouting;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.openmrs.util.PrivilegeConstants;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs request work on virtual threads when the module runs on Java 21 or later and
+ * {@link FhirConstants#VIRTUAL_THREADS_ENABLED_PROPERTY} is true. Virtual threads are looked up reflectively, so the
+ * module still builds and runs on older versions of Java, where this is never enabled.
+ * <p/>
+ * Since virtual threads are cheap, the number of them is not limited. Instead, the number of tasks using the database
+ * at the same time is limited to {@link FhirConstants#VIRTUAL_THREADS_DATABASE_CONCURRENCY_PROPERTY}: a submitted
+ * request waits for a permit, while a branch of a request, e.g., an _include, that cannot get one straight away runs on
+ * the thread of the request, which already holds one. Each task runs with its own database session and its own user
+ * context, authenticated as the user of the request that created it.
+ */
+@Slf4j
+@Component
+public class VirtualThreads {
+	
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+	
+	private static final String TASK_CREDENTIALS = "FHIR2 REQUEST TASK";
+	
+	private volatile ExecutorService executor;
+	
+	private volatile DatabasePermits databasePermits;
+	
+	/**
+	 * @return true if the Java runtime supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+	
+	/**
+	 * @return true if virtual threads are supported and turned on
+	 */
+	public boolean isEnabled() {
+		return isSupported()
+		        && Boolean.parseBoolean(FhirGlobalPropertyHolder.getGlobalProperty(VIRTUAL_THREADS_ENABLED_PROPERTY));
+	}
+	
+	/**
+	 * Runs a task on a new virtual thread once a database permit is free
+	 *
+	 * @param task the task to run, which is run as the current user
+	 * @return the future of the task
+	 * @throws IllegalStateException if virtual threads are not enabled
+	 */
+	public Future<?> submit(Runnable task) {
+		if (!isEnabled()) {
+			throw new IllegalStateException("Virtual threads are not enabled");
+		}
+		
+		Semaphore permits = getDatabasePermits();
+		return getExecutor().submit(withRequestContext(() -> {
+			try {
+				permits.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			
+			try {
+				task.run();
+			}
+			finally {
+				permits.release();
+			}
+		}));
+	}
+	
+	/**
+	 * Runs independent parts of the current request concurrently on virtual threads if they are enabled, otherwise one
+	 * after the other on the current thread
+	 *
+	 * @param tasks the tasks to run
+	 * @return the results of the tasks, in the same order as the tasks
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<>(tasks.size());
+		if (tasks.size() < 2 || !isEnabled()) {
+			for (Callable<T> task : tasks) {
+				results.add(call(task));
+			}
+			
+			return results;
+		}
+		
+		Semaphore permits = getDatabasePermits();
+		ExecutorService executor = getExecutor();
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			if (permits.tryAcquire()) {
+				futures.add(executor.submit(withRequestContext(() -> {
+					try {
+						return task.call();
+					}
+					finally {
+						permits.release();
+					}
+				})));
+			} else {
+				// no permit is free, so the task is run on the current thread, using its database session
+				futures.add(null);
+			}
+		}
+		
+		for (int i = 0; i < tasks.size(); i++) {
+			Future<T> future = futures.get(i);
+			results.add(future == null ? call(tasks.get(i)) : get(future));
+		}
+		
+		return results;
+	}
+	
+	@PreDestroy
+	public synchronized void close() {
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(30, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			executor = null;
+		}
+	}
+	
+	/**
+	 * Wraps a task so that it runs as the user making the current request, with its own database session and the
+	 * current client's read replica routing, e.g., on another thread
+	 *
+	 * @param task the task to wrap
+	 * @return the wrapped task
+	 */
+	public static Runnable withRequestContext(Runnable task) {
+		Callable<Void> callable = withRequestContext(() -> {
+			task.run();
+			return null;
+		});
+		
+		return () -> call(callable);
+	}
+	
+	/**
+	 * @see #withRequestContext(Runnable)
+	 */
+	public static <T> Callable<T> withRequestContext(Callable<T> task) {
+		// a user context is mutable, e.g., through proxy privileges, so each task gets its own one for the same user,
+		// rather than sharing the one of the current thread
+		UserContext userContext = Context.getUserContext();
+		User authenticatedUser = userContext.getAuthenticatedUser();
+		Integer userId = authenticatedUser == null ? null : authenticatedUser.getUserId();
+		Locale locale = userContext.getLocale();
+		Integer locationId = userContext.getLocationId();
+		String client = ReadReplicaRouting.getCurrentClient();
+		return () -> {
+			Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
+			Context.openSession();
+			Context.setUserContext(newUserContext(userId, locale, locationId));
+			ReadReplicaRouting.startRequest(client,
+			    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(READ_REPLICA_STICKY_WINDOW_PROPERTY, 5));
+			try {
+				return task.call();
+			}
+			finally {
+				ReadReplicaRouting.endRequest();
+				Context.clearUserContext();
+				Context.closeSession();
+			}
+		};
+	}
+	
+	/**
+	 * Creates a user context authenticated as the given user, who is loaded in the current database session, so that no
+	 * entity is shared with the thread the task came from
+	 */
+	private static UserContext newUserContext(Integer userId, Locale locale, Integer locationId) {
+		// the thread may have been used before, so it starts with a fresh, unauthenticated context
+		Context.clearUserContext();
+		UserContext userContext = Context.getUserContext();
+		if (userId != null) {
+			User user;
+			try {
+				Context.addProxyPrivilege(PrivilegeConstants.GET_USERS);
+				user = Context.getUserService().getUser(userId);
+			}
+			finally {
+				Context.removeProxyPrivilege(PrivilegeConstants.GET_USERS);
+			}
+			
+			if (user != null) {
+				userContext = new UserContext(credentials -> new BasicAuthenticated(user, TASK_CREDENTIALS));
+				userContext.authenticate(new TaskCredentials(user.getUsername()));
+			}
+		}
+		
+		userContext.setLocale(locale);
+		userContext.setLocationId(locationId);
+		return userContext;
+	}
+	
+	private static <T> T call(Callable<T> task) {
+		try {
+			return task.call();
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a virtual thread", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	private ExecutorService getExecutor() {
+		ExecutorService result = executor;
+		if (result == null) {
+			synchronized (this) {
+				result = executor;
+				if (result == null) {
+					log.debug("Starting virtual thread executor");
+					executor = result = newThreadPerTaskExecutor();
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	// the semaphore is replaced, rather than resized, when the global property changes; tasks keep the one they started with
+	private Semaphore getDatabasePermits() {
+		int concurrency = Math.max(
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(VIRTUAL_THREADS_DATABASE_CONCURRENCY_PROPERTY, 20), 1);
+		DatabasePermits result = databasePermits;
+		if (result == null || result.concurrency != concurrency) {
+			synchronized (this) {
+				result = databasePermits;
+				if (result == null || result.concurrency != concurrency) {
+					databasePermits = result = new DatabasePermits(concurrency);
+				}
+			}
+		}
+		
+		return result.semaphore;
+	}
+	
+	private static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null,
+			    VIRTUAL_THREAD_FACTORY);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to create an executor for virtual threads", e);
+		}
+	}
+	
+	private static ThreadFactory createVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "fhir2-virtual-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			// virtual threads are only available from Java 21
+			return null;
+		}
+	}
+	
+	private static class DatabasePermits {
+		
+		private final int concurrency;
+		
+		private final Semaphore semaphore;
+		
+		private DatabasePermits(int concurrency) {
+			this.concurrency = concurrency;
+			this.semaphore = new Semaphore(concurrency);
+		}
+	}
+	
+	@AllArgsConstructor
+	private static class TaskCredentials implements Credentials {
+		
+		private final String username;
+		
+		@Override
+		public String getAuthenticationScheme() {
+			return TASK_CREDENTIALS;
+		}
+		
+		@Override
+		public String getClientName() {
+			return username;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single normalized word taken from a non-voided {@link org.openmrs.PersonName}, together with its phonetic keys. These
+ * rows are derived data maintained by the module so that name searches can be resolved with indexed prefix lookups
+ * instead of scanning person_name, and so that phonetic searches are possible at all.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity
+@Table(name = "fhir_person_name_token")
+public class FhirPersonNameToken implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String GIVEN = "given";
+	
+	public static final String MIDDLE = "middle";
+	
+	public static final String FAMILY = "family";
+	
+	@EqualsAndHashCode.Include
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	@Column(name = "fhir_person_name_token_id")
+	private Integer id;
+	
+	@Column(name = "person_id", nullable = false)
+	private Integer personId;
+	
+	@Column(name = "person_name_id", nullable = false)
+	private Integer personNameId;
+	
+	@Column(name = "name_part", nullable = false, length = 16)
+	private String namePart;
+	
+	@Column(nullable = false, length = 100)
+	private String token;
+	
+	@Column(length = 16)
+	private String metaphone;
+	
+	@Column(name = "metaphone_alt", length = 16)
+	private String metaphoneAlternate;
+	
+	@Column(length = 8)
+	private String soundex;
+}
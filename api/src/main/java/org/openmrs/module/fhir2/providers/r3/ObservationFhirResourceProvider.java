@@ -116,7 +116,9 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 	        @IncludeParam(allow = { "Observation:" + Observation.SP_ENCOUNTER, "Observation:" + Observation.SP_PATIENT,
 	                "Observation:" + Observation.SP_RELATED_TYPE }) HashSet<Include> includes,
 	        @IncludeParam(reverse = true, allow = { "Observation:" + Observation.SP_RELATED_TYPE,
-	                "DiagnosticReport:" + DiagnosticReport.SP_RESULT }) HashSet<Include> revIncludes) {
+	                "DiagnosticReport:" + DiagnosticReport.SP_RESULT }) HashSet<Include> revIncludes,
+	        @OptionalParam(name = "_content") StringAndListParam content,
+	        @OptionalParam(name = "_text") StringAndListParam text) {
 		if (patientParam != null) {
 			patientReference = patientParam;
 		}
@@ -131,7 +133,18 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 		
 		return new SearchQueryBundleProviderR3Wrapper(observationService.searchForObservations(new ObservationSearchParams(
 		        encounterReference, patientReference, hasMemberReference, valueConcept, valueDateParam, valueQuantityParam,
-		        valueStringParam, date, code, category, id, lastUpdated, sort, includes, revIncludes)));
+		        valueStringParam, date, code, category, id, lastUpdated, sort, includes, revIncludes, content, text)));
+	}
+	
+	public IBundleProvider searchObservations(ReferenceAndListParam encounterReference,
+	        ReferenceAndListParam patientReference, ReferenceAndListParam patientParam,
+	        ReferenceAndListParam hasMemberReference, TokenAndListParam valueConcept, DateRangeParam valueDateParam,
+	        QuantityAndListParam valueQuantityParam, StringAndListParam valueStringParam, DateRangeParam date,
+	        TokenAndListParam code, TokenAndListParam category, TokenAndListParam id, DateRangeParam lastUpdated,
+	        SortSpec sort, HashSet<Include> includes, HashSet<Include> revIncludes) {
+		return searchObservations(encounterReference, patientReference, patientParam, hasMemberReference, valueConcept,
+		    valueDateParam, valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated, sort, includes,
+		    revIncludes, null, null);
 	}
 	
 	@Operation(name = "lastn", idempotent = true, type = Observation.class, bundleType = BundleTypeEnum.SEARCHSET)
@@ -34,6 +34,7 @@ import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -92,7 +93,9 @@ public class AllergyIntoleranceFhirResourceProvider implements IResourceProvider
 	        @OptionalParam(name = AllergyIntolerance.SP_CLINICAL_STATUS) TokenAndListParam clinicalStatus,
 	        @OptionalParam(name = AllergyIntolerance.SP_RES_ID) TokenAndListParam id,
 	        @OptionalParam(name = "_lastUpdated") DateRangeParam lastUpdated, @Sort SortSpec sort,
-	        @IncludeParam(allow = { "AllergyIntolerance:" + AllergyIntolerance.SP_PATIENT }) HashSet<Include> includes) {
+	        @IncludeParam(allow = { "AllergyIntolerance:" + AllergyIntolerance.SP_PATIENT }) HashSet<Include> includes,
+	        @OptionalParam(name = "_content") StringAndListParam content,
+	        @OptionalParam(name = "_text") StringAndListParam text) {
 		if (patientReference == null) {
 			patientReference = subjectReference;
 		}
@@ -102,7 +105,16 @@ public class AllergyIntoleranceFhirResourceProvider implements IResourceProvider
 		}
 		
 		return fhirAllergyIntoleranceService.searchForAllergies(new FhirAllergyIntoleranceSearchParams(patientReference,
-		        category, allergen, severity, manifestationCode, clinicalStatus, id, lastUpdated, sort, includes));
+		        category, allergen, severity, manifestationCode, clinicalStatus, id, lastUpdated, sort, includes, content,
+		        text));
+	}
+	
+	public IBundleProvider searchForAllergies(ReferenceAndListParam patientReference,
+	        ReferenceAndListParam subjectReference, TokenAndListParam category, TokenAndListParam allergen,
+	        TokenAndListParam severity, TokenAndListParam manifestationCode, TokenAndListParam clinicalStatus,
+	        TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort, HashSet<Include> includes) {
+		return searchForAllergies(patientReference, subjectReference, category, allergen, severity, manifestationCode,
+		    clinicalStatus, id, lastUpdated, sort, includes, null, null);
 	}
 	
 	@Create
@@ -35,6 +35,7 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateRangeParam;
 import ca.uhn.fhir.rest.param.QuantityAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.server.IResourceProvider;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -122,7 +123,9 @@ public class ConditionFhirResourceProvider implements IResourceProvider {
 	        @OptionalParam(name = Condition.SP_RECORDED_DATE) DateRangeParam recordedDate,
 	        @OptionalParam(name = Condition.SP_RES_ID) TokenAndListParam id,
 	        @OptionalParam(name = "_lastUpdated") DateRangeParam lastUpdated, @Sort SortSpec sort,
-	        @IncludeParam(allow = { "Condition:" + Condition.SP_PATIENT }) HashSet<Include> includes) {
+	        @IncludeParam(allow = { "Condition:" + Condition.SP_PATIENT }) HashSet<Include> includes,
+	        @OptionalParam(name = "_content") StringAndListParam content,
+	        @OptionalParam(name = "_text") StringAndListParam text) {
 		if (patientParam == null) {
 			patientParam = subjectParam;
 		}
@@ -132,7 +135,15 @@ public class ConditionFhirResourceProvider implements IResourceProvider {
 		}
 		
 		return conditionService.searchConditions(new ConditionSearchParams(patientParam, code, clinicalStatus, onsetDate,
-		        onsetAge, recordedDate, id, lastUpdated, sort, includes));
+		        onsetAge, recordedDate, id, lastUpdated, sort, includes, content, text));
+	}
+	
+	public IBundleProvider searchConditions(ReferenceAndListParam patientParam, ReferenceAndListParam subjectParam,
+	        TokenAndListParam code, TokenAndListParam clinicalStatus, DateRangeParam onsetDate,
+	        QuantityAndListParam onsetAge, DateRangeParam recordedDate, TokenAndListParam id, DateRangeParam lastUpdated,
+	        SortSpec sort, HashSet<Include> includes) {
+		return searchConditions(patientParam, subjectParam, code, clinicalStatus, onsetDate, onsetAge, recordedDate, id,
+		    lastUpdated, sort, includes, null, null);
 	}
 	
 }
@@ -140,7 +140,9 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 	        @IncludeParam(allow = { "Observation:" + Observation.SP_ENCOUNTER, "Observation:" + Observation.SP_PATIENT,
 	                "Observation:" + Observation.SP_HAS_MEMBER }) HashSet<Include> includes,
 	        @IncludeParam(reverse = true, allow = { "Observation:" + Observation.SP_HAS_MEMBER,
-	                "DiagnosticReport:" + DiagnosticReport.SP_RESULT }) HashSet<Include> revIncludes) {
+	                "DiagnosticReport:" + DiagnosticReport.SP_RESULT }) HashSet<Include> revIncludes,
+	        @OptionalParam(name = "_content") StringAndListParam content,
+	        @OptionalParam(name = "_text") StringAndListParam text) {
 		if (patientParam != null) {
 			patientReference = patientParam;
 		}
@@ -155,7 +157,18 @@ public class ObservationFhirResourceProvider implements IResourceProvider {
 		
 		return observationService.searchForObservations(new ObservationSearchParams(encounterReference, patientReference,
 		        hasMemberReference, valueConcept, valueDateParam, valueQuantityParam, valueStringParam, date, code, category,
-		        id, lastUpdated, sort, includes, revIncludes));
+		        id, lastUpdated, sort, includes, revIncludes, content, text));
+	}
+	
+	public IBundleProvider searchObservations(ReferenceAndListParam encounterReference,
+	        ReferenceAndListParam patientReference, ReferenceAndListParam hasMemberReference,
+	        TokenAndListParam valueConcept, DateRangeParam valueDateParam, QuantityAndListParam valueQuantityParam,
+	        StringAndListParam valueStringParam, DateRangeParam date, TokenAndListParam code, TokenAndListParam category,
+	        TokenAndListParam id, DateRangeParam lastUpdated, SortSpec sort, ReferenceAndListParam patientParam,
+	        HashSet<Include> includes, HashSet<Include> revIncludes) {
+		return searchObservations(encounterReference, patientReference, hasMemberReference, valueConcept, valueDateParam,
+		    valueQuantityParam, valueStringParam, date, code, category, id, lastUpdated, sort, patientParam, includes,
+		    revIncludes, null, null);
 	}
 	
 	@Operation(name = "lastn", idempotent = true, type = Observation.class, bundleType = BundleTypeEnum.SEARCHSET)
@@ -144,13 +144,24 @@ public class PatientFhirResourceProvider implements IResourceProvider {
 	                "AllergyIntolerance:" + AllergyIntolerance.SP_PATIENT, "DiagnosticReport:" + DiagnosticReport.SP_PATIENT,
 	                "Encounter:" + Encounter.SP_PATIENT, "MedicationRequest:" + MedicationRequest.SP_PATIENT,
 	                "ServiceRequest:" + ServiceRequest.SP_PATIENT,
-	                "MedicationDispense:" + MedicationDispense.SP_PRESCRIPTION }) HashSet<Include> revIncludes) {
+	                "MedicationDispense:" + MedicationDispense.SP_PRESCRIPTION }) HashSet<Include> revIncludes,
+	        @OptionalParam(name = Patient.SP_PHONETIC) StringAndListParam phonetic) {
 		if (CollectionUtils.isEmpty(revIncludes)) {
 			revIncludes = null;
 		}
 		
 		return patientService.searchForPatients(new PatientSearchParams(name, given, family, identifier, gender, birthDate,
-		        deathDate, deceased, city, state, postalCode, country, id, hasAndListParam, lastUpdated, sort, revIncludes));
+		        deathDate, deceased, city, state, postalCode, country, id, hasAndListParam, lastUpdated, sort, revIncludes,
+		        phonetic));
+	}
+	
+	public IBundleProvider searchPatients(StringAndListParam name, StringAndListParam given, StringAndListParam family,
+	        TokenAndListParam identifier, TokenAndListParam gender, DateRangeParam birthDate, DateRangeParam deathDate,
+	        TokenAndListParam deceased, StringAndListParam city, StringAndListParam state, StringAndListParam postalCode,
+	        StringAndListParam country, TokenAndListParam id, HasAndListParam hasAndListParam, DateRangeParam lastUpdated,
+	        SortSpec sort, HashSet<Include> revIncludes) {
+		return searchPatients(name, given, family, identifier, gender, birthDate, deathDate, deceased, city, state,
+		    postalCode, country, id, hasAndListParam, lastUpdated, sort, revIncludes, null);
 	}
 	
 	@Search(queryName = "openmrsPatients")
@@ -0,0 +1,66 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class BaseDaoTest {
+	
+	@Test
+	public void getPaddedInListSize_shouldPadToTheNextPowerOfTwo() {
+		assertThat(BaseDao.getPaddedInListSize(2), equalTo(2));
+		assertThat(BaseDao.getPaddedInListSize(3), equalTo(4));
+		assertThat(BaseDao.getPaddedInListSize(5), equalTo(8));
+		assertThat(BaseDao.getPaddedInListSize(8), equalTo(8));
+		assertThat(BaseDao.getPaddedInListSize(513), equalTo(1024));
+	}
+	
+	@Test
+	public void getPaddedInListSize_shouldNotPadSingleValues() {
+		assertThat(BaseDao.getPaddedInListSize(0), equalTo(0));
+		assertThat(BaseDao.getPaddedInListSize(1), equalTo(1));
+	}
+	
+	@Test
+	public void getPaddedInListSize_shouldNotPadListsLargerThanTheCutoff() {
+		assertThat(BaseDao.getPaddedInListSize(BaseDao.MAX_PADDED_IN_LIST_SIZE), equalTo(1024));
+		assertThat(BaseDao.getPaddedInListSize(BaseDao.MAX_PADDED_IN_LIST_SIZE + 1), equalTo(1025));
+		assertThat(BaseDao.getPaddedInListSize(5000), equalTo(5000));
+	}
+	
+	@Test
+	public void paddedIn_shouldRepeatTheLastValue() {
+		assertThat(BaseDao.paddedIn("id", Arrays.asList(1, 2, 3)).toString(), equalTo("id in (1, 2, 3, 3)"));
+		assertThat(BaseDao.paddedIn("id", Arrays.asList(1, 2, 3, 4, 5)).toString(),
+		    equalTo("id in (1, 2, 3, 4, 5, 5, 5, 5)"));
+	}
+	
+	@Test
+	public void paddedIn_shouldNotPadListsThatNeedNoPadding() {
+		assertThat(BaseDao.paddedIn("id", Arrays.asList(1, 2, 3, 4)).toString(), equalTo("id in (1, 2, 3, 4)"));
+	}
+	
+	@Test
+	public void paddedIn_shouldNotPadListsLargerThanTheCutoff() {
+		List<Integer> values = IntStream.rangeClosed(1, BaseDao.MAX_PADDED_IN_LIST_SIZE + 1).boxed()
+		        .collect(Collectors.toList());
+		
+		assertThat(BaseDao.paddedIn("id", values).toString(),
+		    equalTo("id in (" + values.stream().map(String::valueOf).collect(Collectors.joining(", ")) + ")"));
+	}
+}
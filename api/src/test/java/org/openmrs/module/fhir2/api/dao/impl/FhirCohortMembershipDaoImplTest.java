@@ -0,0 +1,97 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirCohortMembershipDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String COHORT_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirPatientDaoImplTest_initial_data.xml";
+	
+	private static final String GROUP_A = "dfb29c44-2e39-46c4-8cd7-18f21c6d47b1";
+	
+	private static final String GROUP_B = "16a5538b-9463-41d7-a1d7-0ad041529479";
+	
+	private static final String GROUP_C = "6f4816fb-0b75-4e25-aac0-4944a6d3b697";
+	
+	private static final String UNKNOWN_GROUP = "a25ce1d7-326c-43ff-a87f-63d9d2f60f11";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirCohortMembershipDaoImpl dao;
+	
+	@Before
+	public void setup() throws Exception {
+		dao = new FhirCohortMembershipDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+		executeDataSet(COHORT_DATA_XML);
+	}
+	
+	@Test
+	public void getMemberIds_shouldReturnMembersOfCohort() {
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(4, 5, 6, 7));
+		assertThat(dao.getMemberIds(GROUP_C).toList(), contains(8));
+	}
+	
+	@Test
+	public void getMemberIds_shouldReturnEmptyBitmapForCohortWithoutMembers() {
+		assertThat(dao.getMemberIds(GROUP_B).isEmpty(), is(true));
+		assertThat(dao.getMemberIds(UNKNOWN_GROUP).isEmpty(), is(true));
+	}
+	
+	@Test
+	public void getMemberIds_shouldReuseIndexedMembersUntilInvalidated() {
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(4, 5, 6, 7));
+		
+		sessionFactory.getCurrentSession()
+		        .createSQLQuery("update cohort_member set voided = true where cohort_member_id = 1").executeUpdate();
+		
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(4, 5, 6, 7));
+		
+		dao.invalidate(1);
+		
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(5, 6, 7));
+	}
+	
+	@Test
+	public void getMemberIds_shouldNotReturnIndexedMembersThatCanBeModified() {
+		IdBitmap members = dao.getMemberIds(GROUP_A);
+		members.remove(4);
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(4, 5, 6, 7));
+		
+		dao.getMemberIdsOfAll(Collections.singletonList(GROUP_A)).remove(5);
+		dao.getMemberIdsOfAny(Collections.singletonList(GROUP_A)).add(9);
+		assertThat(dao.getMemberIds(GROUP_A).toList(), contains(4, 5, 6, 7));
+	}
+	
+	@Test
+	public void getMemberIdsOfAny_shouldReturnUnionOfCohorts() {
+		assertThat(dao.getMemberIdsOfAny(Arrays.asList(GROUP_A, GROUP_C)).toList(), contains(4, 5, 6, 7, 8));
+	}
+	
+	@Test
+	public void getMemberIdsOfAll_shouldReturnIntersectionOfCohorts() {
+		assertThat(dao.getMemberIdsOfAll(Arrays.asList(GROUP_A, GROUP_C)).isEmpty(), is(true));
+		assertThat(dao.getMemberIdsOfAll(Arrays.asList(GROUP_A, GROUP_A)).toList(), contains(4, 5, 6, 7));
+	}
+}
@@ -11,13 +11,20 @@ package org.openmrs.module.fhir2.api.dao.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.Hibernate;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.Obs;
@@ -75,4 +82,55 @@ public class FhirObservationDaoImplTest extends BaseFhirContextSensitiveTest {
 		assertThat(obs, notNullValue());
 	}
 	
+	@Test
+	public void search_shouldLoadTheAssociationsInTheFetchProfile() {
+		TokenAndListParam code = new TokenAndListParam();
+		TokenParam codingToken = new TokenParam();
+		codingToken.setValue(OBS_CONCEPT_ID);
+		code.addAnd(codingToken);
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.CODED_SEARCH_HANDLER, code);
+		
+		List<Obs> obs = dao.getSearchResults(theParams);
+		
+		assertThat(obs, not(hasSize(0)));
+		assertThat(obs.stream().map(o -> Hibernate.isInitialized(o.getConcept().getNames())).collect(Collectors.toList()),
+		    everyItem(equalTo(true)));
+		assertThat(obs.stream().map(o -> Hibernate.isInitialized(o.getPerson())).collect(Collectors.toList()),
+		    everyItem(equalTo(true)));
+	}
+	
+	@Test
+	public void scrollSearchResults_shouldReturnSameResultsInSameOrderAsGetSearchResults() {
+		TokenAndListParam code = new TokenAndListParam();
+		TokenParam codingToken = new TokenParam();
+		codingToken.setValue(OBS_CONCEPT_ID);
+		code.addAnd(codingToken);
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.CODED_SEARCH_HANDLER, code);
+		
+		List<String> expected = dao.getSearchResults(theParams).stream().map(Obs::getUuid).collect(Collectors.toList());
+		List<String> scrolled = new ArrayList<>();
+		dao.scrollSearchResults(theParams, obs -> scrolled.add(obs.getUuid()));
+		
+		assertThat(expected, not(hasSize(0)));
+		assertThat(scrolled, equalTo(expected));
+	}
+	
+	@Test
+	public void scrollSearchResults_shouldRespectTheRequestedRange() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.setFromIndex(1);
+		theParams.setToIndex(3);
+		
+		List<String> expected = dao.getSearchResults(theParams).stream().map(Obs::getUuid).collect(Collectors.toList());
+		List<String> scrolled = new ArrayList<>();
+		dao.scrollSearchResults(theParams, obs -> scrolled.add(obs.getUuid()));
+		
+		assertThat(scrolled, hasSize(2));
+		assertThat(scrolled, equalTo(expected));
+	}
+	
 }
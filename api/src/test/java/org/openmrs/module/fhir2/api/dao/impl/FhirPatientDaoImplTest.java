@@ -59,6 +59,8 @@ public class FhirPatientDaoImplTest extends BaseFhirContextSensitiveTest {
 	
 	private FhirGroupDaoImpl groupDao;
 	
+	private FhirCohortMembershipDaoImpl cohortMembershipDao;
+	
 	@Autowired
 	private SessionFactory sessionFactory;
 	
@@ -69,6 +71,9 @@ public class FhirPatientDaoImplTest extends BaseFhirContextSensitiveTest {
 		dao = new FhirPatientDaoImpl();
 		dao.setSessionFactory(sessionFactory);
 		dao.setGroupDao(groupDao);
+		cohortMembershipDao = new FhirCohortMembershipDaoImpl();
+		cohortMembershipDao.setSessionFactory(sessionFactory);
+		dao.setCohortMembershipDao(cohortMembershipDao);
 		for (String search_data : PATIENT_SEARCH_DATA_FILES) {
 			executeDataSet(search_data);
 		}
@@ -147,4 +152,19 @@ public class FhirPatientDaoImplTest extends BaseFhirContextSensitiveTest {
 		assertThat(result, notNullValue());
 		assertThat(result, empty());
 	}
+	
+	@Test
+	public void getSearchResults_shouldReturnPatientsInAllGroupsWhenGroupsAreAndedTogether() {
+		HasAndListParam groupParam = new HasAndListParam()
+		        .addAnd(new HasOrListParam()
+		                .add(new HasParam(FhirConstants.GROUP, FhirConstants.INCLUDE_MEMBER_PARAM, "id", GROUP_A)))
+		        .addAnd(new HasOrListParam()
+		                .add(new HasParam(FhirConstants.GROUP, FhirConstants.INCLUDE_MEMBER_PARAM, "id", GROUP_C)));
+		
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.HAS_SEARCH_HANDLER, groupParam);
+		List<Patient> result = dao.getSearchResults(theParams);
+		
+		assertThat(result, notNullValue());
+		assertThat(result, empty());
+	}
 }
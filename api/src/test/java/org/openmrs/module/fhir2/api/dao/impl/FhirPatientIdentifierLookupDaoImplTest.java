@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.List;
+
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirPatientIdentifierLookupDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String PATIENT_DATA = "org/openmrs/module/fhir2/api/dao/impl/FhirPatientDaoImplTest_initial_data.xml";
+	
+	private static final String PATIENT_IDENTIFIER = "563422-5";
+	
+	private static final String PATIENT_IDENTIFIER_TYPE = "Test Identifier Type";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirPatientIdentifierLookupDaoImpl lookupDao;
+	
+	private FhirPatientDaoImpl patientDao;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(PATIENT_DATA);
+		
+		lookupDao = new FhirPatientIdentifierLookupDaoImpl();
+		lookupDao.setSessionFactory(sessionFactory);
+		
+		patientDao = new FhirPatientDaoImpl();
+		patientDao.setSessionFactory(sessionFactory);
+		patientDao.setPatientIdentifierLookupDao(lookupDao);
+	}
+	
+	@Test
+	public void getPatientIds_shouldFindPatientsByIdentifierOfAnyType() {
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), contains(5));
+	}
+	
+	@Test
+	public void getPatientIds_shouldOnlyMatchIdentifiersOfTheGivenType() {
+		assertThat(lookupDao.getPatientIds(PATIENT_IDENTIFIER_TYPE, PATIENT_IDENTIFIER), contains(5));
+		assertThat(lookupDao.getPatientIds("Non-Existent Identifier", PATIENT_IDENTIFIER), empty());
+	}
+	
+	@Test
+	public void getPatientIds_shouldReturnCachedResultsUntilTheIdentifierIsEvicted() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.IDENTIFIER_CACHE_SIZE_PROPERTY, "10"));
+		FhirGlobalPropertyHolder.reset();
+		
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), contains(5));
+		
+		// changed behind Hibernate's back, so nothing evicts the cached result
+		sessionFactory.getCurrentSession()
+		        .createSQLQuery("update patient_identifier set identifier = 'changed' where identifier = :identifier")
+		        .setParameter("identifier", PATIENT_IDENTIFIER).executeUpdate();
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), contains(5));
+		
+		lookupDao.evictIdentifiers(Collections.singleton(PATIENT_IDENTIFIER));
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), empty());
+	}
+	
+	@Test
+	public void getPatientIds_shouldNotCacheResultsWhenTheCacheIsDisabled() {
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), contains(5));
+		
+		sessionFactory.getCurrentSession()
+		        .createSQLQuery("update patient_identifier set identifier = 'changed' where identifier = :identifier")
+		        .setParameter("identifier", PATIENT_IDENTIFIER).executeUpdate();
+		assertThat(lookupDao.getPatientIds(null, PATIENT_IDENTIFIER), empty());
+	}
+	
+	@Test
+	public void searchByIdentifierAlone_shouldUseIdentifierLookup() {
+		SearchParameterMap theParams = new SearchParameterMap().addParameter(FhirConstants.IDENTIFIER_SEARCH_HANDLER,
+		    new TokenAndListParam().addAnd(new TokenOrListParam().add(new TokenParam(PATIENT_IDENTIFIER_TYPE, "unknown"))
+		            .add(new TokenParam(PATIENT_IDENTIFIER_TYPE, PATIENT_IDENTIFIER))));
+		
+		List<Patient> results = patientDao.getSearchResults(theParams);
+		
+		assertThat(patientDao.getSearchResultsCount(theParams), equalTo(1));
+		assertThat(results.size(), equalTo(1));
+		assertThat(results.get(0).getPatientId(), equalTo(5));
+	}
+}
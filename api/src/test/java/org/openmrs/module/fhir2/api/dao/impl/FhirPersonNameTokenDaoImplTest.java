@@ -0,0 +1,213 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.model.FhirPersonNameToken;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirPersonNameTokenDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String PATIENT_DATA = "org/openmrs/module/fhir2/api/dao/impl/FhirPatientDaoImplTest_initial_data.xml";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirPersonNameTokenDaoImpl personNameTokenDao;
+	
+	private FhirPatientDaoImpl patientDao;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(PATIENT_DATA);
+		
+		personNameTokenDao = new FhirPersonNameTokenDaoImpl();
+		personNameTokenDao.setSessionFactory(sessionFactory);
+		
+		patientDao = new FhirPatientDaoImpl();
+		patientDao.setSessionFactory(sessionFactory);
+		patientDao.setPersonNameTokenDao(personNameTokenDao);
+	}
+	
+	@Test
+	public void indexMissingPersons_shouldIndexAllPersonsWithNames() {
+		Integer lastPersonId = personNameTokenDao.indexMissingPersons(null, 1000);
+		
+		assertThat(lastPersonId, notNullValue());
+		assertThat(personNameTokenDao.indexMissingPersons(null, 1000), nullValue());
+		assertThat(getTokens(4, FhirPersonNameToken.GIVEN), containsInAnyOrder("jean", "claude"));
+		assertThat(getTokens(4, FhirPersonNameToken.FAMILY), containsInAnyOrder("doe"));
+		assertThat(getTokens(4, FhirPersonNameToken.MIDDLE), empty());
+	}
+	
+	@Test
+	public void reindexPersons_shouldReplaceExistingTokens() {
+		populateIndex();
+		sessionFactory.getCurrentSession().createSQLQuery(
+		    "update person_name set given_name = 'J\u00f6hnny' where person_id = 4").executeUpdate();
+		
+		personNameTokenDao.reindexPersons(Collections.singleton(4));
+		
+		assertThat(getTokens(4, FhirPersonNameToken.GIVEN), containsInAnyOrder("johnny"));
+	}
+	
+	@Test
+	public void isSearchable_shouldRequireThePopulatedIndexToBeEnabled() {
+		assertThat(personNameTokenDao.isSearchable(), is(false));
+		
+		populateIndex();
+		assertThat(personNameTokenDao.isSearchable(), is(false));
+		
+		enableIndex();
+		assertThat(personNameTokenDao.isSearchable(), is(true));
+	}
+	
+	@Test
+	public void getSearchResults_shouldFindPatientsByNamePrefixUsingTheIndex() {
+		populateIndex();
+		enableIndex();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.NAME_PROPERTY,
+		            new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("J\u00c9AN")))));
+		
+		assertThat(result.stream().map(Patient::getPatientId).collect(Collectors.toList()), containsInAnyOrder(4, 5, 6));
+	}
+	
+	@Test
+	public void getSearchResults_shouldRequireAllWordsOfAGivenNameToMatch() {
+		populateIndex();
+		enableIndex();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.GIVEN_PROPERTY,
+		            new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("jean claude")))));
+		
+		assertThat(result.size(), equalTo(1));
+		assertThat(result.get(0).getPatientId(), equalTo(4));
+	}
+	
+	@Test
+	public void getSearchResults_shouldFindPatientsByFamilyNamePrefixUsingTheIndex() {
+		populateIndex();
+		enableIndex();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap()
+		        .addParameter(FhirConstants.NAME_SEARCH_HANDLER, FhirConstants.FAMILY_PROPERTY,
+		            new StringAndListParam().addAnd(new StringOrListParam().add(new StringParam("claud")))));
+		
+		assertThat(result.stream().map(Patient::getPatientId).collect(Collectors.toList()), containsInAnyOrder(5, 6, 7));
+	}
+	
+	@Test
+	public void getSearchResults_shouldFindPatientsWithSimilarSoundingNames() {
+		populateIndex();
+		enableIndex();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap().addParameter(
+		    FhirConstants.PHONETIC_SEARCH_HANDLER, new StringAndListParam().addAnd(new StringParam("Klaudio"))));
+		
+		List<Integer> patientIds = result.stream().map(Patient::getPatientId).collect(Collectors.toList());
+		assertThat(patientIds, hasItems(5, 7));
+		assertThat(patientIds, not(hasItem(6)));
+	}
+	
+	@Test
+	public void getSearchResults_shouldRankExactMatchesBeforePhoneticMatches() {
+		populateIndex();
+		enableIndex();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap()
+		        .addParameter(FhirConstants.PHONETIC_SEARCH_HANDLER, new StringAndListParam().addAnd(new StringParam("john"))));
+		
+		List<Integer> patientIds = result.stream().map(Patient::getPatientId).collect(Collectors.toList());
+		assertThat(patientIds, hasItems(2, 4, 5, 7));
+		assertThat(Math.max(patientIds.indexOf(2), patientIds.indexOf(7)),
+		    lessThan(Math.min(patientIds.indexOf(4), patientIds.indexOf(5))));
+	}
+	
+	@Test
+	public void getSearchResults_shouldReturnAllPhoneticMatchesWhenThereAreTooManyToRank() {
+		populateIndex();
+		enableIndex();
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.PHONETIC_RANKING_LIMIT_PROPERTY, "2"));
+		FhirGlobalPropertyHolder.reset();
+		
+		List<Patient> result = patientDao.getSearchResults(new SearchParameterMap()
+		        .addParameter(FhirConstants.PHONETIC_SEARCH_HANDLER, new StringAndListParam().addAnd(new StringParam("john"))));
+		
+		assertThat(result.stream().map(Patient::getPatientId).collect(Collectors.toList()), hasItems(2, 4, 5, 7));
+	}
+	
+	@Test
+	public void getPhoneticMatchScores_shouldScoreExactMatchesHighest() {
+		populateIndex();
+		
+		Map<Integer, Integer> scores = personNameTokenDao.getPhoneticMatchScores(Arrays.asList(2, 4, 8),
+		    Collections.singletonList("john"));
+		
+		assertThat(scores.get(2), greaterThan(scores.get(4)));
+		assertThat(scores.get(4), greaterThan(scores.get(8)));
+	}
+	
+	private void populateIndex() {
+		Integer lastPersonId = null;
+		do {
+			lastPersonId = personNameTokenDao.indexMissingPersons(lastPersonId, 2);
+		} while (lastPersonId != null);
+		
+		personNameTokenDao.markPopulated();
+	}
+	
+	private void enableIndex() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.NAME_TOKEN_INDEX_ENABLED_PROPERTY, "true"));
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> getTokens(Integer personId, String namePart) {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("select t.token from FhirPersonNameToken t where t.personId = :personId and t.namePart = :namePart")
+		        .setParameter("personId", personId).setParameter("namePart", namePart).list();
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.type.Type;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.model.FhirPagedSearch;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class FhirReadReplicaConnectionProviderTest {
+	
+	private static final String PRIMARY_URL = "jdbc:h2:mem:fhir2ReadReplicaPrimary;DB_CLOSE_DELAY=-1";
+	
+	private static final String REPLICA_URL = "jdbc:h2:mem:fhir2ReadReplicaReplica;DB_CLOSE_DELAY=-1";
+	
+	private FhirReadReplicaConnectionProvider connectionProvider;
+	
+	@Before
+	public void setup() throws SQLException {
+		createDatabase(PRIMARY_URL, "primary");
+		createDatabase(REPLICA_URL, "replica");
+		
+		connectionProvider = new FhirReadReplicaConnectionProvider();
+		connectionProvider.configure(getConfiguration(REPLICA_URL));
+	}
+	
+	@After
+	public void tearDown() {
+		connectionProvider.stop();
+		ReadReplicaRouting.reset();
+		TransactionSynchronizationManager.clear();
+	}
+	
+	@Test
+	public void shouldUsePrimaryOutsideOfTransactions() throws SQLException {
+		assertThat(getDatabaseName(), equalTo("primary"));
+	}
+	
+	@Test
+	public void shouldUsePrimaryForReadWriteTransactions() throws SQLException {
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		
+		assertThat(getDatabaseName(), equalTo("primary"));
+	}
+	
+	@Test
+	public void shouldUseReplicaForReadOnlyTransactions() throws SQLException {
+		startReadOnlyTransaction();
+		
+		assertThat(getDatabaseName(), equalTo("replica"));
+	}
+	
+	@Test
+	public void shouldUsePrimaryForReadOnlyTransactionsWhenNoReplicaIsConfigured() throws SQLException {
+		connectionProvider.stop();
+		connectionProvider = new FhirReadReplicaConnectionProvider();
+		connectionProvider.configure(getConfiguration(null));
+		startReadOnlyTransaction();
+		
+		assertThat(getDatabaseName(), equalTo("primary"));
+	}
+	
+	@Test
+	public void shouldUsePrimaryForTheRestOfARequestThatWrote() throws SQLException {
+		ReadReplicaRouting.startRequest("session:1", 0);
+		ReadReplicaRouting.recordWrite();
+		startReadOnlyTransaction();
+		
+		assertThat(getDatabaseName(), equalTo("primary"));
+	}
+	
+	@Test
+	public void shouldUsePrimaryForLaterRequestsFromAClientThatRecentlyWrote() throws SQLException {
+		ReadReplicaRouting.startRequest("session:1", 60);
+		ReadReplicaRouting.recordWrite();
+		ReadReplicaRouting.endRequest();
+		startReadOnlyTransaction();
+		
+		ReadReplicaRouting.startRequest("session:1", 60);
+		assertThat(getDatabaseName(), equalTo("primary"));
+		
+		ReadReplicaRouting.startRequest("session:2", 60);
+		assertThat(getDatabaseName(), equalTo("replica"));
+	}
+	
+	@Test
+	public void shouldUseReplicaOnceTheStickyWindowHasPassed() throws SQLException {
+		ReadReplicaRouting.startRequest("session:1", 0);
+		ReadReplicaRouting.recordWrite();
+		ReadReplicaRouting.endRequest();
+		startReadOnlyTransaction();
+		
+		ReadReplicaRouting.startRequest("session:1", 0);
+		assertThat(getDatabaseName(), equalTo("replica"));
+	}
+	
+	@Test
+	public void shouldUseReplicaForAClientThatOnlyStoredPagedSearches() throws SQLException {
+		ReadReplicaRouting.startRequest("session:1", 60);
+		commitSave(new FhirPagedSearch());
+		ReadReplicaRouting.endRequest();
+		startReadOnlyTransaction();
+		
+		ReadReplicaRouting.startRequest("session:1", 60);
+		assertThat(getDatabaseName(), equalTo("replica"));
+	}
+	
+	@Test
+	public void shouldUsePrimaryForAClientThatSavedOtherData() throws SQLException {
+		ReadReplicaRouting.startRequest("session:1", 60);
+		commitSave(new Obs());
+		ReadReplicaRouting.endRequest();
+		startReadOnlyTransaction();
+		
+		ReadReplicaRouting.startRequest("session:1", 60);
+		assertThat(getDatabaseName(), equalTo("primary"));
+	}
+	
+	@Test
+	public void shouldReadStoredPagedSearchesFromPrimary() {
+		String[] databaseName = new String[1];
+		Session session = mock(Session.class);
+		when(session.get(FhirPagedSearch.class, "search-id")).thenAnswer(invocation -> {
+			databaseName[0] = getDatabaseName();
+			return new FhirPagedSearch();
+		});
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		when(sessionFactory.getCurrentSession()).thenReturn(session);
+		
+		FhirPagedSearchDaoImpl pagedSearchDao = new FhirPagedSearchDaoImpl();
+		pagedSearchDao.setSessionFactory(sessionFactory);
+		startReadOnlyTransaction();
+		
+		pagedSearchDao.get("search-id");
+		
+		assertThat(databaseName[0], equalTo("primary"));
+	}
+	
+	private static void commitSave(Object entity) {
+		Transaction transaction = mock(Transaction.class);
+		when(transaction.getStatus()).thenReturn(TransactionStatus.COMMITTED);
+		
+		ReadReplicaWriteInterceptor interceptor = new ReadReplicaWriteInterceptor();
+		interceptor.onSave(entity, null, new Object[0], new String[0], new Type[0]);
+		interceptor.afterTransactionCompletion(transaction);
+	}
+	
+	private String getDatabaseName() throws SQLException {
+		Connection connection = connectionProvider.getConnection();
+		try {
+			// mirror what the transaction manager does when preparing a connection
+			connection.setAutoCommit(false);
+			connection.setReadOnly(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+			
+			try (Statement statement = connection.createStatement();
+			        ResultSet resultSet = statement.executeQuery("select name from database_name")) {
+				resultSet.next();
+				return resultSet.getString(1);
+			}
+		}
+		finally {
+			connectionProvider.closeConnection(connection);
+		}
+	}
+	
+	private static void startReadOnlyTransaction() {
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+	}
+	
+	private static Map<String, Object> getConfiguration(String replicaUrl) {
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put(AvailableSettings.URL, PRIMARY_URL);
+		configuration.put(AvailableSettings.USER, "sa");
+		configuration.put(AvailableSettings.PASS, "");
+		configuration.put(FhirReadReplicaConnectionProvider.DELEGATE_PROVIDER_CLASS,
+		    DriverManagerConnectionProvider.class.getName());
+		if (replicaUrl != null) {
+			configuration.put(FhirReadReplicaConnectionProvider.REPLICA_URL, replicaUrl);
+		}
+		return configuration;
+	}
+	
+	private static void createDatabase(String url, String name) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(url, "sa", "");
+		        Statement statement = connection.createStatement()) {
+			statement.execute("drop table if exists database_name");
+			statement.execute("create table database_name (name varchar(10))");
+			statement.execute("insert into database_name values ('" + name + "')");
+		}
+	}
+	
+	/**
+	 * An unpooled connection provider for the embedded test databases
+	 */
+	public static class DriverManagerConnectionProvider implements ConnectionProvider, Configurable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private String url;
+		
+		private String username;
+		
+		private String password;
+		
+		@Override
+		@SuppressWarnings("rawtypes")
+		public void configure(Map configurationValues) {
+			url = (String) configurationValues.get(AvailableSettings.URL);
+			username = (String) configurationValues.get(AvailableSettings.USER);
+			password = (String) configurationValues.get(AvailableSettings.PASS);
+		}
+		
+		@Override
+		public Connection getConnection() throws SQLException {
+			return DriverManager.getConnection(url, username, password);
+		}
+		
+		@Override
+		public void closeConnection(Connection conn) throws SQLException {
+			conn.close();
+		}
+		
+		@Override
+		public boolean supportsAggressiveRelease() {
+			return false;
+		}
+		
+		@Override
+		@SuppressWarnings("rawtypes")
+		public boolean isUnwrappableAs(Class unwrapType) {
+			return false;
+		}
+		
+		@Override
+		public <T> T unwrap(Class<T> unwrapType) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringOrListParam;
+import ca.uhn.fhir.rest.param.StringParam;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Allergy;
+import org.openmrs.Condition;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.ResourceText;
+
+public class FhirResourceTextIndexDaoImplTest {
+	
+	private static final String OBS = Obs.class.getSimpleName();
+	
+	private static final String CONDITION = Condition.class.getSimpleName();
+	
+	private FhirResourceTextIndexDaoImpl dao;
+	
+	@Before
+	public void setup() {
+		dao = new FhirResourceTextIndexDaoImpl();
+		dao.setDirectory(new RAMDirectory());
+		dao.setExecutor(Runnable::run);
+		
+		dao.update(Arrays.asList(new ResourceText(OBS, 1, "Persistent dry cough", "Persistent dry cough Chief complaint"),
+		    new ResourceText(OBS, 2, "Productive cough at night", "Productive cough at night Chief complaint"),
+		    new ResourceText(OBS, 3, "Fever", "Fever Temperature"),
+		    new ResourceText(CONDITION, 1, "cough since childhood", "cough since childhood Asthma")));
+	}
+	
+	@After
+	public void tearDown() {
+		dao.close();
+	}
+	
+	@Test
+	public void search_shouldOnlyReturnRecordsOfTheRequestedType() {
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, and("cough")).toList(), contains(1, 2));
+		assertThat(dao.search(Condition.class, FhirConstants.TEXT_PROPERTY, and("cough")).toList(), contains(1));
+		assertThat(dao.search(Allergy.class, FhirConstants.TEXT_PROPERTY, and("cough")).toList(), empty());
+	}
+	
+	@Test
+	public void search_shouldMatchAllTermsOfAValueIgnoringCase() {
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, and("DRY Cough")).toList(), contains(1));
+	}
+	
+	@Test
+	public void search_shouldMatchAnyValueOfAnOrListAndEveryAndList() {
+		StringAndListParam anyOf = new StringAndListParam()
+		        .addAnd(new StringOrListParam().add(new StringParam("dry")).add(new StringParam("fever")));
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, anyOf).toList(), contains(1, 3));
+		
+		StringAndListParam allOf = new StringAndListParam().addAnd(new StringParam("cough"))
+		        .addAnd(new StringParam("night"));
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, allOf).toList(), contains(2));
+	}
+	
+	@Test
+	public void search_shouldOnlyMatchConceptNamesForContent() {
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, and("complaint")).toList(), empty());
+		assertThat(dao.search(Obs.class, FhirConstants.CONTENT_PROPERTY, and("complaint")).toList(), contains(1, 2));
+	}
+	
+	@Test
+	public void update_shouldReplaceAndRemoveExistingEntries() {
+		dao.update(Arrays.asList(new ResourceText(OBS, 1, "Wheezing", "Wheezing"), new ResourceText(OBS, 2, null, null)));
+		
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, and("cough")).toList(), empty());
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, and("wheezing")).toList(), contains(1));
+		assertThat(dao.search(Obs.class, FhirConstants.CONTENT_PROPERTY, and("complaint")).toList(), empty());
+	}
+	
+	@Test
+	public void update_shouldIgnoreEmptyUpdates() {
+		dao.update(Collections.emptyList());
+		
+		assertThat(dao.search(Obs.class, FhirConstants.TEXT_PROPERTY, null).toList(), containsInAnyOrder(1, 2, 3));
+	}
+	
+	private static StringAndListParam and(String value) {
+		return new StringAndListParam().addAnd(new StringParam(value));
+	}
+}
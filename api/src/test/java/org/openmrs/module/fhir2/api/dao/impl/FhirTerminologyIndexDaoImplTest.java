@@ -0,0 +1,74 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirTerminologyIndexDaoImplTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String CONCEPT_DATA = "org/openmrs/module/fhir2/api/dao/impl/FhirServiceRequestTest_initial_data.xml";
+	
+	private static final String LOINC_SYSTEM_URL = "http://loinc.org";
+	
+	private static final String CIEL_SYSTEM_URL = "https://openconceptlab.org/orgs/CIEL/sources/CIEL";
+	
+	private static final String LOINC_CODE = "2343903";
+	
+	private static final String CIEL_CODE = "2343900";
+	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
+	private FhirTerminologyIndexDaoImpl dao;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(CONCEPT_DATA);
+		
+		dao = new FhirTerminologyIndexDaoImpl();
+		dao.setSessionFactory(sessionFactory);
+	}
+	
+	@Test
+	public void getConceptIds_shouldResolveCodesToMappedConcepts() {
+		assertThat(dao.getConceptIds(LOINC_SYSTEM_URL, Collections.singletonList(LOINC_CODE)).toList(), contains(5497));
+		assertThat(dao.getConceptIds(CIEL_SYSTEM_URL, Collections.singletonList(CIEL_CODE)).toList(), contains(5089));
+	}
+	
+	@Test
+	public void getConceptIds_shouldOnlyMatchCodesFromTheGivenSystem() {
+		assertThat(dao.getConceptIds(LOINC_SYSTEM_URL, Arrays.asList(LOINC_CODE, CIEL_CODE)).toList(), contains(5497));
+		assertThat(dao.getConceptIds("http://unknown.org", Collections.singletonList(LOINC_CODE)).toList(), empty());
+	}
+	
+	@Test
+	public void getConceptIds_shouldReturnCachedCodesUntilEvicted() {
+		assertThat(dao.getConceptIds(LOINC_SYSTEM_URL, Collections.singletonList(LOINC_CODE)).toList(), contains(5497));
+		
+		// changed behind Hibernate's back, so nothing evicts the cached code
+		sessionFactory.getCurrentSession()
+		        .createSQLQuery("delete from concept_reference_map where concept_reference_term_id = 20").executeUpdate();
+		assertThat(dao.getConceptIds(LOINC_SYSTEM_URL, Collections.singletonList(LOINC_CODE)).toList(), contains(5497));
+		
+		dao.evictAll();
+		assertThat(dao.getConceptIds(LOINC_SYSTEM_URL, Collections.singletonList(LOINC_CODE)).toList(), empty());
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.dao.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.IntegerType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdBitmapCriterionTest {
+	
+	private static final String PROPERTY = "conceptId";
+	
+	@Mock
+	private Criteria criteria;
+	
+	@Mock
+	private CriteriaQuery criteriaQuery;
+	
+	@Test
+	public void shouldBindIdsAsPaddedParameters() {
+		when(criteriaQuery.getColumnsUsingProjection(criteria, PROPERTY)).thenReturn(new String[] { "this_.concept_id" });
+		when(criteriaQuery.getTypedValue(eq(criteria), eq(PROPERTY), any()))
+		        .thenAnswer(invocation -> new TypedValue(IntegerType.INSTANCE, invocation.getArgument(2)));
+		
+		Criterion criterion = IdBitmapCriterion.in(PROPERTY, IdBitmap.of(3, 1, 2));
+		
+		assertThat(criterion.toSqlString(criteria, criteriaQuery), equalTo("this_.concept_id in (?,?,?,?)"));
+		List<Object> values = Arrays.stream(criterion.getTypedValues(criteria, criteriaQuery)).map(TypedValue::getValue)
+		        .collect(Collectors.toList());
+		assertThat(values, equalTo(Arrays.<Object> asList(1, 2, 3, 3)));
+	}
+	
+	@Test
+	public void shouldWriteIdsAsLiteralsAboveTheCutoff() {
+		when(criteriaQuery.getColumnsUsingProjection(criteria, PROPERTY)).thenReturn(new String[] { "this_.concept_id" });
+		List<Integer> ids = IntStream.rangeClosed(1, BaseDao.MAX_PADDED_IN_LIST_SIZE + 1).boxed()
+		        .collect(Collectors.toList());
+		
+		Criterion criterion = IdBitmapCriterion.in(PROPERTY, IdBitmap.of(ids));
+		
+		String sql = criterion.toSqlString(criteria, criteriaQuery);
+		assertThat(sql, startsWith("this_.concept_id in (1,2,3,"));
+		assertThat(sql, endsWith(",1024,1025)"));
+		assertThat(sql.chars().filter(c -> c == '?').count(), equalTo(0L));
+		assertThat(criterion.getTypedValues(criteria, criteriaQuery), arrayWithSize(0));
+	}
+	
+	@Test
+	public void shouldMatchNothingForNoIds() {
+		Criterion criterion = IdBitmapCriterion.in(PROPERTY, new IdBitmap());
+		
+		assertThat(criterion.toSqlString(criteria, criteriaQuery), equalTo("1=0"));
+		assertThat(criterion.getTypedValues(criteria, criteriaQuery), arrayWithSize(0));
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirCohortMembershipDao;
+import org.openmrs.module.fhir2.api.translators.GroupMemberTranslator;
+import org.openmrs.module.fhir2.api.util.IdBitmap;
+import org.openmrs.module.fhir2.model.GroupMember;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FhirGroupMemberServiceImplTest {
+	
+	private static final String COHORT_UUID = "1359f03d-55d9-4961-b8f8-9a59eddc1f59";
+	
+	@Mock
+	private FhirCohortMembershipDao cohortMembershipDao;
+	
+	@Mock
+	private GroupMemberTranslator groupMemberTranslator;
+	
+	@Mock
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	private FhirGroupMemberServiceImpl groupMemberService;
+	
+	@Before
+	public void setup() {
+		groupMemberService = new FhirGroupMemberServiceImpl();
+		groupMemberService.setCohortMembershipDao(cohortMembershipDao);
+		groupMemberService.setGroupMemberTranslator(groupMemberTranslator);
+		groupMemberService.setGlobalPropertyService(globalPropertyService);
+	}
+	
+	@Test
+	public void getGroupMembers_shouldReturnMembersOfGroup() {
+		when(cohortMembershipDao.getMemberIds(COHORT_UUID)).thenReturn(IdBitmap.of(1, 2, 3));
+		
+		IBundleProvider result = groupMemberService.getGroupMembers(COHORT_UUID);
+		
+		assertThat(result, notNullValue());
+		assertThat(result.size(), equalTo(3));
+	}
+	
+	@Test
+	public void getGroupMembers_shouldOnlyTranslateMembersOnRequestedPage() {
+		GroupMember member = new GroupMember(new Reference("Patient/123"));
+		when(cohortMembershipDao.getMemberIds(COHORT_UUID)).thenReturn(IdBitmap.of(1, 2, 3, 4, 5));
+		when(groupMemberTranslator.toFhirResource(3)).thenReturn(member);
+		when(groupMemberTranslator.toFhirResource(4)).thenReturn(member);
+		
+		List<IBaseResource> resources = groupMemberService.getGroupMembers(COHORT_UUID).getResources(2, 4);
+		
+		assertThat(resources, hasSize(2));
+		verify(groupMemberTranslator, never()).toFhirResource(1);
+		verify(groupMemberTranslator, never()).toFhirResource(5);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.search;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.model.api.Include;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceAndListParam;
+import ca.uhn.fhir.rest.param.ReferenceOrListParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenAndListParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import org.hl7.fhir.r4.model.Observation;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.dao.FhirPagedSearchDao;
+import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
+import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.ParallelTranslation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationContext;
+
+public class FhirPagingProviderTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String OBS_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirObservationDaoImplTest_initial_data_suppl.xml";
+	
+	private static final String OBS_CONCEPT_ID = "5089";
+	
+	private static final String UNKNOWN_SEARCH_ID = "8a8f6a3e-5bbd-4a4e-9c3f-1b0bb0b2c7a9";
+	
+	@Autowired
+	private ObservationTranslator translator;
+	
+	@Autowired
+	private FhirObservationDao dao;
+	
+	@Autowired
+	private SearchQueryInclude<Observation> searchQueryInclude;
+	
+	@Autowired
+	private SearchQuery<Obs, Observation, FhirObservationDao, ObservationTranslator, SearchQueryInclude<Observation>> searchQuery;
+	
+	@Autowired
+	private FhirPagingProvider pagingProvider;
+	
+	@Autowired
+	private ApplicationContext applicationContext;
+	
+	@Autowired
+	private FhirPagedSearchDao pagedSearchDao;
+	
+	@Autowired
+	private FhirGlobalPropertyService globalPropertyService;
+	
+	@Autowired
+	@Qualifier("fhirR4")
+	private FhirContext fhirContext;
+	
+	@Autowired
+	private ParallelTranslation parallelTranslation;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(OBS_DATA_XML);
+	}
+	
+	@Test
+	public void retrieveResultList_shouldRestoreAStoredSearchAfterARestart() {
+		IBundleProvider results = search();
+		String searchId = pagingProvider.storeResultList(null, results);
+		
+		IBundleProvider restored = newPagingProvider().retrieveResultList(null, searchId);
+		
+		assertThat(restored, notNullValue());
+		assertThat(restored.getUuid(), equalTo(results.getUuid()));
+		assertThat(restored.getPublished().getValue(), equalTo(results.getPublished().getValue()));
+		assertThat(restored.size(), equalTo(results.size()));
+		assertThat(getIds(restored), equalTo(getIds(results)));
+	}
+	
+	@Test
+	public void retrieveResultList_shouldRestoreSearchParametersFromTheirQueryStringForm() {
+		DateRangeParam date = new DateRangeParam().setLowerBound("ge2008-07-01");
+		ReferenceParam reference = new ReferenceParam("Patient", "name", "Bob");
+		ReferenceAndListParam patient = new ReferenceAndListParam().addAnd(new ReferenceOrListParam().add(reference));
+		HashSet<Include> includes = new HashSet<>();
+		includes.add(new Include("Observation:patient", true));
+		
+		SearchParameterMap theParams = new SearchParameterMap()
+		        .addParameter(FhirConstants.DATE_RANGE_SEARCH_HANDLER, "obsDatetime", date)
+		        .addParameter(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER, patient)
+		        .addParameter(FhirConstants.INCLUDE_SEARCH_HANDLER, includes)
+		        .setSortSpec(new SortSpec("date", SortOrderEnum.DESC, new SortSpec("_id")));
+		
+		String searchId = pagingProvider.storeResultList(null,
+		    new SearchQueryBundleProvider<>(theParams, dao, translator, globalPropertyService, searchQueryInclude));
+		
+		String definition = new String(pagedSearchDao.get(searchId).getDefinition(), StandardCharsets.UTF_8);
+		assertThat(definition, containsString("ge2008-07-01"));
+		
+		IBundleProvider restored = newPagingProvider().retrieveResultList(null, searchId);
+		assertThat(restored, instanceOf(SearchQueryBundleProvider.class));
+		SearchParameterMap restoredParams = ((SearchQueryBundleProvider<?, ?>) restored).getSearchParameterMap();
+		
+		DateRangeParam restoredDate = (DateRangeParam) restoredParams
+		        .getParameters(FhirConstants.DATE_RANGE_SEARCH_HANDLER).get(0).getParam();
+		assertThat(restoredParams.getParameters(FhirConstants.DATE_RANGE_SEARCH_HANDLER).get(0).getPropertyName(),
+		    equalTo("obsDatetime"));
+		assertThat(restoredDate.getLowerBoundAsInstant(), equalTo(date.getLowerBoundAsInstant()));
+		
+		ReferenceParam restoredPatient = ((ReferenceAndListParam) restoredParams
+		        .getParameters(FhirConstants.PATIENT_REFERENCE_SEARCH_HANDLER).get(0).getParam()).getValuesAsQueryTokens()
+		                .get(0).getValuesAsQueryTokens().get(0);
+		assertThat(restoredPatient.getResourceType(), equalTo("Patient"));
+		assertThat(restoredPatient.getChain(), equalTo("name"));
+		assertThat(restoredPatient.getValue(), equalTo(reference.getValue()));
+		
+		assertThat(restoredParams.getParameters(FhirConstants.INCLUDE_SEARCH_HANDLER).get(0).getParam(),
+		    equalTo(includes));
+		
+		assertThat(restoredParams.getSortSpec().getParamName(), equalTo("date"));
+		assertThat(restoredParams.getSortSpec().getOrder(), equalTo(SortOrderEnum.DESC));
+		assertThat(restoredParams.getSortSpec().getChain().getParamName(), equalTo("_id"));
+	}
+	
+	@Test
+	public void retrieveResultList_shouldOnlyKeepSearchesInMemoryWhenConfiguredTo() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.PAGING_STORE_PROPERTY, "memory"));
+		FhirGlobalPropertyHolder.reset();
+		
+		String searchId = pagingProvider.storeResultList(null, search());
+		
+		assertThat(pagingProvider.retrieveResultList(null, searchId), notNullValue());
+		assertThat(newPagingProvider().retrieveResultList(null, searchId), nullValue());
+		assertThat(pagedSearchDao.get(searchId), nullValue());
+	}
+	
+	@Test
+	public void retrieveResultList_shouldReturnNullForAnUnknownSearch() {
+		assertThat(pagingProvider.retrieveResultList(null, UNKNOWN_SEARCH_ID), nullValue());
+	}
+	
+	private IBundleProvider search() {
+		TokenAndListParam code = new TokenAndListParam().addAnd(new TokenParam().setValue(OBS_CONCEPT_ID));
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.CODED_SEARCH_HANDLER, code);
+		
+		return searchQuery.getQueryResults(theParams, dao, translator, searchQueryInclude);
+	}
+	
+	private FhirPagingProvider newPagingProvider() {
+		FhirPagingProvider newPagingProvider = new FhirPagingProvider();
+		newPagingProvider.setApplicationContext(applicationContext);
+		newPagingProvider.setPagedSearchDao(pagedSearchDao);
+		newPagingProvider.setGlobalPropertyService(globalPropertyService);
+		newPagingProvider.setFhirContext(fhirContext);
+		newPagingProvider.setParallelTranslation(parallelTranslation);
+		return newPagingProvider;
+	}
+	
+	private static List<String> getIds(IBundleProvider results) {
+		return results.getResources(0, 10).stream()
+		        .map(resource -> resource.getIdElement().getIdPart()).collect(Collectors.toList());
+	}
+}
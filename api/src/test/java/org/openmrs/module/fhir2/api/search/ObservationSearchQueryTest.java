@@ -57,6 +57,7 @@ import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenOrListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
@@ -66,9 +67,12 @@ import org.hl7.fhir.r4.model.DiagnosticReport;
 import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Obs;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.FhirTestConstants;
@@ -76,6 +80,7 @@ import org.openmrs.module.fhir2.api.dao.FhirEncounterDao;
 import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
 import org.openmrs.module.fhir2.api.search.param.SearchParameterMap;
 import org.openmrs.module.fhir2.api.translators.ObservationTranslator;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 
 public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
@@ -164,11 +169,23 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 	@Autowired
 	private FhirEncounterDao encounterDao;
 	
+	private GlobalProperty costGuard;
+	
 	@Before
 	public void setup() throws Exception {
 		executeDataSet(OBS_DATA_XML);
 	}
 	
+	@After
+	public void tearDown() {
+		if (costGuard != null) {
+			Context.getAdministrationService().purgeGlobalProperty(costGuard);
+			costGuard = null;
+		}
+		
+		FhirGlobalPropertyHolder.reset();
+	}
+	
 	@Test
 	public void searchForObs_shouldSearchForObsByConceptId() {
 		TokenAndListParam code = new TokenAndListParam();
@@ -1200,6 +1217,49 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 		assertThat(resultList, hasItem(hasProperty("id", equalTo(OBS_VALUE_CONCEPT_UUID))));
 	}
 	
+	@Test(expected = InvalidRequestException.class)
+	public void searchForObs_shouldRejectSearchWithOnlyContainsParameters() {
+		setCostGuard("reject");
+		
+		StringAndListParam stringAndListParam = new StringAndListParam()
+		        .addAnd(new StringParam().setValue(VALUE_STRING.substring(1)).setContains(true));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.VALUE_STRING_SEARCH_HANDLER, "valueText", stringAndListParam);
+		
+		search(theParams).size();
+	}
+	
+	@Test
+	public void searchForObs_shouldRunDowngradedSearchWithOnlyContainsParameters() {
+		setCostGuard("downgrade");
+		
+		StringAndListParam stringAndListParam = new StringAndListParam()
+		        .addAnd(new StringParam().setValue(VALUE_STRING.substring(1)).setContains(true));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.VALUE_STRING_SEARCH_HANDLER, "valueText", stringAndListParam);
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results.size(), equalTo(1));
+		assertThat(get(results), hasItem(hasProperty("id", equalTo(OBS_VALUE_CONCEPT_UUID))));
+	}
+	
+	@Test
+	public void searchForObs_shouldRunSearchWithOnlyContainsParametersByDefault() {
+		StringAndListParam stringAndListParam = new StringAndListParam()
+		        .addAnd(new StringParam().setValue(VALUE_STRING.substring(1)).setContains(true));
+		
+		SearchParameterMap theParams = new SearchParameterMap();
+		theParams.addParameter(FhirConstants.VALUE_STRING_SEARCH_HANDLER, "valueText", stringAndListParam);
+		
+		IBundleProvider results = search(theParams);
+		
+		assertThat(results.size(), equalTo(1));
+		assertThat(get(results), hasItem(hasProperty("id", equalTo(OBS_VALUE_CONCEPT_UUID))));
+	}
+	
 	@Test
 	public void searchForObs_shouldSearchForObsByValueCoded() {
 		TokenAndListParam tokenAndListParam = new TokenAndListParam().addAnd(new TokenParam().setValue(VALUE_CONCEPT_ID));
@@ -1924,4 +1984,10 @@ public class ObservationSearchQueryTest extends BaseFhirContextSensitiveTest {
 		
 		return distinctEncounterDatetime;
 	}
+	
+	private void setCostGuard(String value) {
+		costGuard = Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(FhirConstants.SEARCH_COST_GUARD_PROPERTY, value));
+		FhirGlobalPropertyHolder.reset();
+	}
 }
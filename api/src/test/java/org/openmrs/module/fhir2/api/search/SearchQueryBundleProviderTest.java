@@ -17,11 +17,16 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.exparity.hamcrest.date.DateMatchers;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -30,6 +35,7 @@ import org.hl7.fhir.r4.model.Observation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.openmrs.Obs;
@@ -89,4 +95,41 @@ public class SearchQueryBundleProviderTest {
 		assertThat(searchQueryBundleProvider.getUuid(), not(equalTo(new SearchQueryBundleProvider<>(new SearchParameterMap(),
 		        observationDao, translator, globalPropertyService, searchQueryInclude).getUuid())));
 	}
+	
+	@Test
+	public void shouldPassPageBoundsToTheDaoWithoutChangingTheSearchParameters() {
+		SearchParameterMap theParams = new SearchParameterMap();
+		searchQueryBundleProvider = new SearchQueryBundleProvider<>(theParams, observationDao, translator,
+		        globalPropertyService, searchQueryInclude);
+		when(observationDao.getSearchResults(any())).thenReturn(Collections.emptyList());
+		
+		searchQueryBundleProvider.getResources(10, 20);
+		
+		ArgumentCaptor<SearchParameterMap> captor = ArgumentCaptor.forClass(SearchParameterMap.class);
+		verify(observationDao).getSearchResults(captor.capture());
+		assertThat(captor.getValue().getFromIndex(), equalTo(10));
+		assertThat(captor.getValue().getToIndex(), equalTo(20));
+		assertThat(theParams.getFromIndex(), equalTo(0));
+		assertThat(theParams.getToIndex(), equalTo(Integer.MAX_VALUE));
+	}
+	
+	@Test
+	public void shouldScrollThroughAllResultsInOrder() {
+		Obs obs1 = new Obs();
+		Obs obs2 = new Obs();
+		Observation observation1 = new Observation();
+		Observation observation2 = new Observation();
+		when(translator.toFhirResource(obs1)).thenReturn(observation1);
+		when(translator.toFhirResource(obs2)).thenReturn(observation2);
+		doAnswer(invocation -> {
+			Consumer<Obs> consumer = invocation.getArgument(1);
+			consumer.accept(obs1);
+			consumer.accept(obs2);
+			return null;
+		}).when(observationDao).scrollSearchResults(any(), any());
+		
+		List<IBaseResource> expected = Arrays.asList(observation1, observation2);
+		assertThat(searchQueryBundleProvider.getAllResources(), equalTo(expected));
+		verify(observationDao, never()).getSearchResults(any());
+	}
 }
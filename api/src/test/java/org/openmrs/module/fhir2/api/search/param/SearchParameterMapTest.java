@@ -164,4 +164,21 @@ public class SearchParameterMapTest {
 		assertThat(searchParam.getSortSpec().getOrder(), equalTo(SortOrderEnum.ASC));
 		assertThat(searchParam.getSortSpec().getParamName(), equalTo(ENCOUNTER_DATETIME));
 	}
+	
+	@Test
+	public void shouldCreateAnIndependentCopyForAPage() {
+		searchParam.addParameter(NAME, new StringAndListParam().addAnd(new StringParam("John")));
+		searchParam.setSortSpec(new SortSpec(ENCOUNTER_DATETIME));
+		
+		SearchParameterMap page = searchParam.forPage(10, 20);
+		page.addParameter(NAME, new StringAndListParam().addAnd(new StringParam("Joe")));
+		
+		assertThat(page.getFromIndex(), equalTo(10));
+		assertThat(page.getToIndex(), equalTo(20));
+		assertThat(page.getSortSpec(), equalTo(searchParam.getSortSpec()));
+		assertThat(page.getParameters(NAME), hasSize(2));
+		assertThat(searchParam.getFromIndex(), equalTo(0));
+		assertThat(searchParam.getToIndex(), equalTo(Integer.MAX_VALUE));
+		assertThat(searchParam.getParameters(NAME), hasSize(1));
+	}
 }
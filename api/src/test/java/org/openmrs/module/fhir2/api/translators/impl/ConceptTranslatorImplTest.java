@@ -19,12 +19,17 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 import org.hl7.fhir.r4.model.CodeableConcept;
@@ -416,6 +421,33 @@ public class ConceptTranslatorImplTest {
 		assertThat(result.getCoding(), hasItem(hasProperty("display", equalTo(CONCEPT_NAME))));
 	}
 	
+	@Test
+	public void shouldResolveConceptSourceUrlsOnceForAListOfConcepts() {
+		addMapping(sameAs, loinc, "1000-1");
+		Concept otherConcept = new Concept();
+		otherConcept.setUuid("54321-fedcba-54321");
+		otherConcept.addName(new ConceptName("other-concept-name", Locale.ENGLISH));
+		ConceptMap otherMapping = new ConceptMap();
+		otherMapping.setConceptMapType(sameAs);
+		otherMapping.setConcept(otherConcept);
+		otherMapping.setConceptReferenceTerm(new ConceptReferenceTerm(ciel, "1650", "1650"));
+		otherConcept.addConceptMapping(otherMapping);
+		
+		Map<ConceptSource, String> urls = new HashMap<>();
+		urls.put(loinc, FhirTestConstants.LOINC_SYSTEM_URL);
+		urls.put(ciel, FhirTestConstants.CIEL_SYSTEM_URN);
+		when(conceptSourceService.getUrlsForConceptSources(any())).thenReturn(urls);
+		
+		List<CodeableConcept> result = conceptTranslator.toFhirResources(Arrays.asList(concept, otherConcept));
+		
+		assertThat(result, hasSize(2));
+		assertThat(result.get(0).getCoding(), hasItem(allOf(
+		    hasProperty("system", equalTo(FhirTestConstants.LOINC_SYSTEM_URL)), hasProperty("code", equalTo("1000-1")))));
+		assertThat(result.get(1).getCoding(), hasItem(allOf(
+		    hasProperty("system", equalTo(FhirTestConstants.CIEL_SYSTEM_URN)), hasProperty("code", equalTo("1650")))));
+		verify(conceptSourceService, never()).getUrlForConceptSource(any());
+	}
+	
 	@Test
 	public void shouldReturnNullWhenCodeableConceptNull() {
 		assertThat(conceptTranslator.toOpenmrsType(null), nullValue());
@@ -15,10 +15,13 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
@@ -474,4 +477,29 @@ public class PatientTranslatorImplTest {
 		assertThat(result.getBirthDateElement().getYear(), equalTo(dateType.getYear()));
 		assertThat(result.getBirthDateElement().getMonth(), equalTo(dateType.getMonth()));
 	}
+	
+	@Test
+	public void shouldOnlyTranslateRequestedElements() {
+		PersonAddress personAddress = new PersonAddress();
+		personAddress.setCityVillage(ADDRESS_CITY);
+		
+		org.openmrs.Patient patient = new org.openmrs.Patient();
+		patient.setUuid(PATIENT_UUID);
+		patient.addName(new PersonName(PATIENT_GIVEN_NAME, null, PATIENT_FAMILY_NAME));
+		patient.addAddress(personAddress);
+		
+		HumanName name = new HumanName();
+		name.setFamily(PATIENT_FAMILY_NAME);
+		when(nameTranslator.toFhirResource(any(PersonName.class))).thenReturn(name);
+		
+		Patient result = patientTranslator.toFhirResource(patient,
+		    Sets.newHashSet("id", "meta", "name", "active", "deceased"));
+		
+		assertThat(result.getIdElement().getIdPart(), equalTo(PATIENT_UUID));
+		assertThat(result.getName(), hasSize(1));
+		assertThat(result.hasAddress(), is(false));
+		assertThat(result.hasTelecom(), is(false));
+		verify(addressTranslator, never()).toFhirResource(any(PersonAddress.class));
+		verify(fhirPersonDao, never()).getActiveAttributesByPersonAndAttributeTypeUuid(any(), any());
+	}
 }
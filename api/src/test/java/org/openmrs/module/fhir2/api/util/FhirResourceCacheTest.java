@@ -0,0 +1,104 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Date;
+
+import com.google.common.cache.CacheStats;
+import org.hl7.fhir.r4.model.Location;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.BaseFhirContextSensitiveTest;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirLocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class FhirResourceCacheTest extends BaseFhirContextSensitiveTest {
+	
+	private static final String LOCATION_INITIAL_DATA_XML = "org/openmrs/module/fhir2/api/dao/impl/FhirLocationDaoImplTest_initial_data.xml";
+	
+	private static final String LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432";
+	
+	@Autowired
+	private FhirResourceCache resourceCache;
+	
+	@Autowired
+	private FhirLocationService locationService;
+	
+	@Autowired
+	private LocationService openmrsLocationService;
+	
+	@Before
+	public void setup() throws Exception {
+		executeDataSet(LOCATION_INITIAL_DATA_XML);
+	}
+	
+	@Test
+	public void shouldNotCacheResourcesByDefault() {
+		locationService.get(LOCATION_UUID);
+		
+		assertThat(resourceCache.isEnabled(FhirConstants.LOCATION), equalTo(false));
+		assertThat(resourceCache.get(FhirConstants.LOCATION, LOCATION_UUID, "1"), equalTo(null));
+	}
+	
+	@Test
+	public void shouldReturnACopyOfTheCachedResourceWhileItsVersionIsUnchanged() {
+		enableCache();
+		CacheStats before = stats();
+		
+		Location first = locationService.get(LOCATION_UUID);
+		Location second = locationService.get(LOCATION_UUID);
+		
+		CacheStats after = stats().minus(before);
+		assertThat(after.missCount(), equalTo(1L));
+		assertThat(after.hitCount(), equalTo(1L));
+		assertThat(second, not(sameInstance(first)));
+		assertThat(second.getName(), equalTo(first.getName()));
+		assertThat(second.getMeta().getVersionId(), equalTo(first.getMeta().getVersionId()));
+	}
+	
+	@Test
+	public void shouldNotReturnTheCachedResourceOnceItsVersionHasChanged() {
+		enableCache();
+		Location first = locationService.get(LOCATION_UUID);
+		
+		org.openmrs.Location location = openmrsLocationService.getLocationByUuid(LOCATION_UUID);
+		location.setName("Renamed location");
+		location.setDateChanged(new Date());
+		openmrsLocationService.saveLocation(location);
+		Context.flushSession();
+		
+		CacheStats before = stats();
+		Location second = locationService.get(LOCATION_UUID);
+		
+		assertThat(stats().minus(before).hitCount(), equalTo(0L));
+		assertThat(second.getName(), equalTo("Renamed location"));
+		assertThat(second.getMeta().getVersionId(), not(equalTo(first.getMeta().getVersionId())));
+	}
+	
+	private void enableCache() {
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(FhirConstants.RESOURCE_CACHE_SIZE_PROPERTY + "." + FhirConstants.LOCATION, "10"));
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	private CacheStats stats() {
+		resourceCache.isEnabled(FhirConstants.LOCATION);
+		return resourceCache.getStatistics().getOrDefault(FhirConstants.LOCATION, new CacheStats(0, 0, 0, 0, 0, 0));
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class IdBitmapTest {
+	
+	@Test
+	public void shouldAddAndRemoveIds() {
+		IdBitmap bitmap = IdBitmap.of(5, 1, 70000, 3);
+		bitmap.remove(3);
+		
+		assertThat(bitmap.contains(1), is(true));
+		assertThat(bitmap.contains(3), is(false));
+		assertThat(bitmap.contains(70000), is(true));
+		assertThat(bitmap.cardinality(), equalTo(3));
+		assertThat(bitmap.toList(), contains(1, 5, 70000));
+	}
+	
+	@Test
+	public void shouldIntersectBitmaps() {
+		IdBitmap first = IdBitmap.of(1, 2, 3, 70000, 140000);
+		IdBitmap second = IdBitmap.of(2, 3, 4, 140000);
+		
+		assertThat(IdBitmap.and(first, second).toList(), contains(2, 3, 140000));
+		assertThat(first.toList(), contains(1, 2, 3, 70000, 140000));
+	}
+	
+	@Test
+	public void shouldUnionBitmaps() {
+		IdBitmap first = IdBitmap.of(1, 70000);
+		IdBitmap second = IdBitmap.of(2, 140000);
+		
+		assertThat(IdBitmap.or(first, second).toList(), contains(1, 2, 70000, 140000));
+	}
+	
+	@Test
+	public void shouldCopyBitmapIndependentlyOfOriginal() {
+		IdBitmap original = IdBitmap.of(1, 2, 70000);
+		IdBitmap copy = original.copy();
+		
+		copy.add(3);
+		copy.remove(70000);
+		
+		assertThat(original.toList(), contains(1, 2, 70000));
+		assertThat(copy.toList(), contains(1, 2, 3));
+	}
+	
+	@Test
+	public void shouldReturnEmptyIntersectionForDisjointBitmaps() {
+		assertThat(IdBitmap.and(IdBitmap.of(1, 2), IdBitmap.of(3, 4)).isEmpty(), is(true));
+	}
+	
+	@Test
+	public void shouldReturnRequestedPage() {
+		IdBitmap bitmap = IdBitmap.of(10, 20, 30, 65546, 65556, 131082);
+		
+		assertThat(bitmap.toList(2, 3), contains(30, 65546, 65556));
+		assertThat(bitmap.toList(5, 10), contains(131082));
+		assertThat(bitmap.toList(6, 10), empty());
+	}
+	
+	@Test
+	public void shouldMatchSetSemanticsForDenseAndSparseChunks() {
+		Random random = new Random(42);
+		TreeSet<Integer> expectedFirst = new TreeSet<>();
+		TreeSet<Integer> expectedSecond = new TreeSet<>();
+		IdBitmap first = new IdBitmap();
+		IdBitmap second = new IdBitmap();
+		
+		// enough values in a narrow range that the chunks are stored as bitmaps
+		for (int i = 0; i < 20000; i++) {
+			int value = random.nextInt(150000);
+			expectedFirst.add(value);
+			first.add(value);
+			
+			value = random.nextInt(150000);
+			expectedSecond.add(value);
+			second.add(value);
+		}
+		
+		TreeSet<Integer> expectedIntersection = new TreeSet<>(expectedFirst);
+		expectedIntersection.retainAll(expectedSecond);
+		TreeSet<Integer> expectedUnion = new TreeSet<>(expectedFirst);
+		expectedUnion.addAll(expectedSecond);
+		
+		assertThat(first.toList(), equalTo(new ArrayList<>(expectedFirst)));
+		assertThat(IdBitmap.and(first, second).toList(), equalTo(new ArrayList<>(expectedIntersection)));
+		assertThat(IdBitmap.or(first, second).toList(), equalTo(new ArrayList<>(expectedUnion)));
+		
+		List<Integer> union = new ArrayList<>(expectedUnion);
+		assertThat(IdBitmap.or(first, second).toList(1000, 50), equalTo(union.subList(1000, 1050)));
+	}
+}
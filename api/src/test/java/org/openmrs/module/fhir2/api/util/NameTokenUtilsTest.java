@@ -0,0 +1,67 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class NameTokenUtilsTest {
+	
+	@Test
+	public void normalize_shouldLowerCaseAndRemoveAccents() {
+		assertThat(NameTokenUtils.normalize("Jos\u00e9 \u00d1\u00fa\u00f1ez"), equalTo("jose nunez"));
+	}
+	
+	@Test
+	public void normalize_shouldReturnNullForNull() {
+		assertThat(NameTokenUtils.normalize(null), nullValue());
+	}
+	
+	@Test
+	public void tokenize_shouldSplitOnNonAlphanumericCharacters() {
+		assertThat(NameTokenUtils.tokenize("Mary-Ann  O'Neil,Jr."), contains("mary", "ann", "o", "neil", "jr"));
+	}
+	
+	@Test
+	public void tokenize_shouldReturnEmptyListForBlankOrPunctuationOnlyValues() {
+		assertThat(NameTokenUtils.tokenize(null), empty());
+		assertThat(NameTokenUtils.tokenize(" "), empty());
+		assertThat(NameTokenUtils.tokenize("--"), empty());
+	}
+	
+	@Test
+	public void tokenize_shouldTruncateLongTokens() {
+		assertThat(NameTokenUtils.tokenize(StringUtils.repeat('a', 150)),
+		    contains(StringUtils.repeat('a', NameTokenUtils.MAX_TOKEN_LENGTH)));
+	}
+	
+	@Test
+	public void doubleMetaphone_shouldGiveTheSameKeyToSimilarSoundingNames() {
+		assertThat(NameTokenUtils.doubleMetaphone("claudio"), equalTo(NameTokenUtils.doubleMetaphone("klaudio")));
+		assertThat(NameTokenUtils.doubleMetaphone("john"), equalTo(NameTokenUtils.doubleMetaphone("jon")));
+	}
+	
+	@Test
+	public void soundex_shouldGiveTheSameKeyToSimilarSoundingNames() {
+		assertThat(NameTokenUtils.soundex("robert"), equalTo(NameTokenUtils.soundex("rupert")));
+	}
+	
+	@Test
+	public void soundex_shouldReturnNullForTokensWithoutAKey() {
+		assertThat(NameTokenUtils.soundex("12345"), nullValue());
+		assertThat(NameTokenUtils.soundex("\u0436\u0435\u043d\u044f"), nullValue());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Obs;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.annotations.ThreadSafeTranslator;
+import org.openmrs.module.fhir2.api.dao.FhirObservationDao;
+import org.openmrs.module.fhir2.api.translators.ToFhirTranslator;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ParallelTranslationTest {
+	
+	private static final String MISSING_UUID = "obs-2";
+	
+	@Mock
+	private VirtualThreads virtualThreads;
+	
+	@Mock
+	private FhirObservationDao dao;
+	
+	private ParallelTranslation parallelTranslation;
+	
+	private List<Obs> page;
+	
+	@Before
+	public void setup() {
+		parallelTranslation = new ParallelTranslation();
+		parallelTranslation.setVirtualThreads(virtualThreads);
+		
+		page = IntStream.range(0, 5).mapToObj(i -> newObs("obs-" + i, "page")).collect(Collectors.toList());
+	}
+	
+	@After
+	public void tearDown() {
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void translateAll_shouldTranslateObjectsLoadedByEachTaskInPageOrder() {
+		setGlobalProperty(FhirConstants.TRANSLATION_PARALLEL_THRESHOLD_PROPERTY, "2");
+		runTasks();
+		reloadObs();
+		
+		List<String> results = parallelTranslation.translateAll(dao, new ThreadSafeTestTranslator(), page, null);
+		
+		List<String> expected = Arrays.asList("obs-0:task", "obs-1:task", "obs-2:task", "obs-3:task", "obs-4:task");
+		assertThat(results, equalTo(expected));
+	}
+	
+	@Test
+	public void translateAll_shouldTranslateObjectsNotFoundByUuidFromThePage() {
+		setGlobalProperty(FhirConstants.TRANSLATION_PARALLEL_THRESHOLD_PROPERTY, "2");
+		runTasks();
+		when(dao.get(anyCollection())).thenAnswer(invocation -> {
+			Collection<String> uuids = invocation.getArgument(0);
+			return uuids.stream().filter(uuid -> !MISSING_UUID.equals(uuid)).map(uuid -> newObs(uuid, "task"))
+			        .collect(Collectors.toList());
+		});
+		
+		List<String> results = parallelTranslation.translateAll(dao, new ThreadSafeTestTranslator(), page, null);
+		
+		List<String> expected = Arrays.asList("obs-0:task", "obs-1:task", "obs-2:page", "obs-3:task", "obs-4:task");
+		assertThat(results, equalTo(expected));
+	}
+	
+	@Test
+	public void translateAll_shouldTranslatePagesSmallerThanTheThresholdOnTheCallingThread() {
+		setGlobalProperty(FhirConstants.TRANSLATION_PARALLEL_THRESHOLD_PROPERTY, "10");
+		
+		List<String> results = parallelTranslation.translateAll(dao, new ThreadSafeTestTranslator(), page, null);
+		
+		List<String> expected = Arrays.asList("obs-0:page", "obs-1:page", "obs-2:page", "obs-3:page", "obs-4:page");
+		assertThat(results, equalTo(expected));
+		verify(virtualThreads, never()).invokeAll(anyList());
+	}
+	
+	@Test
+	public void translateAll_shouldNotTranslateInParallelForTranslatorsNotMarkedThreadSafe() {
+		setGlobalProperty(FhirConstants.TRANSLATION_PARALLEL_THRESHOLD_PROPERTY, "2");
+		when(virtualThreads.isEnabled()).thenReturn(true);
+		
+		List<String> results = parallelTranslation.translateAll(dao, new TestTranslator(), page, null);
+		
+		List<String> expected = Arrays.asList("obs-0:page", "obs-1:page", "obs-2:page", "obs-3:page", "obs-4:page");
+		assertThat(results, equalTo(expected));
+		verify(virtualThreads, never()).invokeAll(anyList());
+	}
+	
+	private void runTasks() {
+		when(virtualThreads.isEnabled()).thenReturn(true);
+		when(virtualThreads.invokeAll(anyList())).thenAnswer(invocation -> {
+			List<Callable<?>> tasks = invocation.getArgument(0);
+			List<Object> results = new ArrayList<>();
+			for (Callable<?> task : tasks) {
+				results.add(task.call());
+			}
+			
+			return results;
+		});
+	}
+	
+	private void reloadObs() {
+		when(dao.get(anyCollection())).thenAnswer(invocation -> {
+			Collection<String> uuids = invocation.getArgument(0);
+			return uuids.stream().map(uuid -> newObs(uuid, "task")).collect(Collectors.toList());
+		});
+	}
+	
+	private static Obs newObs(String uuid, String comment) {
+		Obs obs = new Obs();
+		obs.setUuid(uuid);
+		obs.setComment(comment);
+		return obs;
+	}
+	
+	private static void setGlobalProperty(String property, String value) {
+		new FhirGlobalPropertyHolder().globalPropertyChanged(new GlobalProperty(property, value));
+	}
+	
+	private static class TestTranslator implements ToFhirTranslator<Obs, String> {
+		
+		@Override
+		public String toFhirResource(@Nonnull Obs data) {
+			return data.getUuid() + ":" + data.getComment();
+		}
+	}
+	
+	@ThreadSafeTranslator
+	private static class ThreadSafeTestTranslator extends TestTranslator {}
+}
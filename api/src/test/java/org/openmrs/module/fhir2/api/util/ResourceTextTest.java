@@ -0,0 +1,110 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.openmrs.Allergen;
+import org.openmrs.AllergenType;
+import org.openmrs.Allergy;
+import org.openmrs.AllergyReaction;
+import org.openmrs.CodedOrFreeText;
+import org.openmrs.Concept;
+import org.openmrs.ConceptName;
+import org.openmrs.Condition;
+import org.openmrs.Obs;
+
+public class ResourceTextTest {
+	
+	@Test
+	public void of_shouldSeparateFreeTextFromConceptNamesForObs() {
+		Obs obs = new Obs();
+		obs.setId(1);
+		obs.setConcept(concept("Chief complaint"));
+		obs.setValueText("Dry cough");
+		obs.setComment("worse at night");
+		
+		ResourceText resourceText = ResourceText.of(obs);
+		
+		assertThat(resourceText.getType(), equalTo("Obs"));
+		assertThat(resourceText.getId(), equalTo(1));
+		assertThat(resourceText.getText(), equalTo("Dry cough worse at night"));
+		assertThat(resourceText.getContent(), containsString("Dry cough worse at night"));
+		assertThat(resourceText.getContent(), containsString("Chief complaint"));
+	}
+	
+	@Test
+	public void of_shouldNotIndexObsWithoutFreeText() {
+		Obs obs = new Obs();
+		obs.setId(1);
+		obs.setConcept(concept("Diagnosis"));
+		obs.setValueCoded(concept("Malaria"));
+		
+		assertThat(ResourceText.of(obs).isEmpty(), is(true));
+	}
+	
+	@Test
+	public void of_shouldNotIndexVoidedRecords() {
+		Condition condition = new Condition();
+		condition.setId(1);
+		condition.setCondition(new CodedOrFreeText(null, null, "Headache"));
+		condition.setVoided(true);
+		
+		assertThat(ResourceText.of(condition).isEmpty(), is(true));
+	}
+	
+	@Test
+	public void of_shouldIncludeCodedNamesOnlyInContentForConditions() {
+		Condition condition = new Condition();
+		condition.setId(1);
+		condition.setCondition(new CodedOrFreeText(concept("Asthma"), null, null));
+		condition.setAdditionalDetail("since childhood");
+		
+		ResourceText resourceText = ResourceText.of(condition);
+		
+		assertThat(resourceText.getText(), equalTo("since childhood"));
+		assertThat(resourceText.getContent(), containsString("Asthma"));
+	}
+	
+	@Test
+	public void of_shouldIncludeAllergenAndReactionsForAllergies() {
+		Allergy allergy = new Allergy();
+		allergy.setId(1);
+		allergy.setAllergen(new Allergen(AllergenType.DRUG, null, "Penicillin"));
+		allergy.setComments("confirmed by skin test");
+		allergy.setReactions(Collections.singletonList(new AllergyReaction(allergy, concept("Rash"), null)));
+		
+		ResourceText resourceText = ResourceText.of(allergy);
+		
+		assertThat(resourceText.getType(), equalTo("Allergy"));
+		assertThat(resourceText.getText(), containsString("Penicillin"));
+		assertThat(resourceText.getText(), not(containsString("Rash")));
+		assertThat(resourceText.getContent(), containsString("Rash"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void of_shouldThrowForUnsupportedTypes() {
+		ResourceText.of(new Concept());
+	}
+	
+	private static Concept concept(String name) {
+		Concept concept = new Concept();
+		concept.addName(new ConceptName(name, Locale.ENGLISH));
+		return concept;
+	}
+}
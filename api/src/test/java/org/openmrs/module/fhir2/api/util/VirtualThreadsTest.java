@@ -0,0 +1,182 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.api.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.User;
+import org.openmrs.api.UserService;
+import org.openmrs.api.context.AuthenticationScheme;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.ContextDAO;
+import org.openmrs.module.fhir2.FhirConstants;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VirtualThreadsTest {
+	
+	@Mock
+	private ContextDAO contextDAO;
+	
+	@Mock
+	private UserContext userContext;
+	
+	@Mock
+	private UserService userService;
+	
+	@Mock
+	private User user;
+	
+	private ServiceContext serviceContext;
+	
+	private final VirtualThreads virtualThreads = new VirtualThreads();
+	
+	@Before
+	public void setup() throws Exception {
+		serviceContext = mock(ServiceContext.class);
+		Class<?> serviceContextHolderClass = ServiceContext.class.getDeclaredClasses()[0];
+		Field instanceField = serviceContextHolderClass.getDeclaredField("instance");
+		instanceField.setAccessible(true);
+		instanceField.set(null, serviceContext);
+		
+		Field authSchemeField = Context.class.getDeclaredField("authenticationScheme");
+		authSchemeField.setAccessible(true);
+		authSchemeField.set(null, (AuthenticationScheme) credentials -> {
+			throw new ContextAuthenticationException();
+		});
+		
+		Context.setDAO(contextDAO);
+		Context.openSession();
+		Context.setUserContext(userContext);
+		
+		setGlobalProperty(FhirConstants.VIRTUAL_THREADS_DATABASE_CONCURRENCY_PROPERTY, "2");
+		setGlobalProperty(FhirConstants.READ_REPLICA_STICKY_WINDOW_PROPERTY, "5");
+	}
+	
+	@After
+	public void tearDown() {
+		virtualThreads.close();
+		FhirGlobalPropertyHolder.reset();
+		Context.closeSession();
+	}
+	
+	@Test
+	public void shouldRunTasksOnCurrentThreadWhenNotEnabled() {
+		setGlobalProperty(FhirConstants.VIRTUAL_THREADS_ENABLED_PROPERTY, "false");
+		Thread currentThread = Thread.currentThread();
+		
+		List<Callable<Thread>> tasks = new ArrayList<>();
+		tasks.add(Thread::currentThread);
+		tasks.add(Thread::currentThread);
+		
+		assertThat(virtualThreads.isEnabled(), is(false));
+		assertThat(virtualThreads.invokeAll(tasks), contains(currentThread, currentThread));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void shouldNotSubmitTasksWhenNotEnabled() {
+		setGlobalProperty(FhirConstants.VIRTUAL_THREADS_ENABLED_PROPERTY, "false");
+		
+		virtualThreads.submit(() -> {});
+	}
+	
+	@Test
+	public void shouldRunTasksOnVirtualThreadsInOrderWhenEnabled() throws Exception {
+		assumeTrue("Virtual threads need Java 21 or later", VirtualThreads.isSupported());
+		setGlobalProperty(FhirConstants.VIRTUAL_THREADS_ENABLED_PROPERTY, "true");
+		Thread currentThread = Thread.currentThread();
+		
+		List<Callable<String>> tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			String result = "task " + i;
+			tasks.add(() -> {
+				// tasks on virtual threads get their own user context rather than sharing the one of the request
+				if (Thread.currentThread() == currentThread) {
+					assertThat(Context.getUserContext(), sameInstance(userContext));
+					return result;
+				}
+				
+				assertThat(Context.getUserContext(), not(sameInstance(userContext)));
+				return result + " (virtual)";
+			});
+		}
+		
+		List<String> results = virtualThreads.invokeAll(tasks);
+		
+		// only two tasks can use the database at the same time, the others run on the current thread
+		assertThat(results.size(), equalTo(5));
+		assertThat(results.get(0), equalTo("task 0 (virtual)"));
+		assertThat(results.get(1), equalTo("task 1 (virtual)"));
+		for (int i = 0; i < results.size(); i++) {
+			assertThat(results.get(i), startsWith("task " + i));
+		}
+		
+		assertThat(virtualThreads.submit(() -> {}).get(5, TimeUnit.SECONDS), nullValue());
+	}
+	
+	@Test
+	public void shouldRunTasksWithTheirOwnUserContextForTheSameUser() throws Exception {
+		when(serviceContext.getRegisteredComponents(any())).thenReturn(new ArrayList<>(0));
+		when(serviceContext.getUserService()).thenReturn(userService);
+		when(userService.getUser(1)).thenReturn(user);
+		when(userContext.getAuthenticatedUser()).thenReturn(new User(1));
+		when(userContext.getLocale()).thenReturn(Locale.FRENCH);
+		
+		Callable<UserContext> task = VirtualThreads.withRequestContext(Context::getUserContext);
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		UserContext taskUserContext;
+		try {
+			taskUserContext = executor.submit(task).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdown();
+		}
+		
+		assertThat(taskUserContext, notNullValue());
+		assertThat(taskUserContext, not(sameInstance(userContext)));
+		assertThat(taskUserContext.getAuthenticatedUser(), sameInstance(user));
+		assertThat(taskUserContext.getLocale(), equalTo(Locale.FRENCH));
+	}
+	
+	private static void setGlobalProperty(String property, String value) {
+		new FhirGlobalPropertyHolder().globalPropertyChanged(new GlobalProperty(property, value));
+	}
+}
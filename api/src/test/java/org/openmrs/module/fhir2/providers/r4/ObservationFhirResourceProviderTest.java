@@ -31,6 +31,8 @@ import ca.uhn.fhir.rest.param.NumberParam;
 import ca.uhn.fhir.rest.param.ReferenceAndListParam;
 import ca.uhn.fhir.rest.param.ReferenceOrListParam;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringAndListParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenAndListParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
@@ -173,6 +175,25 @@ public class ObservationFhirResourceProviderTest extends BaseFhirProvenanceResou
 		assertThat(resultList.get(0).getIdElement().getIdPart(), equalTo(OBSERVATION_UUID));
 	}
 	
+	@Test
+	public void searchObservations_shouldPassContentAndTextParamsToService() {
+		when(observationService.searchForObservations(any()))
+		        .thenReturn(new MockIBundleProvider<>(Collections.singletonList(observation), 10, 1));
+		
+		StringAndListParam content = new StringAndListParam().addAnd(new StringParam("pneumonia"));
+		StringAndListParam text = new StringAndListParam().addAnd(new StringParam("cough"));
+		
+		IBundleProvider results = resourceProvider.searchObservations(null, null, null, null, null, null, null, null, null,
+		    null, null, null, null, null, null, null, content, text);
+		
+		List<IBaseResource> resultList = get(results);
+		
+		assertThat(resultList, hasSize(equalTo(1)));
+		verify(observationService).searchForObservations(searchParamsCaptor.capture());
+		assertThat(searchParamsCaptor.getValue().getContent(), equalTo(content));
+		assertThat(searchParamsCaptor.getValue().getText(), equalTo(text));
+	}
+	
 	@Test
 	public void searchObservations_shouldReturnMatchingObservationsWhenEncounterParamIsSpecified() {
 		when(observationService.searchForObservations(any()))
@@ -50,6 +50,8 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	
 	private String templateFilename;
 	
+	private volatile CachedText templateText;
+	
 	private final Set<String> appliesToDatatypes = new HashSet<>();
 	
 	/**
@@ -130,8 +132,17 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	 */
 	@Override
 	public String getTemplateText() {
+		// the text is kept until the file it was read from changes, rather than read again for every resource
+		long lastModified = OpenmrsNarrativeTemplateManifest.getLastModified(this.templateFilename);
+		CachedText cached = this.templateText;
+		if (cached != null && cached.lastModified == lastModified) {
+			return cached.text;
+		}
+		
 		try {
-			return OpenmrsNarrativeTemplateManifest.loadResource(this.templateFilename);
+			String text = OpenmrsNarrativeTemplateManifest.loadResource(this.templateFilename);
+			this.templateText = new CachedText(text, lastModified);
+			return text;
 		}
 		catch (IOException e) {
 			throw new InternalErrorException(e);
@@ -140,6 +151,7 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	
 	protected void setTemplateFileName(String templateFileName) {
 		this.templateFilename = templateFileName;
+		this.templateText = null;
 	}
 	
 	/**
@@ -152,4 +164,16 @@ public class OpenmrsNarrativeTemplate implements INarrativeTemplate {
 	protected void addAppliesToDatatype(String dataType) {
 		this.appliesToDatatypes.add(dataType);
 	}
+	
+	private static final class CachedText {
+		
+		private final String text;
+		
+		private final long lastModified;
+		
+		private CachedText(String text, long lastModified) {
+			this.text = text;
+			this.lastModified = lastModified;
+		}
+	}
 }
@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.ConfigurationException;
@@ -61,6 +62,10 @@ import org.openmrs.util.OpenmrsUtil;
 @Slf4j
 public class OpenmrsNarrativeTemplateManifest implements INarrativeTemplateManifest {
 	
+	// manifests outlive the narrative generators, which are created again whenever the servlet is, e.g., after the
+	// context is refreshed; a manifest is only parsed again if one of the files it was loaded from has changed
+	private static final Map<List<String>, CachedManifest> manifestCache = new ConcurrentHashMap<>();
+	
 	private final Map<String, List<OpenmrsNarrativeTemplate>> resourceTypeToTemplate;
 	
 	private final Map<String, List<OpenmrsNarrativeTemplate>> datatypeToTemplate;
@@ -149,13 +154,34 @@ public class OpenmrsNarrativeTemplateManifest implements INarrativeTemplateManif
 	 */
 	public static OpenmrsNarrativeTemplateManifest forManifestFileLocation(Collection<String> propertyFilePaths)
 	        throws IOException {
+		List<String> key = Collections.unmodifiableList(new ArrayList<>(propertyFilePaths));
+		long version = 1;
+		for (String next : key) {
+			version = 31 * version + getLastModified(next);
+		}
+		
+		CachedManifest cached = manifestCache.get(key);
+		if (cached != null && cached.version == version) {
+			return cached.manifest;
+		}
+		
 		log.debug("Loading narrative properties file(s): {}", propertyFilePaths);
 		List<String> manifestFileContents = new ArrayList<>(propertyFilePaths.size());
 		for (String next : propertyFilePaths) {
 			String resource = loadResource(next);
 			manifestFileContents.add(resource);
 		}
-		return forManifestFileContents(manifestFileContents);
+		
+		OpenmrsNarrativeTemplateManifest manifest = forManifestFileContents(manifestFileContents);
+		manifestCache.put(key, new CachedManifest(manifest, version));
+		return manifest;
+	}
+	
+	/**
+	 * Discards the manifests kept by {@link #forManifestFileLocation(Collection)}, so that they are loaded again
+	 */
+	public static void clearCache() {
+		manifestCache.clear();
 	}
 	
 	/**
@@ -281,6 +307,26 @@ public class OpenmrsNarrativeTemplateManifest implements INarrativeTemplateManif
 		}
 	}
 	
+	/**
+	 * @param name the resource name, as passed to {@link #loadResource(String)}
+	 * @return the time the file was last modified, 0 if the file does not exist or -1 for classpath resources, which do
+	 *         not change while OpenMRS is running
+	 */
+	static long getLastModified(String name) {
+		File file;
+		if (name == null) {
+			return -1;
+		} else if (name.startsWith("file:")) {
+			file = new File(name.substring("file:".length()));
+		} else if (name.startsWith("openmrs:")) {
+			file = new File(OpenmrsUtil.getApplicationDataDirectory(), name.substring("openmrs:".length()));
+		} else {
+			return -1;
+		}
+		
+		return file.lastModified();
+	}
+	
 	private static <T> List<INarrativeTemplate> getFromMap(EnumSet<TemplateTypeEnum> styles, T key,
 	        Map<T, List<OpenmrsNarrativeTemplate>> map) {
 		return map.getOrDefault(key, Collections.emptyList()).stream().filter(t -> styles.contains(t.getTemplateType()))
@@ -292,4 +338,16 @@ public class OpenmrsNarrativeTemplateManifest implements INarrativeTemplateManif
 		styleToResourceTypeToTemplate.replaceAll((key, value) -> Collections.unmodifiableList(value));
 		return Collections.unmodifiableMap(styleToResourceTypeToTemplate);
 	}
+	
+	private static final class CachedManifest {
+		
+		private final OpenmrsNarrativeTemplateManifest manifest;
+		
+		private final long version;
+		
+		private CachedManifest(OpenmrsNarrativeTemplateManifest manifest, long version) {
+			this.manifest = manifest;
+			this.version = version;
+		}
+	}
 }
@@ -38,6 +38,8 @@ import org.springframework.context.MessageSource;
  */
 public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenerator {
 	
+	private static final ThreadLocal<Boolean> narrativesDisabled = new ThreadLocal<>();
+	
 	private boolean isInitialized;
 	
 	@Getter
@@ -67,6 +69,10 @@ public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 	 */
 	@Override
 	public boolean populateResourceNarrative(FhirContext theFhirContext, IBaseResource theResource) {
+		if (narrativesDisabled.get() != null) {
+			return false;
+		}
+		
 		if (!isInitialized) {
 			initialize();
 		}
@@ -74,6 +80,27 @@ public class OpenmrsThymeleafNarrativeGenerator extends ThymeleafNarrativeGenera
 		return super.populateResourceNarrative(theFhirContext, theResource);
 	}
 	
+	/**
+	 * Turns narrative generation off or back on for resources encoded by the current thread, e.g., for the remainder
+	 * of a request whose client does not display narratives
+	 *
+	 * @param disabled whether narratives should not be generated
+	 */
+	public static void setNarrativesDisabled(boolean disabled) {
+		if (disabled) {
+			narrativesDisabled.set(Boolean.TRUE);
+		} else {
+			narrativesDisabled.remove();
+		}
+	}
+	
+	/**
+	 * @return whether narrative generation is turned off for the current thread
+	 */
+	public static boolean isNarrativesDisabled() {
+		return narrativesDisabled.get() != null;
+	}
+	
 	/**
 	 * Sets property file paths for the narrative generator
 	 *
@@ -9,6 +9,8 @@
  */
 package org.openmrs.module.fhir2.web.filter;
 
+import static org.openmrs.module.fhir2.FhirConstants.AUTHENTICATION_CACHE_TTL_PROPERTY;
+
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -17,17 +19,29 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import lombok.AllArgsConstructor;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
+import org.openmrs.User;
+import org.openmrs.api.context.BasicAuthenticated;
 import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Credentials;
+import org.openmrs.api.context.UserContext;
 import org.openmrs.api.context.UsernamePasswordCredentials;
+import org.openmrs.module.fhir2.api.util.AuthenticatedUserCache;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.util.PrivilegeConstants;
+import org.openmrs.web.WebConstants;
 
 public class AuthenticationFilter implements Filter {
 	
+	private static final String CACHED_CREDENTIALS_SCHEME = "FHIR2 CACHED CREDENTIALS";
+	
 	@Override
 	public void init(FilterConfig filterConfig) {
 	}
@@ -46,19 +60,26 @@ public class AuthenticationFilter implements Filter {
 				if (!Context.isAuthenticated()) {
 					String basicAuth = httpRequest.getHeader("Authorization");
 					if (!StringUtils.isBlank(basicAuth) && basicAuth.startsWith("Basic")) {
-						// this is "Basic ${base64encode(username + ":" + password)}"
-						try {
-							basicAuth = basicAuth.substring(6); // remove the leading "Basic "
-							String decoded = new String(Base64.decodeBase64(basicAuth), StandardCharsets.UTF_8);
-							String[] userAndPass = decoded.split(":");
-							UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(userAndPass[0],
-							        userAndPass[1]);
-							Context.authenticate(credentials);
-						}
-						catch (Exception e) {
-							HttpServletResponse httpResponse = (HttpServletResponse) response;
-							httpResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
-							return;
+						int ttlSeconds = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(AUTHENTICATION_CACHE_TTL_PROPERTY,
+						    0);
+						if (!authenticateFromCache(httpRequest, basicAuth, ttlSeconds)) {
+							// this is "Basic ${base64encode(username + ":" + password)}"
+							try {
+								long generation = AuthenticatedUserCache.getGeneration();
+								String encoded = basicAuth.substring(6); // remove the leading "Basic "
+								String decoded = new String(Base64.decodeBase64(encoded), StandardCharsets.UTF_8);
+								String[] userAndPass = decoded.split(":");
+								UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(userAndPass[0],
+								        userAndPass[1]);
+								Context.authenticate(credentials);
+								AuthenticatedUserCache.put(basicAuth, Context.getAuthenticatedUser().getUserId(), generation,
+								    ttlSeconds);
+							}
+							catch (Exception e) {
+								HttpServletResponse httpResponse = (HttpServletResponse) response;
+								httpResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
+								return;
+							}
 						}
 					} else {
 						// This filter never stops execution since the authentication scheme might be different. 
@@ -74,4 +95,60 @@ public class AuthenticationFilter implements Filter {
 	@Override
 	public void destroy() {
 	}
+	
+	/**
+	 * Authenticates the current request as the user the given header was recently authenticated as, without verifying
+	 * the password again
+	 *
+	 * @return true if the header was found in the {@link AuthenticatedUserCache} and the user is still active
+	 */
+	private static boolean authenticateFromCache(HttpServletRequest request, String authorization, int ttlSeconds) {
+		Integer userId = AuthenticatedUserCache.getUserId(authorization, ttlSeconds);
+		if (userId == null) {
+			return false;
+		}
+		
+		User user;
+		try {
+			Context.addProxyPrivilege(PrivilegeConstants.GET_USERS);
+			user = Context.getUserService().getUser(userId);
+		}
+		finally {
+			Context.removeProxyPrivilege(PrivilegeConstants.GET_USERS);
+		}
+		
+		if (user == null || user.getRetired()) {
+			AuthenticatedUserCache.evictUser(userId);
+			return false;
+		}
+		
+		// a new context for every request, as a context holds state such as proxy privileges
+		UserContext userContext = new UserContext(credentials -> new BasicAuthenticated(user, CACHED_CREDENTIALS_SCHEME));
+		userContext.authenticate(new CachedCredentials(user.getUsername()));
+		Context.setUserContext(userContext);
+		
+		// like Context.authenticate(), keep the user authenticated for the rest of the session
+		HttpSession session = request.getSession(false);
+		if (session != null) {
+			session.setAttribute(WebConstants.OPENMRS_USER_CONTEXT_HTTPSESSION_ATTR, userContext);
+		}
+		
+		return true;
+	}
+	
+	@AllArgsConstructor
+	private static class CachedCredentials implements Credentials {
+		
+		private final String username;
+		
+		@Override
+		public String getAuthenticationScheme() {
+			return CACHED_CREDENTIALS_SCHEME;
+		}
+		
+		@Override
+		public String getClientName() {
+			return username;
+		}
+	}
 }
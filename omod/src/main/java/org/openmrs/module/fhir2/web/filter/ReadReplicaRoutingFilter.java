@@ -0,0 +1,66 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.filter;
+
+import static org.openmrs.module.fhir2.FhirConstants.READ_REPLICA_STICKY_WINDOW_PROPERTY;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import java.io.IOException;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.dao.impl.ReadReplicaRouting;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+
+/**
+ * Identifies the client making each request to {@link ReadReplicaRouting}, so that a client that has just written
+ * something reads it back from the primary database rather than a read replica that may not have caught up yet.
+ * Clients are identified by their HTTP session or, failing that, by the authenticated user.
+ */
+public class ReadReplicaRoutingFilter implements Filter {
+	
+	@Override
+	public void init(FilterConfig filterConfig) {
+	}
+	
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+	        throws IOException, ServletException {
+		String client = null;
+		if (request instanceof HttpServletRequest) {
+			HttpSession session = ((HttpServletRequest) request).getSession(false);
+			if (session != null) {
+				client = "session:" + session.getId();
+			} else if (Context.isAuthenticated()) {
+				client = "user:" + Context.getAuthenticatedUser().getUuid();
+			}
+		}
+		
+		ReadReplicaRouting.startRequest(client,
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(READ_REPLICA_STICKY_WINDOW_PROPERTY, 5));
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			ReadReplicaRouting.endRequest();
+		}
+	}
+	
+	@Override
+	public void destroy() {
+	}
+}
@@ -0,0 +1,406 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.servlet;
+
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_OPERATIONS_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_QUEUE_SIZE_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_RESULT_MAXIMUM_BYTES_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_RESULT_RETENTION_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_STATUS_OPERATION;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_THREADS_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.ASYNC_TIMEOUT_PROPERTY;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ca.uhn.fhir.rest.api.Constants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.VirtualThreads;
+import org.openmrs.module.fhir2.web.util.BufferedResponse;
+import org.openmrs.module.fhir2.web.util.DetachableResponse;
+import org.openmrs.module.fhir2.web.util.DetachedRequest;
+import org.openmrs.util.OpenmrsClassLoader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Processes long-running operations, such as $everything, on a dedicated, bounded pool of threads so that they cannot
+ * use up the servlet container's threads and starve quick requests. The operations are listed in
+ * {@link org.openmrs.module.fhir2.FhirConstants#ASYNC_OPERATIONS_PROPERTY}.
+ * <p/>
+ * If the servlet container supports asynchronous processing for the request, the container thread is released as soon
+ * as the request has been handed over to the pool and the response is written by the pool thread. If the request times
+ * out or fails before it has been processed, the processing is cancelled and the response is no longer written to.
+ * <p/>
+ * If the client sent "Prefer: respond-async", the request is answered straight away with "202 Accepted" and a
+ * Content-Location where the client can poll for the result, which is kept in memory for
+ * {@link org.openmrs.module.fhir2.FhirConstants#ASYNC_RESULT_RETENTION_PROPERTY} seconds after it is ready and can only
+ * be fetched by the user who made the request. Once the results held take up more than
+ * {@link org.openmrs.module.fhir2.FhirConstants#ASYNC_RESULT_MAXIMUM_BYTES_PROPERTY} bytes, the least recently used
+ * ones are dropped. A DELETE to the same location cancels the request. When the pool is full, requests are
+ * answered with "503 Service Unavailable".
+ * <p/>
+ * When {@link VirtualThreads} are enabled, every request is processed on a virtual thread, if the container supports
+ * asynchronous processing, and the dedicated pool is not used.
+ */
+@Slf4j
+@Component
+public class AsyncRequestProcessor {
+	
+	@Autowired
+	@Setter(AccessLevel.PACKAGE)
+	private VirtualThreads virtualThreads;
+	
+	private volatile ThreadPoolExecutor executor;
+	
+	private volatile Cache<String, AsyncJob> jobs;
+	
+	/**
+	 * Handles the request if it is for a long-running operation or polls for the result of an earlier request
+	 *
+	 * @param servlet the servlet the request was made to
+	 * @param requestPath the path of the request relative to the servlet
+	 * @param request the request
+	 * @param response the response
+	 * @return true if the request has been taken care of, false if it should be processed as usual
+	 */
+	public boolean process(FhirRestServlet servlet, String requestPath, HttpServletRequest request,
+	        HttpServletResponse response) throws IOException {
+		String[] segments = StringUtils.split(requestPath, '/');
+		if (segments.length == 2 && ASYNC_STATUS_OPERATION.equals(segments[0])) {
+			handleStatusRequest(segments[1], request, response);
+			return true;
+		}
+		
+		boolean longRunning = segments.length > 0 && isLongRunning(segments[segments.length - 1]);
+		if (longRunning && isRespondAsync(request)) {
+			submitJob(servlet, request, response);
+			return true;
+		}
+		
+		boolean useVirtualThreads = virtualThreads.isEnabled();
+		if (!longRunning && !useVirtualThreads) {
+			return false;
+		}
+		
+		if (!request.isAsyncSupported()) {
+			// the container or one of the filters in front of the servlet cannot process requests asynchronously
+			return false;
+		}
+		
+		DetachableResponse detachableResponse = new DetachableResponse(response);
+		AsyncContext asyncContext = request.startAsync(request, detachableResponse);
+		int timeout = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(ASYNC_TIMEOUT_PROPERTY, 600);
+		if (timeout > 0) {
+			asyncContext.setTimeout(TimeUnit.SECONDS.toMillis(timeout));
+		}
+		
+		AtomicReference<Future<?>> future = new AtomicReference<>();
+		asyncContext.addListener(new AsyncListener() {
+			
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				abandon();
+				if (!response.isCommitted()) {
+					response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				}
+				
+				complete(asyncContext);
+			}
+			
+			@Override
+			public void onError(AsyncEvent event) {
+				abandon();
+				complete(asyncContext);
+			}
+			
+			@Override
+			public void onComplete(AsyncEvent event) {
+			}
+			
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+			
+			private void abandon() {
+				// once the listener returns, the container may recycle the response for another request
+				detachableResponse.detach();
+				Future<?> submitted = future.get();
+				if (submitted != null) {
+					submitted.cancel(true);
+				}
+			}
+		});
+		
+		Runnable task = () -> {
+			try {
+				servlet.processRequest((HttpServletRequest) asyncContext.getRequest(), detachableResponse);
+			}
+			catch (Exception e) {
+				if (detachableResponse.isDetached()) {
+					log.debug("Stopped processing {} asynchronously after the request was abandoned", requestPath, e);
+				} else {
+					log.error("Failed to process {} asynchronously", requestPath, e);
+				}
+			}
+			finally {
+				if (!detachableResponse.isDetached()) {
+					complete(asyncContext);
+				}
+			}
+		};
+		
+		try {
+			future.set(useVirtualThreads ? virtualThreads.submit(task)
+			        : getExecutor().submit(VirtualThreads.withRequestContext(task)));
+			if (detachableResponse.isDetached()) {
+				// the request timed out before the task was handed over
+				future.get().cancel(true);
+			}
+		}
+		catch (RejectedExecutionException e) {
+			sendBusy(response);
+			complete(asyncContext);
+		}
+		
+		return true;
+	}
+	
+	@PreDestroy
+	public synchronized void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(30, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			executor = null;
+		}
+		
+		if (jobs != null) {
+			jobs.invalidateAll();
+		}
+	}
+	
+	protected boolean isLongRunning(String operation) {
+		String operations = FhirGlobalPropertyHolder.getGlobalProperty(ASYNC_OPERATIONS_PROPERTY);
+		if (StringUtils.isBlank(operations) || !operation.startsWith("$")) {
+			return false;
+		}
+		
+		for (String name : StringUtils.split(operations, ',')) {
+			if (operation.substring(1).equals(StringUtils.removeStart(name.trim(), "$"))) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static boolean isRespondAsync(HttpServletRequest request) {
+		for (String prefer : Collections.list(request.getHeaders(Constants.HEADER_PREFER))) {
+			for (String preference : StringUtils.split(prefer, ',')) {
+				if (Constants.HEADER_PREFER_RESPOND_ASYNC.equalsIgnoreCase(preference.trim())) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	private void submitJob(FhirRestServlet servlet, HttpServletRequest request, HttpServletResponse response)
+	        throws IOException {
+		String id = UUID.randomUUID().toString();
+		DetachedRequest detachedRequest = new DetachedRequest(request);
+		BufferedResponse bufferedResponse = new BufferedResponse(response);
+		
+		Runnable task = () -> {
+			try {
+				servlet.processRequest(detachedRequest, bufferedResponse);
+			}
+			catch (Exception e) {
+				log.error("Failed to process {} asynchronously", detachedRequest.getRequestURI(), e);
+				bufferedResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+			finally {
+				bufferedResponse.finish();
+				
+				// putting the job again weighs the finished result and starts its retention
+				AsyncJob job = getJobs().getIfPresent(id);
+				if (job != null) {
+					getJobs().put(id, job);
+				}
+			}
+		};
+		
+		Future<?> future;
+		try {
+			future = virtualThreads.isEnabled() ? virtualThreads.submit(task)
+			        : getExecutor().submit(VirtualThreads.withRequestContext(task));
+		}
+		catch (RejectedExecutionException e) {
+			sendBusy(response);
+			return;
+		}
+		
+		getJobs().put(id, new AsyncJob(getCurrentUser(), future, bufferedResponse));
+		
+		String serverBase = servlet.getServerAddressStrategy().determineServerBase(servlet.getServletContext(), request);
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		response.setHeader(Constants.HEADER_CONTENT_LOCATION,
+		    StringUtils.removeEnd(serverBase, "/") + "/" + ASYNC_STATUS_OPERATION + "/" + id);
+	}
+	
+	private void handleStatusRequest(String id, HttpServletRequest request, HttpServletResponse response)
+	        throws IOException {
+		AsyncJob job = getJobs().getIfPresent(id);
+		if (job == null || !Objects.equals(job.user, getCurrentUser())) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		switch (request.getMethod()) {
+			case Constants.HTTP_GET:
+				if (!job.future.isDone()) {
+					response.setStatus(HttpServletResponse.SC_ACCEPTED);
+					response.setHeader(Constants.HEADER_X_PROGRESS, "in-progress");
+					response.setHeader(Constants.HEADER_RETRY_AFTER, "1");
+				} else if (job.future.isCancelled()) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				} else {
+					job.response.writeTo(response);
+				}
+				break;
+			case Constants.HTTP_DELETE:
+				job.future.cancel(true);
+				getJobs().invalidate(id);
+				response.setStatus(HttpServletResponse.SC_ACCEPTED);
+				break;
+			default:
+				response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+		}
+	}
+	
+	private static String getCurrentUser() {
+		return Context.isAuthenticated() ? Context.getAuthenticatedUser().getUuid() : null;
+	}
+	
+	private static void sendBusy(HttpServletResponse response) throws IOException {
+		response.setHeader(Constants.HEADER_RETRY_AFTER, "10");
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+	}
+	
+	private static void complete(AsyncContext asyncContext) {
+		try {
+			asyncContext.complete();
+		}
+		catch (IllegalStateException e) {
+			// the container already completed the request, e.g., because it timed out
+			log.debug("Asynchronous request already completed", e);
+		}
+	}
+	
+	private ThreadPoolExecutor getExecutor() {
+		ThreadPoolExecutor result = executor;
+		if (result == null) {
+			synchronized (this) {
+				result = executor;
+				if (result == null) {
+					int threads = Math.max(FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(ASYNC_THREADS_PROPERTY, 4), 1);
+					int queueSize = Math.max(FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(ASYNC_QUEUE_SIZE_PROPERTY, 100),
+					    1);
+					
+					log.debug("Starting asynchronous request pool with {} threads", threads);
+					result = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					        new ArrayBlockingQueue<>(queueSize), new WorkerThreadFactory());
+					result.allowCoreThreadTimeOut(true);
+					executor = result;
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private Cache<String, AsyncJob> getJobs() {
+		Cache<String, AsyncJob> result = jobs;
+		if (result == null) {
+			synchronized (this) {
+				result = jobs;
+				if (result == null) {
+					int retention = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(ASYNC_RESULT_RETENTION_PROPERTY,
+					    3600);
+					int maximumBytes = FhirGlobalPropertyHolder
+					        .getGlobalPropertyAsInteger(ASYNC_RESULT_MAXIMUM_BYTES_PROPERTY, 104857600);
+					// a single segment so that one large result can use the whole budget
+					jobs = result = CacheBuilder.newBuilder().concurrencyLevel(1)
+					        .expireAfterWrite(Math.max(retention, 1), TimeUnit.SECONDS)
+					        .maximumWeight(Math.max(maximumBytes, 0))
+					        .weigher((String id, AsyncJob job) -> job.response.getSize())
+					        .<String, AsyncJob> build();
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	@AllArgsConstructor
+	private static class AsyncJob {
+		
+		private final String user;
+		
+		private final Future<?> future;
+		
+		private final BufferedResponse response;
+	}
+	
+	private static class WorkerThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "fhir2-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(OpenmrsClassLoader.getInstance());
+			return thread;
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.server.BasePagingProvider;
 import ca.uhn.fhir.rest.server.FifoMemoryPagingProvider;
@@ -44,11 +45,18 @@ import org.openmrs.module.fhir2.FhirActivator;
 import org.openmrs.module.fhir2.FhirConstants;
 import org.openmrs.module.fhir2.api.FhirGlobalPropertyService;
 import org.openmrs.module.fhir2.api.annotations.R4Provider;
+import org.openmrs.module.fhir2.api.search.FhirPagingProvider;
 import org.openmrs.module.fhir2.api.spi.ModuleLifecycleListener;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
 import org.openmrs.module.fhir2.web.authentication.RequireAuthenticationInterceptor;
-import org.openmrs.module.fhir2.web.util.DisableCacheInterceptor;
+import org.openmrs.module.fhir2.web.util.ConditionalReadInterceptor;
+import org.openmrs.module.fhir2.web.util.GzipRequestWrapper;
+import org.openmrs.module.fhir2.web.util.GzipResponseWrapper;
+import org.openmrs.module.fhir2.web.util.NarrativeInterceptor;
 import org.openmrs.module.fhir2.web.util.NarrativeUtils;
+import org.openmrs.module.fhir2.web.util.ResponseCacheInterceptor;
+import org.openmrs.module.fhir2.web.util.StreamingBundleInterceptor;
 import org.openmrs.module.fhir2.web.util.SummaryInterceptor;
 import org.openmrs.module.fhir2.web.util.SupportMergePatchInterceptor;
 import org.openmrs.util.OpenmrsClassLoader;
@@ -82,6 +90,18 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Qualifier("messageSourceService"), @Autowired })
 	private MessageSource messageSource;
 	
+	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Autowired })
+	private FhirPagingProvider fhirPagingProvider;
+	
+	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Autowired })
+	private ConditionalReadInterceptor conditionalReadInterceptor;
+	
+	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Autowired })
+	private ResponseCacheInterceptor responseCacheInterceptor;
+	
+	@Setter(value = AccessLevel.PUBLIC, onMethod_ = { @Autowired })
+	private AsyncRequestProcessor asyncRequestProcessor;
+	
 	private final GlobalPropertyListener fhirRestServletListener = new GlobalPropertyListener() {
 		
 		@Override
@@ -149,9 +169,16 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 
 		registerInterceptor(loggingInterceptor);
 		registerInterceptor(new RequireAuthenticationInterceptor());
-		registerInterceptor(new DisableCacheInterceptor());
+		// without the application context, e.g., in tests, conditional reads are never answered with 304 Not Modified
+		registerInterceptor(conditionalReadInterceptor != null ? conditionalReadInterceptor
+				: new ConditionalReadInterceptor());
+		if (responseCacheInterceptor != null) {
+			registerInterceptor(responseCacheInterceptor);
+		}
 		registerInterceptor(new SummaryInterceptor());
+		registerInterceptor(new NarrativeInterceptor());
 		registerInterceptor(new SupportMergePatchInterceptor());
+		registerInterceptor(new StreamingBundleInterceptor());
 
 		String narrativesOverridePropertyFile = NarrativeUtils.getValidatedPropertiesFilePath(
 				globalPropertyService.getGlobalProperty(FhirConstants.NARRATIVES_OVERRIDE_PROPERTY_FILE, null));
@@ -190,7 +217,36 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 	@Override
 	protected void service(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
 		Thread.currentThread().setContextClassLoader(OpenmrsClassLoader.getInstance());
-		super.service(theReq, theResp);
+		
+		if (asyncRequestProcessor != null && asyncRequestProcessor.process(this,
+		    getRequestPath(theReq.getRequestURI(), theReq.getContextPath(), theReq.getServletPath()), theReq, theResp)) {
+			return;
+		}
+		
+		processRequest(theReq, theResp);
+	}
+	
+	/**
+	 * Processes a request on the current thread, compressing the response if the client accepts it
+	 */
+	void processRequest(HttpServletRequest theReq, HttpServletResponse theResp) throws ServletException, IOException {
+		int compressionMinimumSize = GzipResponseWrapper.acceptsGzip(theReq.getHeader(Constants.HEADER_ACCEPT_ENCODING))
+		        ? getCompressionMinimumSize()
+		        : -1;
+		HttpServletRequest request = GzipRequestWrapper.wrap(theReq, compressionMinimumSize >= 0);
+		
+		if (compressionMinimumSize < 0) {
+			super.service(request, theResp);
+			return;
+		}
+		
+		GzipResponseWrapper response = new GzipResponseWrapper(theResp, compressionMinimumSize);
+		super.service(request, response);
+		response.finish();
+	}
+	
+	protected int getCompressionMinimumSize() {
+		return FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(FhirConstants.COMPRESSION_MINIMUM_SIZE_PROPERTY, 1024);
 	}
 	
 	@Override
@@ -219,7 +275,9 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 		int maximumPageSize = globalPropertyService.getGlobalPropertyAsInteger(FhirConstants.OPENMRS_FHIR_MAXIMUM_PAGE_SIZE,
 		    100);
 		
-		BasePagingProvider pagingProvider = new FifoMemoryPagingProvider(100);
+		// the in-memory provider is only used when the servlet is set up without the application context, e.g., in tests
+		BasePagingProvider pagingProvider = fhirPagingProvider != null ? fhirPagingProvider
+		        : new FifoMemoryPagingProvider(100);
 		pagingProvider.setDefaultPageSize(defaultPageSize);
 		pagingProvider.setMaximumPageSize(maximumPageSize);
 		return pagingProvider;
@@ -259,14 +317,21 @@ public class FhirRestServlet extends RestfulServer implements ModuleLifecycleLis
 				
 				registerInterceptor(ctx.getBean("hapiLoggingInterceptor", LoggingInterceptor.class));
 				registerInterceptor(new RequireAuthenticationInterceptor());
-				registerInterceptor(new DisableCacheInterceptor());
+				setConditionalReadInterceptor(ctx.getBean(ConditionalReadInterceptor.class));
+				registerInterceptor(conditionalReadInterceptor);
+				setResponseCacheInterceptor(ctx.getBean(ResponseCacheInterceptor.class));
+				registerInterceptor(responseCacheInterceptor);
 				registerInterceptor(new SummaryInterceptor());
+				registerInterceptor(new NarrativeInterceptor());
 				registerInterceptor(new SupportMergePatchInterceptor());
+				registerInterceptor(new StreamingBundleInterceptor());
 				
 				setAdministrationService(ctx.getBean("adminService", AdministrationService.class));
 				setGlobalPropertyService(ctx.getBean(FhirGlobalPropertyService.class));
 				setServerAddressStrategy(ctx.getBean(IServerAddressStrategy.class));
+				setFhirPagingProvider(ctx.getBean(FhirPagingProvider.class));
 				setPagingProvider(createPagingProvider());
+				setAsyncRequestProcessor(ctx.getBean(AsyncRequestProcessor.class));
 				
 				administrationService.addGlobalPropertyListener(fhirRestServletListener);
 			}
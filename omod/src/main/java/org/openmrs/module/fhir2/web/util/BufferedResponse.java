@@ -0,0 +1,335 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.util.DateUtils;
+
+/**
+ * Holds a complete response in memory, independent of the response it was created for, so that it can be written to
+ * a later request, e.g., when a client polls for the result of a request answered with "202 Accepted". Once the
+ * original request has been completed, this response must not touch it, so nothing is passed on to it. The response is
+ * filled by a single thread and only written out once that thread is done with it.
+ */
+public class BufferedResponse extends HttpServletResponseWrapper {
+	
+	private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	
+	private int status = SC_OK;
+	
+	private String characterEncoding = StandardCharsets.ISO_8859_1.name();
+	
+	private Locale locale = Locale.getDefault();
+	
+	private ServletOutputStream outputStream;
+	
+	private PrintWriter writer;
+	
+	private boolean committed = false;
+	
+	public BufferedResponse(HttpServletResponse response) {
+		super(response);
+	}
+	
+	/**
+	 * Writes the status, headers and body of this response to another response
+	 *
+	 * @param response the response to write to
+	 * @throws IOException if the body cannot be written
+	 */
+	public void writeTo(HttpServletResponse response) throws IOException {
+		response.setStatus(status);
+		headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+		response.setContentLength(body.size());
+		body.writeTo(response.getOutputStream());
+	}
+	
+	/**
+	 * @return the number of bytes of the body held in memory
+	 */
+	public int getSize() {
+		return body.size();
+	}
+	
+	/**
+	 * Writes out anything still held by the writer or output stream; called once the request has been processed
+	 */
+	public void finish() {
+		if (writer != null) {
+			writer.flush();
+		}
+		
+		committed = true;
+	}
+	
+	@Override
+	public void setStatus(int sc) {
+		this.status = sc;
+	}
+	
+	@Override
+	public void setStatus(int sc, String sm) {
+		this.status = sc;
+	}
+	
+	@Override
+	public int getStatus() {
+		return status;
+	}
+	
+	@Override
+	public void sendError(int sc) {
+		sendError(sc, null);
+	}
+	
+	@Override
+	public void sendError(int sc, String msg) {
+		resetBuffer();
+		this.status = sc;
+		if (msg != null) {
+			byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+			setContentType("text/plain;charset=UTF-8");
+			body.write(bytes, 0, bytes.length);
+		}
+		
+		committed = true;
+	}
+	
+	@Override
+	public void sendRedirect(String location) {
+		resetBuffer();
+		this.status = SC_FOUND;
+		setHeader(Constants.HEADER_LOCATION, location);
+		committed = true;
+	}
+	
+	@Override
+	public void setHeader(String name, String value) {
+		if (value == null) {
+			headers.remove(name);
+		} else {
+			headers.put(name, new ArrayList<>(Collections.singletonList(value)));
+		}
+	}
+	
+	@Override
+	public void addHeader(String name, String value) {
+		if (value != null) {
+			headers.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+		}
+	}
+	
+	@Override
+	public void setIntHeader(String name, int value) {
+		setHeader(name, String.valueOf(value));
+	}
+	
+	@Override
+	public void addIntHeader(String name, int value) {
+		addHeader(name, String.valueOf(value));
+	}
+	
+	@Override
+	public void setDateHeader(String name, long date) {
+		setHeader(name, DateUtils.formatDate(new Date(date)));
+	}
+	
+	@Override
+	public void addDateHeader(String name, long date) {
+		addHeader(name, DateUtils.formatDate(new Date(date)));
+	}
+	
+	@Override
+	public boolean containsHeader(String name) {
+		return headers.containsKey(name);
+	}
+	
+	@Override
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+	
+	@Override
+	public Collection<String> getHeaders(String name) {
+		List<String> values = headers.get(name);
+		return values == null ? Collections.emptyList() : new ArrayList<>(values);
+	}
+	
+	@Override
+	public Collection<String> getHeaderNames() {
+		return new ArrayList<>(headers.keySet());
+	}
+	
+	@Override
+	public void addCookie(Cookie cookie) {
+		// cookies are not passed on to a client polling for the result
+	}
+	
+	@Override
+	public void setContentType(String type) {
+		setHeader(Constants.HEADER_CONTENT_TYPE, type);
+		if (type != null) {
+			int index = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+			if (index >= 0) {
+				characterEncoding = type.substring(index + "charset=".length()).trim();
+			}
+		}
+	}
+	
+	@Override
+	public String getContentType() {
+		return getHeader(Constants.HEADER_CONTENT_TYPE);
+	}
+	
+	@Override
+	public void setCharacterEncoding(String charset) {
+		this.characterEncoding = charset;
+	}
+	
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+	
+	@Override
+	public void setContentLength(int len) {
+		// the length is set when the response is written out
+	}
+	
+	@Override
+	public void setContentLengthLong(long len) {
+		// the length is set when the response is written out
+	}
+	
+	@Override
+	public void setLocale(Locale loc) {
+		this.locale = loc;
+	}
+	
+	@Override
+	public Locale getLocale() {
+		return locale;
+	}
+	
+	@Override
+	public void setBufferSize(int size) {
+	}
+	
+	@Override
+	public int getBufferSize() {
+		return Integer.MAX_VALUE;
+	}
+	
+	@Override
+	public void flushBuffer() {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+	
+	@Override
+	public boolean isCommitted() {
+		return committed;
+	}
+	
+	@Override
+	public void reset() {
+		if (committed) {
+			throw new IllegalStateException("The response has already been committed");
+		}
+		
+		headers.clear();
+		status = SC_OK;
+		resetBuffer();
+	}
+	
+	@Override
+	public void resetBuffer() {
+		body.reset();
+	}
+	
+	@Override
+	public String encodeURL(String url) {
+		return url;
+	}
+	
+	@Override
+	public String encodeRedirectURL(String url) {
+		return url;
+	}
+	
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if (outputStream == null) {
+			outputStream = new ServletOutputStream() {
+				
+				@Override
+				public void write(int b) {
+					body.write(b);
+				}
+				
+				@Override
+				public void write(byte[] b, int off, int len) {
+					body.write(b, off, len);
+				}
+				
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+				
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		
+		return outputStream;
+	}
+	
+	@Override
+	public PrintWriter getWriter() {
+		if (writer == null) {
+			Charset charset = StandardCharsets.ISO_8859_1;
+			if (characterEncoding != null && Charset.isSupported(characterEncoding)) {
+				charset = Charset.forName(characterEncoding);
+			}
+			
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset));
+		}
+		
+		return writer;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import java.util.Date;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
+import ca.uhn.fhir.util.DateUtils;
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allows clients to cache the resources they read and to check whether they have changed. Reads are sent with the
+ * Cache-Control header set by {@link FhirConstants#CACHE_CONTROL_PROPERTY}, a weak ETag holding the version of the
+ * resource and a Last-Modified header. When a read includes an If-None-Match or If-Modified-Since header, the version of
+ * the resource is looked up without loading or translating it and, if it has not changed, a 304 Not Modified response is
+ * sent instead. Search results are never cached.
+ */
+@Component
+@Interceptor
+@Setter(AccessLevel.PACKAGE)
+public class ConditionalReadInterceptor {
+	
+	private static final String NO_STORE = "no-store";
+	
+	// the version of a resource only reflects changes to its own table, not to, e.g., the names of a patient, so
+	// caching has to be opted into for the types where that is enough
+	private static final String DEFAULT_CACHE_CONTROL = NO_STORE;
+	
+	@Autowired
+	private ResourceVersionLookup resourceVersionLookup;
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void handleConditionalRead(RequestDetails requestDetails) {
+		if (requestDetails.getRestOperationType() != RestOperationTypeEnum.READ) {
+			return;
+		}
+		
+		String ifNoneMatch = requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH);
+		String ifModifiedSince = requestDetails.getHeader(Constants.HEADER_IF_MODIFIED_SINCE);
+		if (StringUtils.isBlank(ifNoneMatch) && StringUtils.isBlank(ifModifiedSince)) {
+			return;
+		}
+		
+		IIdType id = requestDetails.getId();
+		if (id == null || !id.hasIdPart() || id.hasVersionIdPart() || resourceVersionLookup == null) {
+			return;
+		}
+		
+		Date lastUpdated = resourceVersionLookup.getLastUpdated(requestDetails.getResourceName(), id.getIdPart());
+		if (lastUpdated == null) {
+			return;
+		}
+		
+		String versionId = String.valueOf(lastUpdated.getTime());
+		
+		boolean notModified;
+		if (StringUtils.isNotBlank(ifNoneMatch)) {
+			// If-Modified-Since is ignored when If-None-Match is sent
+			notModified = matchesAnyEntityTag(ifNoneMatch, versionId);
+		} else {
+			Date since = DateUtils.parseDate(ifModifiedSince);
+			// the Last-Modified header only has a precision of seconds
+			notModified = since != null && lastUpdated.getTime() / 1000 <= since.getTime() / 1000;
+		}
+		
+		if (notModified) {
+			addHeaders(requestDetails, versionId, lastUpdated);
+			throw new NotModifiedException("Not Modified");
+		}
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean handleOutgoingResponse(RequestDetails requestDetails, ResponseDetails responseDetails) {
+		if (requestDetails.getRestOperationType() == RestOperationTypeEnum.READ) {
+			requestDetails.getResponse().addHeader(Constants.HEADER_CACHE_CONTROL,
+			    getCacheControl(requestDetails.getResourceName()));
+			
+			// HAPI only sends an ETag when the id of the resource includes its version, but our translators only set the
+			// version in the resource's meta
+			IBaseResource resource = responseDetails == null ? null : responseDetails.getResponseResource();
+			if (resource != null && resource.getIdElement().hasIdPart() && !resource.getIdElement().hasVersionIdPart()
+			        && StringUtils.isNotBlank(resource.getMeta().getVersionId())) {
+				resource.setId(resource.getIdElement().withVersion(resource.getMeta().getVersionId()));
+			}
+		} else if (requestDetails.getRestOperationType() == RestOperationTypeEnum.SEARCH_TYPE) {
+			requestDetails.getResponse().addHeader(Constants.HEADER_CACHE_CONTROL, NO_STORE);
+		}
+		
+		return true;
+	}
+	
+	private void addHeaders(RequestDetails requestDetails, String versionId, Date lastUpdated) {
+		requestDetails.getResponse().addHeader(Constants.HEADER_CACHE_CONTROL,
+		    getCacheControl(requestDetails.getResourceName()));
+		requestDetails.getResponse().addHeader(Constants.HEADER_ETAG, "W/\"" + versionId + '"');
+		requestDetails.getResponse().addHeader(Constants.HEADER_LAST_MODIFIED, DateUtils.formatDate(lastUpdated));
+	}
+	
+	private static boolean matchesAnyEntityTag(String ifNoneMatch, String versionId) {
+		for (String entityTag : ifNoneMatch.split(",")) {
+			String tag = entityTag.trim();
+			if ("*".equals(tag)) {
+				return true;
+			}
+			
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			
+			if (versionId.equals(StringUtils.strip(tag, "\""))) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	static String getCacheControl(String resourceName) {
+		String cacheControl = FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY,
+		    DEFAULT_CACHE_CONTROL);
+		
+		if (resourceName != null) {
+			cacheControl = FhirGlobalPropertyHolder
+			        .getGlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY + "." + resourceName, cacheControl);
+		}
+		
+		return StringUtils.isBlank(cacheControl) ? NO_STORE : cacheControl;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Passes everything on to the response it wraps until it is detached, e.g., because the container timed the request
+ * out while it was still being processed. From then on, the container may recycle the original response for another
+ * request, so nothing is passed on to it any more: headers and status are discarded and writing the body fails.
+ */
+public class DetachableResponse extends HttpServletResponseWrapper {
+	
+	private volatile boolean detached = false;
+	
+	private ServletOutputStream outputStream;
+	
+	private PrintWriter writer;
+	
+	public DetachableResponse(HttpServletResponse response) {
+		super(response);
+	}
+	
+	/**
+	 * Stops passing anything on to the original response
+	 */
+	public void detach() {
+		setResponse(new BufferedResponse((HttpServletResponse) getResponse()));
+		detached = true;
+	}
+	
+	public boolean isDetached() {
+		return detached;
+	}
+	
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		checkAttached();
+		if (outputStream == null) {
+			ServletOutputStream delegate = super.getOutputStream();
+			outputStream = new ServletOutputStream() {
+				
+				@Override
+				public void write(int b) throws IOException {
+					checkAttached();
+					delegate.write(b);
+				}
+				
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					checkAttached();
+					delegate.write(b, off, len);
+				}
+				
+				@Override
+				public void flush() throws IOException {
+					checkAttached();
+					delegate.flush();
+				}
+				
+				@Override
+				public void close() throws IOException {
+					checkAttached();
+					delegate.close();
+				}
+				
+				@Override
+				public boolean isReady() {
+					return !detached && delegate.isReady();
+				}
+				
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					delegate.setWriteListener(writeListener);
+				}
+			};
+		}
+		
+		return outputStream;
+	}
+	
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		checkAttached();
+		if (writer == null) {
+			Writer delegate = super.getWriter();
+			writer = new PrintWriter(new Writer() {
+				
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					checkAttached();
+					delegate.write(cbuf, off, len);
+				}
+				
+				@Override
+				public void flush() throws IOException {
+					checkAttached();
+					delegate.flush();
+				}
+				
+				@Override
+				public void close() throws IOException {
+					checkAttached();
+					delegate.close();
+				}
+			});
+		}
+		
+		return writer;
+	}
+	
+	private void checkAttached() throws IOException {
+		if (detached) {
+			throw new IOException("The response has been detached from the request");
+		}
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ca.uhn.fhir.util.DateUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A copy of a request that can still be processed after the container has finished with, and recycled, the original
+ * request, e.g., for requests answered with "202 Accepted" and processed in the background. Everything that processing
+ * a FHIR request reads is copied, including the body; the request has no session.
+ */
+public class DetachedRequest extends HttpServletRequestWrapper {
+	
+	private final String method;
+	
+	private final String requestUri;
+	
+	private final StringBuffer requestUrl;
+	
+	private final String contextPath;
+	
+	private final String servletPath;
+	
+	private final String pathInfo;
+	
+	private final String queryString;
+	
+	private final Map<String, String[]> parameters;
+	
+	private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	
+	private final Map<String, Object> attributes = new HashMap<>();
+	
+	private final byte[] body;
+	
+	private final String contentType;
+	
+	private String characterEncoding;
+	
+	private final String scheme;
+	
+	private final String serverName;
+	
+	private final int serverPort;
+	
+	private final String remoteAddr;
+	
+	private final String remoteHost;
+	
+	private final List<Locale> locales;
+	
+	private ServletInputStream inputStream;
+	
+	private BufferedReader reader;
+	
+	/**
+	 * Copies the request, reading its body in the process
+	 *
+	 * @param request the request to copy
+	 * @throws IOException if the body cannot be read
+	 */
+	public DetachedRequest(HttpServletRequest request) throws IOException {
+		super(request);
+		this.method = request.getMethod();
+		this.requestUri = request.getRequestURI();
+		this.requestUrl = new StringBuffer(request.getRequestURL());
+		this.contextPath = request.getContextPath();
+		this.servletPath = request.getServletPath();
+		this.pathInfo = request.getPathInfo();
+		this.queryString = request.getQueryString();
+		this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(request.getParameterMap()));
+		this.body = IOUtils.toByteArray(request.getInputStream());
+		this.contentType = request.getContentType();
+		this.characterEncoding = request.getCharacterEncoding();
+		this.scheme = request.getScheme();
+		this.serverName = request.getServerName();
+		this.serverPort = request.getServerPort();
+		this.remoteAddr = request.getRemoteAddr();
+		this.remoteHost = request.getRemoteHost();
+		this.locales = Collections.list(request.getLocales());
+		
+		for (String name : Collections.list(request.getHeaderNames())) {
+			headers.put(name, Collections.list(request.getHeaders(name)));
+		}
+		
+		for (String name : Collections.list(request.getAttributeNames())) {
+			attributes.put(name, request.getAttribute(name));
+		}
+	}
+	
+	@Override
+	public String getMethod() {
+		return method;
+	}
+	
+	@Override
+	public String getRequestURI() {
+		return requestUri;
+	}
+	
+	@Override
+	public StringBuffer getRequestURL() {
+		return new StringBuffer(requestUrl);
+	}
+	
+	@Override
+	public String getContextPath() {
+		return contextPath;
+	}
+	
+	@Override
+	public String getServletPath() {
+		return servletPath;
+	}
+	
+	@Override
+	public String getPathInfo() {
+		return pathInfo;
+	}
+	
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+	
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return parameters;
+	}
+	
+	@Override
+	public String getParameter(String name) {
+		String[] values = parameters.get(name);
+		return values == null || values.length == 0 ? null : values[0];
+	}
+	
+	@Override
+	public String[] getParameterValues(String name) {
+		return parameters.get(name);
+	}
+	
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+	
+	@Override
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+	
+	@Override
+	public Enumeration<String> getHeaders(String name) {
+		List<String> values = headers.get(name);
+		return values == null ? Collections.emptyEnumeration() : Collections.enumeration(values);
+	}
+	
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration(new ArrayList<>(headers.keySet()));
+	}
+	
+	@Override
+	public int getIntHeader(String name) {
+		String value = getHeader(name);
+		return value == null ? -1 : Integer.parseInt(value);
+	}
+	
+	@Override
+	public long getDateHeader(String name) {
+		String value = getHeader(name);
+		if (value == null) {
+			return -1L;
+		}
+		
+		Date date = DateUtils.parseDate(value);
+		if (date == null) {
+			throw new IllegalArgumentException("Invalid date in header " + name + ": " + value);
+		}
+		
+		return date.getTime();
+	}
+	
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+	
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+	}
+	
+	@Override
+	public void setAttribute(String name, Object o) {
+		if (o == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, o);
+		}
+	}
+	
+	@Override
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+	
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+	
+	@Override
+	public int getContentLength() {
+		return body.length;
+	}
+	
+	@Override
+	public long getContentLengthLong() {
+		return body.length;
+	}
+	
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+	
+	@Override
+	public void setCharacterEncoding(String characterEncoding) {
+		this.characterEncoding = characterEncoding;
+	}
+	
+	@Override
+	public ServletInputStream getInputStream() {
+		if (inputStream == null) {
+			inputStream = new ByteArrayServletInputStream(body);
+		}
+		
+		return inputStream;
+	}
+	
+	@Override
+	public BufferedReader getReader() {
+		if (reader == null) {
+			Charset charset = StandardCharsets.ISO_8859_1;
+			if (characterEncoding != null && Charset.isSupported(characterEncoding)) {
+				charset = Charset.forName(characterEncoding);
+			}
+			
+			reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+		}
+		
+		return reader;
+	}
+	
+	@Override
+	public String getScheme() {
+		return scheme;
+	}
+	
+	@Override
+	public String getServerName() {
+		return serverName;
+	}
+	
+	@Override
+	public int getServerPort() {
+		return serverPort;
+	}
+	
+	@Override
+	public String getRemoteAddr() {
+		return remoteAddr;
+	}
+	
+	@Override
+	public String getRemoteHost() {
+		return remoteHost;
+	}
+	
+	@Override
+	public Locale getLocale() {
+		return locales.isEmpty() ? Locale.getDefault() : locales.get(0);
+	}
+	
+	@Override
+	public Enumeration<Locale> getLocales() {
+		return Collections.enumeration(locales);
+	}
+	
+	@Override
+	public HttpSession getSession() {
+		return null;
+	}
+	
+	@Override
+	public HttpSession getSession(boolean create) {
+		return null;
+	}
+	
+	@Override
+	public boolean isAsyncSupported() {
+		return false;
+	}
+	
+	private static final class ByteArrayServletInputStream extends ServletInputStream {
+		
+		private final ByteArrayInputStream delegate;
+		
+		private ByteArrayServletInputStream(byte[] body) {
+			this.delegate = new ByteArrayInputStream(body);
+		}
+		
+		@Override
+		public int read() {
+			return delegate.read();
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return delegate.read(b, off, len);
+		}
+		
+		@Override
+		public int available() {
+			return delegate.available();
+		}
+		
+		@Override
+		public boolean isFinished() {
+			return delegate.available() == 0;
+		}
+		
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+		
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import ca.uhn.fhir.rest.api.Constants;
+
+/**
+ * Decompresses request bodies sent with "Content-Encoding: gzip" as they are read and, when the
+ * response is compressed by {@link GzipResponseWrapper}, hides the Accept-Encoding header so that the
+ * response is not compressed a second time further down.
+ */
+public class GzipRequestWrapper extends HttpServletRequestWrapper {
+	
+	private final boolean decompressBody;
+	
+	private final boolean hideAcceptEncoding;
+	
+	private ServletInputStream inputStream;
+	
+	private BufferedReader reader;
+	
+	private GzipRequestWrapper(HttpServletRequest request, boolean decompressBody, boolean hideAcceptEncoding) {
+		super(request);
+		this.decompressBody = decompressBody;
+		this.hideAcceptEncoding = hideAcceptEncoding;
+	}
+	
+	/**
+	 * @param request the request to wrap
+	 * @param compressingResponse whether the response to this request is compressed by a
+	 *            {@link GzipResponseWrapper}
+	 * @return the wrapped request or the request itself if there is nothing to do
+	 */
+	public static HttpServletRequest wrap(HttpServletRequest request, boolean compressingResponse) {
+		boolean decompressBody = isGzip(request.getHeader(Constants.HEADER_CONTENT_ENCODING));
+		if (!decompressBody && !compressingResponse) {
+			return request;
+		}
+		
+		return new GzipRequestWrapper(request, decompressBody, compressingResponse);
+	}
+	
+	private static boolean isGzip(String contentEncoding) {
+		return contentEncoding != null
+		        && ("gzip".equalsIgnoreCase(contentEncoding.trim()) || "x-gzip".equalsIgnoreCase(contentEncoding.trim()));
+	}
+	
+	@Override
+	public String getHeader(String name) {
+		return isHidden(name) ? null : super.getHeader(name);
+	}
+	
+	@Override
+	public Enumeration<String> getHeaders(String name) {
+		return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+	}
+	
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		List<String> headerNames = Collections.list(super.getHeaderNames());
+		headerNames.removeIf(this::isHidden);
+		return Collections.enumeration(headerNames);
+	}
+	
+	@Override
+	public int getIntHeader(String name) {
+		return isHidden(name) ? -1 : super.getIntHeader(name);
+	}
+	
+	@Override
+	public int getContentLength() {
+		return decompressBody ? -1 : super.getContentLength();
+	}
+	
+	@Override
+	public long getContentLengthLong() {
+		return decompressBody ? -1L : super.getContentLengthLong();
+	}
+	
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+		if (!decompressBody) {
+			return super.getInputStream();
+		}
+		
+		if (inputStream == null) {
+			inputStream = new GzipServletInputStream(super.getInputStream());
+		}
+		
+		return inputStream;
+	}
+	
+	@Override
+	public BufferedReader getReader() throws IOException {
+		if (!decompressBody) {
+			return super.getReader();
+		}
+		
+		if (reader == null) {
+			Charset charset = StandardCharsets.ISO_8859_1;
+			String characterEncoding = getCharacterEncoding();
+			if (characterEncoding != null && Charset.isSupported(characterEncoding)) {
+				charset = Charset.forName(characterEncoding);
+			}
+			
+			reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+		}
+		
+		return reader;
+	}
+	
+	private boolean isHidden(String name) {
+		return (decompressBody && (Constants.HEADER_CONTENT_ENCODING.equalsIgnoreCase(name)
+		        || Constants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)))
+		        || (hideAcceptEncoding && Constants.HEADER_ACCEPT_ENCODING.equalsIgnoreCase(name));
+	}
+	
+	private static final class GzipServletInputStream extends ServletInputStream {
+		
+		private final ServletInputStream compressed;
+		
+		private final GZIPInputStream delegate;
+		
+		private boolean finished = false;
+		
+		private GzipServletInputStream(ServletInputStream compressed) throws IOException {
+			this.compressed = compressed;
+			this.delegate = new GZIPInputStream(compressed);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = delegate.read();
+			finished = b == -1;
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = delegate.read(b, off, len);
+			finished = read == -1;
+			return read;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return delegate.available();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+		
+		@Override
+		public boolean isFinished() {
+			return finished;
+		}
+		
+		@Override
+		public boolean isReady() {
+			return compressed.isReady();
+		}
+		
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			compressed.setReadListener(readListener);
+		}
+	}
+}
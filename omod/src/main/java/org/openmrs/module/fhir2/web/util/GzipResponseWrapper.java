@@ -0,0 +1,323 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import ca.uhn.fhir.rest.api.Constants;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Compresses the response body with gzip once it reaches a minimum size. Output is held in memory
+ * only until that size is reached; after that it is compressed as it is written, so a streamed
+ * response stays streamed. Bodies that never reach the minimum size are sent uncompressed.
+ */
+public class GzipResponseWrapper extends HttpServletResponseWrapper {
+	
+	private static final String GZIP = "gzip";
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final int minimumSize;
+	
+	private ThresholdGzipOutputStream outputStream;
+	
+	private PrintWriter writer;
+	
+	private boolean compressed = false;
+	
+	public GzipResponseWrapper(HttpServletResponse response, int minimumSize) {
+		super(response);
+		this.minimumSize = Math.max(minimumSize, 0);
+		response.addHeader(Constants.HEADER_VARY, Constants.HEADER_ACCEPT_ENCODING);
+	}
+	
+	/**
+	 * Determines whether the given Accept-Encoding header allows a gzip encoded response
+	 *
+	 * @param acceptEncoding the value of the Accept-Encoding header, may be null
+	 * @return true if gzip (or any encoding) is acceptable with a non-zero quality
+	 */
+	public static boolean acceptsGzip(String acceptEncoding) {
+		if (StringUtils.isBlank(acceptEncoding)) {
+			return false;
+		}
+		
+		Boolean wildcard = null;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase(Locale.ROOT);
+			
+			double quality = 1.0;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).trim());
+					}
+					catch (NumberFormatException e) {
+						quality = 0.0;
+					}
+				}
+			}
+			
+			if (GZIP.equals(name) || "x-gzip".equals(name)) {
+				return quality > 0.0;
+			} else if ("*".equals(name)) {
+				wildcard = quality > 0.0;
+			}
+		}
+		
+		return wildcard != null && wildcard;
+	}
+	
+	public boolean isCompressed() {
+		return compressed;
+	}
+	
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return getThresholdOutputStream();
+	}
+	
+	@Override
+	public PrintWriter getWriter() {
+		if (writer == null) {
+			Charset charset = StandardCharsets.ISO_8859_1;
+			String characterEncoding = getCharacterEncoding();
+			if (characterEncoding != null && Charset.isSupported(characterEncoding)) {
+				charset = Charset.forName(characterEncoding);
+			}
+			
+			writer = new PrintWriter(new OutputStreamWriter(getThresholdOutputStream(), charset));
+		}
+		
+		return writer;
+	}
+	
+	// the length of the body is only known once it has been written and compressed
+	@Override
+	public void setContentLength(int len) {
+	}
+	
+	@Override
+	public void setContentLengthLong(long len) {
+	}
+	
+	@Override
+	public void setHeader(String name, String value) {
+		if (!Constants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.setHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void addHeader(String name, String value) {
+		if (!Constants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.addHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void setIntHeader(String name, int value) {
+		if (!Constants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.setIntHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void addIntHeader(String name, int value) {
+		if (!Constants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			super.addIntHeader(name, value);
+		}
+	}
+	
+	@Override
+	public void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		
+		// while the body is still below the minimum size, committing the response would fix the headers
+		// before we know whether it is compressed
+		if (outputStream == null || outputStream.target != null) {
+			if (outputStream != null) {
+				outputStream.flush();
+			}
+			
+			super.flushBuffer();
+		}
+	}
+	
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		resetOutput();
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		resetOutput();
+		((HttpServletResponse) getResponse()).addHeader(Constants.HEADER_VARY, Constants.HEADER_ACCEPT_ENCODING);
+	}
+	
+	/**
+	 * Writes out anything still held back and completes the gzip stream. Must be called once the
+	 * request has been processed; calling it more than once has no further effect.
+	 */
+	public void finish() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		
+		if (outputStream != null) {
+			outputStream.finish();
+		}
+	}
+	
+	private ThresholdGzipOutputStream getThresholdOutputStream() {
+		if (outputStream == null) {
+			outputStream = new ThresholdGzipOutputStream();
+		}
+		
+		return outputStream;
+	}
+	
+	private void resetOutput() {
+		if (outputStream != null && outputStream.target == null) {
+			outputStream.buffer.reset();
+		}
+	}
+	
+	private final class ThresholdGzipOutputStream extends ServletOutputStream {
+		
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(minimumSize, BUFFER_SIZE));
+		
+		private OutputStream target;
+		
+		private boolean finished = false;
+		
+		@Override
+		public void write(int b) throws IOException {
+			checkNotFinished();
+			
+			if (target == null) {
+				buffer.write(b);
+				if (buffer.size() >= minimumSize) {
+					startCompression();
+				}
+			} else {
+				target.write(b);
+			}
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkNotFinished();
+			
+			if (target == null) {
+				if (buffer.size() + len < minimumSize) {
+					buffer.write(b, off, len);
+					return;
+				}
+				
+				startCompression();
+			}
+			
+			target.write(b, off, len);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			// below the minimum size, a flush is deferred until we know how the body is encoded
+			if (target != null) {
+				target.flush();
+			}
+		}
+		
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+		
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+		
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			try {
+				getResponse().getOutputStream().setWriteListener(writeListener);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		private void startCompression() throws IOException {
+			HttpServletResponse response = (HttpServletResponse) getResponse();
+			
+			// a body that already has an encoding of its own, or a response that has gone out, is passed through
+			if (response.isCommitted() || response.getHeader(Constants.HEADER_CONTENT_ENCODING) != null) {
+				target = response.getOutputStream();
+			} else {
+				response.setHeader(Constants.HEADER_CONTENT_ENCODING, GZIP);
+				compressed = true;
+				target = new GZIPOutputStream(response.getOutputStream(), BUFFER_SIZE, true);
+			}
+			
+			buffer.writeTo(target);
+			buffer.reset();
+		}
+		
+		private void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			
+			finished = true;
+			
+			if (target == null) {
+				if (buffer.size() > 0) {
+					if (!getResponse().isCommitted()) {
+						getResponse().setContentLength(buffer.size());
+					}
+					
+					buffer.writeTo(getResponse().getOutputStream());
+				}
+			} else if (target instanceof GZIPOutputStream) {
+				((GZIPOutputStream) target).finish();
+			}
+			
+			getResponse().flushBuffer();
+		}
+		
+		private void checkNotFinished() throws IOException {
+			if (finished) {
+				throw new IOException("Response has already been written");
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
+
+/**
+ * Turns narrative generation off for requests whose clients do not want narratives, either because they sent
+ * "_narrative=false" or the "X-FHIR-Narrative: false" header or because the
+ * {@link FhirConstants#NARRATIVES_FOR_READS_ONLY_PROPERTY} global property limits narratives to reads of a single
+ * resource. Rendering the narrative templates is a large part of the cost of encoding big search results.
+ */
+@Interceptor
+public class NarrativeInterceptor {
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void handleNarratives(RequestDetails requestDetails) {
+		boolean disabled = !isNarrativeRequested(requestDetails);
+		if (!disabled && !isRead(requestDetails.getRestOperationType())) {
+			disabled = Boolean
+			        .parseBoolean(FhirGlobalPropertyHolder.getGlobalProperty(FhirConstants.NARRATIVES_FOR_READS_ONLY_PROPERTY));
+		}
+		
+		OpenmrsThymeleafNarrativeGenerator.setNarrativesDisabled(disabled);
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void clearNarratives(RequestDetails requestDetails) {
+		OpenmrsThymeleafNarrativeGenerator.setNarrativesDisabled(false);
+	}
+	
+	/**
+	 * @return false if the client turned narratives off with the _narrative parameter or the X-FHIR-Narrative header
+	 */
+	public static boolean isNarrativeRequested(RequestDetails requestDetails) {
+		String[] narrative = requestDetails.getParameters().get(FhirConstants.NARRATIVE_SEARCH_PARAMETER);
+		if (narrative != null && narrative.length > 0 && "false".equalsIgnoreCase(narrative[0])) {
+			return false;
+		}
+		
+		return !"false".equalsIgnoreCase(requestDetails.getHeader(FhirConstants.NARRATIVE_HEADER));
+	}
+	
+	private static boolean isRead(RestOperationTypeEnum restOperationType) {
+		return restOperationType == RestOperationTypeEnum.READ || restOperationType == RestOperationTypeEnum.VREAD;
+	}
+}
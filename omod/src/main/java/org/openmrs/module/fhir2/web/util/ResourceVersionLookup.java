@@ -0,0 +1,165 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import java.util.Date;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import org.openmrs.api.APIAuthenticationException;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.FhirAllergyIntoleranceService;
+import org.openmrs.module.fhir2.api.FhirConditionService;
+import org.openmrs.module.fhir2.api.FhirDiagnosticReportService;
+import org.openmrs.module.fhir2.api.FhirEncounterService;
+import org.openmrs.module.fhir2.api.FhirGroupService;
+import org.openmrs.module.fhir2.api.FhirImmunizationService;
+import org.openmrs.module.fhir2.api.FhirLocationService;
+import org.openmrs.module.fhir2.api.FhirMedicationRequestService;
+import org.openmrs.module.fhir2.api.FhirMedicationService;
+import org.openmrs.module.fhir2.api.FhirObservationService;
+import org.openmrs.module.fhir2.api.FhirPatientService;
+import org.openmrs.module.fhir2.api.FhirPersonService;
+import org.openmrs.module.fhir2.api.FhirPractitionerService;
+import org.openmrs.module.fhir2.api.FhirRelatedPersonService;
+import org.openmrs.module.fhir2.api.FhirService;
+import org.openmrs.module.fhir2.api.FhirServiceRequestService;
+import org.openmrs.module.fhir2.api.FhirTaskService;
+import org.openmrs.module.fhir2.api.FhirValueSetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Looks up the version of a resource from the name of its type and its id without loading or translating it
+ */
+@Component
+@Setter(AccessLevel.PACKAGE)
+public class ResourceVersionLookup {
+	
+	@Autowired
+	private FhirAllergyIntoleranceService allergyIntoleranceService;
+	
+	@Autowired
+	private FhirConditionService conditionService;
+	
+	@Autowired
+	private FhirDiagnosticReportService diagnosticReportService;
+	
+	@Autowired
+	private FhirEncounterService encounterService;
+	
+	@Autowired
+	private FhirGroupService groupService;
+	
+	@Autowired
+	private FhirImmunizationService immunizationService;
+	
+	@Autowired
+	private FhirLocationService locationService;
+	
+	@Autowired
+	private FhirMedicationService medicationService;
+	
+	@Autowired
+	private FhirMedicationRequestService medicationRequestService;
+	
+	@Autowired
+	private FhirObservationService observationService;
+	
+	@Autowired
+	private FhirPatientService patientService;
+	
+	@Autowired
+	private FhirPersonService personService;
+	
+	@Autowired
+	private FhirPractitionerService practitionerService;
+	
+	@Autowired
+	private FhirRelatedPersonService relatedPersonService;
+	
+	@Autowired
+	private FhirServiceRequestService serviceRequestService;
+	
+	@Autowired
+	private FhirTaskService taskService;
+	
+	@Autowired
+	private FhirValueSetService valueSetService;
+	
+	/**
+	 * Gets when a resource was last updated. The version of the resource is the time in milliseconds of this date.
+	 *
+	 * @param resourceName the name of the resource type, e.g., "Patient"
+	 * @param id the id of the resource
+	 * @return the date the resource was last updated or null if it is not known, including when the current user may
+	 *         not read the resource
+	 */
+	public Date getLastUpdated(String resourceName, String id) {
+		FhirService<?> service = getService(resourceName);
+		if (service == null || id == null) {
+			return null;
+		}
+		
+		try {
+			return service.getLastUpdated(id);
+		}
+		catch (APIAuthenticationException e) {
+			// let the request itself report the missing privilege
+			return null;
+		}
+	}
+	
+	private FhirService<?> getService(String resourceName) {
+		if (resourceName == null) {
+			return null;
+		}
+		
+		switch (resourceName) {
+			case FhirConstants.ALLERGY_INTOLERANCE:
+				return allergyIntoleranceService;
+			case FhirConstants.CONDITION:
+				return conditionService;
+			case FhirConstants.DIAGNOSTIC_REPORT:
+				return diagnosticReportService;
+			case FhirConstants.ENCOUNTER:
+				return encounterService;
+			case FhirConstants.GROUP:
+				return groupService;
+			case FhirConstants.IMMUNIZATION:
+				return immunizationService;
+			case FhirConstants.LOCATION:
+				return locationService;
+			case FhirConstants.MEDICATION:
+				return medicationService;
+			case FhirConstants.MEDICATION_REQUEST:
+				return medicationRequestService;
+			case FhirConstants.OBSERVATION:
+				return observationService;
+			case FhirConstants.PATIENT:
+				return patientService;
+			case FhirConstants.PERSON:
+				return personService;
+			case FhirConstants.PRACTITIONER:
+				return practitionerService;
+			case FhirConstants.RELATED_PERSON:
+				return relatedPersonService;
+			case FhirConstants.SERVICE_REQUEST:
+			case FhirConstants.PROCEDURE_REQUEST:
+				return serviceRequestService;
+			case FhirConstants.TASK:
+				return taskService;
+			case FhirConstants.VALUESET:
+				return valueSetService;
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.openmrs.module.fhir2.FhirConstants.RESOURCE_CACHE_TTL_PROPERTY;
+import static org.openmrs.module.fhir2.FhirConstants.RESPONSE_CACHE_SIZE_PROPERTY;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import ca.uhn.fhir.util.DateUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the encoded responses to reads so that reading a resource that has not changed writes the same bytes again
+ * without translating, encoding or generating the narrative of the resource. Responses are cached by the server base,
+ * the type, id and version of the resource, the response encoding and the request parameters (which include _format,
+ * _pretty, _summary and _elements), the user's locale and the user's roles. The version of the resource is looked up on
+ * every read, so a response for an older version is never sent; like
+ * {@link org.openmrs.module.fhir2.api.util.FhirResourceCache}, responses are also only kept for the number of seconds set
+ * by {@link FhirConstants#RESOURCE_CACHE_TTL_PROPERTY}.
+ * <p/>
+ * Since the roles of the user determine their privileges, a response is only ever sent to users with the same
+ * privileges as the user it was first generated for, and the privilege check made when looking up the version of the
+ * resource applies to every read. A cached response is written before HAPI handles the request, though, so interceptors
+ * registered for later pointcuts, e.g., {@link Pointcut#SERVER_OUTGOING_RESPONSE}, do not see it. Types whose responses
+ * are changed by such interceptors should not be cached.
+ * <p/>
+ * Each resource type has its own cache whose size is set by {@link FhirConstants#RESPONSE_CACHE_SIZE_PROPERTY}
+ * suffixed with "." and the resource type, e.g., "fhir2.responseCache.maximumSize.Location", falling back to the global
+ * property without a suffix. A size of 0 disables caching for that type. Conditional reads are left to
+ * {@link ConditionalReadInterceptor}.
+ */
+@Component
+@Interceptor
+@Setter(AccessLevel.PACKAGE)
+public class ResponseCacheInterceptor {
+	
+	private static final String CACHE_KEY = ResponseCacheInterceptor.class.getName() + ".key";
+	
+	private static final String CAPTURED_RESPONSE = ResponseCacheInterceptor.class.getName() + ".response";
+	
+	@Autowired
+	private ResourceVersionLookup resourceVersionLookup;
+	
+	private final Map<String, TypeCache> caches = new ConcurrentHashMap<>();
+	
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean handleRead(RequestDetails requestDetails) {
+		if (requestDetails.getRestOperationType() != RestOperationTypeEnum.READ
+		        || !(requestDetails instanceof ServletRequestDetails)
+		        || StringUtils.isNotBlank(requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH))
+		        || StringUtils.isNotBlank(requestDetails.getHeader(Constants.HEADER_IF_MODIFIED_SINCE))) {
+			return true;
+		}
+		
+		String resourceName = requestDetails.getResourceName();
+		IIdType id = requestDetails.getId();
+		Cache<String, CachedResponse> cache = getCache(resourceName);
+		if (cache == null || id == null || !id.hasIdPart() || id.hasVersionIdPart()) {
+			return true;
+		}
+		
+		Date lastUpdated = resourceVersionLookup.getLastUpdated(resourceName, id.getIdPart());
+		if (lastUpdated == null) {
+			return true;
+		}
+		
+		String key = toKey(requestDetails, id.getIdPart(), String.valueOf(lastUpdated.getTime()));
+		CachedResponse cached = cache.getIfPresent(key);
+		if (cached == null) {
+			requestDetails.getUserData().put(CACHE_KEY, key);
+			return true;
+		}
+		
+		HttpServletResponse response = ((ServletRequestDetails) requestDetails).getServletResponse();
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(cached.contentType);
+		response.setHeader(Constants.HEADER_CACHE_CONTROL, ConditionalReadInterceptor.getCacheControl(resourceName));
+		response.setHeader(Constants.HEADER_ETAG, "W/\"" + lastUpdated.getTime() + '"');
+		response.setHeader(Constants.HEADER_LAST_MODIFIED, DateUtils.formatDate(lastUpdated));
+		response.setContentLength(cached.body.length);
+		try {
+			response.getOutputStream().write(cached.body);
+		}
+		catch (IOException e) {
+			throw new InternalErrorException("Failed to write the cached response", e);
+		}
+		
+		// the response has been written, so HAPI should not handle this request any further
+		return false;
+	}
+	
+	@Hook(Pointcut.SERVER_OUTGOING_WRITER_CREATED)
+	public Writer captureResponse(Writer writer, RequestDetails requestDetails) {
+		if (!requestDetails.getUserData().containsKey(CACHE_KEY)) {
+			return writer;
+		}
+		
+		CapturingWriter capturingWriter = new CapturingWriter(writer);
+		requestDetails.getUserData().put(CAPTURED_RESPONSE, capturingWriter);
+		return capturingWriter;
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED_NORMALLY)
+	public void cacheResponse(ServletRequestDetails requestDetails) {
+		Object key = requestDetails.getUserData().get(CACHE_KEY);
+		Object captured = requestDetails.getUserData().get(CAPTURED_RESPONSE);
+		if (!(key instanceof String) || !(captured instanceof CapturingWriter)) {
+			return;
+		}
+		
+		HttpServletResponse response = requestDetails.getServletResponse();
+		Cache<String, CachedResponse> cache = getCache(requestDetails.getResourceName());
+		if (cache == null || response.getStatus() != HttpServletResponse.SC_OK || response.getContentType() == null) {
+			return;
+		}
+		
+		cache.put((String) key, new CachedResponse(response.getContentType(),
+		        ((CapturingWriter) captured).captured.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	/**
+	 * Gets the hit and miss counts for each resource type that has been cached since the size of its cache was last
+	 * changed
+	 *
+	 * @return the statistics for each resource type
+	 */
+	public Map<String, CacheStats> getStatistics() {
+		Map<String, CacheStats> statistics = new HashMap<>();
+		caches.forEach((resourceType, typeCache) -> {
+			if (typeCache.cache != null) {
+				statistics.put(resourceType, typeCache.cache.stats());
+			}
+		});
+		
+		return statistics;
+	}
+	
+	private static String toKey(RequestDetails requestDetails, String id, String versionId) {
+		StringBuilder key = new StringBuilder(requestDetails.getFhirServerBase()).append('|')
+		        .append(requestDetails.getResourceName()).append('|').append(id).append('|').append(versionId).append('|')
+		        .append(RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getEncoding()).append('|')
+		        .append(RestfulServerUtils.prettyPrintResponse(requestDetails.getServer(), requestDetails)).append('|')
+		        .append(Context.getLocale()).append('|').append(getRolesKey()).append('|')
+		        .append(NarrativeInterceptor.isNarrativeRequested(requestDetails));
+		
+		// parameters are sorted so that the same parameters in a different order share a response
+		new TreeMap<>(requestDetails.getParameters()).forEach(
+		    (name, values) -> key.append('|').append(name).append('=').append(Arrays.toString(values)));
+		
+		return key.toString();
+	}
+	
+	// a super user may see anything, otherwise responses are shared by users whose roles grant the same privileges
+	private static String getRolesKey() {
+		User user = Context.isSessionOpen() ? Context.getAuthenticatedUser() : null;
+		if (user == null) {
+			return "anonymous";
+		}
+		
+		if (user.isSuperUser()) {
+			return "superuser";
+		}
+		
+		TreeSet<String> roles = new TreeSet<>();
+		for (Role role : user.getAllRoles()) {
+			roles.add(role.getRole());
+		}
+		
+		return roles.toString();
+	}
+	
+	// the cache for a type is rebuilt, and so emptied, whenever its configured size or time-to-live changes
+	private Cache<String, CachedResponse> getCache(String resourceType) {
+		if (resourceType == null) {
+			return null;
+		}
+		
+		int size = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESPONSE_CACHE_SIZE_PROPERTY + "." + resourceType,
+		    FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESPONSE_CACHE_SIZE_PROPERTY, 0));
+		int ttl = FhirGlobalPropertyHolder.getGlobalPropertyAsInteger(RESOURCE_CACHE_TTL_PROPERTY, 300);
+		
+		TypeCache typeCache = caches.get(resourceType);
+		if (typeCache == null || typeCache.size != size || typeCache.ttl != ttl) {
+			typeCache = caches.compute(resourceType, (type, existing) -> {
+				if (existing != null && existing.size == size && existing.ttl == ttl) {
+					return existing;
+				}
+				
+				if (size <= 0 || ttl <= 0) {
+					return new TypeCache(size, ttl, null);
+				}
+				
+				return new TypeCache(size, ttl, CacheBuilder.newBuilder().maximumSize(size)
+				        .expireAfterWrite(ttl, TimeUnit.SECONDS).recordStats().<String, CachedResponse> build());
+			});
+		}
+		
+		return typeCache.cache;
+	}
+	
+	@AllArgsConstructor
+	private static class TypeCache {
+		
+		private final int size;
+		
+		private final int ttl;
+		
+		private final Cache<String, CachedResponse> cache;
+	}
+	
+	@AllArgsConstructor
+	private static class CachedResponse {
+		
+		private final String contentType;
+		
+		private final byte[] body;
+	}
+	
+	private static class CapturingWriter extends FilterWriter {
+		
+		private final StringBuilder captured = new StringBuilder();
+		
+		private CapturingWriter(Writer writer) {
+			super(writer);
+		}
+		
+		@Override
+		public void write(int c) throws IOException {
+			super.write(c);
+			captured.append((char) c);
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			super.write(cbuf, off, len);
+			captured.append(cbuf, off, len);
+		}
+		
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			super.write(str, off, len);
+			captured.append(str, off, off + len);
+		}
+	}
+}
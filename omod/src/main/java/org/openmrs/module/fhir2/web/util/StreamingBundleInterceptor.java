@@ -0,0 +1,177 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+
+/**
+ * Writes large bundles returned by searches and operations such as $everything entry by entry instead of encoding the
+ * whole bundle in one go. The bundle is written without its entries first, followed by each entry, and the response is
+ * flushed every few entries, so the first bytes reach the client early and the response is sent with chunked transfer
+ * encoding. Each entry is released once it has been written. Bundles are streamed when they have at least as many
+ * entries as set by {@link FhirConstants#BUNDLE_STREAMING_THRESHOLD_PROPERTY} and the response is JSON, or NDJSON, in
+ * which case each resource is written on its own line.
+ */
+@Slf4j
+@Interceptor
+public class StreamingBundleInterceptor {
+	
+	private static final int FLUSH_INTERVAL = 50;
+	
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	public boolean streamBundle(RequestDetails requestDetails, ResponseDetails responseDetails) {
+		if (!(requestDetails instanceof ServletRequestDetails) || responseDetails == null
+		        || !(responseDetails.getResponseResource() instanceof IBaseBundle)
+		        || !isStreamable(requestDetails.getRestOperationType())) {
+			return true;
+		}
+		
+		int threshold = FhirGlobalPropertyHolder
+		        .getGlobalPropertyAsInteger(FhirConstants.BUNDLE_STREAMING_THRESHOLD_PROPERTY, 100);
+		if (threshold <= 0) {
+			return true;
+		}
+		
+		EncodingEnum encoding = RestfulServerUtils.determineResponseEncodingWithDefault(requestDetails).getEncoding();
+		if (encoding != EncodingEnum.JSON && encoding != EncodingEnum.NDJSON) {
+			return true;
+		}
+		
+		IBaseBundle bundle = (IBaseBundle) responseDetails.getResponseResource();
+		FhirContext fhirContext = requestDetails.getFhirContext();
+		RuntimeResourceDefinition bundleDefinition = fhirContext.getResourceDefinition(bundle);
+		BaseRuntimeChildDefinition entryChild = bundleDefinition.getChildByName("entry");
+		
+		List<IBase> entries = new ArrayList<>(entryChild.getAccessor().getValues(bundle));
+		if (entries.size() < threshold) {
+			return true;
+		}
+		
+		HttpServletResponse response = ((ServletRequestDetails) requestDetails).getServletResponse();
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(encoding.getResourceContentTypeNonLegacy() + Constants.CHARSET_UTF8_CTSUFFIX);
+		response.setHeader(Constants.HEADER_CACHE_CONTROL, "no-store");
+		
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+			if (encoding == EncodingEnum.NDJSON) {
+				// each resource is written as a single JSON line, honouring _elements, _summary, etc. as the JSON branch does
+				IParser parser = fhirContext.newJsonParser();
+				RestfulServerUtils.configureResponseParser(requestDetails, parser);
+				parser.setPrettyPrint(false);
+				writeNdJson(fhirContext, parser, entries, writer);
+			} else {
+				IParser parser = RestfulServerUtils.getNewParser(fhirContext, fhirContext.getVersion().getVersion(),
+				    requestDetails);
+				writeJson(parser, bundle, bundleDefinition, entryChild, entries, writer);
+			}
+			writer.flush();
+		}
+		catch (IOException e) {
+			// the response may already be partially written, so there is no way to report this to the client
+			log.error("Failed to write the bundle for request {}", requestDetails.getCompleteUrl(), e);
+			throw new InternalErrorException("Failed to write the bundle", e);
+		}
+		
+		// the response has been written, so HAPI should not handle this request any further
+		return false;
+	}
+	
+	private static boolean isStreamable(RestOperationTypeEnum restOperationType) {
+		return restOperationType == RestOperationTypeEnum.SEARCH_TYPE
+		        || restOperationType == RestOperationTypeEnum.SEARCH_SYSTEM
+		        || restOperationType == RestOperationTypeEnum.GET_PAGE
+		        || restOperationType == RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE
+		        || restOperationType == RestOperationTypeEnum.EXTENDED_OPERATION_TYPE;
+	}
+	
+	private static void writeJson(IParser parser, IBaseBundle bundle, RuntimeResourceDefinition bundleDefinition,
+	        BaseRuntimeChildDefinition entryChild, List<IBase> entries, Writer writer) throws IOException {
+		// the bundle is encoded without its entries and the entries are then added before its closing brace
+		entryChild.getMutator().setValue(bundle, null);
+		String envelope = parser.encodeResourceToString(bundle).trim();
+		writer.write(envelope, 0, envelope.length() - 1);
+		writer.write(",\"entry\":[");
+		
+		for (int i = 0; i < entries.size(); i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			
+			writer.write(encodeEntry(parser, bundleDefinition, entryChild, entries.get(i)));
+			entries.set(i, null);
+			
+			if ((i + 1) % FLUSH_INTERVAL == 0) {
+				writer.flush();
+			}
+		}
+		
+		writer.write("]}");
+	}
+	
+	// entries cannot be encoded on their own, so each entry is encoded in a bundle of its own and taken back out of it
+	private static String encodeEntry(IParser parser, RuntimeResourceDefinition bundleDefinition,
+	        BaseRuntimeChildDefinition entryChild, IBase entry) {
+		IBaseResource single = bundleDefinition.newInstance();
+		entryChild.getMutator().addValue(single, entry);
+		
+		String encoded = parser.encodeResourceToString(single);
+		int start = encoded.indexOf('[', encoded.indexOf("\"entry\""));
+		int end = encoded.lastIndexOf(']');
+		return encoded.substring(start + 1, end).trim();
+	}
+	
+	private static void writeNdJson(FhirContext fhirContext, IParser parser, List<IBase> entries, Writer writer)
+	        throws IOException {
+		for (int i = 0; i < entries.size(); i++) {
+			IBaseResource resource = fhirContext.newTerser().getSingleValueOrNull(entries.get(i), "resource",
+			    IBaseResource.class);
+			if (resource != null) {
+				parser.encodeResourceToWriter(resource, writer);
+				writer.write('\n');
+			}
+			entries.set(i, null);
+			
+			if ((i + 1) % FLUSH_INTERVAL == 0) {
+				writer.flush();
+			}
+		}
+	}
+}
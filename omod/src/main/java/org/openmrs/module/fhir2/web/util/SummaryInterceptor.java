@@ -9,10 +9,19 @@
  */
 package org.openmrs.module.fhir2.web.util;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeDeclaredChildDefinition;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.interceptor.api.Hook;
 import ca.uhn.fhir.interceptor.api.Interceptor;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.fhir2.api.util.RequestedElements;
 
 @Interceptor
 public class SummaryInterceptor {
@@ -27,4 +36,145 @@ public class SummaryInterceptor {
 			}
 		}
 	}
+	
+	/**
+	 * Passes the elements requested by a search through _elements or _summary on to the search, so that the elements
+	 * that HAPI would strip from the response are not loaded and translated in the first place
+	 */
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void handleRequestedElements(RequestDetails requestDetails) {
+		if (requestDetails.getRestOperationType() == RestOperationTypeEnum.SEARCH_TYPE
+		        && requestDetails.getResourceName() != null) {
+			RequestedElements.set(getRequestedElements(requestDetails));
+		} else {
+			RequestedElements.clear();
+		}
+	}
+	
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void clearRequestedElements(RequestDetails requestDetails) {
+		RequestedElements.clear();
+	}
+	
+	/**
+	 * @return the top-level elements of the searched resource that will be part of the response or null if the whole
+	 *         resource is included
+	 */
+	static Set<String> getRequestedElements(RequestDetails requestDetails) {
+		// included resources are searched for on the same thread, but the elements of the searched resource do not apply
+		// to them
+		if (requestDetails.getParameters().containsKey("_include")
+		        || requestDetails.getParameters().containsKey("_revinclude")) {
+			return null;
+		}
+		
+		RuntimeResourceDefinition definition = requestDetails.getFhirContext()
+		        .getResourceDefinition(requestDetails.getResourceName());
+		
+		String[] elements = requestDetails.getParameters().get("_elements");
+		String[] excludedElements = requestDetails.getParameters().get("_elements:exclude");
+		String[] summary = requestDetails.getParameters().get("_summary");
+		
+		Set<String> result;
+		if (elements != null) {
+			result = new HashSet<>();
+			for (String element : split(elements)) {
+				String name = toTopLevelElement(definition, element);
+				if (name == null) {
+					// an element of another resource type, e.g. from an _include, so nothing can be left out
+					return null;
+				}
+				
+				result.add(name);
+			}
+		} else if (excludedElements != null) {
+			result = new HashSet<>();
+			for (BaseRuntimeChildDefinition child : definition.getChildren()) {
+				result.add(toElementName(child));
+			}
+			
+			for (String element : split(excludedElements)) {
+				String name = toTopLevelElement(definition, element);
+				if (name == null) {
+					return null;
+				}
+				
+				// excluding part of an element still needs the element itself
+				if (element.equals(name) || element.equals(definition.getName() + "." + name)) {
+					result.remove(name);
+				}
+			}
+		} else if (summary != null && summary.length > 0) {
+			result = new HashSet<>();
+			switch (summary[0]) {
+				case "true":
+					for (BaseRuntimeChildDefinition child : definition.getChildren()) {
+						if (child.isSummary()) {
+							result.add(toElementName(child));
+						}
+					}
+					break;
+				case "count":
+					break;
+				default:
+					// including "text", whose narrative is generated from the whole resource
+					return null;
+			}
+		} else {
+			return null;
+		}
+		
+		// the narrative is generated from the translated resource when it is encoded, so it needs every element
+		if (result.contains("text")) {
+			return null;
+		}
+		
+		// mandatory and modifier elements are always returned
+		for (BaseRuntimeChildDefinition child : definition.getChildren()) {
+			if (child.getMin() > 0 || (child instanceof BaseRuntimeDeclaredChildDefinition
+			        && ((BaseRuntimeDeclaredChildDefinition) child).isModifier())) {
+				result.add(toElementName(child));
+			}
+		}
+		
+		result.add("id");
+		result.add("meta");
+		return result;
+	}
+	
+	private static Set<String> split(String[] values) {
+		Set<String> result = new HashSet<>();
+		for (String value : values) {
+			for (String element : StringUtils.split(value, ',')) {
+				if (StringUtils.isNotBlank(element)) {
+					result.add(element.trim());
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the top-level element of the searched resource named by an _elements value such as "name", "name.given"
+	 *         or "Patient.name", or null if the value names a whole resource or an element of another resource
+	 */
+	private static String toTopLevelElement(RuntimeResourceDefinition definition, String element) {
+		String path = element;
+		if (Character.isUpperCase(path.charAt(0))) {
+			int dot = path.indexOf('.');
+			if (dot < 0 || !definition.getName().equals(path.substring(0, dot))) {
+				return null;
+			}
+			
+			path = path.substring(dot + 1);
+		}
+		
+		int dot = path.indexOf('.');
+		return dot > 0 ? path.substring(0, dot) : path;
+	}
+	
+	private static String toElementName(BaseRuntimeChildDefinition child) {
+		return StringUtils.removeEnd(child.getElementName(), "[x]");
+	}
 }
@@ -10,6 +10,8 @@
 package org.openmrs.module.fhir2.narrative;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.File;
@@ -26,6 +28,7 @@ import ca.uhn.fhir.narrative2.TemplateTypeEnum;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import org.hl7.fhir.r4.model.BaseResource;
 import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
 import org.junit.Test;
 import org.openmrs.util.OpenmrsUtil;
 
@@ -39,6 +42,11 @@ public class NarrativeGeneratorTest {
 	
 	protected final BaseResource dummyResource = new Patient();
 	
+	@After
+	public void after() {
+		OpenmrsThymeleafNarrativeGenerator.setNarrativesDisabled(false);
+	}
+	
 	/**
 	 * Check that IOException is thrown when no valid prefix is present in property file path
 	 */
@@ -144,4 +152,24 @@ public class NarrativeGeneratorTest {
 		        .forManifestFileLocation(Collections.singletonList(testNarrativePropFile)));
 		assertEquals(e.getMessage(), expectedErrorMessage);
 	}
+	
+	@Test
+	public void shouldReuseParsedManifest() throws IOException {
+		String testNarrativePropFile = "classpath:org/openmrs/module/fhir2/narrative/testNarratives.properties";
+		
+		OpenmrsNarrativeTemplateManifest manifest = OpenmrsNarrativeTemplateManifest
+		        .forManifestFileLocation(Collections.singletonList(testNarrativePropFile));
+		
+		assertSame(manifest, OpenmrsNarrativeTemplateManifest
+		        .forManifestFileLocation(Collections.singletonList(testNarrativePropFile)));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativeWhenNarrativesAreDisabled() {
+		// an invalid path would fail as soon as the generator tried to load its templates
+		ctx.setNarrativeGenerator(new OpenmrsThymeleafNarrativeGenerator(null, "some/random/path.properties"));
+		OpenmrsThymeleafNarrativeGenerator.setNarrativesDisabled(true);
+		
+		assertFalse(ctx.getNarrativeGenerator().populateResourceNarrative(ctx, dummyResource));
+	}
 }
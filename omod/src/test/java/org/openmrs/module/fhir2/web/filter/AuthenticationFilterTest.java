@@ -11,6 +11,7 @@ package org.openmrs.module.fhir2.web.filter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -26,7 +27,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
 import org.openmrs.User;
+import org.openmrs.api.UserService;
 import org.openmrs.api.context.Authenticated;
 import org.openmrs.api.context.AuthenticationScheme;
 import org.openmrs.api.context.BasicAuthenticated;
@@ -36,6 +39,9 @@ import org.openmrs.api.context.Credentials;
 import org.openmrs.api.context.ServiceContext;
 import org.openmrs.api.context.UsernamePasswordCredentials;
 import org.openmrs.api.db.ContextDAO;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.AuthenticatedUserCache;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.web.MockFilterChain;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -58,8 +64,15 @@ public class AuthenticationFilterTest {
 	@Mock
 	private User user;
 	
+	@Mock
+	private UserService userService;
+	
+	private ServiceContext mockServiceContext;
+	
 	static class InMemoryAuthenticationScheme implements AuthenticationScheme {
 		
+		private static int authentications = 0;
+		
 		@Override
 		public Authenticated authenticate(Credentials credentials) throws ContextAuthenticationException {
 			if (!(credentials instanceof UsernamePasswordCredentials)) {
@@ -68,7 +81,8 @@ public class AuthenticationFilterTest {
 			} else {
 				UsernamePasswordCredentials userPassCreds = (UsernamePasswordCredentials) credentials;
 				if (userPassCreds.getUsername().equals(USERNAME) && userPassCreds.getPassword().equals(PASSWORD)) {
-					User user = new User();
+					authentications++;
+					User user = new User(1);
 					user.setUsername(userPassCreds.getUsername());
 					return new BasicAuthenticated(user, "IN MEMORY AUTH SCHEME");
 				} else {
@@ -82,7 +96,7 @@ public class AuthenticationFilterTest {
 	public void setup() throws NoSuchFieldException, IllegalAccessException {
 		Context.setDAO(contextDAO);
 		
-		ServiceContext mockServiceContext = mock(ServiceContext.class);
+		mockServiceContext = mock(ServiceContext.class);
 		Class<?> serviceContextHolderClass = ServiceContext.class.getDeclaredClasses()[0];
 		Field instanceField = serviceContextHolderClass.getDeclaredField("instance");
 		instanceField.setAccessible(true);
@@ -96,13 +110,21 @@ public class AuthenticationFilterTest {
 		
 		Context.openSession();
 		
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.AUTHENTICATION_CACHE_TTL_PROPERTY, "60"));
+		AuthenticatedUserCache.clear();
+		InMemoryAuthenticationScheme.authentications = 0;
+		
 		authenticationFilter = new AuthenticationFilter();
 		filterChain = new MockFilterChain();
 	}
 	
 	@After
 	public void tearDown() {
+		Context.clearUserContext();
 		Context.closeSession();
+		AuthenticatedUserCache.clear();
+		FhirGlobalPropertyHolder.reset();
 	}
 	
 	@Test
@@ -156,4 +178,86 @@ public class AuthenticationFilterTest {
 		
 		assertThat(servletResponse.getStatus(), equalTo(200));
 	}
+	
+	@Test
+	public void shouldNotVerifyCachedCredentialsAgain() throws Exception {
+		when(mockServiceContext.getUserService()).thenReturn(userService);
+		when(userService.getUser(1)).thenReturn(user);
+		
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		authenticationFilter.doFilter(newRequest(PASSWORD), servletResponse, filterChain);
+		assertThat(servletResponse.getStatus(), equalTo(200));
+		
+		Context.clearUserContext();
+		
+		servletResponse = new MockHttpServletResponse();
+		authenticationFilter.doFilter(newRequest(PASSWORD), servletResponse, new MockFilterChain());
+		
+		assertThat(servletResponse.getStatus(), equalTo(200));
+		assertThat(InMemoryAuthenticationScheme.authentications, equalTo(1));
+		assertThat(Context.getAuthenticatedUser(), sameInstance(user));
+	}
+	
+	@Test
+	public void shouldNotUseCachedCredentialsForADifferentPassword() throws Exception {
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), filterChain);
+		
+		Context.clearUserContext();
+		
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		authenticationFilter.doFilter(newRequest("badpassword"), servletResponse, new MockFilterChain());
+		
+		assertThat(servletResponse.getStatus(), equalTo(401));
+	}
+	
+	@Test
+	public void shouldVerifyCredentialsAgainAfterUserIsEvicted() throws Exception {
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), filterChain);
+		
+		Context.clearUserContext();
+		AuthenticatedUserCache.evictUser(1);
+		
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+		authenticationFilter.doFilter(newRequest(PASSWORD), servletResponse, new MockFilterChain());
+		
+		assertThat(servletResponse.getStatus(), equalTo(200));
+		assertThat(InMemoryAuthenticationScheme.authentications, equalTo(2));
+	}
+	
+	@Test
+	public void shouldVerifyCredentialsAgainForRetiredUser() throws Exception {
+		when(mockServiceContext.getUserService()).thenReturn(userService);
+		when(userService.getUser(1)).thenReturn(user);
+		when(user.getRetired()).thenReturn(true);
+		
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), filterChain);
+		
+		Context.clearUserContext();
+		
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), new MockFilterChain());
+		
+		assertThat(InMemoryAuthenticationScheme.authentications, equalTo(2));
+	}
+	
+	@Test
+	public void shouldVerifyCredentialsOnEveryRequestWhenCacheIsDisabled() throws Exception {
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.AUTHENTICATION_CACHE_TTL_PROPERTY, "0"));
+		
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), filterChain);
+		
+		Context.clearUserContext();
+		
+		authenticationFilter.doFilter(newRequest(PASSWORD), new MockHttpServletResponse(), new MockFilterChain());
+		
+		assertThat(InMemoryAuthenticationScheme.authentications, equalTo(2));
+	}
+	
+	private static MockHttpServletRequest newRequest(String password) {
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+		servletRequest.setRequestURI("/openmrs/ws/fhir2/Patient?_id=aa1c7cf0-6a54-4a06-9d77-b26107ad9144");
+		servletRequest.addHeader(HttpHeaders.AUTHORIZATION,
+		    "Basic " + Base64.getEncoder().encodeToString((USERNAME + ":" + password).getBytes(StandardCharsets.UTF_8)));
+		return servletRequest;
+	}
 }
@@ -0,0 +1,293 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.servlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.server.IServerAddressStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openmrs.GlobalProperty;
+import org.openmrs.User;
+import org.openmrs.api.UserService;
+import org.openmrs.api.context.AuthenticationScheme;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.ContextAuthenticationException;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.api.db.ContextDAO;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.api.util.VirtualThreads;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class AsyncRequestProcessorTest {
+	
+	private static final String SERVER_BASE = "http://localhost/openmrs/ws/fhir2/R4";
+	
+	private static final String EVERYTHING_PATH = "/Patient/123/$everything";
+	
+	@Mock
+	private ContextDAO contextDAO;
+	
+	@Mock
+	private UserContext userContext;
+	
+	@Mock
+	private User user;
+	
+	@Mock
+	private UserService userService;
+	
+	@Mock
+	private FhirRestServlet servlet;
+	
+	@Mock
+	private IServerAddressStrategy serverAddressStrategy;
+	
+	@Mock
+	private VirtualThreads virtualThreads;
+	
+	private final AsyncRequestProcessor processor = new AsyncRequestProcessor();
+	
+	@Before
+	public void setup() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		processor.setVirtualThreads(virtualThreads);
+		when(userContext.getAuthenticatedUser()).thenReturn(user);
+		when(user.getUuid()).thenReturn("user-uuid");
+		
+		// the dedicated threads authenticate their own user context as the user of the request
+		ServiceContext serviceContext = mock(ServiceContext.class);
+		Class<?> serviceContextHolderClass = ServiceContext.class.getDeclaredClasses()[0];
+		Field instanceField = serviceContextHolderClass.getDeclaredField("instance");
+		instanceField.setAccessible(true);
+		instanceField.set(null, serviceContext);
+		when(serviceContext.getRegisteredComponents(any())).thenReturn(new ArrayList<>(0));
+		when(serviceContext.getUserService()).thenReturn(userService);
+		when(userService.getUser(anyInt())).thenReturn(user);
+		
+		Field authSchemeField = Context.class.getDeclaredField("authenticationScheme");
+		authSchemeField.setAccessible(true);
+		authSchemeField.set(null, (AuthenticationScheme) credentials -> {
+			throw new ContextAuthenticationException();
+		});
+		
+		Context.setDAO(contextDAO);
+		Context.openSession();
+		Context.setUserContext(userContext);
+		
+		setGlobalProperty(FhirConstants.ASYNC_OPERATIONS_PROPERTY, "everything,lastn");
+		setGlobalProperty(FhirConstants.ASYNC_THREADS_PROPERTY, "2");
+		setGlobalProperty(FhirConstants.ASYNC_QUEUE_SIZE_PROPERTY, "10");
+		setGlobalProperty(FhirConstants.ASYNC_TIMEOUT_PROPERTY, "60");
+		setGlobalProperty(FhirConstants.ASYNC_RESULT_RETENTION_PROPERTY, "60");
+		setGlobalProperty(FhirConstants.READ_REPLICA_STICKY_WINDOW_PROPERTY, "5");
+		
+		doAnswer(invocation -> {
+			HttpServletResponse response = invocation.getArgument(1);
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentType("application/fhir+json");
+			response.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+			return null;
+		}).when(servlet).processRequest(any(HttpServletRequest.class), any(HttpServletResponse.class));
+	}
+	
+	@After
+	public void tearDown() {
+		processor.close();
+		FhirGlobalPropertyHolder.reset();
+		Context.closeSession();
+	}
+	
+	@Test
+	public void shouldNotHandleRequestsThatAreNotLongRunningOperations() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(processor.process(servlet, "/Patient/123", newRequest("GET"), response), is(false));
+		assertThat(processor.process(servlet, "/Patient/123/$validate", newRequest("GET"), response), is(false));
+	}
+	
+	@Test
+	public void shouldProcessOnContainerThreadWhenAsyncProcessingIsNotSupported() throws Exception {
+		MockHttpServletRequest request = newRequest("GET");
+		request.setAsyncSupported(false);
+		
+		assertThat(processor.process(servlet, EVERYTHING_PATH, request, new MockHttpServletResponse()), is(false));
+		verify(servlet, never()).processRequest(any(HttpServletRequest.class), any(HttpServletResponse.class));
+	}
+	
+	@Test
+	public void shouldProcessLongRunningOperationsOnDedicatedThreads() throws Exception {
+		MockHttpServletRequest request = newRequest("GET");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(processor.process(servlet, EVERYTHING_PATH, request, response), is(true));
+		
+		verify(servlet, timeout(5000)).processRequest(eq(request), any(HttpServletResponse.class));
+	}
+	
+	@Test
+	public void shouldCancelProcessingAndStopWritingWhenTheRequestTimesOut() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		doAnswer(invocation -> {
+			HttpServletResponse asyncResponse = invocation.getArgument(1);
+			started.countDown();
+			try {
+				Thread.sleep(5000);
+			}
+			catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+			
+			try {
+				asyncResponse.setStatus(HttpServletResponse.SC_OK);
+				asyncResponse.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+			}
+			finally {
+				finished.countDown();
+			}
+			return null;
+		}).when(servlet).processRequest(any(HttpServletRequest.class), any(HttpServletResponse.class));
+		
+		MockHttpServletRequest request = newRequest("GET");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertThat(processor.process(servlet, EVERYTHING_PATH, request, response), is(true));
+		assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+		
+		MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(new AsyncEvent(asyncContext, request, response));
+		}
+		
+		assertThat(finished.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(interrupted.get(), is(true));
+		assertThat(response.getStatus(), equalTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+		assertThat(response.getContentAsString(), equalTo(""));
+	}
+	
+	@Test
+	public void shouldProcessEveryRequestOnVirtualThreadsWhenEnabled() throws Exception {
+		when(virtualThreads.isEnabled()).thenReturn(true);
+		MockHttpServletRequest request = newRequest("GET");
+		
+		assertThat(processor.process(servlet, "/Patient/123", request, new MockHttpServletResponse()), is(true));
+		assertThat(request.isAsyncStarted(), is(true));
+		verify(virtualThreads).submit(any(Runnable.class));
+	}
+	
+	@Test
+	public void shouldRespondAsyncAndReturnTheResultWhenPolled() throws Exception {
+		when(servlet.getServerAddressStrategy()).thenReturn(serverAddressStrategy);
+		when(serverAddressStrategy.determineServerBase(any(), any())).thenReturn(SERVER_BASE);
+		
+		MockHttpServletRequest request = newRequest("GET");
+		request.addHeader(Constants.HEADER_PREFER, Constants.HEADER_PREFER_RESPOND_ASYNC);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(processor.process(servlet, EVERYTHING_PATH, request, response), is(true));
+		assertThat(response.getStatus(), equalTo(HttpServletResponse.SC_ACCEPTED));
+		
+		String contentLocation = response.getHeader(Constants.HEADER_CONTENT_LOCATION);
+		assertThat(contentLocation, startsWith(SERVER_BASE + "/" + FhirConstants.ASYNC_STATUS_OPERATION + "/"));
+		String statusPath = contentLocation.substring(SERVER_BASE.length());
+		
+		MockHttpServletResponse pollResponse = poll(statusPath, "GET");
+		long deadline = System.currentTimeMillis() + 5000;
+		while (pollResponse.getStatus() == HttpServletResponse.SC_ACCEPTED && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			pollResponse = poll(statusPath, "GET");
+		}
+		
+		assertThat(pollResponse.getStatus(), equalTo(HttpServletResponse.SC_OK));
+		assertThat(pollResponse.getContentType(), equalTo("application/fhir+json"));
+		assertThat(pollResponse.getContentAsString(), equalTo("{}"));
+		
+		assertThat(poll(statusPath, "DELETE").getStatus(), equalTo(HttpServletResponse.SC_ACCEPTED));
+		assertThat(poll(statusPath, "GET").getStatus(), equalTo(HttpServletResponse.SC_NOT_FOUND));
+	}
+	
+	@Test
+	public void shouldDropResultsThatExceedTheMaximumSize() throws Exception {
+		setGlobalProperty(FhirConstants.ASYNC_RESULT_MAXIMUM_BYTES_PROPERTY, "1");
+		when(servlet.getServerAddressStrategy()).thenReturn(serverAddressStrategy);
+		when(serverAddressStrategy.determineServerBase(any(), any())).thenReturn(SERVER_BASE);
+		
+		MockHttpServletRequest request = newRequest("GET");
+		request.addHeader(Constants.HEADER_PREFER, Constants.HEADER_PREFER_RESPOND_ASYNC);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(processor.process(servlet, EVERYTHING_PATH, request, response), is(true));
+		String statusPath = response.getHeader(Constants.HEADER_CONTENT_LOCATION).substring(SERVER_BASE.length());
+		
+		MockHttpServletResponse pollResponse = poll(statusPath, "GET");
+		long deadline = System.currentTimeMillis() + 5000;
+		while (pollResponse.getStatus() == HttpServletResponse.SC_ACCEPTED && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			pollResponse = poll(statusPath, "GET");
+		}
+		
+		assertThat(pollResponse.getStatus(), equalTo(HttpServletResponse.SC_NOT_FOUND));
+	}
+	
+	@Test
+	public void shouldNotReturnResultsOfUnknownRequests() throws Exception {
+		assertThat(poll("/" + FhirConstants.ASYNC_STATUS_OPERATION + "/unknown", "GET").getStatus(),
+		    equalTo(HttpServletResponse.SC_NOT_FOUND));
+	}
+	
+	private MockHttpServletResponse poll(String statusPath, String method) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertThat(processor.process(servlet, statusPath, newRequest(method), response), is(true));
+		return response;
+	}
+	
+	private static void setGlobalProperty(String property, String value) {
+		new FhirGlobalPropertyHolder().globalPropertyChanged(new GlobalProperty(property, value));
+	}
+	
+	private static MockHttpServletRequest newRequest(String method) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/openmrs/ms/fhir2Servlet");
+		request.setAsyncSupported(true);
+		return request;
+	}
+}
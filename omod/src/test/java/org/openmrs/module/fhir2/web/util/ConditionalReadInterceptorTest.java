@@ -0,0 +1,171 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.IRestfulResponse;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.exceptions.NotModifiedException;
+import ca.uhn.fhir.util.DateUtils;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConditionalReadInterceptorTest {
+	
+	private static final String PATIENT_UUID = "a7e04421-525f-442f-8138-05b619d16def";
+	
+	private static final Date LAST_UPDATED = new Date(1571234567000L);
+	
+	private static final String VERSION_ID = String.valueOf(LAST_UPDATED.getTime());
+	
+	@Mock
+	private ResourceVersionLookup resourceVersionLookup;
+	
+	@Mock
+	private RequestDetails requestDetails;
+	
+	@Mock
+	private IRestfulResponse response;
+	
+	private ConditionalReadInterceptor interceptor;
+	
+	@Before
+	public void setup() {
+		interceptor = new ConditionalReadInterceptor();
+		interceptor.setResourceVersionLookup(resourceVersionLookup);
+		
+		// avoid trying to do an actual lookup by pre-caching the global properties
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY, "private, no-cache"));
+		new FhirGlobalPropertyHolder().globalPropertyChanged(
+		    new GlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY + ".Patient", "private, max-age=60"));
+	}
+	
+	@After
+	public void after() {
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	private void setupRead() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getResourceName()).thenReturn(FhirConstants.PATIENT);
+		when(requestDetails.getId()).thenReturn(new IdType(FhirConstants.PATIENT, PATIENT_UUID));
+	}
+	
+	@Test(expected = NotModifiedException.class)
+	public void shouldAnswerNotModifiedWhenEntityTagMatches() {
+		setupRead();
+		when(requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH)).thenReturn("W/\"" + VERSION_ID + "\"");
+		when(requestDetails.getResponse()).thenReturn(response);
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.PATIENT, PATIENT_UUID)).thenReturn(LAST_UPDATED);
+		
+		try {
+			interceptor.handleConditionalRead(requestDetails);
+		}
+		finally {
+			verify(response).addHeader(Constants.HEADER_ETAG, "W/\"" + VERSION_ID + "\"");
+			verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "private, max-age=60");
+		}
+	}
+	
+	@Test
+	public void shouldContinueWhenEntityTagDoesNotMatch() {
+		setupRead();
+		when(requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH)).thenReturn("W/\"1234\"");
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.PATIENT, PATIENT_UUID)).thenReturn(LAST_UPDATED);
+		
+		interceptor.handleConditionalRead(requestDetails);
+		
+		verify(requestDetails, never()).getResponse();
+	}
+	
+	@Test(expected = NotModifiedException.class)
+	public void shouldAnswerNotModifiedWhenNotModifiedSince() {
+		setupRead();
+		when(requestDetails.getHeader(Constants.HEADER_IF_MODIFIED_SINCE))
+		        .thenReturn(DateUtils.formatDate(new Date(LAST_UPDATED.getTime() + 1000)));
+		when(requestDetails.getResponse()).thenReturn(response);
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.PATIENT, PATIENT_UUID)).thenReturn(LAST_UPDATED);
+		
+		interceptor.handleConditionalRead(requestDetails);
+	}
+	
+	@Test
+	public void shouldContinueWhenModifiedSince() {
+		setupRead();
+		when(requestDetails.getHeader(Constants.HEADER_IF_MODIFIED_SINCE))
+		        .thenReturn(DateUtils.formatDate(new Date(LAST_UPDATED.getTime() - 1000)));
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.PATIENT, PATIENT_UUID)).thenReturn(LAST_UPDATED);
+		
+		interceptor.handleConditionalRead(requestDetails);
+		
+		verify(requestDetails, never()).getResponse();
+	}
+	
+	@Test
+	public void shouldContinueWhenResourceIsMissing() {
+		setupRead();
+		when(requestDetails.getHeader(Constants.HEADER_IF_NONE_MATCH)).thenReturn("*");
+		
+		interceptor.handleConditionalRead(requestDetails);
+		
+		verify(resourceVersionLookup).getLastUpdated(FhirConstants.PATIENT, PATIENT_UUID);
+		verify(requestDetails, never()).getResponse();
+	}
+	
+	@Test
+	public void shouldAddVersionToIdOfResourceRead() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.READ);
+		when(requestDetails.getResourceName()).thenReturn(FhirConstants.PATIENT);
+		when(requestDetails.getResponse()).thenReturn(response);
+		
+		Patient patient = new Patient();
+		patient.setId(PATIENT_UUID);
+		patient.getMeta().setVersionId(VERSION_ID);
+		
+		interceptor.handleOutgoingResponse(requestDetails, new ResponseDetails(patient));
+		
+		assertThat(patient.getIdElement().getVersionIdPart(), equalTo(VERSION_ID));
+		verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "private, max-age=60");
+	}
+	
+	@Test
+	public void shouldNotStoreSearchResults() {
+		when(requestDetails.getRestOperationType()).thenReturn(RestOperationTypeEnum.SEARCH_TYPE);
+		when(requestDetails.getResponse()).thenReturn(response);
+		
+		interceptor.handleOutgoingResponse(requestDetails, null);
+		
+		verify(response).addHeader(Constants.HEADER_CACHE_CONTROL, "no-store");
+		verify(response, never()).addHeader(eq(Constants.HEADER_ETAG), anyString());
+	}
+}
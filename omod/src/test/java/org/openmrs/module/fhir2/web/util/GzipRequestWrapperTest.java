@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class GzipRequestWrapperTest {
+	
+	private static final String BODY = "{\"resourceType\":\"Bundle\",\"type\":\"transaction\"}";
+	
+	@Test
+	public void shouldDecompressGzipRequestBodies() throws IOException {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/ws/fhir2/R4");
+		request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		request.addHeader("Content-Encoding", "gzip");
+		request.setContent(gzip(BODY));
+		
+		HttpServletRequest wrapped = GzipRequestWrapper.wrap(request, false);
+		
+		assertThat(wrapped.getHeader("Content-Encoding"), nullValue());
+		assertThat(wrapped.getContentLength(), equalTo(-1));
+		assertThat(IOUtils.toString(wrapped.getReader()), equalTo(BODY));
+	}
+	
+	@Test
+	public void shouldHideAcceptEncodingWhenCompressingTheResponse() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/fhir2/R4/Patient");
+		request.addHeader("Accept-Encoding", "gzip");
+		
+		HttpServletRequest wrapped = GzipRequestWrapper.wrap(request, true);
+		
+		assertThat(wrapped, not(sameInstance(request)));
+		assertThat(wrapped.getHeader("Accept-Encoding"), nullValue());
+		assertThat(Collections.list(wrapped.getHeaderNames()).contains("Accept-Encoding"), equalTo(false));
+	}
+	
+	@Test
+	public void shouldNotWrapPlainRequests() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/fhir2/R4/Patient");
+		
+		assertThat(GzipRequestWrapper.wrap(request, false), sameInstance(request));
+	}
+	
+	private static byte[] gzip(String body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class GzipResponseWrapperTest {
+	
+	private MockHttpServletResponse response;
+	
+	@Before
+	public void setup() {
+		response = new MockHttpServletResponse();
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+	}
+	
+	@Test
+	public void shouldNegotiateGzipFromAcceptEncoding() {
+		assertThat(GzipResponseWrapper.acceptsGzip("gzip, deflate, br"), is(true));
+		assertThat(GzipResponseWrapper.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"), is(true));
+		assertThat(GzipResponseWrapper.acceptsGzip("*"), is(true));
+		assertThat(GzipResponseWrapper.acceptsGzip("gzip;q=0, *"), is(false));
+		assertThat(GzipResponseWrapper.acceptsGzip("*;q=0"), is(false));
+		assertThat(GzipResponseWrapper.acceptsGzip("identity"), is(false));
+		assertThat(GzipResponseWrapper.acceptsGzip(null), is(false));
+	}
+	
+	@Test
+	public void shouldCompressResponsesAboveTheMinimumSize() throws IOException {
+		String body = StringUtils.repeat("{\"resourceType\":\"Patient\"}", 200);
+		
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(response, 1024);
+		wrapper.setContentLength(body.length());
+		PrintWriter writer = wrapper.getWriter();
+		writer.write(body);
+		writer.close();
+		wrapper.finish();
+		
+		assertThat(wrapper.isCompressed(), is(true));
+		assertThat(response.getHeader("Content-Encoding"), equalTo("gzip"));
+		assertThat(response.getHeader("Vary"), equalTo("Accept-Encoding"));
+		assertThat(response.getHeader("Content-Length"), nullValue());
+		assertThat(gunzip(response.getContentAsByteArray()), equalTo(body));
+	}
+	
+	@Test
+	public void shouldSendResponsesBelowTheMinimumSizeUncompressed() throws IOException {
+		String body = "{\"resourceType\":\"Patient\"}";
+		
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(response, 1024);
+		wrapper.getWriter().write(body);
+		wrapper.finish();
+		
+		assertThat(wrapper.isCompressed(), is(false));
+		assertThat(response.getHeader("Content-Encoding"), nullValue());
+		assertThat(response.getContentLength(), equalTo(body.length()));
+		assertThat(response.getContentAsString(), equalTo(body));
+	}
+	
+	@Test
+	public void shouldCompressFlushedOutputAsItIsWritten() throws IOException {
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(response, 16);
+		wrapper.getOutputStream().write(StringUtils.repeat("a", 64).getBytes(StandardCharsets.UTF_8));
+		wrapper.getOutputStream().flush();
+		
+		assertThat(response.getContentAsByteArray().length > 0, is(true));
+		
+		wrapper.getOutputStream().write(StringUtils.repeat("b", 64).getBytes(StandardCharsets.UTF_8));
+		wrapper.finish();
+		
+		assertThat(gunzip(response.getContentAsByteArray()),
+		    equalTo(StringUtils.repeat("a", 64) + StringUtils.repeat("b", 64)));
+	}
+	
+	@Test
+	public void shouldNotCompressBodiesThatAlreadyHaveAnEncoding() throws IOException {
+		GzipResponseWrapper wrapper = new GzipResponseWrapper(response, 0);
+		wrapper.setHeader("Content-Encoding", "br");
+		wrapper.getOutputStream().write(new byte[] { 1, 2, 3 });
+		wrapper.finish();
+		
+		assertThat(wrapper.isCompressed(), is(false));
+		assertThat(response.getContentAsByteArray(), equalTo(new byte[] { 1, 2, 3 }));
+	}
+	
+	private static String gunzip(byte[] compressed) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.openmrs.module.fhir2.narrative.OpenmrsThymeleafNarrativeGenerator;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class NarrativeInterceptorTest {
+	
+	private final NarrativeInterceptor interceptor = new NarrativeInterceptor();
+	
+	private final MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+	
+	private final Map<String, String[]> parameters = new HashMap<>();
+	
+	@Before
+	public void setup() {
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.NARRATIVES_FOR_READS_ONLY_PROPERTY, "false"));
+	}
+	
+	@After
+	public void after() {
+		OpenmrsThymeleafNarrativeGenerator.setNarrativesDisabled(false);
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void shouldGenerateNarrativesByDefault() {
+		interceptor.handleNarratives(newRequest(RestOperationTypeEnum.SEARCH_TYPE));
+		
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(false));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativesWhenNarrativeParameterIsFalse() {
+		parameters.put(FhirConstants.NARRATIVE_SEARCH_PARAMETER, new String[] { "false" });
+		
+		interceptor.handleNarratives(newRequest(RestOperationTypeEnum.READ));
+		
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(true));
+	}
+	
+	@Test
+	public void shouldNotGenerateNarrativesWhenNarrativeHeaderIsFalse() {
+		servletRequest.addHeader(FhirConstants.NARRATIVE_HEADER, "false");
+		
+		interceptor.handleNarratives(newRequest(RestOperationTypeEnum.SEARCH_TYPE));
+		
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(true));
+	}
+	
+	@Test
+	public void shouldOnlyGenerateNarrativesForReadsWhenConfigured() {
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.NARRATIVES_FOR_READS_ONLY_PROPERTY, "true"));
+		
+		interceptor.handleNarratives(newRequest(RestOperationTypeEnum.SEARCH_TYPE));
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(true));
+		
+		interceptor.handleNarratives(newRequest(RestOperationTypeEnum.READ));
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(false));
+	}
+	
+	@Test
+	public void shouldGenerateNarrativesAgainOnceTheRequestIsComplete() {
+		parameters.put(FhirConstants.NARRATIVE_SEARCH_PARAMETER, new String[] { "false" });
+		ServletRequestDetails requestDetails = newRequest(RestOperationTypeEnum.SEARCH_TYPE);
+		
+		interceptor.handleNarratives(requestDetails);
+		interceptor.clearNarratives(requestDetails);
+		
+		assertThat(OpenmrsThymeleafNarrativeGenerator.isNarrativesDisabled(), is(false));
+	}
+	
+	private ServletRequestDetails newRequest(RestOperationTypeEnum operationType) {
+		ServletRequestDetails requestDetails = new ServletRequestDetails();
+		requestDetails.setServletRequest(servletRequest);
+		requestDetails.setRestOperationType(operationType);
+		requestDetails.setResourceName(FhirConstants.PATIENT);
+		requestDetails.setParameters(parameters);
+		return requestDetails;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Date;
+import java.util.HashMap;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.r4.model.IdType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.openmrs.GlobalProperty;
+import org.openmrs.Role;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.UserContext;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseCacheInterceptorTest {
+	
+	private static final String LOCATION_UUID = "c0938432-1691-11df-97a5-7038c432";
+	
+	private static final Date LAST_UPDATED = new Date(1571234567000L);
+	
+	private static final String BODY = "{\"resourceType\":\"Location\",\"id\":\"" + LOCATION_UUID + "\"}";
+	
+	private static final String CONTENT_TYPE = "application/fhir+json;charset=utf-8";
+	
+	private static final RestfulServer SERVER = new RestfulServer(FhirContext.forR4());
+	
+	@Mock
+	private ResourceVersionLookup resourceVersionLookup;
+	
+	@Mock
+	private UserContext userContext;
+	
+	private ResponseCacheInterceptor interceptor;
+	
+	@Before
+	public void setup() {
+		interceptor = new ResponseCacheInterceptor();
+		interceptor.setResourceVersionLookup(resourceVersionLookup);
+		
+		// avoid trying to do an actual lookup by pre-caching the global properties
+		setGlobalProperty(FhirConstants.RESPONSE_CACHE_SIZE_PROPERTY + "." + FhirConstants.LOCATION, "10");
+		setGlobalProperty(FhirConstants.RESOURCE_CACHE_TTL_PROPERTY, "300");
+		setGlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY, "private, no-cache");
+		setGlobalProperty(FhirConstants.CACHE_CONTROL_PROPERTY + "." + FhirConstants.LOCATION, "public, max-age=60");
+	}
+	
+	@After
+	public void after() {
+		Context.clearUserContext();
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void shouldWriteTheCachedResponseWhileTheVersionIsUnchanged() throws IOException {
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.LOCATION, LOCATION_UUID)).thenReturn(LAST_UPDATED);
+		cacheResponse();
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		boolean handled = !interceptor.handleRead(newRead(response));
+		
+		assertThat(handled, is(true));
+		assertThat(response.getStatus(), equalTo(200));
+		assertThat(response.getContentAsString(), equalTo(BODY));
+		assertThat(response.getContentType(), equalTo(CONTENT_TYPE));
+		assertThat(response.getHeader(Constants.HEADER_ETAG), equalTo("W/\"" + LAST_UPDATED.getTime() + "\""));
+		assertThat(response.getHeader(Constants.HEADER_CACHE_CONTROL), equalTo("public, max-age=60"));
+		assertThat(interceptor.getStatistics().get(FhirConstants.LOCATION).hitCount(), equalTo(1L));
+	}
+	
+	@Test
+	public void shouldNotWriteTheCachedResponseOnceTheVersionHasChanged() throws IOException {
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.LOCATION, LOCATION_UUID)).thenReturn(LAST_UPDATED,
+		    new Date(LAST_UPDATED.getTime() + 1000));
+		cacheResponse();
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(interceptor.handleRead(newRead(response)), is(true));
+		assertThat(response.getContentAsString(), equalTo(""));
+	}
+	
+	@Test
+	public void shouldNotWriteTheCachedResponseToUsersWithOtherRoles() throws IOException {
+		when(resourceVersionLookup.getLastUpdated(FhirConstants.LOCATION, LOCATION_UUID)).thenReturn(LAST_UPDATED);
+		cacheResponse();
+		
+		User user = new User(1);
+		user.addRole(new Role("Data Clerk"));
+		when(userContext.getAuthenticatedUser()).thenReturn(user);
+		Context.setUserContext(userContext);
+		
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		
+		assertThat(interceptor.handleRead(newRead(response)), is(true));
+		assertThat(response.getContentAsString(), equalTo(""));
+	}
+	
+	@Test
+	public void shouldNotCacheResponsesWhenDisabled() {
+		setGlobalProperty(FhirConstants.RESPONSE_CACHE_SIZE_PROPERTY + "." + FhirConstants.LOCATION, "0");
+		
+		ServletRequestDetails requestDetails = newRead(new MockHttpServletResponse());
+		
+		assertThat(interceptor.handleRead(requestDetails), is(true));
+		assertThat(requestDetails.getUserData().isEmpty(), is(true));
+	}
+	
+	private void cacheResponse() throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ServletRequestDetails requestDetails = newRead(response);
+		
+		assertThat(interceptor.handleRead(requestDetails), is(true));
+		
+		StringWriter out = new StringWriter();
+		try (Writer writer = interceptor.captureResponse(out, requestDetails)) {
+			writer.write(BODY);
+		}
+		response.setStatus(200);
+		response.setContentType(CONTENT_TYPE);
+		
+		interceptor.cacheResponse(requestDetails);
+		assertThat(out.toString(), equalTo(BODY));
+	}
+	
+	private static ServletRequestDetails newRead(MockHttpServletResponse response) {
+		ServletRequestDetails requestDetails = new ServletRequestDetails();
+		requestDetails.setServer(SERVER);
+		requestDetails.setServletRequest(new MockHttpServletRequest("GET", "/ws/fhir2/R4/Location/" + LOCATION_UUID));
+		requestDetails.setServletResponse(response);
+		requestDetails.setRestOperationType(RestOperationTypeEnum.READ);
+		requestDetails.setResourceName(FhirConstants.LOCATION);
+		requestDetails.setId(new IdType(FhirConstants.LOCATION, LOCATION_UUID));
+		requestDetails.setFhirServerBase("http://localhost/ws/fhir2/R4");
+		requestDetails.setParameters(new HashMap<>());
+		return requestDetails;
+	}
+	
+	private static void setGlobalProperty(String property, String value) {
+		new FhirGlobalPropertyHolder().globalPropertyChanged(new GlobalProperty(property, value));
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.GlobalProperty;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.FhirGlobalPropertyHolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class StreamingBundleInterceptorTest {
+	
+	private static final FhirContext FHIR_CONTEXT = FhirContext.forR4();
+	
+	private static final RestfulServer SERVER = new RestfulServer(FHIR_CONTEXT);
+	
+	private static final int ENTRIES = 120;
+	
+	private StreamingBundleInterceptor interceptor;
+	
+	private MockHttpServletResponse response;
+	
+	@Before
+	public void setup() {
+		interceptor = new StreamingBundleInterceptor();
+		response = new MockHttpServletResponse();
+		
+		// avoid trying to do an actual lookup by pre-caching the global property
+		new FhirGlobalPropertyHolder()
+		        .globalPropertyChanged(new GlobalProperty(FhirConstants.BUNDLE_STREAMING_THRESHOLD_PROPERTY, "100"));
+	}
+	
+	@After
+	public void after() {
+		FhirGlobalPropertyHolder.reset();
+	}
+	
+	@Test
+	public void shouldStreamLargeBundlesAsJson() throws UnsupportedEncodingException {
+		boolean handled = !interceptor.streamBundle(newSearch(new HashMap<>()), new ResponseDetails(newBundle(ENTRIES)));
+		
+		assertThat(handled, is(true));
+		assertThat(response.getContentType(), startsWith(Constants.CT_FHIR_JSON_NEW));
+		
+		Bundle result = FHIR_CONTEXT.newJsonParser().parseResource(Bundle.class, response.getContentAsString());
+		assertThat(result.getTotal(), equalTo(ENTRIES));
+		assertThat(result.getLink(), hasSize(1));
+		assertThat(result.getEntry(), hasSize(ENTRIES));
+		for (int i = 0; i < ENTRIES; i++) {
+			assertThat(result.getEntry().get(i).getFullUrl(), equalTo("http://localhost/ws/fhir2/R4/Patient/" + i));
+			assertThat(result.getEntry().get(i).getResource().getIdElement().getIdPart(), equalTo(String.valueOf(i)));
+		}
+	}
+	
+	@Test
+	public void shouldStreamLargeBundlesAsNdJson() throws UnsupportedEncodingException {
+		HashMap<String, String[]> parameters = new HashMap<>();
+		parameters.put(Constants.PARAM_FORMAT, new String[] { Constants.CT_FHIR_NDJSON });
+		
+		boolean handled = !interceptor.streamBundle(newSearch(parameters), new ResponseDetails(newBundle(ENTRIES)));
+		
+		assertThat(handled, is(true));
+		String[] lines = response.getContentAsString().split("\n");
+		assertThat(lines, arrayWithSize(ENTRIES));
+		assertThat(FHIR_CONTEXT.newJsonParser().parseResource(Patient.class, lines[5]).getIdElement().getIdPart(),
+		    equalTo("5"));
+	}
+	
+	@Test
+	public void shouldApplyRequestedElementsWhenStreamingAsNdJson() throws UnsupportedEncodingException {
+		HashMap<String, String[]> parameters = new HashMap<>();
+		parameters.put(Constants.PARAM_FORMAT, new String[] { Constants.CT_FHIR_NDJSON });
+		parameters.put(Constants.PARAM_ELEMENTS, new String[] { "gender" });
+		
+		boolean handled = !interceptor.streamBundle(newSearch(parameters), new ResponseDetails(newBundle(ENTRIES)));
+		
+		assertThat(handled, is(true));
+		String[] lines = response.getContentAsString().split("\n");
+		assertThat(lines, arrayWithSize(ENTRIES));
+		Patient patient = FHIR_CONTEXT.newJsonParser().parseResource(Patient.class, lines[5]);
+		assertThat(patient.getGender(), equalTo(Enumerations.AdministrativeGender.UNKNOWN));
+		assertThat(patient.hasName(), is(false));
+	}
+	
+	@Test
+	public void shouldLeaveSmallBundlesToHapi() {
+		boolean handled = !interceptor.streamBundle(newSearch(new HashMap<>()), new ResponseDetails(newBundle(10)));
+		
+		assertThat(handled, is(false));
+		assertThat(response.getContentLength(), equalTo(0));
+	}
+	
+	private ServletRequestDetails newSearch(HashMap<String, String[]> parameters) {
+		ServletRequestDetails requestDetails = new ServletRequestDetails();
+		requestDetails.setServer(SERVER);
+		requestDetails.setServletRequest(new MockHttpServletRequest("GET", "/ws/fhir2/R4/Patient"));
+		requestDetails.setServletResponse(response);
+		requestDetails.setRestOperationType(RestOperationTypeEnum.SEARCH_TYPE);
+		requestDetails.setResourceName(FhirConstants.PATIENT);
+		requestDetails.setFhirServerBase("http://localhost/ws/fhir2/R4");
+		requestDetails.setParameters(parameters);
+		return requestDetails;
+	}
+	
+	private static Bundle newBundle(int entries) {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.SEARCHSET);
+		bundle.setTotal(entries);
+		bundle.addLink().setRelation(Bundle.LINK_NEXT).setUrl("http://localhost/ws/fhir2/R4?_getpages=1");
+		for (int i = 0; i < entries; i++) {
+			Patient patient = new Patient();
+			patient.setId(String.valueOf(i));
+			patient.setGender(Enumerations.AdministrativeGender.UNKNOWN);
+			patient.addName().setFamily("Doe");
+			bundle.addEntry().setFullUrl("http://localhost/ws/fhir2/R4/Patient/" + i).setResource(patient).getSearch()
+			        .setMode(Bundle.SearchEntryMode.MATCH);
+		}
+		
+		return bundle;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.fhir2.web.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.junit.After;
+import org.junit.Test;
+import org.openmrs.module.fhir2.FhirConstants;
+import org.openmrs.module.fhir2.api.util.RequestedElements;
+
+public class SummaryInterceptorTest {
+	
+	private static final RestfulServer SERVER = new RestfulServer(FhirContext.forR4());
+	
+	private final SummaryInterceptor interceptor = new SummaryInterceptor();
+	
+	@After
+	public void after() {
+		RequestedElements.clear();
+	}
+	
+	@Test
+	public void shouldPassRequestedElementsOnToSearches() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_elements", new String[] { "identifier,Patient.name.given" });
+		
+		interceptor.handleRequestedElements(newSearch(parameters));
+		
+		Set<String> elements = RequestedElements.get();
+		assertThat(elements, hasItems("identifier", "name", "id", "meta"));
+		// modifier elements are always part of the response
+		assertThat(elements, hasItems("active", "deceased"));
+		assertThat(elements, not(hasItems("telecom")));
+		assertThat(elements, not(hasItems("address")));
+	}
+	
+	@Test
+	public void shouldPassSummaryElementsOnToSearches() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "true" });
+		
+		Set<String> elements = SummaryInterceptor.getRequestedElements(newSearch(parameters));
+		
+		assertThat(elements, hasItems("identifier", "name", "telecom", "address", "birthDate"));
+		assertThat(elements, not(hasItems("contact")));
+		assertThat(elements, not(hasItems("photo")));
+	}
+	
+	@Test
+	public void shouldNotRestrictElementsOfOtherResources() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_elements", new String[] { "name,Observation.code" });
+		
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+	}
+	
+	@Test
+	public void shouldNotRestrictElementsWhenOtherResourcesAreIncluded() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_elements", new String[] { "name" });
+		parameters.put("_revinclude", new String[] { "Observation:patient" });
+		
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+	}
+	
+	@Test
+	public void shouldNotRestrictElementsWithoutElementsOrSummary() {
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(new HashMap<>())), nullValue());
+		
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "data" });
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+	}
+	
+	@Test
+	public void shouldNotRestrictElementsWhenTheNarrativeIsRequested() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "text" });
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+		
+		parameters = new HashMap<>();
+		parameters.put("_elements", new String[] { "text,identifier" });
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+		
+		parameters = new HashMap<>();
+		parameters.put("_elements:exclude", new String[] { "photo" });
+		assertThat(SummaryInterceptor.getRequestedElements(newSearch(parameters)), nullValue());
+	}
+	
+	@Test
+	public void shouldLeaveOutExcludedElementsWhenTheNarrativeIsExcluded() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_elements:exclude", new String[] { "text,photo" });
+		
+		Set<String> elements = SummaryInterceptor.getRequestedElements(newSearch(parameters));
+		
+		assertThat(elements, hasItems("identifier", "name"));
+		assertThat(elements, not(hasItems("text")));
+		assertThat(elements, not(hasItems("photo")));
+	}
+	
+	@Test
+	public void shouldClearRequestedElementsOnceTheRequestIsComplete() {
+		Map<String, String[]> parameters = new HashMap<>();
+		parameters.put("_summary", new String[] { "count" });
+		ServletRequestDetails requestDetails = newSearch(parameters);
+		
+		interceptor.handleRequestedElements(requestDetails);
+		assertThat(RequestedElements.get(), hasItems("id", "meta"));
+		assertThat(RequestedElements.get(), not(hasItems("name")));
+		
+		interceptor.clearRequestedElements(requestDetails);
+		assertThat(RequestedElements.get(), nullValue());
+	}
+	
+	private static ServletRequestDetails newSearch(Map<String, String[]> parameters) {
+		ServletRequestDetails requestDetails = new ServletRequestDetails();
+		requestDetails.setServer(SERVER);
+		requestDetails.setRestOperationType(RestOperationTypeEnum.SEARCH_TYPE);
+		requestDetails.setResourceName(FhirConstants.PATIENT);
+		requestDetails.setParameters(parameters);
+		return requestDetails;
+	}
+}